@@ -1223,4 +1223,57 @@ public interface BigQuery extends Service<BigQueryOptions> {
    *
    */
   TableDataWriteChannel writer(JobId jobId, WriteChannelConfiguration writeChannelConfiguration);
+
+  /**
+   * Returns a loader of rows into a BigQuery table. The rows are encoded by {@code encoder} in the
+   * format of the {@link WriteChannelConfiguration} parameter, and uploaded with one or more load
+   * jobs, see {@link TableDataLoader}.
+   *
+   * <p>Example of loading rows as newline-delimited JSON.
+   * <pre> {@code
+   * String datasetName = "my_dataset_name";
+   * String tableName = "my_table_name";
+   * TableId tableId = TableId.of(datasetName, tableName);
+   * WriteChannelConfiguration writeChannelConfiguration =
+   *     WriteChannelConfiguration.newBuilder(tableId).setFormatOptions(FormatOptions.json()).build();
+   * TableDataLoader<Map<String, ?>> loader =
+   *     bigquery.loader(
+   *         writeChannelConfiguration,
+   *         TableDataLoader.jsonEncoder(),
+   *         TableDataLoaderOptions.newBuilder().build());
+   * try {
+   *   loader.add(ImmutableMap.of("StringValue", "value1"));
+   *   loader.add(ImmutableMap.of("StringValue", "value2"));
+   * } finally {
+   *   loader.close();
+   * }
+   * // Get load jobs
+   * for (Job job : loader.getJobs()) {
+   *   job.waitFor();
+   * }
+   * }</pre>
+   *
+   * @throws IllegalArgumentException if the data of the load can't be compressed or loaded by
+   *     several jobs, as requested by {@code options}
+   */
+  <T> TableDataLoader<T> loader(
+      WriteChannelConfiguration writeChannelConfiguration,
+      TableDataLoader.RowEncoder<T> encoder,
+      TableDataLoaderOptions options);
+
+  /**
+   * Returns a cache of query results, that also runs identical concurrent queries only once, see
+   * {@link QueryCache}.
+   *
+   * <p>Example of running a query through a cache.
+   * <pre> {@code
+   * QueryCache cache = bigquery.newQueryCache(QueryCacheOptions.newBuilder().build());
+   * String query = "SELECT corpus FROM `bigquery-public-data.samples.shakespeare` GROUP BY corpus;";
+   * QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query).build();
+   * for (FieldValueList row : cache.query(queryConfig).iterateAll()) {
+   *   // do something with the data
+   * }
+   * }</pre>
+   */
+  QueryCache newQueryCache(QueryCacheOptions options);
 }
@@ -729,6 +729,19 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
         writeChannelConfiguration.setProjectId(getOptions().getProjectId()));
   }
 
+  @Override
+  public <T> TableDataLoader<T> loader(
+      WriteChannelConfiguration writeChannelConfiguration,
+      TableDataLoader.RowEncoder<T> encoder,
+      TableDataLoaderOptions options) {
+    return new TableDataLoader<>(this, writeChannelConfiguration, encoder, options);
+  }
+
+  @Override
+  public QueryCache newQueryCache(QueryCacheOptions options) {
+    return new QueryCache(this, options);
+  }
+
   @VisibleForTesting
   static Map<BigQueryRpc.Option, ?> optionMap(Option... options) {
     Map<BigQueryRpc.Option, Object> optionMap = Maps.newEnumMap(BigQueryRpc.Option.class);
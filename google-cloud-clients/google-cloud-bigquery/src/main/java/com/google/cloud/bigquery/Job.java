@@ -18,6 +18,8 @@ package com.google.cloud.bigquery;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
 import com.google.api.gax.retrying.BasicResultRetryAlgorithm;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.gax.retrying.TimedAttemptSettings;
@@ -243,6 +245,38 @@ public class Job extends JobInfo {
     return completedJobResponse == null ? null : reload();
   }
 
+  /**
+   * Returns a future that completes with the latest information of this job once it is done, or
+   * with {@code null} if the job no longer exists. Unlike {@link #waitFor(RetryOption...)}, no
+   * thread is blocked while waiting: the jobs waited for by all the futures are polled by a shared
+   * poller, and jobs due to be polled at about the same time are polled together, with a single
+   * listing of the pending and running jobs of the project when possible.
+   *
+   * <p>The interval between polls starts at one second and doubles up to one minute, unless
+   * configured otherwise by {@code waitOptions}.
+   *
+   * <p>Example usage of {@code waitForAsync()}.
+   * <pre> {@code
+   * List<ApiFuture<Job>> futures = new ArrayList<>();
+   * for (Job job : jobs) {
+   *   futures.add(job.waitForAsync());
+   * }
+   * List<Job> completedJobs = ApiFutures.allAsList(futures).get();
+   * }</pre>
+   *
+   * @param waitOptions options to configure checking period and timeout
+   * @return a future that fails with a {@link BigQueryException} if polling fails, or with a
+   *     {@link com.google.api.gax.retrying.PollException} if the job doesn't complete in time
+   */
+  @BetaApi
+  public ApiFuture<Job> waitForAsync(RetryOption... waitOptions) {
+    checkNotDryRun("waitForAsync");
+    return JobPoller.getInstance()
+        .watch(
+            new JobPoller.Key(bigquery, getJobId()),
+            RetryOption.mergeToSettings(DEFAULT_JOB_WAIT_SETTINGS, waitOptions));
+  }
+
   /**
    * Gets the query results of this job. This job must be of type {@code
    * JobConfiguration.Type.QUERY}, otherwise this method will throw {@link
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.CurrentMillisClock;
+import com.google.api.gax.paging.Page;
+import com.google.cloud.OperationPoller;
+import com.google.cloud.bigquery.BigQuery.JobListOption;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.threeten.bp.Duration;
+
+/**
+ * Polls the jobs waited for with {@link Job#waitForAsync}, for all the {@link BigQuery} services.
+ *
+ * <p>When at least {@value #MIN_JOBS_TO_LIST} jobs of the project of a service are polled together,
+ * the pending and running jobs of the project are listed, instead of getting each job. The jobs
+ * that are not listed, because they're done or were created by another user, are then fetched one
+ * by one. At most {@value #MAX_LIST_PAGES} pages are listed, so in projects with many running jobs
+ * the polled jobs that are not in these pages are fetched one by one too, as are the jobs of a
+ * project that can't be listed.
+ *
+ * <p>Polls block on BigQuery requests, so they run on a dedicated pool of daemon threads rather
+ * than on the executor shared by the asynchronous calls of the other services.
+ */
+final class JobPoller extends OperationPoller<JobPoller.Key, Job> {
+
+  static final int MIN_JOBS_TO_LIST = 3;
+  static final int MAX_LIST_PAGES = 3;
+  private static final long LIST_PAGE_SIZE = 1000L;
+  private static final Duration COALESCING_WINDOW = Duration.ofMillis(500);
+  private static final int POLLER_THREADS = 4;
+
+  private static final JobPoller INSTANCE =
+      new JobPoller(
+          Executors.newScheduledThreadPool(
+              POLLER_THREADS,
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("bigquery-job-poller-%d")
+                  .build()),
+          CurrentMillisClock.getDefaultClock());
+
+  /** Identifies a job of a service. Keys of different service instances are never equal. */
+  static final class Key {
+
+    private final BigQuery bigquery;
+    private final JobId jobId;
+
+    Key(BigQuery bigquery, JobId jobId) {
+      this.bigquery = bigquery;
+      this.jobId = jobId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return bigquery == other.bigquery && jobId.equals(other.jobId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(bigquery), jobId);
+    }
+
+    @Override
+    public String toString() {
+      return jobId.toString();
+    }
+  }
+
+  JobPoller(ScheduledExecutorService executor, ApiClock clock) {
+    super(executor, clock, COALESCING_WINDOW);
+  }
+
+  static JobPoller getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  protected Map<Key, Job> poll(Set<Key> keys, Map<Key, Throwable> failures) {
+    // Jobs that can be listed, grouped by service, the others are fetched one by one.
+    Map<BigQuery, List<Key>> listable = new LinkedHashMap<>();
+    List<Key> others = new ArrayList<>();
+    for (Key key : keys) {
+      String project = key.bigquery.getOptions().getProjectId();
+      if (project != null && project.equals(key.jobId.getProject())) {
+        List<Key> serviceKeys = listable.get(key.bigquery);
+        if (serviceKeys == null) {
+          serviceKeys = new ArrayList<>();
+          listable.put(key.bigquery, serviceKeys);
+        }
+        serviceKeys.add(key);
+      } else {
+        others.add(key);
+      }
+    }
+    Map<Key, Job> jobs = new HashMap<>();
+    for (Map.Entry<BigQuery, List<Key>> entry : listable.entrySet()) {
+      if (entry.getValue().size() < MIN_JOBS_TO_LIST) {
+        others.addAll(entry.getValue());
+        continue;
+      }
+      Map<String, Job> unfinished;
+      try {
+        unfinished = listUnfinishedJobs(entry.getKey(), entry.getValue());
+      } catch (BigQueryException e) {
+        // Don't fail the waiters of the whole project, getting each job may still succeed.
+        others.addAll(entry.getValue());
+        continue;
+      }
+      for (Key key : entry.getValue()) {
+        Job job = unfinished.get(key.jobId.getJob());
+        if (job != null) {
+          jobs.put(key, job);
+        } else {
+          others.add(key);
+        }
+      }
+    }
+    for (Key key : others) {
+      try {
+        Job job = key.bigquery.getJob(key.jobId, JobOption.fields(BigQuery.JobField.STATUS));
+        if (job != null) {
+          jobs.put(key, job);
+        }
+      } catch (BigQueryException e) {
+        failures.put(key, e);
+      }
+    }
+    return jobs;
+  }
+
+  /**
+   * Lists the pending and running jobs of {@code bigquery}'s project, until all the jobs of {@code
+   * keys} are found or {@value #MAX_LIST_PAGES} pages are listed, and returns the listed jobs of
+   * {@code keys} by job ID.
+   */
+  private static Map<String, Job> listUnfinishedJobs(BigQuery bigquery, List<Key> keys) {
+    Set<String> wanted = new HashSet<>();
+    for (Key key : keys) {
+      wanted.add(key.jobId.getJob());
+    }
+    Map<String, Job> jobs = new HashMap<>();
+    Page<Job> page =
+        bigquery.listJobs(
+            JobListOption.stateFilter(JobStatus.State.PENDING, JobStatus.State.RUNNING),
+            JobListOption.fields(BigQuery.JobField.STATUS),
+            JobListOption.pageSize(LIST_PAGE_SIZE));
+    for (int pages = 1; ; pages++) {
+      for (Job job : page.getValues()) {
+        if (wanted.remove(job.getJobId().getJob())) {
+          jobs.put(job.getJobId().getJob(), job);
+        }
+      }
+      if (wanted.isEmpty() || pages == MAX_LIST_PAGES || !page.hasNextPage()) {
+        return jobs;
+      }
+      page = page.getNextPage();
+    }
+  }
+
+  @Override
+  protected boolean isDone(Job job) {
+    return job.getStatus() != null && job.getStatus().getState() == JobStatus.State.DONE;
+  }
+
+  @Override
+  protected Job onDone(Key key, Job job) {
+    // Polls only fetch the status of the job.
+    return key.bigquery.getJob(key.jobId);
+  }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.CurrentMillisClock;
+import com.google.cloud.PageImpl;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A client-side cache of query results, that also runs identical concurrent queries only once.
+ *
+ * <p>A query run with {@link #query(QueryJobConfiguration, JobOption...)} is served from the cache
+ * if the same query completed less than {@link QueryCacheOptions#getTimeToLive()} ago. Queries are
+ * identical if their configurations are equal once the whitespace of the SQL statements is
+ * normalized, so the parameters, the default dataset and all the other options of the queries must
+ * match. If an identical query is already running, the query waits for it and returns its result
+ * instead of creating another job. Otherwise the query is run with {@link
+ * BigQuery#query(QueryJobConfiguration, JobOption...)}, and the rows of its result are cached.
+ *
+ * <p>Only {@code SELECT} and {@code WITH} statements without a destination table are cached, other
+ * queries are always run, as are queries that disable BigQuery's cache with {@link
+ * QueryJobConfiguration.Builder#setUseQueryCache(Boolean)}. Results with more than {@link
+ * QueryCacheOptions#getMaxRowsPerEntry()} rows are shared by the identical queries waiting for
+ * them, but not cached. The cache does not observe changes of the queried tables, nor the
+ * non-determinism of functions like {@code CURRENT_TIMESTAMP()}: a cached result may be up to the
+ * time to live behind the tables. Use {@link #invalidateAll()} to drop the cached results.
+ *
+ * <p>This class is thread-safe.
+ */
+public class QueryCache {
+
+  private static final Pattern CACHEABLE_STATEMENT =
+      Pattern.compile("^[(\\s]*(SELECT|WITH)\\b", Pattern.CASE_INSENSITIVE);
+
+  private final BigQuery bigquery;
+  private final QueryCacheOptions options;
+  private final ApiClock clock;
+
+  @GuardedBy("this")
+  private final LinkedHashMap<QueryJobConfiguration, CacheEntry> entries;
+
+  @GuardedBy("this")
+  private final Map<QueryJobConfiguration, SettableFuture<TableResult>> running = new HashMap<>();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong deduplicatedCount = new AtomicLong();
+  private final AtomicLong bypassCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  QueryCache(BigQuery bigquery, QueryCacheOptions options) {
+    this(bigquery, options, CurrentMillisClock.getDefaultClock());
+  }
+
+  QueryCache(BigQuery bigquery, final QueryCacheOptions options, ApiClock clock) {
+    this.bigquery = checkNotNull(bigquery);
+    this.options = checkNotNull(options);
+    this.clock = checkNotNull(clock);
+    this.entries =
+        new LinkedHashMap<QueryJobConfiguration, CacheEntry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<QueryJobConfiguration, CacheEntry> eldest) {
+            if (size() > options.getMaxEntries()) {
+              evictionCount.incrementAndGet();
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Runs the query, or returns its cached result or the result of an identical running query. See
+   * {@link BigQuery#query(QueryJobConfiguration, JobOption...)}. The {@code jobOptions} only apply
+   * if the query is run.
+   *
+   * @throws BigQueryException upon failure
+   * @throws InterruptedException if the current thread gets interrupted while waiting for the query
+   *     to complete
+   * @throws JobException if the job completes unsuccessfully
+   */
+  public TableResult query(QueryJobConfiguration configuration, JobOption... jobOptions)
+      throws InterruptedException, JobException {
+    String query = normalizeQuery(configuration.getQuery());
+    if (!isCacheable(configuration, query)) {
+      bypassCount.incrementAndGet();
+      return bigquery.query(configuration, jobOptions);
+    }
+    QueryJobConfiguration key = configuration.toBuilder().setQuery(query).build();
+    while (true) {
+      SettableFuture<TableResult> future;
+      boolean run = false;
+      synchronized (this) {
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+          if (clock.millisTime() - entry.completedMillis < options.getTimeToLive().toMillis()) {
+            hitCount.incrementAndGet();
+            return entry.result;
+          }
+          entries.remove(key);
+        }
+        future = running.get(key);
+        if (future == null) {
+          future = SettableFuture.create();
+          running.put(key, future);
+          run = true;
+        }
+      }
+      if (run) {
+        missCount.incrementAndGet();
+        return run(key, configuration, future, jobOptions);
+      }
+      try {
+        TableResult result = future.get();
+        deduplicatedCount.incrementAndGet();
+        return result;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof InterruptedException) {
+          // The thread running the query was interrupted, not this one: runs the query again.
+          continue;
+        }
+        deduplicatedCount.incrementAndGet();
+        if (cause instanceof JobException) {
+          throw (JobException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw (Error) cause;
+      }
+    }
+  }
+
+  private TableResult run(
+      QueryJobConfiguration key,
+      QueryJobConfiguration configuration,
+      SettableFuture<TableResult> future,
+      JobOption... jobOptions)
+      throws InterruptedException, JobException {
+    TableResult result;
+    try {
+      result = bigquery.query(configuration, jobOptions);
+      if (result.getTotalRows() <= options.getMaxRowsPerEntry()) {
+        result = copyOf(result);
+      }
+    } catch (InterruptedException | JobException | RuntimeException | Error e) {
+      synchronized (this) {
+        running.remove(key);
+      }
+      future.setException(e);
+      throw e;
+    }
+    synchronized (this) {
+      running.remove(key);
+      if (result.getTotalRows() <= options.getMaxRowsPerEntry()) {
+        entries.put(key, new CacheEntry(result, clock.millisTime()));
+      }
+    }
+    future.set(result);
+    return result;
+  }
+
+  /** Removes all the cached results. Running queries are not affected. */
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  /** Returns the number of cached results, including the expired ones not removed yet. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Returns the number of queries served from the cache. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of cacheable queries that were run. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of queries that waited for an identical running query. */
+  public long getDeduplicatedCount() {
+    return deduplicatedCount.get();
+  }
+
+  /** Returns the number of queries that were run because they are not cacheable. */
+  public long getBypassCount() {
+    return bypassCount.get();
+  }
+
+  /** Returns the number of cached results evicted to make room for newer ones. */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Returns the fraction of cacheable queries that were served from the cache, not counting the
+   * queries that waited for an identical running query.
+   */
+  public double getHitRatio() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0.0 : (double) hits / total;
+  }
+
+  private static boolean isCacheable(QueryJobConfiguration configuration, String query) {
+    if (configuration.getDestinationTable() != null
+        || Boolean.TRUE.equals(configuration.dryRun())
+        || Boolean.FALSE.equals(configuration.useQueryCache())
+        || !CACHEABLE_STATEMENT.matcher(query).find()) {
+      return false;
+    }
+    // Scripts may modify data even if they start with a query.
+    int semicolon = query.indexOf(';');
+    return semicolon < 0 || semicolon == query.length() - 1;
+  }
+
+  /** Reads all the rows of {@code result}, so that it can be iterated without further requests. */
+  private static TableResult copyOf(TableResult result) {
+    List<FieldValueList> rows = new ArrayList<>();
+    for (FieldValueList row : result.iterateAll()) {
+      rows.add(row);
+    }
+    return new TableResult(
+        result.getSchema(),
+        result.getTotalRows(),
+        new PageImpl<FieldValueList>(null, null, rows));
+  }
+
+  /**
+   * Collapses the runs of whitespace of {@code query} into a single space, or a single line break
+   * if the run has one, and removes the leading and trailing whitespace. Quoted strings and
+   * identifiers and comments are left unchanged.
+   */
+  @VisibleForTesting
+  static String normalizeQuery(String query) {
+    StringBuilder normalized = new StringBuilder(query.length());
+    boolean space = false;
+    boolean lineBreak = false;
+    int i = 0;
+    while (i < query.length()) {
+      char c = query.charAt(i);
+      if (Character.isWhitespace(c)) {
+        lineBreak |= c == '\n' || c == '\r';
+        space = true;
+        i++;
+        continue;
+      }
+      if (space && normalized.length() > 0) {
+        normalized.append(lineBreak ? '\n' : ' ');
+      }
+      space = false;
+      lineBreak = false;
+      int end = endOfVerbatim(query, i);
+      normalized.append(query, i, end);
+      i = end;
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Returns the end of the quoted string or identifier or the comment starting at {@code start},
+   * or {@code start + 1} if none starts there.
+   */
+  private static int endOfVerbatim(String query, int start) {
+    char c = query.charAt(start);
+    String begin;
+    String end;
+    if (query.startsWith("--", start) || c == '#') {
+      begin = c == '#' ? "#" : "--";
+      end = "\n";
+    } else if (query.startsWith("/*", start)) {
+      begin = "/*";
+      end = "*/";
+    } else if (query.startsWith("'''", start) || query.startsWith("\"\"\"", start)) {
+      begin = query.substring(start, start + 3);
+      end = begin;
+    } else if (c == '\'' || c == '"' || c == '`') {
+      begin = String.valueOf(c);
+      end = begin;
+    } else {
+      return start + 1;
+    }
+    boolean comment = !begin.equals(end);
+    int i = start + begin.length();
+    while (i < query.length()) {
+      if (!comment && query.charAt(i) == '\\') {
+        i += 2;
+      } else if (query.startsWith(end, i)) {
+        // Line comments end before the line break, which is normalized as whitespace.
+        return end.equals("\n") ? i : i + end.length();
+      } else {
+        i++;
+      }
+    }
+    return query.length();
+  }
+
+  private static final class CacheEntry {
+    private final TableResult result;
+    private final long completedMillis;
+
+    CacheEntry(TableResult result, long completedMillis) {
+      this.result = result;
+      this.completedMillis = completedMillis;
+    }
+  }
+}
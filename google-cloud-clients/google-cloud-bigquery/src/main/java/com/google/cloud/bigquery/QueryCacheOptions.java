@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/** Options for a {@link QueryCache}. */
+public class QueryCacheOptions {
+
+  private final int maxEntries;
+  private final Duration timeToLive;
+  private final long maxRowsPerEntry;
+
+  private QueryCacheOptions(Builder builder) {
+    this.maxEntries = builder.maxEntries;
+    this.timeToLive = builder.timeToLive;
+    this.maxRowsPerEntry = builder.maxRowsPerEntry;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  public long getMaxRowsPerEntry() {
+    return maxRowsPerEntry;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating QueryCacheOptions. */
+  public static class Builder {
+    private int maxEntries = 100;
+    private Duration timeToLive = Duration.ofMinutes(5);
+    private long maxRowsPerEntry = 10000;
+
+    private Builder() {}
+
+    /**
+     * Maximum number of cached query results. When the cache is full, the least recently used
+     * result is evicted. Defaults to 100.
+     */
+    public Builder setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * How long the result of a query is served from the cache after the query completed. Defaults
+     * to 5 minutes.
+     */
+    public Builder setTimeToLive(Duration timeToLive) {
+      this.timeToLive = timeToLive;
+      return this;
+    }
+
+    /**
+     * Maximum number of rows of a cached result. Results with more rows are returned to the callers
+     * waiting for the query but not cached. Defaults to 10000.
+     */
+    public Builder setMaxRowsPerEntry(long maxRowsPerEntry) {
+      this.maxRowsPerEntry = maxRowsPerEntry;
+      return this;
+    }
+
+    /** Build a QueryCacheOptions object */
+    public QueryCacheOptions build() {
+      validate();
+      return new QueryCacheOptions(this);
+    }
+
+    private void validate() {
+      Preconditions.checkArgument(maxEntries > 0, "Max entries(%s) must be > 0", maxEntries);
+      Preconditions.checkArgument(
+          timeToLive != null && !timeToLive.isNegative() && !timeToLive.isZero(),
+          "Time to live(%s) must be > 0", timeToLive);
+      Preconditions.checkArgument(
+          maxRowsPerEntry >= 0, "Max rows per entry(%s) must be >= 0", maxRowsPerEntry);
+    }
+  }
+}
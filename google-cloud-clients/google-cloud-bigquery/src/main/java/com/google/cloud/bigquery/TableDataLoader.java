@@ -0,0 +1,575 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.jackson.JacksonFactory;
+import com.google.cloud.BaseServiceException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Loads rows into a BigQuery table with load jobs, encoding and uploading them in the background.
+ *
+ * <p>Rows added to the loader are encoded by a {@link RowEncoder}, for instance as
+ * newline-delimited JSON with {@link #jsonEncoder()}, compressed with gzip if {@link
+ * TableDataLoaderOptions#isCompressed()}, and uploaded in chunks through a {@link
+ * TableDataWriteChannel}. Encoding and uploading run on their own threads, and each load job has
+ * two chunks: one is filled with encoded rows while the other is uploaded. If {@link
+ * TableDataLoaderOptions#getParallelLoads()} is greater than one, the rows are spread over several
+ * load jobs that are encoded and uploaded concurrently, and the order of the rows is not preserved.
+ *
+ * <p>{@link #add(Object)} blocks when encoding or uploading falls behind. The load jobs are created
+ * once all the rows are uploaded, when the loader is closed, and are then returned by {@link
+ * #getJobs()}. The rows are in the table once all the jobs complete.
+ *
+ * <p>Example of loading rows as newline-delimited JSON.
+ * <pre> {@code
+ * WriteChannelConfiguration configuration =
+ *     WriteChannelConfiguration.newBuilder(TableId.of("my_dataset_name", "my_table_name"))
+ *         .setFormatOptions(FormatOptions.json())
+ *         .build();
+ * TableDataLoader<Map<String, ?>> loader =
+ *     bigquery.loader(
+ *         configuration,
+ *         TableDataLoader.jsonEncoder(),
+ *         TableDataLoaderOptions.newBuilder().setParallelLoads(2).build());
+ * try {
+ *   for (int i = 0; i < 1000000; i++) {
+ *     loader.add(ImmutableMap.of("id", i, "name", "name" + i));
+ *   }
+ * } finally {
+ *   loader.close();
+ * }
+ * for (Job job : loader.getJobs()) {
+ *   job.waitFor();
+ * }
+ * }</pre>
+ *
+ * @param <T> the type of the rows
+ */
+public class TableDataLoader<T> implements AutoCloseable {
+
+  private static final int ROWS_PER_BATCH = 500;
+  private static final int BATCHES_PER_LOAD = 2;
+  private static final int CHUNKS_PER_LOAD = 2;
+  private static final int ENCODING_BUFFER_SIZE = 64 * 1024;
+  private static final long POLL_MILLIS = 100;
+  private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+
+  private static final RowEncoder<Map<String, ?>> JSON_ENCODER =
+      new RowEncoder<Map<String, ?>>() {
+        @Override
+        public RowWriter<Map<String, ?>> open(final OutputStream out) {
+          return new RowWriter<Map<String, ?>>() {
+            @Override
+            public void write(Map<String, ?> row) throws IOException {
+              JsonGenerator generator =
+                  JSON_FACTORY.createJsonGenerator(out, StandardCharsets.UTF_8);
+              generator.serialize(row);
+              generator.flush();
+              out.write('\n');
+            }
+
+            @Override
+            public void finish() {}
+          };
+        }
+      };
+
+  /**
+   * Encodes rows in the format of the load jobs, for instance newline-delimited JSON or Avro. An
+   * encoder is shared by all the load jobs of a loader, and must be thread-safe.
+   *
+   * @param <T> the type of the rows
+   */
+  public interface RowEncoder<T> {
+
+    /** Returns a writer encoding the rows of a load job to {@code out}. */
+    RowWriter<T> open(OutputStream out) throws IOException;
+  }
+
+  /**
+   * Encodes the rows of a load job. A writer is used by a single thread.
+   *
+   * @param <T> the type of the rows
+   */
+  public interface RowWriter<T> {
+
+    /** Encodes {@code row}. */
+    void write(T row) throws IOException;
+
+    /** Writes any data still pending once all the rows are written, without closing the stream. */
+    void finish() throws IOException;
+  }
+
+  private static final class Chunk {
+    private final byte[] data;
+    private int length;
+
+    Chunk(int size) {
+      this.data = new byte[size];
+    }
+  }
+
+  private static final Chunk LAST_CHUNK = new Chunk(0);
+
+  private final BigQuery bigquery;
+  private final WriteChannelConfiguration configuration;
+  private final RowEncoder<T> encoder;
+  private final TableDataLoaderOptions options;
+  private final ExecutorService executor;
+  private final List<Load> loads;
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private List<T> batch = new ArrayList<>(ROWS_PER_BATCH);
+
+  @GuardedBy("lock")
+  private int nextLoad;
+
+  @GuardedBy("lock")
+  private boolean closed;
+
+  private final long startNanos = System.nanoTime();
+  private volatile long closeNanos;
+  private final AtomicLong rowCount = new AtomicLong();
+  private final AtomicLong encodedBytes = new AtomicLong();
+  private final AtomicLong uploadedBytes = new AtomicLong();
+
+  TableDataLoader(
+      BigQuery bigquery,
+      WriteChannelConfiguration configuration,
+      RowEncoder<T> encoder,
+      TableDataLoaderOptions options) {
+    this.bigquery = checkNotNull(bigquery);
+    this.configuration = checkNotNull(configuration);
+    this.encoder = checkNotNull(encoder);
+    this.options = checkNotNull(options);
+    String format = configuration.getFormat();
+    checkArgument(
+        !options.isCompressed()
+            || format == null
+            || FormatOptions.CSV.equals(format)
+            || FormatOptions.JSON.equals(format),
+        "Data in format %s can't be compressed", format);
+    checkArgument(
+        options.getParallelLoads() == 1
+            || configuration.getWriteDisposition() != JobInfo.WriteDisposition.WRITE_TRUNCATE,
+        "Rows can't be loaded by several jobs with write disposition WRITE_TRUNCATE");
+    this.executor =
+        Executors.newFixedThreadPool(
+            2 * options.getParallelLoads(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("bigquery-table-data-loader-%d")
+                .build());
+    List<Load> loads = new ArrayList<>(options.getParallelLoads());
+    for (int i = 0; i < options.getParallelLoads(); i++) {
+      loads.add(new Load());
+    }
+    this.loads = Collections.unmodifiableList(loads);
+    for (Load load : loads) {
+      load.start();
+    }
+  }
+
+  /**
+   * Returns an encoder of rows as newline-delimited JSON, for load jobs with {@link
+   * FormatOptions#json()}. The rows are the content of the JSON objects, as the rows of {@link
+   * InsertAllRequest.RowToInsert#getContent()}.
+   */
+  public static RowEncoder<Map<String, ?>> jsonEncoder() {
+    return JSON_ENCODER;
+  }
+
+  /**
+   * Adds {@code row} to the rows to load. Blocks if encoding or uploading falls behind.
+   *
+   * @throws BigQueryException if encoding or uploading failed
+   * @throws IllegalStateException if the loader is closed
+   * @throws InterruptedException if the current thread gets interrupted while waiting for the rows
+   *     to be encoded
+   */
+  public void add(T row) throws InterruptedException {
+    checkNotNull(row);
+    synchronized (lock) {
+      checkState(!closed, "Loader is closed");
+      throwIfFailed();
+      batch.add(row);
+      if (batch.size() >= ROWS_PER_BATCH) {
+        dispatch(batch);
+        batch = new ArrayList<>(ROWS_PER_BATCH);
+      }
+    }
+  }
+
+  /**
+   * Encodes and uploads the remaining rows, and creates the load jobs. Closing a closed loader has
+   * no effect.
+   *
+   * @throws BigQueryException if encoding or uploading failed
+   * @throws InterruptedException if the current thread gets interrupted while waiting for the rows
+   *     to be uploaded
+   */
+  @Override
+  public void close() throws InterruptedException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        if (!batch.isEmpty()) {
+          dispatch(batch);
+          batch = null;
+        }
+        List<T> lastBatch = Collections.emptyList();
+        for (Load load : loads) {
+          offer(load, lastBatch);
+        }
+        for (Load load : loads) {
+          load.await();
+        }
+        throwIfFailed();
+      } finally {
+        executor.shutdownNow();
+        closeNanos = System.nanoTime();
+      }
+    }
+  }
+
+  /**
+   * Returns the load jobs of the rows, one per load that received rows. The jobs are available
+   * once the loader was successfully closed, returns an empty list otherwise.
+   */
+  public List<Job> getJobs() {
+    List<Job> jobs = new ArrayList<>();
+    for (Load load : loads) {
+      if (load.job != null) {
+        jobs.add(load.job);
+      }
+    }
+    return jobs;
+  }
+
+  /** Returns the number of rows encoded. */
+  public long getRowCount() {
+    return rowCount.get();
+  }
+
+  /** Returns the number of bytes of encoded rows, before compression. */
+  public long getEncodedBytes() {
+    return encodedBytes.get();
+  }
+
+  /** Returns the number of bytes uploaded. */
+  public long getUploadedBytes() {
+    return uploadedBytes.get();
+  }
+
+  /**
+   * Returns the average number of rows encoded per second since this loader was created, until it
+   * was closed.
+   */
+  public double getRowsPerSecond() {
+    return perSecond(rowCount.get());
+  }
+
+  /**
+   * Returns the average number of bytes uploaded per second since this loader was created, until it
+   * was closed.
+   */
+  public double getBytesPerSecond() {
+    return perSecond(uploadedBytes.get());
+  }
+
+  private double perSecond(long count) {
+    long endNanos = closeNanos != 0 ? closeNanos : System.nanoTime();
+    long elapsedNanos = endNanos - startNanos;
+    if (elapsedNanos <= 0) {
+      return 0;
+    }
+    return count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  @GuardedBy("lock")
+  private void dispatch(List<T> rows) throws InterruptedException {
+    // Prefers the loads that keep up, then waits for the next load in turn.
+    for (int i = 0; i < loads.size(); i++) {
+      int index = (nextLoad + i) % loads.size();
+      if (loads.get(index).batches.offer(rows)) {
+        nextLoad = (index + 1) % loads.size();
+        return;
+      }
+    }
+    Load load = loads.get(nextLoad);
+    nextLoad = (nextLoad + 1) % loads.size();
+    offer(load, rows);
+  }
+
+  private void offer(Load load, List<T> rows) throws InterruptedException {
+    while (!load.batches.offer(rows, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+      throwIfFailed();
+    }
+  }
+
+  private void fail(Throwable t) {
+    if (failure.compareAndSet(null, t)) {
+      // Stops the other loads, their jobs are never created.
+      executor.shutdownNow();
+    }
+  }
+
+  private void throwIfFailed() {
+    Throwable t = failure.get();
+    if (t == null) {
+      return;
+    }
+    if (t instanceof BigQueryException) {
+      throw (BigQueryException) t;
+    }
+    if (t instanceof IOException) {
+      throw new BigQueryException((IOException) t);
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new BigQueryException(BaseServiceException.UNKNOWN_CODE, t.getMessage(), t);
+  }
+
+  /** A load job, with its encoding and upload threads. */
+  private final class Load {
+
+    private final BlockingQueue<List<T>> batches = new ArrayBlockingQueue<>(BATCHES_PER_LOAD);
+    private final BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(CHUNKS_PER_LOAD);
+    private final BlockingQueue<Chunk> fullChunks = new ArrayBlockingQueue<>(CHUNKS_PER_LOAD + 1);
+    private Future<?> encoding;
+    private Future<?> uploading;
+    private volatile Job job;
+
+    void start() {
+      encoding =
+          executor.submit(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    encode();
+                  } catch (Throwable t) {
+                    fail(t);
+                  }
+                }
+              });
+      uploading =
+          executor.submit(
+              new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    upload();
+                  } catch (Throwable t) {
+                    fail(t);
+                  }
+                }
+              });
+    }
+
+    void await() throws InterruptedException {
+      try {
+        encoding.get();
+        uploading.get();
+      } catch (ExecutionException e) {
+        // Failures are caught by the tasks.
+        fail(e.getCause());
+      }
+    }
+
+    private void encode() throws IOException, InterruptedException {
+      ChunkOutputStream chunks = null;
+      GZIPOutputStream compressed = null;
+      OutputStream buffered = null;
+      CountingOutputStream counting = null;
+      RowWriter<T> writer = null;
+      while (true) {
+        List<T> rows = batches.take();
+        if (rows.isEmpty()) {
+          break;
+        }
+        if (writer == null) {
+          for (int i = 0; i < CHUNKS_PER_LOAD; i++) {
+            freeChunks.add(new Chunk(options.getChunkSize()));
+          }
+          chunks = new ChunkOutputStream();
+          OutputStream out = chunks;
+          if (options.isCompressed()) {
+            compressed = new GZIPOutputStream(chunks, ENCODING_BUFFER_SIZE);
+            out = compressed;
+          }
+          buffered = new BufferedOutputStream(out, ENCODING_BUFFER_SIZE);
+          counting = new CountingOutputStream(buffered);
+          writer = encoder.open(counting);
+        }
+        for (T row : rows) {
+          writer.write(row);
+        }
+        rowCount.addAndGet(rows.size());
+      }
+      if (writer != null) {
+        writer.finish();
+        buffered.flush();
+        if (compressed != null) {
+          compressed.finish();
+        }
+        chunks.end();
+      }
+      fullChunks.put(LAST_CHUNK);
+    }
+
+    private void upload() throws IOException, InterruptedException {
+      TableDataWriteChannel channel = null;
+      while (true) {
+        Chunk chunk = fullChunks.take();
+        if (chunk == LAST_CHUNK) {
+          break;
+        }
+        if (channel == null) {
+          channel = open();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(chunk.data, 0, chunk.length);
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        uploadedBytes.addAndGet(chunk.length);
+        chunk.length = 0;
+        freeChunks.put(chunk);
+      }
+      if (channel != null) {
+        channel.close();
+        job = channel.getJob();
+      }
+    }
+
+    private TableDataWriteChannel open() {
+      TableDataWriteChannel channel =
+          options.getLocation() != null
+              ? bigquery.writer(
+                  JobId.newBuilder().setRandomJob().setLocation(options.getLocation()).build(),
+                  configuration)
+              : bigquery.writer(configuration);
+      channel.setChunkSize(options.getChunkSize());
+      return channel;
+    }
+
+    /** Cuts the encoded rows in chunks, waiting for a chunk to be uploaded if both are full. */
+    private final class ChunkOutputStream extends OutputStream {
+
+      private Chunk chunk;
+
+      @Override
+      public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        try {
+          while (len > 0) {
+            if (chunk == null) {
+              chunk = freeChunks.take();
+            }
+            int length = Math.min(len, chunk.data.length - chunk.length);
+            System.arraycopy(b, off, chunk.data, chunk.length, length);
+            chunk.length += length;
+            off += length;
+            len -= length;
+            if (chunk.length == chunk.data.length) {
+              fullChunks.put(chunk);
+              chunk = null;
+            }
+          }
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+
+      void end() throws InterruptedException {
+        if (chunk != null && chunk.length > 0) {
+          fullChunks.put(chunk);
+        }
+        chunk = null;
+      }
+    }
+  }
+
+  /**
+   * Counts the bytes of the encoded rows. Flushes are ignored, as the encoded rows are buffered
+   * until a chunk is full.
+   */
+  private final class CountingOutputStream extends FilterOutputStream {
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      encodedBytes.incrementAndGet();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      encodedBytes.addAndGet(len);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
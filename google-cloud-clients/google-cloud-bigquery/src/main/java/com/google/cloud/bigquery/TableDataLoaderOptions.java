@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.common.base.Preconditions;
+
+/** Options for a {@link TableDataLoader}. */
+public class TableDataLoaderOptions {
+
+  static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+  private final int chunkSize;
+  private final boolean compressed;
+  private final int parallelLoads;
+  private final String location;
+
+  private TableDataLoaderOptions(Builder builder) {
+    this.chunkSize = builder.chunkSize;
+    this.compressed = builder.compressed;
+    this.parallelLoads = builder.parallelLoads;
+    this.location = builder.location;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public boolean isCompressed() {
+    return compressed;
+  }
+
+  public int getParallelLoads() {
+    return parallelLoads;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating TableDataLoaderOptions. */
+  public static class Builder {
+    private int chunkSize = 8 * MIN_CHUNK_SIZE;
+    private boolean compressed = true;
+    private int parallelLoads = 1;
+    private String location;
+
+    private Builder() {}
+
+    /**
+     * Size in bytes of the chunks uploaded to BigQuery. Each load job holds two chunks in memory,
+     * one being filled with encoded rows while the other is uploaded. The size must be a multiple
+     * of 256 KiB. Defaults to 2 MiB.
+     */
+    public Builder setChunkSize(int chunkSize) {
+      this.chunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * Whether the encoded rows are compressed with gzip before being uploaded. Only CSV and
+     * newline-delimited JSON data can be compressed. Defaults to {@code true}.
+     */
+    public Builder setCompressed(boolean compressed) {
+      this.compressed = compressed;
+      return this;
+    }
+
+    /**
+     * Number of load jobs the rows are spread over, each one with its own encoding and upload
+     * threads. Rows can only be loaded by several jobs when the write disposition of the load is
+     * not {@link JobInfo.WriteDisposition#WRITE_TRUNCATE}. Defaults to 1.
+     */
+    public Builder setParallelLoads(int parallelLoads) {
+      this.parallelLoads = parallelLoads;
+      return this;
+    }
+
+    /**
+     * Location of the load jobs. Must be set if the destination dataset is not in "US" or "EU".
+     */
+    public Builder setLocation(String location) {
+      this.location = location;
+      return this;
+    }
+
+    /** Build a TableDataLoaderOptions object */
+    public TableDataLoaderOptions build() {
+      validate();
+      return new TableDataLoaderOptions(this);
+    }
+
+    private void validate() {
+      Preconditions.checkArgument(
+          chunkSize > 0 && chunkSize % MIN_CHUNK_SIZE == 0,
+          "Chunk size(%s) must be a positive multiple of %s", chunkSize, MIN_CHUNK_SIZE);
+      Preconditions.checkArgument(
+          parallelLoads > 0, "Parallel loads(%s) must be > 0", parallelLoads);
+    }
+  }
+}
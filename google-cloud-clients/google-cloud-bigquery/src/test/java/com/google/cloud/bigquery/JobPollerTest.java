@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import com.google.api.core.CurrentMillisClock;
+import com.google.api.gax.paging.Page;
+import com.google.cloud.PageImpl;
+import com.google.cloud.RetryHelper;
+import com.google.cloud.bigquery.BigQuery.JobListOption;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JobPollerTest {
+
+  private static final JobOption STATUS_ONLY = JobOption.fields(BigQuery.JobField.STATUS);
+  private static final CopyJobConfiguration CONFIGURATION =
+      CopyJobConfiguration.of(TableId.of("dataset", "table1"), TableId.of("dataset", "table2"));
+
+  private BigQuery bigquery;
+  // Service of the returned jobs, which call getOptions() when built.
+  private BigQuery jobService;
+  private JobPoller poller;
+
+  @Before
+  public void setUp() {
+    BigQueryOptions options = createMock(BigQueryOptions.class);
+    expect(options.getProjectId()).andReturn("project").anyTimes();
+    replay(options);
+    bigquery = createMock(BigQuery.class);
+    expect(bigquery.getOptions()).andReturn(options).anyTimes();
+    jobService = createMock(BigQuery.class);
+    expect(jobService.getOptions()).andReturn(options).anyTimes();
+    replay(jobService);
+    poller =
+        new JobPoller(RetryHelper.getDefaultAsyncExecutor(), CurrentMillisClock.getDefaultClock());
+  }
+
+  @Test
+  public void testPollListsJobsOfProject() {
+    Job running1 = job("job1", JobStatus.State.RUNNING);
+    Job running2 = job("job2", JobStatus.State.PENDING);
+    Job done = job("job3", JobStatus.State.DONE);
+    expect(
+            bigquery.listJobs(
+                JobListOption.stateFilter(JobStatus.State.PENDING, JobStatus.State.RUNNING),
+                JobListOption.fields(BigQuery.JobField.STATUS),
+                JobListOption.pageSize(1000L)))
+        .andReturn(new PageImpl<>(null, null, ImmutableList.of(running1, running2)));
+    expect(bigquery.getJob(JobId.of("project", "job3"), STATUS_ONLY)).andReturn(done);
+    replay(bigquery);
+
+    Map<JobPoller.Key, Job> jobs =
+        poller.poll(
+            ImmutableSet.of(key("job1"), key("job2"), key("job3")),
+            new HashMap<JobPoller.Key, Throwable>());
+
+    assertThat(jobs)
+        .isEqualTo(
+            ImmutableMap.of(key("job1"), running1, key("job2"), running2, key("job3"), done));
+    assertThat(poller.isDone(jobs.get(key("job1")))).isFalse();
+    assertThat(poller.isDone(jobs.get(key("job3")))).isTrue();
+    verify(bigquery);
+  }
+
+  @Test
+  public void testListStopsWhenAllJobsFound() {
+    Job running1 = job("job1", JobStatus.State.RUNNING);
+    Job running2 = job("job2", JobStatus.State.RUNNING);
+    Job running3 = job("job3", JobStatus.State.RUNNING);
+    PageCounter pages = new PageCounter();
+    expect(
+            bigquery.listJobs(
+                JobListOption.stateFilter(JobStatus.State.PENDING, JobStatus.State.RUNNING),
+                JobListOption.fields(BigQuery.JobField.STATUS),
+                JobListOption.pageSize(1000L)))
+        .andReturn(new PageImpl<>(pages, "cursor", ImmutableList.of(running1, running2, running3)));
+    replay(bigquery);
+
+    Map<JobPoller.Key, Job> jobs =
+        poller.poll(
+            ImmutableSet.of(key("job1"), key("job2"), key("job3")),
+            new HashMap<JobPoller.Key, Throwable>());
+
+    assertThat(jobs).hasSize(3);
+    assertThat(pages.count.get()).isEqualTo(0);
+    verify(bigquery);
+  }
+
+  @Test
+  public void testListIsBounded() {
+    Job running = job("job1", JobStatus.State.RUNNING);
+    Job done = job("job2", JobStatus.State.DONE);
+    PageCounter pages = new PageCounter();
+    expect(
+            bigquery.listJobs(
+                JobListOption.stateFilter(JobStatus.State.PENDING, JobStatus.State.RUNNING),
+                JobListOption.fields(BigQuery.JobField.STATUS),
+                JobListOption.pageSize(1000L)))
+        .andReturn(pages.getNextPage());
+    // The jobs that weren't in the listed pages are fetched one by one.
+    expect(bigquery.getJob(JobId.of("project", "job1"), STATUS_ONLY)).andReturn(running);
+    expect(bigquery.getJob(JobId.of("project", "job2"), STATUS_ONLY)).andReturn(done);
+    expect(bigquery.getJob(JobId.of("project", "job3"), STATUS_ONLY)).andReturn(null);
+    replay(bigquery);
+
+    Map<JobPoller.Key, Job> jobs =
+        poller.poll(
+            ImmutableSet.of(key("job1"), key("job2"), key("job3")),
+            new HashMap<JobPoller.Key, Throwable>());
+
+    assertThat(jobs).isEqualTo(ImmutableMap.of(key("job1"), running, key("job2"), done));
+    assertThat(pages.count.get()).isEqualTo(JobPoller.MAX_LIST_PAGES);
+    verify(bigquery);
+  }
+
+  @Test
+  public void testPollGetsJobsWhenListFails() {
+    Job running = job("job1", JobStatus.State.RUNNING);
+    Job done = job("job2", JobStatus.State.DONE);
+    expect(
+            bigquery.listJobs(
+                JobListOption.stateFilter(JobStatus.State.PENDING, JobStatus.State.RUNNING),
+                JobListOption.fields(BigQuery.JobField.STATUS),
+                JobListOption.pageSize(1000L)))
+        .andThrow(new BigQueryException(403, "denied"));
+    expect(bigquery.getJob(JobId.of("project", "job1"), STATUS_ONLY)).andReturn(running);
+    expect(bigquery.getJob(JobId.of("project", "job2"), STATUS_ONLY)).andReturn(done);
+    expect(bigquery.getJob(JobId.of("project", "job3"), STATUS_ONLY)).andReturn(null);
+    replay(bigquery);
+    Map<JobPoller.Key, Throwable> failures = new HashMap<>();
+
+    Map<JobPoller.Key, Job> jobs =
+        poller.poll(ImmutableSet.of(key("job1"), key("job2"), key("job3")), failures);
+
+    assertThat(jobs).isEqualTo(ImmutableMap.of(key("job1"), running, key("job2"), done));
+    assertThat(failures).isEmpty();
+    verify(bigquery);
+  }
+
+  @Test
+  public void testPollFewJobs() {
+    Job running = job("job1", JobStatus.State.RUNNING);
+    expect(bigquery.getJob(JobId.of("project", "job1"), STATUS_ONLY)).andReturn(running);
+    // Jobs of other projects can't be listed.
+    expect(bigquery.getJob(JobId.of("other", "job2"), STATUS_ONLY)).andReturn(null);
+    expect(bigquery.getJob(JobId.of("other", "job3"), STATUS_ONLY)).andReturn(null);
+    BigQueryException error = new BigQueryException(403, "denied");
+    expect(bigquery.getJob(JobId.of("other", "job4"), STATUS_ONLY)).andThrow(error);
+    replay(bigquery);
+    Map<JobPoller.Key, Throwable> failures = new HashMap<>();
+
+    Map<JobPoller.Key, Job> jobs =
+        poller.poll(
+            ImmutableSet.of(
+                key("job1"),
+                new JobPoller.Key(bigquery, JobId.of("other", "job2")),
+                new JobPoller.Key(bigquery, JobId.of("other", "job3")),
+                new JobPoller.Key(bigquery, JobId.of("other", "job4"))),
+            failures);
+
+    // Missing jobs have no entry.
+    assertThat(jobs).isEqualTo(ImmutableMap.of(key("job1"), running));
+    assertThat(failures).containsKey(new JobPoller.Key(bigquery, JobId.of("other", "job4")));
+    verify(bigquery);
+  }
+
+  @Test
+  public void testOnDoneReloadsJob() {
+    Job done = job("job1", JobStatus.State.DONE);
+    Job reloaded = done.toBuilder().setEtag("etag").build();
+    expect(bigquery.getJob(JobId.of("project", "job1"))).andReturn(reloaded);
+    replay(bigquery);
+    assertThat(poller.onDone(key("job1"), done)).isSameAs(reloaded);
+    verify(bigquery);
+  }
+
+  @Test
+  public void testKeysOfDifferentServices() {
+    BigQuery other = createMock(BigQuery.class);
+    assertThat(key("job1")).isEqualTo(key("job1"));
+    assertThat(new JobPoller.Key(other, JobId.of("project", "job1"))).isNotEqualTo(key("job1"));
+  }
+
+  /** Returns endless pages of jobs of other users, and counts them. */
+  private class PageCounter implements PageImpl.NextPageFetcher<Job> {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Page<Job> getNextPage() {
+      count.incrementAndGet();
+      return new PageImpl<>(
+          this, "cursor", ImmutableList.of(job("other", JobStatus.State.RUNNING)));
+    }
+  }
+
+  private JobPoller.Key key(String job) {
+    return new JobPoller.Key(bigquery, JobId.of("project", job));
+  }
+
+  private Job job(String job, JobStatus.State state) {
+    return new Job(
+        jobService,
+        new JobInfo.BuilderImpl(
+            JobInfo.newBuilder(CONFIGURATION)
+                .setJobId(JobId.of("project", job))
+                .setStatus(new JobStatus(state))
+                .build()));
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.api.core.ApiClock;
+import com.google.cloud.PageImpl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+public class QueryCacheTest {
+
+  private static final Field FIELD = Field.of("V", LegacySQLTypeName.STRING);
+  private static final QueryJobConfiguration QUERY =
+      QueryJobConfiguration.newBuilder("SELECT V FROM T WHERE V = @v")
+          .addNamedParameter("v", QueryParameterValue.string("a"))
+          .setDefaultDataset("dataset")
+          .build();
+
+  private BigQuery bigqueryMock;
+  private FakeClock clock;
+  private volatile int executedQueries;
+  private volatile long totalRows = 1;
+  private volatile CountDownLatch queryStarted;
+  private volatile CountDownLatch queryReleased;
+
+  private static class FakeClock implements ApiClock {
+    private long millis = 1000000L;
+
+    @Override
+    public long nanoTime() {
+      return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long millisTime() {
+      return millis;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    clock = new FakeClock();
+    bigqueryMock = createMock(BigQuery.class);
+    expect(bigqueryMock.query(anyObject(QueryJobConfiguration.class)))
+        .andAnswer(
+            new IAnswer<TableResult>() {
+              @Override
+              public TableResult answer() throws Exception {
+                int query = ++executedQueries;
+                if (queryStarted != null) {
+                  queryStarted.countDown();
+                  queryReleased.await();
+                }
+                return result("v" + query, totalRows);
+              }
+            })
+        .anyTimes();
+    replay(bigqueryMock);
+  }
+
+  @Test
+  public void testHitWithinTimeToLive() throws Exception {
+    QueryCache cache = newCache(QueryCacheOptions.newBuilder().build());
+    assertEquals("v1", firstValue(cache.query(QUERY)));
+    clock.millis += Duration.ofMinutes(4).toMillis();
+    assertEquals("v1", firstValue(cache.query(QUERY)));
+    assertEquals(1, executedQueries);
+    clock.millis += Duration.ofMinutes(1).toMillis();
+    assertEquals("v2", firstValue(cache.query(QUERY)));
+
+    assertEquals(2, executedQueries);
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1.0 / 3, cache.getHitRatio(), 0.001);
+  }
+
+  @Test
+  public void testKeyNormalizesWhitespace() throws Exception {
+    QueryCache cache = newCache(QueryCacheOptions.newBuilder().build());
+    cache.query(QUERY);
+    cache.query(QUERY.toBuilder().setQuery("  SELECT V\tFROM   T  WHERE V = @v\n").build());
+    assertEquals(1, executedQueries);
+
+    cache.query(QUERY.toBuilder().setQuery("SELECT V FROM T WHERE V = @v LIMIT 1").build());
+    cache.query(
+        QUERY.toBuilder()
+            .setNamedParameters(ImmutableMap.of("v", QueryParameterValue.string("b")))
+            .build());
+    cache.query(QUERY.toBuilder().setDefaultDataset("other").build());
+    cache.query(QUERY.toBuilder().setUseLegacySql(true).build());
+    assertEquals(5, executedQueries);
+    assertEquals(5, cache.size());
+  }
+
+  @Test
+  public void testNormalizeQuery() {
+    assertEquals("SELECT 1", QueryCache.normalizeQuery(" SELECT \t 1 \n"));
+    assertEquals("SELECT\n1", QueryCache.normalizeQuery("SELECT  \n  1"));
+    assertEquals(
+        "SELECT 'a  b', \"c\\\"  d\", `e  f`",
+        QueryCache.normalizeQuery("SELECT  'a  b',  \"c\\\"  d\",  `e  f`"));
+    assertEquals(
+        "SELECT '''a ' \n  b''' x", QueryCache.normalizeQuery("SELECT  '''a ' \n  b'''   x"));
+    assertEquals(
+        "-- don't  change\nSELECT 'a  b' /* c  d */ x",
+        QueryCache.normalizeQuery("-- don't  change\n  SELECT   'a  b'  /* c  d */   x"));
+  }
+
+  @Test
+  public void testNonQueriesBypassCache() throws Exception {
+    QueryCache cache = newCache(QueryCacheOptions.newBuilder().build());
+    QueryJobConfiguration delete = QueryJobConfiguration.of("DELETE FROM T WHERE true");
+    cache.query(delete);
+    cache.query(delete);
+    QueryJobConfiguration script = QueryJobConfiguration.of("SELECT 1; DELETE FROM T WHERE true");
+    cache.query(script);
+    cache.query(script);
+    QueryJobConfiguration destination =
+        QUERY.toBuilder().setDestinationTable(TableId.of("dataset", "table")).build();
+    cache.query(destination);
+    cache.query(destination);
+    // Queries that ask for fresh results are never served from the cache.
+    QueryJobConfiguration uncached = QUERY.toBuilder().setUseQueryCache(false).build();
+    cache.query(uncached);
+    cache.query(uncached);
+
+    assertEquals(8, executedQueries);
+    assertEquals(8, cache.getBypassCount());
+    assertEquals(0, cache.size());
+
+    cache.query(QueryJobConfiguration.of("(WITH A AS (SELECT 1) SELECT * FROM A);"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testLruEviction() throws Exception {
+    QueryCache cache = newCache(QueryCacheOptions.newBuilder().setMaxEntries(2).build());
+    cache.query(QueryJobConfiguration.of("SELECT 1"));
+    cache.query(QueryJobConfiguration.of("SELECT 2"));
+    // "SELECT 1" becomes the most recently used query.
+    cache.query(QueryJobConfiguration.of("SELECT 1"));
+    cache.query(QueryJobConfiguration.of("SELECT 3"));
+    assertEquals(1, cache.getEvictionCount());
+
+    cache.query(QueryJobConfiguration.of("SELECT 1"));
+    assertEquals(3, executedQueries);
+    cache.query(QueryJobConfiguration.of("SELECT 2"));
+    assertEquals(4, executedQueries);
+  }
+
+  @Test
+  public void testLargeResultsNotCached() throws Exception {
+    QueryCache cache = newCache(QueryCacheOptions.newBuilder().setMaxRowsPerEntry(10).build());
+    totalRows = 11;
+    cache.query(QUERY);
+    cache.query(QUERY);
+    assertEquals(2, executedQueries);
+    assertEquals(0, cache.size());
+    cache.invalidateAll();
+  }
+
+  @Test
+  public void testDeduplicatesRunningQueries() throws Exception {
+    // Results that are not cached are still shared by the identical running queries.
+    final QueryCache cache =
+        newCache(QueryCacheOptions.newBuilder().setMaxRowsPerEntry(0).build());
+    queryStarted = new CountDownLatch(1);
+    queryReleased = new CountDownLatch(1);
+    final List<TableResult> results = new ArrayList<>();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Thread thread =
+          new Thread() {
+            @Override
+            public void run() {
+              try {
+                TableResult result = cache.query(QUERY);
+                synchronized (results) {
+                  results.add(result);
+                }
+              } catch (Throwable t) {
+                failure.set(t);
+              }
+            }
+          };
+      threads.add(thread);
+    }
+    threads.get(0).start();
+    queryStarted.await();
+    for (Thread thread : threads.subList(1, 3)) {
+      thread.start();
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(1);
+      }
+    }
+    queryReleased.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(null, failure.get());
+    assertEquals(1, executedQueries);
+    assertEquals(3, results.size());
+    assertSame(results.get(0), results.get(1));
+    assertSame(results.get(0), results.get(2));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(2, cache.getDeduplicatedCount());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testFailuresNotCached() throws Exception {
+    BigQuery failingMock = createMock(BigQuery.class);
+    expect(failingMock.query(anyObject(QueryJobConfiguration.class)))
+        .andThrow(new BigQueryException(400, "invalid"))
+        .times(2);
+    replay(failingMock);
+    QueryCache cache = new QueryCache(failingMock, QueryCacheOptions.newBuilder().build(), clock);
+    for (int i = 0; i < 2; i++) {
+      try {
+        cache.query(QUERY);
+        fail("Expected exception");
+      } catch (BigQueryException e) {
+        assertEquals(400, e.getCode());
+      }
+    }
+    assertEquals(2, cache.getMissCount());
+  }
+
+  private QueryCache newCache(QueryCacheOptions options) {
+    return new QueryCache(bigqueryMock, options, clock);
+  }
+
+  private static TableResult result(String value, long totalRows) {
+    FieldValueList row =
+        FieldValueList.of(
+            ImmutableList.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, value)), FIELD);
+    return new TableResult(
+        Schema.of(FIELD), totalRows, new PageImpl<>(null, null, ImmutableList.of(row)));
+  }
+
+  private static String firstValue(TableResult result) {
+    return result.iterateAll().iterator().next().get(0).getStringValue();
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class TableDataLoaderTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final WriteChannelConfiguration LOAD_CONFIGURATION =
+      WriteChannelConfiguration.newBuilder(TABLE_ID)
+          .setFormatOptions(FormatOptions.json())
+          .build();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private BigQueryOptions options;
+  private BigQueryRpc bigqueryRpcMock;
+  private BigQuery bigqueryMock;
+  private final AtomicInteger uploadIds = new AtomicInteger();
+  private final ConcurrentMap<String, ByteArrayOutputStream> uploads = new ConcurrentHashMap<>();
+
+  @Before
+  public void setUp() {
+    BigQueryRpcFactory rpcFactoryMock = createMock(BigQueryRpcFactory.class);
+    BigQueryFactory bigqueryFactoryMock = createMock(BigQueryFactory.class);
+    bigqueryRpcMock = createMock(BigQueryRpc.class);
+    bigqueryMock = createMock(BigQuery.class);
+    expect(rpcFactoryMock.create(anyObject(BigQueryOptions.class))).andReturn(bigqueryRpcMock);
+    expect(bigqueryFactoryMock.create(anyObject(BigQueryOptions.class))).andReturn(bigqueryMock)
+        .anyTimes();
+    replay(rpcFactoryMock, bigqueryFactoryMock);
+    options = BigQueryOptions.newBuilder()
+        .setProjectId("projectid")
+        .setServiceRpcFactory(rpcFactoryMock)
+        .setServiceFactory(bigqueryFactoryMock)
+        .build();
+    expect(bigqueryMock.getOptions()).andReturn(options).anyTimes();
+    expect(bigqueryMock.writer(LOAD_CONFIGURATION))
+        .andAnswer(
+            new IAnswer<TableDataWriteChannel>() {
+              @Override
+              public TableDataWriteChannel answer() {
+                String uploadId = "upload" + uploadIds.incrementAndGet();
+                uploads.put(uploadId, new ByteArrayOutputStream());
+                return new TableDataWriteChannel(options, LOAD_CONFIGURATION, uploadId);
+              }
+            })
+        .anyTimes();
+    replay(bigqueryMock);
+  }
+
+  private void expectWrites() {
+    expect(
+            bigqueryRpcMock.write(
+                anyString(), anyObject(byte[].class), anyInt(), anyLong(), anyInt(), anyBoolean()))
+        .andAnswer(
+            new IAnswer<com.google.api.services.bigquery.model.Job>() {
+              @Override
+              public com.google.api.services.bigquery.model.Job answer() {
+                Object[] args = EasyMock.getCurrentArguments();
+                String uploadId = (String) args[0];
+                ByteArrayOutputStream upload = uploads.get(uploadId);
+                synchronized (upload) {
+                  upload.write((byte[]) args[1], (Integer) args[2], (Integer) args[4]);
+                }
+                if (!(Boolean) args[5]) {
+                  return null;
+                }
+                return JobInfo.of(
+                        JobId.of(uploadId), LoadJobConfiguration.of(TABLE_ID, "URI"))
+                    .toPb();
+              }
+            })
+        .anyTimes();
+    replay(bigqueryRpcMock);
+  }
+
+  @Test
+  public void testLoadCompressed() throws Exception {
+    expectWrites();
+    TableDataLoader<Map<String, ?>> loader =
+        new TableDataLoader<>(
+            bigqueryMock,
+            LOAD_CONFIGURATION,
+            TableDataLoader.jsonEncoder(),
+            TableDataLoaderOptions.newBuilder().build());
+    for (int i = 0; i < 1200; i++) {
+      loader.add(ImmutableMap.of("id", i, "name", "name" + i));
+    }
+    loader.close();
+
+    assertEquals(1, loader.getJobs().size());
+    assertEquals(JobId.of("upload1"), loader.getJobs().get(0).getJobId());
+    byte[] uploaded = uploads.get("upload1").toByteArray();
+    byte[] encoded =
+        ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(uploaded)));
+    List<String> lines = lines(encoded);
+    assertEquals(1200, lines.size());
+    assertEquals("{\"id\":0,\"name\":\"name0\"}", lines.get(0));
+    assertEquals("{\"id\":1199,\"name\":\"name1199\"}", lines.get(1199));
+    assertEquals(1200, loader.getRowCount());
+    assertEquals(encoded.length, loader.getEncodedBytes());
+    assertEquals(uploaded.length, loader.getUploadedBytes());
+    assertTrue(loader.getUploadedBytes() < loader.getEncodedBytes());
+    assertTrue(loader.getRowsPerSecond() > 0);
+    assertTrue(loader.getBytesPerSecond() > 0);
+  }
+
+  @Test
+  public void testParallelLoads() throws Exception {
+    expectWrites();
+    TableDataLoader<Map<String, ?>> loader =
+        new TableDataLoader<>(
+            bigqueryMock,
+            LOAD_CONFIGURATION,
+            TableDataLoader.jsonEncoder(),
+            TableDataLoaderOptions.newBuilder().setCompressed(false).setParallelLoads(3).build());
+    for (int i = 0; i < 5000; i++) {
+      loader.add(ImmutableMap.of("id", i));
+    }
+    loader.close();
+
+    assertEquals(uploads.size(), loader.getJobs().size());
+    assertTrue(uploads.size() > 1);
+    Set<String> rows = new HashSet<>();
+    for (ByteArrayOutputStream upload : uploads.values()) {
+      rows.addAll(lines(upload.toByteArray()));
+    }
+    assertEquals(5000, rows.size());
+    assertTrue(rows.contains("{\"id\":4999}"));
+    assertEquals(loader.getEncodedBytes(), loader.getUploadedBytes());
+  }
+
+  @Test
+  public void testNoRows() throws Exception {
+    replay(bigqueryRpcMock);
+    TableDataLoader<Map<String, ?>> loader =
+        new TableDataLoader<>(
+            bigqueryMock,
+            LOAD_CONFIGURATION,
+            TableDataLoader.jsonEncoder(),
+            TableDataLoaderOptions.newBuilder().setParallelLoads(2).build());
+    loader.close();
+    assertTrue(loader.getJobs().isEmpty());
+    assertTrue(uploads.isEmpty());
+    assertEquals(0, loader.getUploadedBytes());
+  }
+
+  @Test
+  public void testUploadFailure() throws Exception {
+    expect(
+            bigqueryRpcMock.write(
+                anyString(), anyObject(byte[].class), anyInt(), anyLong(), anyInt(), anyBoolean()))
+        .andThrow(new BigQueryException(400, "invalid"))
+        .anyTimes();
+    replay(bigqueryRpcMock);
+    TableDataLoader<Map<String, ?>> loader =
+        new TableDataLoader<>(
+            bigqueryMock,
+            LOAD_CONFIGURATION,
+            TableDataLoader.jsonEncoder(),
+            TableDataLoaderOptions.newBuilder().build());
+    loader.add(ImmutableMap.of("id", 1));
+    try {
+      loader.close();
+      fail("Expected exception");
+    } catch (BigQueryException e) {
+      assertEquals(400, e.getCode());
+    }
+    assertTrue(loader.getJobs().isEmpty());
+    thrown.expect(IllegalStateException.class);
+    loader.add(ImmutableMap.of("id", 2));
+  }
+
+  @Test
+  public void testCompressionRequiresCsvOrJson() {
+    replay(bigqueryRpcMock);
+    thrown.expect(IllegalArgumentException.class);
+    new TableDataLoader<>(
+        bigqueryMock,
+        LOAD_CONFIGURATION.toBuilder().setFormatOptions(FormatOptions.avro()).build(),
+        TableDataLoader.jsonEncoder(),
+        TableDataLoaderOptions.newBuilder().build());
+  }
+
+  @Test
+  public void testParallelLoadsCantTruncate() {
+    replay(bigqueryRpcMock);
+    thrown.expect(IllegalArgumentException.class);
+    new TableDataLoader<>(
+        bigqueryMock,
+        LOAD_CONFIGURATION.toBuilder()
+            .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+            .build(),
+        TableDataLoader.jsonEncoder(),
+        TableDataLoaderOptions.newBuilder().setParallelLoads(2).build());
+  }
+
+  @Test
+  public void testInvalidChunkSize() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Chunk size");
+    TableDataLoaderOptions.newBuilder().setChunkSize(1000).build();
+  }
+
+  private static List<String> lines(byte[] data) {
+    String text = new String(data, StandardCharsets.UTF_8);
+    return text.isEmpty() ? new ArrayList<String>() : Arrays.asList(text.split("\n"));
+  }
+}
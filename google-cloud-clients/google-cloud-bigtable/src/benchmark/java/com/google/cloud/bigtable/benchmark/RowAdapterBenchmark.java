@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.benchmark;
+
+import com.google.bigtable.v2.ReadRowsResponse;
+import com.google.bigtable.v2.ReadRowsResponse.CellChunk;
+import com.google.cloud.bigtable.data.v2.models.CompactRowAdapter;
+import com.google.cloud.bigtable.data.v2.models.DefaultRowAdapter;
+import com.google.cloud.bigtable.data.v2.models.RowAdapter;
+import com.google.cloud.bigtable.data.v2.stub.readrows.RowMerger;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import com.google.protobuf.StringValue;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the throughput and allocation rate of {@link DefaultRowAdapter} and {@link
+ * CompactRowAdapter} when merging wide rows through {@link RowMerger}. The responses are generated
+ * in memory, so only the client side row merging is measured.
+ */
+public class RowAdapterBenchmark {
+  private static final double NS_PER_SECOND = 1000 * 1000 * 1000;
+
+  private RowAdapterBenchmark() {}
+
+  public static void main(String[] args) {
+    int numRows = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int cellsPerRow = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+    int valueSize = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+    int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+    List<ReadRowsResponse> responses = createResponses(numRows, cellsPerRow, valueSize);
+    System.out.println(
+        String.format(
+            "%d rows, %d cells per row, %d byte values, %d iterations",
+            numRows, cellsPerRow, valueSize, iterations));
+
+    // Warm up both paths before measuring either.
+    run("warmup", new DefaultRowAdapter(), responses, iterations, false);
+    run("warmup", new CompactRowAdapter(), responses, iterations, false);
+
+    run("DefaultRowAdapter", new DefaultRowAdapter(), responses, iterations, true);
+    run("CompactRowAdapter", new CompactRowAdapter(), responses, iterations, true);
+  }
+
+  private static <RowT> void run(
+      String name,
+      RowAdapter<RowT> adapter,
+      List<ReadRowsResponse> responses,
+      int iterations,
+      boolean report) {
+    long cells = 0;
+    long rows = 0;
+    long startAllocated = allocatedBytes();
+    long startNanos = System.nanoTime();
+
+    for (int i = 0; i < iterations; i++) {
+      RowMerger<RowT> merger = new RowMerger<>(adapter.createRowBuilder());
+      for (ReadRowsResponse response : responses) {
+        merger.push(response);
+        while (merger.hasFullFrame()) {
+          RowT row = merger.pop();
+          if (!adapter.isScanMarkerRow(row)) {
+            rows++;
+          }
+        }
+        cells += response.getChunksCount();
+      }
+    }
+
+    long elapsedNanos = System.nanoTime() - startNanos;
+    long allocated = allocatedBytes() - startAllocated;
+
+    if (!report) {
+      return;
+    }
+    double seconds = elapsedNanos / NS_PER_SECOND;
+    System.out.println(
+        String.format(
+            "%s: %.0f rows/s, %.0f cells/s, %s",
+            name,
+            rows / seconds,
+            cells / seconds,
+            startAllocated < 0 ? "allocation unavailable" : (allocated / cells) + " bytes/cell"));
+  }
+
+  private static List<ReadRowsResponse> createResponses(
+      int numRows, int cellsPerRow, int valueSize) {
+    ByteString value = ByteString.copyFrom(new byte[valueSize]);
+    List<ReadRowsResponse> responses = new ArrayList<>(numRows);
+
+    for (int r = 0; r < numRows; r++) {
+      ReadRowsResponse.Builder response = ReadRowsResponse.newBuilder();
+      for (int c = 0; c < cellsPerRow; c++) {
+        CellChunk.Builder chunk =
+            CellChunk.newBuilder()
+                .setQualifier(
+                    BytesValue.newBuilder().setValue(ByteString.copyFromUtf8("qualifier-" + c)))
+                .setTimestampMicros(1_000)
+                .setValue(value);
+        if (c == 0) {
+          chunk.setRowKey(ByteString.copyFromUtf8(String.format("row-%010d", r)));
+        }
+        if (c == 0 || c == cellsPerRow / 2) {
+          chunk.setFamilyName(StringValue.newBuilder().setValue(c == 0 ? "cf1" : "cf2"));
+        }
+        if (c == cellsPerRow - 1) {
+          chunk.setCommitRow(true);
+        }
+        response.addChunks(chunk);
+      }
+      responses.add(response.build());
+    }
+    return responses;
+  }
+
+  /** Returns the bytes allocated by the current thread, or -1 if the JVM doesn't support it. */
+  private static long allocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemorySupported()) {
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+}
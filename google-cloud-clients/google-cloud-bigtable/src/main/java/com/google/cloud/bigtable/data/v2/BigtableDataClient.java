@@ -22,17 +22,22 @@ import com.google.api.gax.rpc.ResponseObserver;
 import com.google.api.gax.rpc.ServerStream;
 import com.google.api.gax.rpc.ServerStreamingCallable;
 import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.bigtable.data.v2.models.AdaptiveFlowControlSettings;
 import com.google.cloud.bigtable.data.v2.models.BulkMutation;
 import com.google.cloud.bigtable.data.v2.models.InstanceName;
 import com.google.cloud.bigtable.data.v2.models.BulkMutationBatcher;
 import com.google.cloud.bigtable.data.v2.models.ConditionalRowMutation;
+import com.google.cloud.bigtable.data.v2.models.DefaultRowAdapter;
 import com.google.cloud.bigtable.data.v2.models.KeyOffset;
+import com.google.cloud.bigtable.data.v2.models.ParallelScanSettings;
+import com.google.cloud.bigtable.data.v2.models.ParallelScanner;
 import com.google.cloud.bigtable.data.v2.models.Query;
 import com.google.cloud.bigtable.data.v2.models.ReadModifyWriteRow;
 import com.google.cloud.bigtable.data.v2.models.Row;
 import com.google.cloud.bigtable.data.v2.models.RowAdapter;
 import com.google.cloud.bigtable.data.v2.models.RowMutation;
 import com.google.cloud.bigtable.data.v2.stub.EnhancedBigtableStub;
+import com.google.cloud.bigtable.gaxx.flowcontrol.AdaptiveFlowController;
 import com.google.protobuf.ByteString;
 import java.io.IOException;
 import java.util.List;
@@ -296,6 +301,51 @@ public class BigtableDataClient implements AutoCloseable {
     return stub.createReadRowsCallable(rowAdapter);
   }
 
+  /**
+   * Creates a scanner that reads a query as multiple concurrent streams. The query is sharded using
+   * the table's sampled row keys (see {@link #sampleRowKeysAsync(String)}) and the rows of all of
+   * the shards are passed to a single consumer.
+   *
+   * <p>Sample code:
+   *
+   * <pre>{@code
+   * InstanceName instanceName = InstanceName.of("[PROJECT]", "[INSTANCE]");
+   * try (BigtableDataClient bigtableDataClient = BigtableDataClient.create(instanceName)) {
+   *   ParallelScanner<Row> scanner = bigtableDataClient.newParallelScanner(
+   *       ParallelScanSettings.newBuilder().setMaxParallelism(16).build());
+   *
+   *   scanner.scan(Query.create("[TABLE]"), new RowConsumer<Row>() {
+   *     public void onRow(Row row) {
+   *       // Do something with row
+   *     }
+   *   });
+   * }
+   * }</pre>
+   *
+   * @see ParallelScanner For ordering and backpressure semantics.
+   */
+  @BetaApi("This surface is likely to change as the parallel scan surface evolves.")
+  public ParallelScanner<Row> newParallelScanner(ParallelScanSettings settings) {
+    return new ParallelScanner<>(
+        stub.readRowsCallable(), stub.sampleRowKeysCallable(), new DefaultRowAdapter(), settings);
+  }
+
+  /**
+   * Creates a scanner that reads a query as multiple concurrent streams, using a custom adapter to
+   * build the rows.
+   *
+   * @see #newParallelScanner(ParallelScanSettings)
+   */
+  @BetaApi("This surface is likely to change as the parallel scan surface evolves.")
+  public <RowT> ParallelScanner<RowT> newParallelScanner(
+      ParallelScanSettings settings, RowAdapter<RowT> rowAdapter) {
+    return new ParallelScanner<>(
+        stub.createReadRowsCallable(rowAdapter),
+        stub.sampleRowKeysCallable(),
+        rowAdapter,
+        settings);
+  }
+
   /**
    * Convenience method to asynchronously return a sample of row keys in the table. The returned row
    * keys will delimit contiguous sections of the table of approximately equal size, which can be
@@ -405,6 +455,41 @@ public class BigtableDataClient implements AutoCloseable {
     return new BulkMutationBatcher(stub.bulkMutateRowsBatchingCallable());
   }
 
+  /**
+   * Creates a {@link BulkMutationBatcher} with adaptive client side flow control. {@link
+   * BulkMutationBatcher#add(RowMutation)} will block while the number of outstanding mutations or
+   * bytes is at the limit, and the mutation limit is raised or lowered to keep the MutateRows
+   * latency close to the target.
+   *
+   * <p>Sample code:
+   *
+   * <pre>{@code
+   * InstanceName instanceName = InstanceName.of("[PROJECT]", "[INSTANCE]");
+   * try (BigtableClient bigtableClient = BigtableClient.create(instanceName)) {
+   *   AdaptiveFlowControlSettings flowControlSettings = AdaptiveFlowControlSettings.newBuilder()
+   *     .setTargetRpcLatency(Duration.ofMillis(200))
+   *     .build();
+   *
+   *   try (BulkMutationBatcher batcher = bigtableClient.newBulkMutationBatcher(flowControlSettings)) {
+   *     for (String someValue : someCollection) {
+   *       RowMutation mutation = RowMutation.create("[TABLE]", "[ROW KEY]")
+   *         .setCell("[FAMILY NAME]", "[QUALIFIER]", "[VALUE]");
+   *
+   *       batcher.add(mutation);
+   *     }
+   *   } catch (BulkMutationFailure failure) {
+   *     // Handle error
+   *   }
+   * }
+   * }</pre>
+   */
+  @BetaApi("This surface is likely to change as the batching surface evolves.")
+  public BulkMutationBatcher newBulkMutationBatcher(AdaptiveFlowControlSettings settings) {
+    AdaptiveFlowController flowController = stub.createAdaptiveFlowController(settings);
+    return new BulkMutationBatcher(
+        stub.createBulkMutateRowsBatchingCallable(flowController), flowController);
+  }
+
   /**
    * Convenience method to mutate multiple rows in a batch. Each individual row is mutated
    * atomically as in MutateRow, but the entire batch is not executed atomically. Unlike {@link
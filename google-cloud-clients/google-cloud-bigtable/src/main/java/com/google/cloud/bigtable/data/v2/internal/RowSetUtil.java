@@ -0,0 +1,225 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.internal;
+
+import com.google.api.core.InternalApi;
+import com.google.bigtable.v2.RowRange;
+import com.google.bigtable.v2.RowSet;
+import com.google.protobuf.ByteString;
+import java.math.BigInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Internal helpers to slice {@link RowSet}s into contiguous segments of the keyspace. Segments are
+ * expressed as a closed start key and an open end key, where an empty {@link ByteString}
+ * represents an unbounded side.
+ */
+@InternalApi
+public final class RowSetUtil {
+  private RowSetUtil() {}
+
+  /**
+   * Restricts the rowSet to the segment {@code [start, end)}. An empty {@link RowSet} is treated as
+   * the full table, as it is by the service.
+   *
+   * @return The restricted {@link RowSet} or null if nothing in rowSet falls into the segment.
+   */
+  @Nullable
+  public static RowSet intersect(RowSet rowSet, ByteString start, ByteString end) {
+    RowRange segment = toRange(start, end);
+
+    if (rowSet.getRowKeysCount() == 0 && rowSet.getRowRangesCount() == 0) {
+      return RowSet.newBuilder().addRowRanges(segment).build();
+    }
+
+    RowSet.Builder result = RowSet.newBuilder();
+
+    for (ByteString key : rowSet.getRowKeysList()) {
+      if (contains(start, end, key)) {
+        result.addRowKeys(key);
+      }
+    }
+
+    for (RowRange range : rowSet.getRowRangesList()) {
+      RowRange intersection = intersect(range, segment);
+      if (intersection != null) {
+        result.addRowRanges(intersection);
+      }
+    }
+
+    if (result.getRowKeysCount() == 0 && result.getRowRangesCount() == 0) {
+      return null;
+    }
+    return result.build();
+  }
+
+  /**
+   * Picks a key that is roughly halfway between start and end, treating keys as unsigned base-256
+   * fractions. An empty end is treated as the end of the keyspace.
+   *
+   * @return A key strictly between start and end or null if the segment is too narrow to split.
+   */
+  @Nullable
+  public static ByteString midpoint(ByteString start, ByteString end) {
+    int width = Math.max(start.size(), end.size()) + 1;
+
+    BigInteger startValue = toBigInteger(start, width, false);
+    BigInteger endValue = toBigInteger(end, width, end.isEmpty());
+    BigInteger midValue = startValue.add(endValue).shiftRight(1);
+
+    byte[] magnitude = midValue.toByteArray();
+    byte[] padded = new byte[width];
+    int copyLength = Math.min(magnitude.length, width);
+    System.arraycopy(magnitude, magnitude.length - copyLength, padded, width - copyLength, copyLength);
+
+    // Drop trailing zero bytes, they only make the key longer without changing its position
+    // relative to the bounds.
+    int length = width;
+    while (length > 0 && padded[length - 1] == 0) {
+      length--;
+    }
+    ByteString mid = ByteString.copyFrom(padded, 0, length);
+
+    if (ByteStringComparator.INSTANCE.compare(mid, start) <= 0) {
+      return null;
+    }
+    if (!end.isEmpty() && ByteStringComparator.INSTANCE.compare(mid, end) >= 0) {
+      return null;
+    }
+    return mid;
+  }
+
+  private static BigInteger toBigInteger(ByteString key, int width, boolean unbounded) {
+    byte[] bytes = new byte[width];
+    if (unbounded) {
+      for (int i = 0; i < width; i++) {
+        bytes[i] = (byte) 0xff;
+      }
+    } else {
+      key.copyTo(bytes, 0);
+    }
+    return new BigInteger(1, bytes);
+  }
+
+  private static boolean contains(ByteString start, ByteString end, ByteString key) {
+    if (ByteStringComparator.INSTANCE.compare(key, start) < 0) {
+      return false;
+    }
+    return end.isEmpty() || ByteStringComparator.INSTANCE.compare(key, end) < 0;
+  }
+
+  private static RowRange toRange(ByteString start, ByteString end) {
+    RowRange.Builder builder = RowRange.newBuilder();
+    if (!start.isEmpty()) {
+      builder.setStartKeyClosed(start);
+    }
+    if (!end.isEmpty()) {
+      builder.setEndKeyOpen(end);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Intersects a user supplied range with a segment. The segment is always closed-open (or
+   * unbounded), which keeps the bound selection logic simple.
+   */
+  @Nullable
+  private static RowRange intersect(RowRange range, RowRange segment) {
+    RowRange.Builder builder = range.toBuilder();
+
+    // Start: pick the larger of the two starts.
+    if (segment.getStartKeyCase() == RowRange.StartKeyCase.START_KEY_CLOSED) {
+      ByteString segmentStart = segment.getStartKeyClosed();
+      switch (range.getStartKeyCase()) {
+        case STARTKEY_NOT_SET:
+          builder.setStartKeyClosed(segmentStart);
+          break;
+        case START_KEY_CLOSED:
+          if (ByteStringComparator.INSTANCE.compare(range.getStartKeyClosed(), segmentStart) < 0) {
+            builder.setStartKeyClosed(segmentStart);
+          }
+          break;
+        case START_KEY_OPEN:
+          if (ByteStringComparator.INSTANCE.compare(range.getStartKeyOpen(), segmentStart) < 0) {
+            builder.setStartKeyClosed(segmentStart);
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown start key case: " + range.getStartKeyCase());
+      }
+    }
+
+    // End: pick the smaller of the two ends. On a tie, the segment's open end is stricter.
+    if (segment.getEndKeyCase() == RowRange.EndKeyCase.END_KEY_OPEN) {
+      ByteString segmentEnd = segment.getEndKeyOpen();
+      switch (range.getEndKeyCase()) {
+        case ENDKEY_NOT_SET:
+          builder.setEndKeyOpen(segmentEnd);
+          break;
+        case END_KEY_OPEN:
+          if (ByteStringComparator.INSTANCE.compare(range.getEndKeyOpen(), segmentEnd) > 0) {
+            builder.setEndKeyOpen(segmentEnd);
+          }
+          break;
+        case END_KEY_CLOSED:
+          if (ByteStringComparator.INSTANCE.compare(range.getEndKeyClosed(), segmentEnd) >= 0) {
+            builder.setEndKeyOpen(segmentEnd);
+          }
+          break;
+        default:
+          throw new IllegalStateException("Unknown end key case: " + range.getEndKeyCase());
+      }
+    }
+
+    RowRange result = builder.build();
+    return isEmpty(result) ? null : result;
+  }
+
+  private static boolean isEmpty(RowRange range) {
+    ByteString start;
+    boolean startClosed;
+    switch (range.getStartKeyCase()) {
+      case START_KEY_CLOSED:
+        start = range.getStartKeyClosed();
+        startClosed = true;
+        break;
+      case START_KEY_OPEN:
+        start = range.getStartKeyOpen();
+        startClosed = false;
+        break;
+      default:
+        return false;
+    }
+
+    ByteString end;
+    boolean endClosed;
+    switch (range.getEndKeyCase()) {
+      case END_KEY_CLOSED:
+        end = range.getEndKeyClosed();
+        endClosed = true;
+        break;
+      case END_KEY_OPEN:
+        end = range.getEndKeyOpen();
+        endClosed = false;
+        break;
+      default:
+        return false;
+    }
+
+    int cmp = ByteStringComparator.INSTANCE.compare(start, end);
+    return cmp > 0 || (cmp == 0 && !(startClosed && endClosed));
+  }
+}
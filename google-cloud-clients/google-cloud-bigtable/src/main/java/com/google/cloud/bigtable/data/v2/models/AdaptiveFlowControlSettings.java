@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import com.google.api.core.BetaApi;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/**
+ * Settings for the flow control of a {@link BulkMutationBatcher}. The number of permitted
+ * outstanding elements starts at {@link #getInitialOutstandingElementCount()} and is adjusted
+ * between {@link #getMinOutstandingElementCount()} and {@link #getMaxOutstandingElementCount()} to
+ * keep the RPC latency close to {@link #getTargetRpcLatency()}.
+ */
+@BetaApi("This surface is likely to change as the batching surface evolves.")
+@AutoValue
+public abstract class AdaptiveFlowControlSettings {
+  /** The number of outstanding elements that are permitted before any latency is observed. */
+  public abstract long getInitialOutstandingElementCount();
+
+  /**
+   * The lower bound for the number of permitted outstanding elements. When elements are batched,
+   * this should be at least the element count threshold of a batch, otherwise batches will only be
+   * flushed by the delay threshold.
+   */
+  public abstract long getMinOutstandingElementCount();
+
+  /** The upper bound for the number of permitted outstanding elements. */
+  public abstract long getMaxOutstandingElementCount();
+
+  /** The maximum number of bytes that can be outstanding, regardless of the element count. */
+  public abstract long getMaxOutstandingRequestBytes();
+
+  /** The RPC latency that the flow controller tries to maintain. */
+  public abstract Duration getTargetRpcLatency();
+
+  /** How often the permitted number of outstanding elements is re-evaluated. */
+  public abstract Duration getAdjustmentInterval();
+
+  public static Builder newBuilder() {
+    return new AutoValue_AdaptiveFlowControlSettings.Builder()
+        .setInitialOutstandingElementCount(1_000L)
+        .setMinOutstandingElementCount(100L)
+        .setMaxOutstandingElementCount(10_000L)
+        .setMaxOutstandingRequestBytes(100L * 1024 * 1024)
+        .setTargetRpcLatency(Duration.ofMillis(500))
+        .setAdjustmentInterval(Duration.ofSeconds(1));
+  }
+
+  public abstract Builder toBuilder();
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setInitialOutstandingElementCount(long count);
+
+    public abstract Builder setMinOutstandingElementCount(long count);
+
+    public abstract Builder setMaxOutstandingElementCount(long count);
+
+    public abstract Builder setMaxOutstandingRequestBytes(long bytes);
+
+    public abstract Builder setTargetRpcLatency(Duration latency);
+
+    public abstract Builder setAdjustmentInterval(Duration interval);
+
+    abstract AdaptiveFlowControlSettings autoBuild();
+
+    public AdaptiveFlowControlSettings build() {
+      AdaptiveFlowControlSettings settings = autoBuild();
+      Preconditions.checkArgument(
+          settings.getMinOutstandingElementCount() > 0,
+          "minOutstandingElementCount must be greater than 0");
+      Preconditions.checkArgument(
+          settings.getMinOutstandingElementCount() <= settings.getInitialOutstandingElementCount()
+              && settings.getInitialOutstandingElementCount()
+                  <= settings.getMaxOutstandingElementCount(),
+          "initialOutstandingElementCount must be between minOutstandingElementCount and "
+              + "maxOutstandingElementCount");
+      Preconditions.checkArgument(
+          settings.getMaxOutstandingRequestBytes() > 0,
+          "maxOutstandingRequestBytes must be greater than 0");
+      Preconditions.checkArgument(
+          settings.getTargetRpcLatency().toNanos() > 0, "targetRpcLatency must be positive");
+      Preconditions.checkArgument(
+          settings.getAdjustmentInterval().toNanos() > 0, "adjustmentInterval must be positive");
+      return settings;
+    }
+  }
+}
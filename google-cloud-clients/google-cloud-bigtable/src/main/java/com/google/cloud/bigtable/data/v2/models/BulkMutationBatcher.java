@@ -21,21 +21,28 @@ import com.google.api.core.ApiFutures;
 import com.google.api.core.BetaApi;
 import com.google.api.core.InternalApi;
 import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.bigtable.gaxx.flowcontrol.AdaptiveFlowController;
 import com.google.common.base.Preconditions;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
 import org.threeten.bp.Duration;
 
 /**
  * Tracker for outstanding bulk mutations. Allows for the caller to wait for all of the outstanding
  * mutations to complete.
  *
+ * <p>When created with {@link AdaptiveFlowControlSettings}, {@link #add(RowMutation)} blocks while
+ * the number of outstanding mutations or bytes is at the limit. The mutation limit is adjusted to
+ * keep the MutateRows latency close to the configured target.
+ *
  * @see com.google.cloud.bigtable.data.v2.BigtableDataClient#newBulkMutationBatcher() for example
  *     usage.
  */
 @BetaApi("This surface is likely to change as the batching surface evolves.")
 public final class BulkMutationBatcher implements AutoCloseable {
   private final UnaryCallable<RowMutation, Void> callable;
+  @Nullable private final AdaptiveFlowController flowController;
   // Shared
   private final Object lock = new Object();
   private final AtomicLong numOutstanding = new AtomicLong();
@@ -46,7 +53,14 @@ public final class BulkMutationBatcher implements AutoCloseable {
 
   @InternalApi
   public BulkMutationBatcher(UnaryCallable<RowMutation, Void> callable) {
+    this(callable, null);
+  }
+
+  @InternalApi
+  public BulkMutationBatcher(
+      UnaryCallable<RowMutation, Void> callable, @Nullable AdaptiveFlowController flowController) {
     this.callable = callable;
+    this.flowController = flowController;
   }
 
   /**
@@ -90,32 +104,74 @@ public final class BulkMutationBatcher implements AutoCloseable {
    * Queues the mutation to be batched and sent. Please note that the order of mutations is not
    * guaranteed.
    *
+   * <p>If flow control is enabled, this method blocks until there is room for the mutation. If the
+   * calling thread is interrupted while waiting, the mutation is not sent and the returned future
+   * fails with an {@link InterruptedException}.
+   *
    * @throws IllegalStateException If this instance has been closed.
    */
   public ApiFuture<Void> add(final RowMutation rowMutation) {
     Preconditions.checkState(!closed, "BulkMutations has been closed");
+
+    final long size = flowController != null ? rowMutation.getApproximateSize() : 0;
+    if (flowController != null) {
+      try {
+        flowController.reserve(size);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return ApiFutures.immediateFailedFuture(e);
+      }
+    }
     numOutstanding.incrementAndGet();
 
-    ApiFuture<Void> future = callable.futureCall(rowMutation);
+    ApiFuture<Void> future;
+    try {
+      future = callable.futureCall(rowMutation);
+    } catch (RuntimeException e) {
+      onMutationComplete(false, size);
+      throw e;
+    }
 
     ApiFutures.addCallback(
         future,
         new ApiFutureCallback<Void>() {
           @Override
           public void onFailure(Throwable throwable) {
-            onMutationComplete(false);
+            onMutationComplete(false, size);
           }
 
           @Override
           public void onSuccess(Void aVoid) {
-            onMutationComplete(true);
+            onMutationComplete(true, size);
           }
         });
 
     return future;
   }
 
-  private void onMutationComplete(boolean isOk) {
+  /**
+   * Returns the number of outstanding mutations that are currently permitted, or {@link
+   * Long#MAX_VALUE} if flow control is disabled.
+   */
+  public long getOutstandingMutationLimit() {
+    return flowController != null ? flowController.getCurrentLimit() : Long.MAX_VALUE;
+  }
+
+  /** Returns the total amount of time that calls to {@link #add(RowMutation)} were throttled. */
+  public Duration getTotalThrottledTime() {
+    return flowController != null ? flowController.getTotalThrottledTime() : Duration.ZERO;
+  }
+
+  /** Returns the mean amount of time a mutation waited for capacity before being sent. */
+  public Duration getMeanQueueWait() {
+    return flowController != null ? flowController.getMeanQueueWait() : Duration.ZERO;
+  }
+
+  private void onMutationComplete(boolean isOk, long size) {
+    if (flowController != null) {
+      flowController.release(size);
+    }
+
     // Order matters here: numOutstanding must be decremented after numFailures to ensure a
     // consistent view in close(Duration)
     if (!isOk) {
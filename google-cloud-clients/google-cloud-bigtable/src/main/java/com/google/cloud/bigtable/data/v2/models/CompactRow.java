@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import com.google.api.core.BetaApi;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A memory efficient representation of a logical row, produced by {@link CompactRowAdapter}.
+ * Instead of allocating a {@link RowCell} per cell, the cells are stored in parallel arrays: the
+ * qualifiers and values of all cells share a single byte array and are addressed by offsets, and
+ * the family names are shared between all rows read through the same adapter.
+ *
+ * <p>Cells are addressed by their index, which ranges from 0 to {@link #getCellCount()} (exclusive).
+ * The cells are clustered by their family and sorted by their qualifier, just like {@link
+ * Row#getCells()}.
+ *
+ * <p>The qualifier and value accessors that return {@link ByteString}s allocate a copy. Hot paths
+ * should prefer {@link #getData()} together with the offset and length accessors.
+ */
+@BetaApi("This surface is likely to change as the row adapter surface evolves.")
+public final class CompactRow {
+  private final ByteString key;
+  private final int cellCount;
+  private final String[] families;
+  private final long[] timestamps;
+  // Cell i has its qualifier at [offsets[2i], offsets[2i+1]) and its value at
+  // [offsets[2i+1], offsets[2i+2]).
+  private final int[] offsets;
+  private final byte[] data;
+  // null when none of the cells have labels, which is by far the most common case.
+  @Nullable private final List<List<String>> labels;
+
+  CompactRow(
+      ByteString key,
+      int cellCount,
+      String[] families,
+      long[] timestamps,
+      int[] offsets,
+      byte[] data,
+      @Nullable List<List<String>> labels) {
+    this.key = key;
+    this.cellCount = cellCount;
+    this.families = families;
+    this.timestamps = timestamps;
+    this.offsets = offsets;
+    this.data = data;
+    this.labels = labels;
+  }
+
+  /** Returns the row key. */
+  @Nonnull
+  public ByteString getKey() {
+    return key;
+  }
+
+  /** Returns the number of cells in this row. */
+  public int getCellCount() {
+    return cellCount;
+  }
+
+  /** Returns the family of the cell at the given index. */
+  public String getFamily(int index) {
+    checkIndex(index);
+    return families[index];
+  }
+
+  /** Returns the timestamp of the cell at the given index, in microseconds. */
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  /** Returns the labels of the cell at the given index. */
+  public List<String> getLabels(int index) {
+    checkIndex(index);
+    return labels == null ? ImmutableList.<String>of() : labels.get(index);
+  }
+
+  /**
+   * Returns the backing array that contains the qualifiers and values of all cells. The array must
+   * not be modified.
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  /** Returns the offset of the qualifier of the cell at the given index in {@link #getData()}. */
+  public int getQualifierOffset(int index) {
+    checkIndex(index);
+    return offsets[2 * index];
+  }
+
+  /** Returns the length of the qualifier of the cell at the given index. */
+  public int getQualifierLength(int index) {
+    checkIndex(index);
+    return offsets[2 * index + 1] - offsets[2 * index];
+  }
+
+  /** Returns the offset of the value of the cell at the given index in {@link #getData()}. */
+  public int getValueOffset(int index) {
+    checkIndex(index);
+    return offsets[2 * index + 1];
+  }
+
+  /** Returns the length of the value of the cell at the given index. */
+  public int getValueLength(int index) {
+    checkIndex(index);
+    return offsets[2 * index + 2] - offsets[2 * index + 1];
+  }
+
+  /** Returns a copy of the qualifier of the cell at the given index. */
+  public ByteString getQualifier(int index) {
+    return ByteString.copyFrom(data, getQualifierOffset(index), getQualifierLength(index));
+  }
+
+  /** Returns a copy of the value of the cell at the given index. */
+  public ByteString getValue(int index) {
+    return ByteString.copyFrom(data, getValueOffset(index), getValueLength(index));
+  }
+
+  /** Converts this row into a {@link Row}, allocating a {@link RowCell} for every cell. */
+  public Row toRow() {
+    ImmutableList.Builder<RowCell> cells = ImmutableList.builder();
+    for (int i = 0; i < cellCount; i++) {
+      cells.add(
+          RowCell.create(
+              getFamily(i), getQualifier(i), getTimestamp(i), getLabels(i), getValue(i)));
+    }
+    return Row.create(key, cells.build());
+  }
+
+  private void checkIndex(int index) {
+    Preconditions.checkElementIndex(index, cellCount);
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import com.google.api.core.BetaApi;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link RowAdapter} that produces {@link CompactRow}s. It's intended for reading wide rows,
+ * where allocating a {@link RowCell} per cell generates a lot of garbage.
+ *
+ * <p>Each {@link RowBuilder} accumulates the cells of the current row in growable arrays that are
+ * reused across rows, so the only allocations per row are the trimmed copies handed to the {@link
+ * CompactRow}. Family names are interned per adapter, so rows from the same adapter share them.
+ *
+ * <p>Sample code:
+ *
+ * <pre>{@code
+ * ServerStreamingCallable<Query, CompactRow> callable =
+ *     bigtableDataClient.readRowsCallable(new CompactRowAdapter());
+ *
+ * for (CompactRow row : callable.call(Query.create("[TABLE]"))) {
+ *   for (int i = 0; i < row.getCellCount(); i++) {
+ *     // Do something with row.getData(), row.getValueOffset(i) and row.getValueLength(i)
+ *   }
+ * }
+ * }</pre>
+ */
+@BetaApi("This surface is likely to change as the row adapter surface evolves.")
+public class CompactRowAdapter implements RowAdapter<CompactRow> {
+  private static final int INITIAL_CELL_CAPACITY = 16;
+  private static final int INITIAL_DATA_CAPACITY = 1024;
+
+  private static final String[] EMPTY_FAMILIES = new String[0];
+  private static final long[] EMPTY_TIMESTAMPS = new long[0];
+  private static final int[] EMPTY_OFFSETS = new int[] {0};
+  private static final byte[] EMPTY_DATA = new byte[0];
+
+  private final ConcurrentMap<String, String> families = new ConcurrentHashMap<>();
+
+  /** {@inheritDoc} */
+  @Override
+  public RowBuilder<CompactRow> createRowBuilder() {
+    return new CompactRowBuilder();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isScanMarkerRow(CompactRow row) {
+    return row.getCellCount() == 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ByteString getKey(CompactRow row) {
+    return row.getKey();
+  }
+
+  private String internFamily(String family) {
+    String existing = families.putIfAbsent(family, family);
+    return existing != null ? existing : family;
+  }
+
+  /** {@inheritDoc} */
+  public class CompactRowBuilder implements RowBuilder<CompactRow> {
+    private ByteString currentKey;
+    private int cellCount;
+    private String[] cellFamilies = new String[INITIAL_CELL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CELL_CAPACITY];
+    private int[] offsets = new int[2 * INITIAL_CELL_CAPACITY + 1];
+    private byte[] data = new byte[INITIAL_DATA_CAPACITY];
+    private int dataLength;
+    private List<List<String>> labels;
+
+    // The previous cell's family, to avoid a map lookup when consecutive cells share a family.
+    private String lastFamily;
+    private String lastInternedFamily;
+
+    /** {@inheritDoc} */
+    @Override
+    public CompactRow createScanMarkerRow(ByteString key) {
+      return new CompactRow(
+          key, 0, EMPTY_FAMILIES, EMPTY_TIMESTAMPS, EMPTY_OFFSETS, EMPTY_DATA, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startRow(ByteString key) {
+      currentKey = key;
+      cellCount = 0;
+      dataLength = 0;
+      offsets[0] = 0;
+      labels = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startCell(
+        String family, ByteString qualifier, long timestamp, List<String> labels, long size) {
+      ensureCellCapacity(cellCount + 1);
+      ensureDataCapacity(dataLength + qualifier.size() + (int) size);
+
+      if (family != lastFamily) {
+        lastFamily = family;
+        lastInternedFamily = internFamily(family);
+      }
+      cellFamilies[cellCount] = lastInternedFamily;
+      timestamps[cellCount] = timestamp;
+
+      if (!labels.isEmpty() && this.labels == null) {
+        this.labels = new ArrayList<>(cellCount + 1);
+        for (int i = 0; i < cellCount; i++) {
+          this.labels.add(Collections.<String>emptyList());
+        }
+      }
+      if (this.labels != null) {
+        this.labels.add(labels);
+      }
+
+      qualifier.copyTo(data, dataLength);
+      dataLength += qualifier.size();
+      offsets[2 * cellCount + 1] = dataLength;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void cellValue(ByteString value) {
+      ensureDataCapacity(dataLength + value.size());
+      value.copyTo(data, dataLength);
+      dataLength += value.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void finishCell() {
+      offsets[2 * cellCount + 2] = dataLength;
+      cellCount++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompactRow finishRow() {
+      CompactRow row =
+          new CompactRow(
+              currentKey,
+              cellCount,
+              Arrays.copyOf(cellFamilies, cellCount),
+              Arrays.copyOf(timestamps, cellCount),
+              Arrays.copyOf(offsets, 2 * cellCount + 1),
+              Arrays.copyOf(data, dataLength),
+              labels);
+      currentKey = null;
+      labels = null;
+      // Release family references held by the reusable buffer.
+      Arrays.fill(cellFamilies, 0, cellCount, null);
+      return row;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+      currentKey = null;
+      Arrays.fill(cellFamilies, 0, cellCount, null);
+      cellCount = 0;
+      dataLength = 0;
+      labels = null;
+    }
+
+    private void ensureCellCapacity(int minCapacity) {
+      if (minCapacity <= timestamps.length) {
+        return;
+      }
+      int newCapacity = Math.max(minCapacity, timestamps.length * 2);
+      cellFamilies = Arrays.copyOf(cellFamilies, newCapacity);
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      offsets = Arrays.copyOf(offsets, 2 * newCapacity + 1);
+    }
+
+    private void ensureDataCapacity(int minCapacity) {
+      if (minCapacity <= data.length) {
+        return;
+      }
+      data = Arrays.copyOf(data, Math.max(minCapacity, data.length * 2));
+    }
+  }
+}
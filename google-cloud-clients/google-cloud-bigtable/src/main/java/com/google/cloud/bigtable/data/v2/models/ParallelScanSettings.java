@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import com.google.api.core.BetaApi;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/** Settings for a {@link ParallelScanner}. */
+@BetaApi("This surface is likely to change as the parallel scan surface evolves.")
+@AutoValue
+public abstract class ParallelScanSettings {
+  /** The maximum number of shards that are read concurrently. */
+  public abstract int getMaxParallelism();
+
+  /**
+   * The maximum number of rows that can be buffered between the shard streams and the consumer.
+   * When the buffer is full, the shard streams stop requesting more rows from the server.
+   */
+  public abstract int getRowBufferSize();
+
+  /**
+   * Whether idle workers are allowed to split the remaining keyspace of shards that are still
+   * being read.
+   */
+  public abstract boolean isRebalancingEnabled();
+
+  /** The minimum amount of time a shard must have been read before it can be split. */
+  public abstract Duration getMinSplitAge();
+
+  public static Builder newBuilder() {
+    return new AutoValue_ParallelScanSettings.Builder()
+        .setMaxParallelism(8)
+        .setRowBufferSize(1000)
+        .setRebalancingEnabled(true)
+        .setMinSplitAge(Duration.ofSeconds(5));
+  }
+
+  public abstract Builder toBuilder();
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setMaxParallelism(int maxParallelism);
+
+    public abstract Builder setRowBufferSize(int rowBufferSize);
+
+    public abstract Builder setRebalancingEnabled(boolean rebalancingEnabled);
+
+    public abstract Builder setMinSplitAge(Duration minSplitAge);
+
+    abstract ParallelScanSettings autoBuild();
+
+    public ParallelScanSettings build() {
+      ParallelScanSettings settings = autoBuild();
+      Preconditions.checkArgument(
+          settings.getMaxParallelism() > 0, "maxParallelism must be greater than 0");
+      Preconditions.checkArgument(
+          settings.getRowBufferSize() > 0, "rowBufferSize must be greater than 0");
+      Preconditions.checkArgument(
+          !settings.getMinSplitAge().isNegative(), "minSplitAge can't be negative");
+      return settings;
+    }
+  }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import com.google.api.core.BetaApi;
+import com.google.api.core.InternalApi;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.bigtable.data.v2.internal.ByteStringComparator;
+import com.google.cloud.bigtable.data.v2.internal.RowSetUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.ByteString;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a {@link Query} as multiple concurrent streams. The query is sharded into contiguous key
+ * ranges using the table's sampled row keys, and up to {@link
+ * ParallelScanSettings#getMaxParallelism()} shards are read at the same time. When a worker runs
+ * out of shards, it splits the remaining keyspace of the oldest shard that is still being read, so
+ * that a few slow shards don't dominate the scan time.
+ *
+ * <p>Rows are handed to the {@link RowConsumer} on the thread that called {@link #scan(Query,
+ * RowConsumer)}, one at a time. Rows are delivered in key order within a shard, but rows from
+ * different shards are interleaved. A slow consumer applies backpressure to the shard streams once
+ * {@link ParallelScanSettings#getRowBufferSize()} rows are buffered.
+ *
+ * @see com.google.cloud.bigtable.data.v2.BigtableDataClient#newParallelScanner(ParallelScanSettings)
+ *     for example usage.
+ */
+@BetaApi("This surface is likely to change as the parallel scan surface evolves.")
+public final class ParallelScanner<RowT> {
+  private static final long POLL_INTERVAL_MS = 100;
+
+  private final ServerStreamingCallable<Query, RowT> readRowsCallable;
+  private final UnaryCallable<String, List<KeyOffset>> sampleRowKeysCallable;
+  private final RowAdapter<RowT> rowAdapter;
+  private final ParallelScanSettings settings;
+
+  private final AtomicLong numShardsRead = new AtomicLong();
+  private final AtomicLong numSplits = new AtomicLong();
+
+  /** Receives the rows of a parallel scan. */
+  public interface RowConsumer<RowT> {
+    void onRow(RowT row);
+  }
+
+  @InternalApi
+  public ParallelScanner(
+      ServerStreamingCallable<Query, RowT> readRowsCallable,
+      UnaryCallable<String, List<KeyOffset>> sampleRowKeysCallable,
+      RowAdapter<RowT> rowAdapter,
+      ParallelScanSettings settings) {
+    this.readRowsCallable = Preconditions.checkNotNull(readRowsCallable);
+    this.sampleRowKeysCallable = Preconditions.checkNotNull(sampleRowKeysCallable);
+    this.rowAdapter = Preconditions.checkNotNull(rowAdapter);
+    this.settings = Preconditions.checkNotNull(settings);
+  }
+
+  /**
+   * Reads all of the rows of the query and blocks until they have all been passed to the consumer.
+   * If any of the shards fails or the consumer throws, all of the other shards are cancelled and the
+   * error is rethrown.
+   *
+   * @throws IllegalStateException If the query has a row limit.
+   * @throws InterruptedException If interrupted while waiting for rows.
+   */
+  public void scan(Query query, RowConsumer<RowT> consumer) throws InterruptedException {
+    Preconditions.checkState(query.getLimit() == 0, "Can't shard a query with a row limit");
+    List<KeyOffset> keyOffsets = sampleRowKeysCallable.call(query.getTableId());
+    new ScanOperation(query, keyOffsets, consumer).run();
+  }
+
+  /** Total number of shards that were read by this scanner, including the ones created by splits. */
+  public long getNumShardsRead() {
+    return numShardsRead.get();
+  }
+
+  /** Total number of times a running shard was split to rebalance a scan. */
+  public long getNumSplits() {
+    return numSplits.get();
+  }
+
+  /** A contiguous segment of the keyspace that is read by a single stream. */
+  private final class Shard {
+    private final Query query;
+    private final ByteString start;
+    private final ByteString end;
+
+    // Guarded by this
+    private ServerStream<RowT> stream;
+    private ByteString lastKey;
+    private ByteString stopKey = ByteString.EMPTY;
+    private long startedNanos;
+
+    Shard(Query query, ByteString start, ByteString end) {
+      this.query = query;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /** State of a single call to {@link #scan(Query, RowConsumer)}. */
+  private final class ScanOperation {
+    private final Query originalQuery;
+    private final RowConsumer<RowT> consumer;
+    private final BlockingQueue<RowT> buffer;
+
+    private final Object lock = new Object();
+    // Guarded by lock
+    private final Deque<Shard> pending = new ArrayDeque<>();
+    private final List<Shard> running = new ArrayList<>();
+    private int numActiveWorkers;
+    private Throwable error;
+    private volatile boolean done;
+
+    ScanOperation(Query query, List<KeyOffset> keyOffsets, RowConsumer<RowT> consumer) {
+      this.originalQuery = query;
+      this.consumer = consumer;
+      this.buffer = new ArrayBlockingQueue<>(settings.getRowBufferSize());
+
+      ByteString start = ByteString.EMPTY;
+      for (ByteString splitPoint : Query.toSplitPoints(keyOffsets)) {
+        addShard(start, splitPoint);
+        start = splitPoint;
+      }
+      addShard(start, ByteString.EMPTY);
+    }
+
+    private void addShard(ByteString start, ByteString end) {
+      Query shardQuery = originalQuery.restrict(start, end);
+      if (shardQuery != null) {
+        pending.add(new Shard(shardQuery, start, end));
+      }
+    }
+
+    void run() throws InterruptedException {
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      int numWorkers =
+          settings.isRebalancingEnabled()
+              ? settings.getMaxParallelism()
+              : Math.min(settings.getMaxParallelism(), pending.size());
+
+      ExecutorService executor =
+          Executors.newFixedThreadPool(
+              numWorkers,
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("bigtable-parallel-scan-%d")
+                  .build());
+
+      synchronized (lock) {
+        numActiveWorkers = numWorkers;
+      }
+      try {
+        for (int i = 0; i < numWorkers; i++) {
+          executor.execute(
+              new Runnable() {
+                @Override
+                public void run() {
+                  runWorker();
+                }
+              });
+        }
+        deliverRows();
+      } catch (Throwable t) {
+        fail(t);
+      } finally {
+        executor.shutdown();
+      }
+
+      synchronized (lock) {
+        if (error != null) {
+          Throwables.propagateIfPossible(error, InterruptedException.class);
+          throw new RuntimeException(error);
+        }
+      }
+    }
+
+    /** Consumer loop, runs on the caller's thread. */
+    private void deliverRows() throws InterruptedException {
+      while (true) {
+        RowT row = buffer.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (row != null) {
+          consumer.onRow(row);
+          continue;
+        }
+
+        boolean finished;
+        synchronized (lock) {
+          if (error != null) {
+            return;
+          }
+          finished = numActiveWorkers == 0;
+        }
+        if (finished) {
+          // All workers exited before the check, so anything left in the buffer is final.
+          while ((row = buffer.poll()) != null) {
+            consumer.onRow(row);
+          }
+          return;
+        }
+      }
+    }
+
+    private void runWorker() {
+      try {
+        Shard shard;
+        while ((shard = nextShard()) != null) {
+          try {
+            readShard(shard);
+          } finally {
+            synchronized (lock) {
+              running.remove(shard);
+              lock.notifyAll();
+            }
+          }
+          numShardsRead.incrementAndGet();
+        }
+      } catch (Throwable t) {
+        fail(t);
+      } finally {
+        synchronized (lock) {
+          numActiveWorkers--;
+          lock.notifyAll();
+        }
+      }
+    }
+
+    private Shard nextShard() throws InterruptedException {
+      synchronized (lock) {
+        while (!done) {
+          Shard shard = pending.poll();
+          if (shard == null && settings.isRebalancingEnabled()) {
+            shard = trySplit();
+          }
+          if (shard != null) {
+            shard.startedNanos = System.nanoTime();
+            running.add(shard);
+            return shard;
+          }
+          if (running.isEmpty() || !settings.isRebalancingEnabled()) {
+            return null;
+          }
+          // Wait for a shard to become old enough to split or for the scan to finish.
+          lock.wait(POLL_INTERVAL_MS);
+        }
+        return null;
+      }
+    }
+
+    /**
+     * Splits the remaining keyspace of the oldest running shard in half. The running shard stops
+     * once it reaches the split point, and the returned shard reads the rest.
+     */
+    private Shard trySplit() {
+      long now = System.nanoTime();
+      long minAgeNanos = TimeUnit.MILLISECONDS.toNanos(settings.getMinSplitAge().toMillis());
+
+      List<Shard> candidates = new ArrayList<>(running);
+      while (!candidates.isEmpty()) {
+        Shard oldest = candidates.get(0);
+        for (Shard candidate : candidates) {
+          if (candidate.startedNanos < oldest.startedNanos) {
+            oldest = candidate;
+          }
+        }
+        candidates.remove(oldest);
+
+        if (now - oldest.startedNanos < minAgeNanos) {
+          return null;
+        }
+
+        synchronized (oldest) {
+          ByteString from = oldest.lastKey != null ? oldest.lastKey : oldest.start;
+          ByteString to = oldest.stopKey.isEmpty() ? oldest.end : oldest.stopKey;
+
+          ByteString splitPoint = RowSetUtil.midpoint(from, to);
+          if (splitPoint == null) {
+            continue;
+          }
+          Query rest = originalQuery.restrict(splitPoint, to);
+          if (rest == null) {
+            continue;
+          }
+
+          oldest.stopKey = splitPoint;
+          oldest.startedNanos = now;
+          numSplits.incrementAndGet();
+          return new Shard(rest, splitPoint, to);
+        }
+      }
+      return null;
+    }
+
+    private void readShard(Shard shard) throws InterruptedException {
+      ServerStream<RowT> stream = readRowsCallable.call(shard.query);
+      synchronized (shard) {
+        shard.stream = stream;
+      }
+      if (done) {
+        stream.cancel();
+        return;
+      }
+
+      for (RowT row : stream) {
+        ByteString key = rowAdapter.getKey(row);
+        synchronized (shard) {
+          if (!shard.stopKey.isEmpty()
+              && ByteStringComparator.INSTANCE.compare(key, shard.stopKey) >= 0) {
+            // The rest of this shard was handed off to another worker.
+            stream.cancel();
+            return;
+          }
+          shard.lastKey = key;
+        }
+
+        while (!buffer.offer(row, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+          if (done) {
+            stream.cancel();
+            throw new CancellationException("Scan was cancelled");
+          }
+        }
+      }
+    }
+
+    private void fail(Throwable t) {
+      List<Shard> toCancel;
+      synchronized (lock) {
+        if (error != null || done) {
+          return;
+        }
+        error = t;
+        done = true;
+        toCancel = new ArrayList<>(running);
+        lock.notifyAll();
+      }
+
+      for (Shard shard : toCancel) {
+        synchronized (shard) {
+          if (shard.stream != null) {
+            shard.stream.cancel();
+          }
+        }
+      }
+    }
+  }
+}
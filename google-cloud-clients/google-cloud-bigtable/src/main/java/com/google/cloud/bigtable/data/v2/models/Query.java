@@ -15,11 +15,15 @@
  */
 package com.google.cloud.bigtable.data.v2.models;
 
+import com.google.api.core.BetaApi;
 import com.google.api.core.InternalApi;
 import com.google.bigtable.v2.ReadRowsRequest;
 import com.google.bigtable.v2.RowRange;
+import com.google.bigtable.v2.RowSet;
 import com.google.bigtable.v2.TableName;
+import com.google.cloud.bigtable.data.v2.internal.ByteStringComparator;
 import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import com.google.cloud.bigtable.data.v2.internal.RowSetUtil;
 import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
 import com.google.common.base.Preconditions;
 import com.google.protobuf.ByteString;
@@ -27,6 +31,11 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
 
 /** A simple wrapper to construct a query for the ReadRows RPC. */
 public final class Query implements Serializable {
@@ -163,6 +172,82 @@ public final class Query implements Serializable {
     return this;
   }
 
+  /**
+   * Splits this query into multiple queries that together cover the same rows. Each resulting
+   * query is restricted to a contiguous segment of the keyspace delimited by the sampled row keys,
+   * which makes them suitable to be read in parallel. Segments that don't contain any of the rows
+   * requested by this query are omitted.
+   *
+   * <p>Sample code:
+   *
+   * <pre>{@code
+   * List<KeyOffset> keyOffsets = bigtableDataClient.sampleRowKeysAsync("[TABLE]").get();
+   * List<Query> shards = Query.create("[TABLE]").range("a", "z").shard(keyOffsets);
+   * }</pre>
+   *
+   * @throws IllegalStateException If this query has a row limit, which can't be distributed across
+   *     shards.
+   * @see com.google.cloud.bigtable.data.v2.BigtableDataClient#newParallelScanner(ParallelScanSettings)
+   */
+  @BetaApi("This surface is likely to change as the parallel scan surface evolves.")
+  public List<Query> shard(List<KeyOffset> sampledRowKeys) {
+    Preconditions.checkState(getLimit() == 0, "Can't shard a query with a row limit");
+
+    SortedSet<ByteString> splitPoints = toSplitPoints(sampledRowKeys);
+
+    List<Query> shards = new ArrayList<>(splitPoints.size() + 1);
+    ByteString start = ByteString.EMPTY;
+    for (ByteString splitPoint : splitPoints) {
+      Query shard = restrict(start, splitPoint);
+      if (shard != null) {
+        shards.add(shard);
+      }
+      start = splitPoint;
+    }
+    Query lastShard = restrict(start, ByteString.EMPTY);
+    if (lastShard != null) {
+      shards.add(lastShard);
+    }
+    return shards;
+  }
+
+  /**
+   * Creates a copy of this query whose rows are restricted to {@code [start, end)}. An empty key
+   * represents an unbounded side.
+   *
+   * @return The restricted copy or null if none of the requested rows fall into the segment.
+   */
+  @Nullable
+  Query restrict(ByteString start, ByteString end) {
+    RowSet rowSet = RowSetUtil.intersect(builder.getRows(), start, end);
+    if (rowSet == null) {
+      return null;
+    }
+    Query copy = new Query(tableId);
+    copy.builder = builder.clone().setRows(rowSet);
+    return copy;
+  }
+
+  /** Extracts the distinct, non-empty sample keys in ascending order. */
+  static SortedSet<ByteString> toSplitPoints(List<KeyOffset> sampledRowKeys) {
+    SortedSet<ByteString> splitPoints = new TreeSet<>(ByteStringComparator.INSTANCE);
+    for (KeyOffset keyOffset : sampledRowKeys) {
+      // The last sample can be empty, which represents the end of the table.
+      if (!keyOffset.geyKey().isEmpty()) {
+        splitPoints.add(keyOffset.geyKey());
+      }
+    }
+    return splitPoints;
+  }
+
+  String getTableId() {
+    return tableId;
+  }
+
+  long getLimit() {
+    return builder.getRowsLimit();
+  }
+
   /**
    * Creates the request protobuf. This method is considered an internal implementation detail and
    * not meant to be used by applications.
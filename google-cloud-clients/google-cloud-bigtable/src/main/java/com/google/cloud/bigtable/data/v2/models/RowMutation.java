@@ -118,6 +118,15 @@ public final class RowMutation implements MutationApi<RowMutation>, Serializable
     return this;
   }
 
+  /** Approximates the number of bytes this mutation will occupy in a batch request. */
+  long getApproximateSize() {
+    long size = key.size();
+    for (com.google.bigtable.v2.Mutation m : mutation.getMutations()) {
+      size += m.getSerializedSize();
+    }
+    return size;
+  }
+
   @InternalApi
   public MutateRowRequest toProto(RequestContext requestContext) {
     TableName tableName =
@@ -31,6 +31,7 @@ import com.google.bigtable.v2.ReadRowsRequest;
 import com.google.bigtable.v2.SampleRowKeysRequest;
 import com.google.bigtable.v2.SampleRowKeysResponse;
 import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import com.google.cloud.bigtable.data.v2.models.AdaptiveFlowControlSettings;
 import com.google.cloud.bigtable.data.v2.models.BulkMutation;
 import com.google.cloud.bigtable.data.v2.models.ConditionalRowMutation;
 import com.google.cloud.bigtable.data.v2.models.DefaultRowAdapter;
@@ -49,6 +50,8 @@ import com.google.cloud.bigtable.data.v2.stub.readrows.ReadRowsResumptionStrateg
 import com.google.cloud.bigtable.data.v2.stub.readrows.ReadRowsRetryCompletedCallable;
 import com.google.cloud.bigtable.data.v2.stub.readrows.ReadRowsUserCallable;
 import com.google.cloud.bigtable.data.v2.stub.readrows.RowMergingCallable;
+import com.google.cloud.bigtable.gaxx.flowcontrol.AdaptiveFlowController;
+import com.google.cloud.bigtable.gaxx.flowcontrol.LatencyTrackingCallable;
 import com.google.cloud.bigtable.gaxx.retrying.ApiResultRetryAlgorithm;
 import java.io.IOException;
 import java.util.List;
@@ -286,7 +289,41 @@ public class EnhancedBigtableStub implements AutoCloseable {
    * </ul>
    */
   private UnaryCallable<RowMutation, Void> createBulkMutateRowsBatchingCallable() {
-    UnaryCallable<MutateRowsRequest, Void> baseCallable = createMutateRowsBaseCallable();
+    return createBulkMutateRowsBatchingCallable(createMutateRowsBaseCallable());
+  }
+
+  /**
+   * Creates the flow controller of a {@link
+   * com.google.cloud.bigtable.data.v2.models.BulkMutationBatcher}, configured by {@code settings}.
+   */
+  public AdaptiveFlowController createAdaptiveFlowController(
+      AdaptiveFlowControlSettings settings) {
+    return new AdaptiveFlowController(
+        settings.getInitialOutstandingElementCount(),
+        settings.getMinOutstandingElementCount(),
+        settings.getMaxOutstandingElementCount(),
+        settings.getMaxOutstandingRequestBytes(),
+        settings.getTargetRpcLatency(),
+        settings.getAdjustmentInterval());
+  }
+
+  /**
+   * Creates a callable chain to handle MutatesRows RPCs with automatic batching, that reports the
+   * latency of every batch RPC to the provided {@link AdaptiveFlowController}. Apart from the
+   * latency tracking, the chain is identical to {@link #bulkMutateRowsBatchingCallable()}. The
+   * latency includes retries of the batch, but not the time elements spent waiting to be batched.
+   *
+   * <p>Reserving capacity in the flow controller is left to the caller, see {@link
+   * com.google.cloud.bigtable.data.v2.models.BulkMutationBatcher}.
+   */
+  public UnaryCallable<RowMutation, Void> createBulkMutateRowsBatchingCallable(
+      AdaptiveFlowController flowController) {
+    return createBulkMutateRowsBatchingCallable(
+        new LatencyTrackingCallable<>(createMutateRowsBaseCallable(), flowController));
+  }
+
+  private UnaryCallable<RowMutation, Void> createBulkMutateRowsBatchingCallable(
+      UnaryCallable<MutateRowsRequest, Void> baseCallable) {
 
     BatchingCallSettings.Builder<MutateRowsRequest, Void> batchingCallSettings =
         BatchingCallSettings.newBuilder(new MutateRowsBatchingDescriptor())
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.gaxx.flowcontrol;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.InternalApi;
+import com.google.api.core.NanoClock;
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/**
+ * Bounds the number of outstanding elements and bytes, while adjusting the element limit based on
+ * the observed RPC latency.
+ *
+ * <p>Callers {@link #reserve(long)} capacity before sending an element and {@link #release(long)}
+ * it once the element is resolved. The RPC layer reports latencies via {@link
+ * #recordRpcLatency(long)}. Every adjustment interval, the element limit is:
+ *
+ * <ul>
+ *   <li>decreased proportionally to how much the mean latency overshot the target (by at most
+ *       half) if the mean latency is above the target.
+ *   <li>increased by 10% if the mean latency is within the target and callers had to wait for
+ *       capacity during the interval.
+ * </ul>
+ *
+ * <p>The element limit always stays between the min and max element counts.
+ *
+ * <p>This class is thread-safe.
+ */
+@InternalApi
+public final class AdaptiveFlowController {
+  private static final double INCREASE_FACTOR = 0.1;
+  private static final double MAX_DECREASE_FACTOR = 0.5;
+
+  private final long minElementCount;
+  private final long maxElementCount;
+  private final long maxRequestBytes;
+  private final ApiClock clock;
+  private final long targetLatencyNanos;
+  private final long adjustmentIntervalNanos;
+
+  private final Object lock = new Object();
+  // Guarded by lock
+  private long limit;
+  private long outstandingElements;
+  private long outstandingBytes;
+  private long windowStartNanos;
+  private long windowLatencySumNanos;
+  private long windowLatencyCount;
+  private boolean windowThrottled;
+  private long totalReservations;
+  private long totalWaitNanos;
+
+  public AdaptiveFlowController(
+      long initialElementCount,
+      long minElementCount,
+      long maxElementCount,
+      long maxRequestBytes,
+      Duration targetRpcLatency,
+      Duration adjustmentInterval) {
+    this(
+        initialElementCount,
+        minElementCount,
+        maxElementCount,
+        maxRequestBytes,
+        targetRpcLatency,
+        adjustmentInterval,
+        NanoClock.getDefaultClock());
+  }
+
+  @InternalApi("Visible for testing")
+  AdaptiveFlowController(
+      long initialElementCount,
+      long minElementCount,
+      long maxElementCount,
+      long maxRequestBytes,
+      Duration targetRpcLatency,
+      Duration adjustmentInterval,
+      ApiClock clock) {
+    Preconditions.checkArgument(
+        0 < minElementCount
+            && minElementCount <= initialElementCount
+            && initialElementCount <= maxElementCount,
+        "initialElementCount must be between minElementCount and maxElementCount");
+    this.minElementCount = minElementCount;
+    this.maxElementCount = maxElementCount;
+    this.maxRequestBytes = maxRequestBytes;
+    this.clock = Preconditions.checkNotNull(clock);
+    this.targetLatencyNanos = targetRpcLatency.toNanos();
+    this.adjustmentIntervalNanos = adjustmentInterval.toNanos();
+    this.limit = initialElementCount;
+    this.windowStartNanos = clock.nanoTime();
+  }
+
+  /**
+   * Blocks until there is room for one more element of the given size. An element larger than the
+   * byte limit is admitted once nothing else is outstanding, so that it can't block forever.
+   *
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public void reserve(long bytes) throws InterruptedException {
+    long startNanos = clock.nanoTime();
+
+    synchronized (lock) {
+      while (outstandingElements >= limit
+          || (outstandingElements > 0
+              && outstandingBytes + bytes > maxRequestBytes)) {
+        windowThrottled = true;
+        lock.wait();
+      }
+      outstandingElements++;
+      outstandingBytes += bytes;
+
+      totalReservations++;
+      totalWaitNanos += clock.nanoTime() - startNanos;
+    }
+  }
+
+  /** Returns capacity previously acquired by {@link #reserve(long)}. */
+  public void release(long bytes) {
+    synchronized (lock) {
+      outstandingElements--;
+      outstandingBytes -= bytes;
+      lock.notifyAll();
+    }
+  }
+
+  /** Records the latency of an RPC and adjusts the element limit when the interval elapsed. */
+  public void recordRpcLatency(long latencyNanos) {
+    synchronized (lock) {
+      windowLatencySumNanos += latencyNanos;
+      windowLatencyCount++;
+
+      long now = clock.nanoTime();
+      if (now - windowStartNanos >= adjustmentIntervalNanos) {
+        adjustLimit();
+        windowStartNanos = now;
+        windowLatencySumNanos = 0;
+        windowLatencyCount = 0;
+        windowThrottled = false;
+      }
+    }
+  }
+
+  // Must be called while holding lock.
+  private void adjustLimit() {
+    long meanLatencyNanos = windowLatencySumNanos / windowLatencyCount;
+
+    if (meanLatencyNanos > targetLatencyNanos) {
+      double factor =
+          Math.max(MAX_DECREASE_FACTOR, (double) targetLatencyNanos / meanLatencyNanos);
+      limit = Math.max(minElementCount, (long) (limit * factor));
+    } else if (windowThrottled) {
+      long increment = Math.max(1, (long) (limit * INCREASE_FACTOR));
+      limit = Math.min(maxElementCount, limit + increment);
+      lock.notifyAll();
+    }
+  }
+
+  /** The clock used to measure the latencies reported to this controller. */
+  ApiClock getClock() {
+    return clock;
+  }
+
+  /** The number of outstanding elements that are currently permitted. */
+  public long getCurrentLimit() {
+    synchronized (lock) {
+      return limit;
+    }
+  }
+
+  /** The number of elements that have been reserved but not released. */
+  public long getOutstandingElementCount() {
+    synchronized (lock) {
+      return outstandingElements;
+    }
+  }
+
+  /** The number of bytes that have been reserved but not released. */
+  public long getOutstandingRequestBytes() {
+    synchronized (lock) {
+      return outstandingBytes;
+    }
+  }
+
+  /** The total amount of time callers spent waiting in {@link #reserve(long)}. */
+  public Duration getTotalThrottledTime() {
+    synchronized (lock) {
+      return Duration.ofNanos(totalWaitNanos);
+    }
+  }
+
+  /** The mean amount of time a call to {@link #reserve(long)} waited for capacity. */
+  public Duration getMeanQueueWait() {
+    synchronized (lock) {
+      if (totalReservations == 0) {
+        return Duration.ZERO;
+      }
+      return Duration.ofNanos(totalWaitNanos / totalReservations);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.gaxx.flowcontrol;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.InternalApi;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.UnaryCallable;
+
+/**
+ * Reports the latency of every call, successful or not, to an {@link AdaptiveFlowController}. The
+ * latency includes any retries performed by the inner callable, so that retry storms are seen as
+ * increased latency.
+ */
+@InternalApi
+public class LatencyTrackingCallable<RequestT, ResponseT>
+    extends UnaryCallable<RequestT, ResponseT> {
+  private final UnaryCallable<RequestT, ResponseT> inner;
+  private final AdaptiveFlowController flowController;
+
+  public LatencyTrackingCallable(
+      UnaryCallable<RequestT, ResponseT> inner, AdaptiveFlowController flowController) {
+    this.inner = inner;
+    this.flowController = flowController;
+  }
+
+  @Override
+  public ApiFuture<ResponseT> futureCall(RequestT request, ApiCallContext context) {
+    final ApiClock clock = flowController.getClock();
+    final long startNanos = clock.nanoTime();
+    ApiFuture<ResponseT> future = inner.futureCall(request, context);
+
+    ApiFutures.addCallback(
+        future,
+        new ApiFutureCallback<ResponseT>() {
+          @Override
+          public void onFailure(Throwable throwable) {
+            flowController.recordRpcLatency(clock.nanoTime() - startNanos);
+          }
+
+          @Override
+          public void onSuccess(ResponseT response) {
+            flowController.recordRpcLatency(clock.nanoTime() - startNanos);
+          }
+        });
+
+    return future;
+  }
+}
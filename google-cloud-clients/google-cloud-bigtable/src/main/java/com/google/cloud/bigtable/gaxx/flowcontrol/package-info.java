@@ -0,0 +1,25 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Client side flow control that adapts the number of outstanding requests to the latency observed
+ * by the RPCs.
+ *
+ * <p>The number of permitted outstanding elements is increased while RPCs finish within the target
+ * latency and callers are being throttled, and is decreased proportionally when the RPC latency
+ * exceeds the target. This keeps bulk loads from overwhelming the service, which would otherwise
+ * drive up latency and be amplified by retries.
+ */
+package com.google.cloud.bigtable.gaxx.flowcontrol;
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.bigtable.v2.RowRange;
+import com.google.bigtable.v2.RowSet;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RowSetUtilTest {
+  @Test
+  public void intersectFullTableTest() {
+    RowSet actual =
+        RowSetUtil.intersect(RowSet.getDefaultInstance(), key("b"), key("d"));
+
+    assertThat(actual)
+        .isEqualTo(
+            RowSet.newBuilder()
+                .addRowRanges(
+                    RowRange.newBuilder().setStartKeyClosed(key("b")).setEndKeyOpen(key("d")))
+                .build());
+  }
+
+  @Test
+  public void intersectKeysTest() {
+    RowSet rowSet =
+        RowSet.newBuilder().addRowKeys(key("a")).addRowKeys(key("b")).addRowKeys(key("d")).build();
+
+    assertThat(RowSetUtil.intersect(rowSet, key("b"), key("d")))
+        .isEqualTo(RowSet.newBuilder().addRowKeys(key("b")).build());
+    assertThat(RowSetUtil.intersect(rowSet, key("d"), ByteString.EMPTY))
+        .isEqualTo(RowSet.newBuilder().addRowKeys(key("d")).build());
+    assertThat(RowSetUtil.intersect(rowSet, key("e"), ByteString.EMPTY)).isNull();
+  }
+
+  @Test
+  public void intersectRangeBoundsTest() {
+    RowSet rowSet =
+        RowSet.newBuilder()
+            .addRowRanges(RowRange.newBuilder().setStartKeyOpen(key("c")).setEndKeyClosed(key("f")))
+            .build();
+
+    // Stricter bounds of the original range are preserved.
+    assertThat(RowSetUtil.intersect(rowSet, key("a"), key("z"))).isEqualTo(rowSet);
+
+    // A closed end that coincides with the segment end is excluded.
+    assertThat(RowSetUtil.intersect(rowSet, key("a"), key("f")))
+        .isEqualTo(
+            RowSet.newBuilder()
+                .addRowRanges(
+                    RowRange.newBuilder().setStartKeyOpen(key("c")).setEndKeyOpen(key("f")))
+                .build());
+
+    assertThat(RowSetUtil.intersect(rowSet, key("d"), ByteString.EMPTY))
+        .isEqualTo(
+            RowSet.newBuilder()
+                .addRowRanges(
+                    RowRange.newBuilder().setStartKeyClosed(key("d")).setEndKeyClosed(key("f")))
+                .build());
+
+    assertThat(RowSetUtil.intersect(rowSet, key("a"), key("c"))).isNull();
+    assertThat(RowSetUtil.intersect(rowSet, key("f\0"), ByteString.EMPTY)).isNull();
+  }
+
+  @Test
+  public void midpointTest() {
+    ByteString mid = RowSetUtil.midpoint(key("a"), key("c"));
+    assertThat(mid).isEqualTo(key("b"));
+
+    mid = RowSetUtil.midpoint(key("a"), key("b"));
+    assertThat(ByteStringComparator.INSTANCE.compare(mid, key("a"))).isGreaterThan(0);
+    assertThat(ByteStringComparator.INSTANCE.compare(mid, key("b"))).isLessThan(0);
+
+    mid = RowSetUtil.midpoint(key("a"), ByteString.EMPTY);
+    assertThat(ByteStringComparator.INSTANCE.compare(mid, key("a"))).isGreaterThan(0);
+  }
+
+  @Test
+  public void midpointTooNarrowTest() {
+    assertThat(RowSetUtil.midpoint(key("a"), key("a\0"))).isNull();
+    assertThat(RowSetUtil.midpoint(key("b"), key("a"))).isNull();
+  }
+
+  private static ByteString key(String key) {
+    return ByteString.copyFromUtf8(key);
+  }
+}
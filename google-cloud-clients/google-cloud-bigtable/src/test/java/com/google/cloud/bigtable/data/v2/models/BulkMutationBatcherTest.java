@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.cloud.bigtable.data.v2.models.BulkMutationBatcher.BulkMutationFailure;
+import com.google.cloud.bigtable.gaxx.flowcontrol.AdaptiveFlowController;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+
+@RunWith(JUnit4.class)
+public class BulkMutationBatcherTest {
+  private FakeMutateCallable callable;
+  private AdaptiveFlowController flowController;
+  private BulkMutationBatcher batcher;
+
+  @Before
+  public void setUp() {
+    callable = new FakeMutateCallable();
+    flowController =
+        new AdaptiveFlowController(
+            2, 1, 2, 100L * 1024 * 1024, Duration.ofMillis(500), Duration.ofSeconds(1));
+    batcher = new BulkMutationBatcher(callable, flowController);
+  }
+
+  @Test
+  public void reservesAndReleases() throws Exception {
+    RowMutation mutation = RowMutation.create("fake-table", "fake-key");
+    batcher.add(mutation);
+    batcher.add(mutation);
+    assertThat(flowController.getOutstandingElementCount()).isEqualTo(2);
+    assertThat(flowController.getOutstandingRequestBytes())
+        .isEqualTo(2 * mutation.getApproximateSize());
+
+    // The third mutation waits until one of the first two is resolved.
+    final CountDownLatch added = new CountDownLatch(1);
+    Thread thread =
+        new Thread() {
+          @Override
+          public void run() {
+            batcher.add(RowMutation.create("fake-table", "fake-key"));
+            added.countDown();
+          }
+        };
+    thread.start();
+    assertThat(added.await(100, TimeUnit.MILLISECONDS)).isFalse();
+
+    callable.futures.get(0).set(null);
+    assertThat(added.await(1, TimeUnit.MINUTES)).isTrue();
+    thread.join();
+
+    callable.futures.get(1).set(null);
+    callable.futures.get(2).setException(new RuntimeException("fake error"));
+    assertThat(flowController.getOutstandingElementCount()).isEqualTo(0);
+    assertThat(flowController.getOutstandingRequestBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void releasesWhenCallThrows() throws Exception {
+    callable.error = new IllegalStateException("fake error");
+    try {
+      batcher.add(RowMutation.create("fake-table", "fake-key"));
+      throw new AssertionError("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(callable.error);
+    }
+    assertThat(flowController.getOutstandingElementCount()).isEqualTo(0);
+    assertThat(flowController.getOutstandingRequestBytes()).isEqualTo(0);
+
+    try {
+      batcher.close(Duration.ofSeconds(1));
+      throw new AssertionError("Expected exception");
+    } catch (BulkMutationFailure e) {
+      assertThat(e.getMessage()).contains("1 mutations");
+    }
+  }
+
+  private static class FakeMutateCallable extends UnaryCallable<RowMutation, Void> {
+    private final List<SettableApiFuture<Void>> futures = new ArrayList<>();
+    private volatile RuntimeException error;
+
+    @Override
+    public synchronized ApiFuture<Void> futureCall(RowMutation request, ApiCallContext context) {
+      if (error != null) {
+        throw error;
+      }
+      SettableApiFuture<Void> future = SettableApiFuture.create();
+      futures.add(future);
+      return future;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.cloud.bigtable.data.v2.models.RowAdapter.RowBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompactRowAdapterTest {
+
+  private final CompactRowAdapter adapter = new CompactRowAdapter();
+  private RowBuilder<CompactRow> rowBuilder;
+
+  @Before
+  public void setUp() {
+    rowBuilder = adapter.createRowBuilder();
+  }
+
+  @Test
+  public void singleCellRowTest() {
+    ByteString value = ByteString.copyFromUtf8("my-value");
+    rowBuilder.startRow(ByteString.copyFromUtf8("my-key"));
+    rowBuilder.startCell(
+        "my-family",
+        ByteString.copyFromUtf8("my-qualifier"),
+        100,
+        ImmutableList.of("my-label"),
+        value.size());
+    rowBuilder.cellValue(value);
+    rowBuilder.finishCell();
+
+    assertThat(rowBuilder.finishRow().toRow())
+        .isEqualTo(
+            Row.create(
+                ByteString.copyFromUtf8("my-key"),
+                ImmutableList.of(
+                    RowCell.create(
+                        "my-family",
+                        ByteString.copyFromUtf8("my-qualifier"),
+                        100,
+                        ImmutableList.of("my-label"),
+                        value))));
+  }
+
+  @Test
+  public void multiCellTest() {
+    List<RowCell> expectedCells = Lists.newArrayList();
+
+    rowBuilder.startRow(ByteString.copyFromUtf8("my-key"));
+
+    for (int i = 0; i < 10; i++) {
+      ByteString value = ByteString.copyFromUtf8("value-" + i);
+      ByteString qualifier = ByteString.copyFromUtf8("qualifier-" + i);
+      rowBuilder.startCell("family", qualifier, 1000, ImmutableList.of("my-label"), value.size());
+      rowBuilder.cellValue(value);
+      rowBuilder.finishCell();
+
+      expectedCells.add(
+          RowCell.create("family", qualifier, 1000, ImmutableList.of("my-label"), value));
+    }
+
+    assertThat(rowBuilder.finishRow().toRow())
+        .isEqualTo(Row.create(ByteString.copyFromUtf8("my-key"), expectedCells));
+  }
+
+  @Test
+  public void splitCellTest() {
+    ByteString part1 = ByteString.copyFromUtf8("part1");
+    ByteString part2 = ByteString.copyFromUtf8("part2");
+
+    rowBuilder.startRow(ByteString.copyFromUtf8("my-key"));
+    rowBuilder.startCell(
+        "family",
+        ByteString.copyFromUtf8("qualifier"),
+        1000,
+        ImmutableList.of("my-label"),
+        part1.size() + part2.size());
+    rowBuilder.cellValue(part1);
+    rowBuilder.cellValue(part2);
+    rowBuilder.finishCell();
+
+    assertThat(rowBuilder.finishRow().toRow())
+        .isEqualTo(
+            Row.create(
+                ByteString.copyFromUtf8("my-key"),
+                ImmutableList.of(
+                    RowCell.create(
+                        "family",
+                        ByteString.copyFromUtf8("qualifier"),
+                        1000,
+                        ImmutableList.of("my-label"),
+                        ByteString.copyFromUtf8("part1part2")))));
+  }
+
+  @Test
+  public void markerRowTest() {
+    CompactRow markerRow = rowBuilder.createScanMarkerRow(ByteString.copyFromUtf8("key"));
+    assertThat(adapter.isScanMarkerRow(markerRow)).isTrue();
+
+    ByteString value = ByteString.copyFromUtf8("value");
+    rowBuilder.startRow(ByteString.copyFromUtf8("key"));
+    rowBuilder.startCell(
+        "family", ByteString.EMPTY, 1000, ImmutableList.<String>of(), value.size());
+    rowBuilder.cellValue(value);
+    rowBuilder.finishCell();
+
+    assertThat(adapter.isScanMarkerRow(rowBuilder.finishRow())).isFalse();
+  }
+
+  @Test
+  public void accessorsTest() {
+    rowBuilder.startRow(ByteString.copyFromUtf8("my-key"));
+    rowBuilder.startCell(
+        "family1", ByteString.copyFromUtf8("q1"), 100, ImmutableList.<String>of(), 2);
+    rowBuilder.cellValue(ByteString.copyFromUtf8("v1"));
+    rowBuilder.finishCell();
+    rowBuilder.startCell(
+        "family2", ByteString.copyFromUtf8("q2"), 200, ImmutableList.of("my-label"), 3);
+    rowBuilder.cellValue(ByteString.copyFromUtf8("v22"));
+    rowBuilder.finishCell();
+    CompactRow row = rowBuilder.finishRow();
+
+    assertThat(row.getKey()).isEqualTo(ByteString.copyFromUtf8("my-key"));
+    assertThat(row.getCellCount()).isEqualTo(2);
+
+    assertThat(row.getFamily(0)).isEqualTo("family1");
+    assertThat(row.getTimestamp(0)).isEqualTo(100);
+    assertThat(row.getLabels(0)).isEmpty();
+    assertThat(row.getQualifier(0)).isEqualTo(ByteString.copyFromUtf8("q1"));
+    assertThat(
+            ByteString.copyFrom(row.getData(), row.getValueOffset(0), row.getValueLength(0)))
+        .isEqualTo(ByteString.copyFromUtf8("v1"));
+
+    assertThat(row.getFamily(1)).isEqualTo("family2");
+    assertThat(row.getTimestamp(1)).isEqualTo(200);
+    assertThat(row.getLabels(1)).containsExactly("my-label");
+    assertThat(row.getQualifierLength(1)).isEqualTo(2);
+    assertThat(row.getValue(1)).isEqualTo(ByteString.copyFromUtf8("v22"));
+  }
+
+  @Test
+  public void builderReuseTest() {
+    List<CompactRow> rows = Lists.newArrayList();
+
+    for (int i = 0; i < 3; i++) {
+      rowBuilder.startRow(ByteString.copyFromUtf8("key-" + i));
+      // Enough cells to force the builder to grow its buffers.
+      for (int j = 0; j < 100; j++) {
+        ByteString value = ByteString.copyFromUtf8("value-" + i + "-" + j);
+        rowBuilder.startCell(
+            "family",
+            ByteString.copyFromUtf8("qualifier-" + j),
+            j,
+            ImmutableList.<String>of(),
+            value.size());
+        rowBuilder.cellValue(value);
+        rowBuilder.finishCell();
+      }
+      rows.add(rowBuilder.finishRow());
+    }
+
+    for (int i = 0; i < 3; i++) {
+      CompactRow row = rows.get(i);
+      assertThat(row.getCellCount()).isEqualTo(100);
+      assertThat(row.getValue(99)).isEqualTo(ByteString.copyFromUtf8("value-" + i + "-99"));
+    }
+    // Family names are shared between rows.
+    assertThat(rows.get(0).getFamily(0)).isSameAs(rows.get(2).getFamily(0));
+  }
+
+  @Test
+  public void resetTest() {
+    rowBuilder.startRow(ByteString.copyFromUtf8("key"));
+    rowBuilder.startCell(
+        "family", ByteString.copyFromUtf8("q"), 1, ImmutableList.of("label"), 5);
+    rowBuilder.cellValue(ByteString.copyFromUtf8("value"));
+    rowBuilder.finishCell();
+    rowBuilder.reset();
+
+    rowBuilder.startRow(ByteString.copyFromUtf8("key"));
+    rowBuilder.startCell("family", ByteString.copyFromUtf8("q"), 1, ImmutableList.<String>of(), 1);
+    rowBuilder.cellValue(ByteString.copyFromUtf8("v"));
+    rowBuilder.finishCell();
+
+    assertThat(rowBuilder.finishRow().toRow())
+        .isEqualTo(
+            Row.create(
+                ByteString.copyFromUtf8("key"),
+                ImmutableList.of(
+                    RowCell.create(
+                        "family",
+                        ByteString.copyFromUtf8("q"),
+                        1,
+                        ImmutableList.<String>of(),
+                        ByteString.copyFromUtf8("v")))));
+  }
+}
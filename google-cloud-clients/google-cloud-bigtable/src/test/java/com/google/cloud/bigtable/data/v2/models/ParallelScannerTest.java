@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.data.v2.models;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiCallContext;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.ServerStreamingCallable;
+import com.google.api.gax.rpc.UnaryCallable;
+import com.google.bigtable.v2.ReadRowsRequest;
+import com.google.bigtable.v2.RowRange;
+import com.google.bigtable.v2.RowSet;
+import com.google.cloud.bigtable.data.v2.internal.ByteStringComparator;
+import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import com.google.cloud.bigtable.gaxx.testing.FakeStreamingApi.ServerStreamingStashCallable.StreamControllerStash;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+
+@RunWith(JUnit4.class)
+public class ParallelScannerTest {
+  private static final RequestContext REQUEST_CONTEXT =
+      RequestContext.create(InstanceName.of("fake-project", "fake-instance"), "fake-profile");
+  private static final String TABLE_ID = "fake-table";
+
+  private List<String> tableKeys;
+  private FakeReadRowsCallable readRowsCallable;
+  private FakeSampleRowKeysCallable sampleRowKeysCallable;
+
+  @Before
+  public void setUp() {
+    tableKeys = new ArrayList<>();
+    for (char c = 'a'; c <= 'z'; c++) {
+      tableKeys.add(String.valueOf(c));
+    }
+    readRowsCallable = new FakeReadRowsCallable();
+    sampleRowKeysCallable =
+        new FakeSampleRowKeysCallable(
+            ImmutableList.of(
+                KeyOffset.create(ByteString.copyFromUtf8("f"), 10),
+                KeyOffset.create(ByteString.copyFromUtf8("m"), 20),
+                KeyOffset.create(ByteString.copyFromUtf8("t"), 30),
+                KeyOffset.create(ByteString.EMPTY, 40)));
+  }
+
+  @Test
+  public void fullTableTest() throws Exception {
+    ParallelScanner<Row> scanner =
+        createScanner(
+            ParallelScanSettings.newBuilder()
+                .setMaxParallelism(2)
+                .setRebalancingEnabled(false)
+                .build());
+
+    List<String> actual = scan(scanner, Query.create(TABLE_ID));
+
+    assertThat(actual).containsExactlyElementsIn(tableKeys);
+    assertThat(actual).containsNoDuplicates();
+    assertThat(readRowsCallable.numCalls.get()).isEqualTo(4);
+    assertThat(scanner.getNumShardsRead()).isEqualTo(4);
+  }
+
+  @Test
+  public void rangeQueryTest() throws Exception {
+    ParallelScanner<Row> scanner =
+        createScanner(
+            ParallelScanSettings.newBuilder()
+                .setMaxParallelism(4)
+                .setRebalancingEnabled(false)
+                .build());
+
+    List<String> actual = scan(scanner, Query.create(TABLE_ID).range("c", "h").rowKey("x"));
+
+    assertThat(actual).containsExactly("c", "d", "e", "f", "g", "x");
+    // The shard between "m" and "t" doesn't contain any of the requested rows.
+    assertThat(readRowsCallable.numCalls.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void rebalanceTest() throws Exception {
+    sampleRowKeysCallable = new FakeSampleRowKeysCallable(ImmutableList.<KeyOffset>of());
+    ParallelScanner<Row> scanner =
+        createScanner(
+            ParallelScanSettings.newBuilder()
+                .setMaxParallelism(2)
+                .setRowBufferSize(1)
+                .setMinSplitAge(Duration.ZERO)
+                .build());
+
+    final List<String> actual = Collections.synchronizedList(new ArrayList<String>());
+    scanner.scan(
+        Query.create(TABLE_ID),
+        new ParallelScanner.RowConsumer<Row>() {
+          @Override
+          public void onRow(Row row) {
+            actual.add(row.getKey().toStringUtf8());
+            try {
+              Thread.sleep(5);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+
+    assertThat(actual).containsExactlyElementsIn(tableKeys);
+    assertThat(actual).containsNoDuplicates();
+    assertThat(scanner.getNumSplits()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void errorTest() throws Exception {
+    ParallelScanner<Row> scanner = createScanner(ParallelScanSettings.newBuilder().build());
+
+    Exception actualError = null;
+    try {
+      scanner.scan(
+          Query.create(TABLE_ID),
+          new ParallelScanner.RowConsumer<Row>() {
+            @Override
+            public void onRow(Row row) {
+              throw new IllegalStateException("fake error");
+            }
+          });
+    } catch (Exception e) {
+      actualError = e;
+    }
+
+    assertThat(actualError).isInstanceOf(IllegalStateException.class);
+    assertThat(actualError).hasMessageThat().isEqualTo("fake error");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void limitTest() throws Exception {
+    ParallelScanner<Row> scanner = createScanner(ParallelScanSettings.newBuilder().build());
+    scan(scanner, Query.create(TABLE_ID).limit(10));
+  }
+
+  private ParallelScanner<Row> createScanner(ParallelScanSettings settings) {
+    return new ParallelScanner<>(
+        readRowsCallable, sampleRowKeysCallable, new DefaultRowAdapter(), settings);
+  }
+
+  private static List<String> scan(ParallelScanner<Row> scanner, Query query)
+      throws InterruptedException {
+    final List<String> keys = new ArrayList<>();
+    scanner.scan(
+        query,
+        new ParallelScanner.RowConsumer<Row>() {
+          @Override
+          public void onRow(Row row) {
+            keys.add(row.getKey().toStringUtf8());
+          }
+        });
+    return keys;
+  }
+
+  private class FakeReadRowsCallable extends ServerStreamingCallable<Query, Row> {
+    private final AtomicInteger numCalls = new AtomicInteger();
+
+    @Override
+    public void call(Query query, ResponseObserver<Row> observer, ApiCallContext context) {
+      numCalls.incrementAndGet();
+      ReadRowsRequest request = query.toProto(REQUEST_CONTEXT);
+
+      List<Row> rows = new ArrayList<>();
+      for (String key : tableKeys) {
+        ByteString keyBytes = ByteString.copyFromUtf8(key);
+        if (contains(request.getRows(), keyBytes)) {
+          rows.add(Row.create(keyBytes, ImmutableList.<RowCell>of()));
+        }
+      }
+      new StreamControllerStash<>(rows, observer).start();
+    }
+  }
+
+  private static class FakeSampleRowKeysCallable extends UnaryCallable<String, List<KeyOffset>> {
+    private final List<KeyOffset> keyOffsets;
+
+    FakeSampleRowKeysCallable(List<KeyOffset> keyOffsets) {
+      this.keyOffsets = keyOffsets;
+    }
+
+    @Override
+    public ApiFuture<List<KeyOffset>> futureCall(String tableId, ApiCallContext context) {
+      return ApiFutures.immediateFuture(keyOffsets);
+    }
+  }
+
+  private static boolean contains(RowSet rowSet, ByteString key) {
+    if (rowSet.getRowKeysCount() == 0 && rowSet.getRowRangesCount() == 0) {
+      return true;
+    }
+    if (rowSet.getRowKeysList().contains(key)) {
+      return true;
+    }
+    for (RowRange range : rowSet.getRowRangesList()) {
+      if (contains(range, key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean contains(RowRange range, ByteString key) {
+    ByteStringComparator comparator = ByteStringComparator.INSTANCE;
+    switch (range.getStartKeyCase()) {
+      case START_KEY_CLOSED:
+        if (comparator.compare(key, range.getStartKeyClosed()) < 0) {
+          return false;
+        }
+        break;
+      case START_KEY_OPEN:
+        if (comparator.compare(key, range.getStartKeyOpen()) <= 0) {
+          return false;
+        }
+        break;
+      default:
+        break;
+    }
+    switch (range.getEndKeyCase()) {
+      case END_KEY_CLOSED:
+        return comparator.compare(key, range.getEndKeyClosed()) <= 0;
+      case END_KEY_OPEN:
+        return comparator.compare(key, range.getEndKeyOpen()) < 0;
+      default:
+        return true;
+    }
+  }
+}
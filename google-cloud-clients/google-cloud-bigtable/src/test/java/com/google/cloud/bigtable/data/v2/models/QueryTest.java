@@ -25,12 +25,14 @@ import com.google.bigtable.v2.RowRange;
 import com.google.bigtable.v2.TableName;
 import com.google.cloud.bigtable.data.v2.internal.RequestContext;
 import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.common.collect.ImmutableList;
 import com.google.protobuf.ByteString;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -140,6 +142,80 @@ public class QueryTest {
     assertThat(actual.toProto(requestContext)).isEqualTo(expected.toProto(requestContext));
   }
 
+  @Test
+  public void shardTest() {
+    Query query =
+        Query.create(TABLE_NAME.getTable())
+            .range("a", "m")
+            .rowKey("z")
+            .filter(FILTERS.key().regex(".*"));
+
+    List<Query> shards =
+        query.shard(
+            ImmutableList.of(
+                KeyOffset.create(ByteString.copyFromUtf8("f"), 10),
+                KeyOffset.create(ByteString.copyFromUtf8("p"), 20),
+                KeyOffset.create(ByteString.EMPTY, 30)));
+
+    assertThat(shards).hasSize(3);
+
+    Builder expectedShard0 =
+        expectedProtoBuilder()
+            .setFilter(RowFilter.newBuilder().setRowKeyRegexFilter(ByteString.copyFromUtf8(".*")));
+    expectedShard0
+        .getRowsBuilder()
+        .addRowRanges(
+            RowRange.newBuilder()
+                .setStartKeyClosed(ByteString.copyFromUtf8("a"))
+                .setEndKeyOpen(ByteString.copyFromUtf8("f")));
+    assertThat(shards.get(0).toProto(requestContext)).isEqualTo(expectedShard0.build());
+
+    Builder expectedShard1 =
+        expectedProtoBuilder()
+            .setFilter(RowFilter.newBuilder().setRowKeyRegexFilter(ByteString.copyFromUtf8(".*")));
+    expectedShard1
+        .getRowsBuilder()
+        .addRowRanges(
+            RowRange.newBuilder()
+                .setStartKeyClosed(ByteString.copyFromUtf8("f"))
+                .setEndKeyOpen(ByteString.copyFromUtf8("m")));
+    assertThat(shards.get(1).toProto(requestContext)).isEqualTo(expectedShard1.build());
+
+    Builder expectedShard2 =
+        expectedProtoBuilder()
+            .setFilter(RowFilter.newBuilder().setRowKeyRegexFilter(ByteString.copyFromUtf8(".*")));
+    expectedShard2.getRowsBuilder().addRowKeys(ByteString.copyFromUtf8("z"));
+    assertThat(shards.get(2).toProto(requestContext)).isEqualTo(expectedShard2.build());
+  }
+
+  @Test
+  public void shardFullTableTest() {
+    List<Query> shards =
+        Query.create(TABLE_NAME.getTable())
+            .shard(ImmutableList.of(KeyOffset.create(ByteString.copyFromUtf8("m"), 10)));
+
+    assertThat(shards).hasSize(2);
+
+    Builder expectedShard0 = expectedProtoBuilder();
+    expectedShard0
+        .getRowsBuilder()
+        .addRowRanges(RowRange.newBuilder().setEndKeyOpen(ByteString.copyFromUtf8("m")));
+    assertThat(shards.get(0).toProto(requestContext)).isEqualTo(expectedShard0.build());
+
+    Builder expectedShard1 = expectedProtoBuilder();
+    expectedShard1
+        .getRowsBuilder()
+        .addRowRanges(RowRange.newBuilder().setStartKeyClosed(ByteString.copyFromUtf8("m")));
+    assertThat(shards.get(1).toProto(requestContext)).isEqualTo(expectedShard1.build());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shardLimitTest() {
+    Query.create(TABLE_NAME.getTable())
+        .limit(10)
+        .shard(ImmutableList.of(KeyOffset.create(ByteString.copyFromUtf8("m"), 10)));
+  }
+
   private static ReadRowsRequest.Builder expectedProtoBuilder() {
     return ReadRowsRequest.newBuilder()
         .setTableName(TABLE_NAME.toString())
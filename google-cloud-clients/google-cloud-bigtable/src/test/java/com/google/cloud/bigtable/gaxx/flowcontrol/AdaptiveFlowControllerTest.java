@@ -0,0 +1,199 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.cloud.bigtable.gaxx.flowcontrol;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.core.ApiClock;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+
+@RunWith(JUnit4.class)
+public class AdaptiveFlowControllerTest {
+  private FakeClock clock;
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock();
+  }
+
+  @Test
+  public void elementLimitTest() throws Exception {
+    final AdaptiveFlowController flowController = newFlowController(2, 1);
+
+    flowController.reserve(1);
+    flowController.reserve(1);
+
+    final CountDownLatch reserved = new CountDownLatch(1);
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  flowController.reserve(1);
+                  reserved.countDown();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+            });
+    thread.start();
+
+    assertThat(reserved.await(100, TimeUnit.MILLISECONDS)).isFalse();
+    assertThat(flowController.getOutstandingElementCount()).isEqualTo(2);
+
+    flowController.release(1);
+    assertThat(reserved.await(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(flowController.getOutstandingElementCount()).isEqualTo(2);
+    thread.join();
+  }
+
+  @Test
+  public void byteLimitTest() throws Exception {
+    final AdaptiveFlowController flowController = newFlowController(100, 10);
+
+    // A single element bigger than the limit is admitted when nothing else is outstanding.
+    flowController.reserve(2000);
+    assertThat(flowController.getOutstandingRequestBytes()).isEqualTo(2000);
+
+    final CountDownLatch reserved = new CountDownLatch(1);
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  flowController.reserve(10);
+                  reserved.countDown();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+            });
+    thread.start();
+
+    assertThat(reserved.await(100, TimeUnit.MILLISECONDS)).isFalse();
+
+    flowController.release(2000);
+    assertThat(reserved.await(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(flowController.getOutstandingRequestBytes()).isEqualTo(10);
+    thread.join();
+  }
+
+  @Test
+  public void decreaseOnHighLatencyTest() {
+    AdaptiveFlowController flowController = newFlowController(100, 10);
+
+    // Latency is 25% over target
+    clock.advance(Duration.ofSeconds(1));
+    flowController.recordRpcLatency(Duration.ofMillis(125).toNanos());
+    assertThat(flowController.getCurrentLimit()).isEqualTo(80);
+
+    // Decreases are capped at half the limit
+    clock.advance(Duration.ofSeconds(1));
+    flowController.recordRpcLatency(Duration.ofSeconds(10).toNanos());
+    assertThat(flowController.getCurrentLimit()).isEqualTo(40);
+
+    // The limit never drops below the minimum
+    for (int i = 0; i < 5; i++) {
+      clock.advance(Duration.ofSeconds(1));
+      flowController.recordRpcLatency(Duration.ofSeconds(10).toNanos());
+    }
+    assertThat(flowController.getCurrentLimit()).isEqualTo(10);
+  }
+
+  @Test
+  public void noAdjustmentWithinIntervalTest() {
+    AdaptiveFlowController flowController = newFlowController(100, 10);
+
+    clock.advance(Duration.ofMillis(500));
+    flowController.recordRpcLatency(Duration.ofSeconds(10).toNanos());
+
+    assertThat(flowController.getCurrentLimit()).isEqualTo(100);
+  }
+
+  @Test
+  public void increaseWhenThrottledTest() throws Exception {
+    final AdaptiveFlowController flowController = newFlowController(1, 1);
+
+    // Low latency without any throttling doesn't change the limit
+    clock.advance(Duration.ofSeconds(1));
+    flowController.recordRpcLatency(Duration.ofMillis(10).toNanos());
+    assertThat(flowController.getCurrentLimit()).isEqualTo(1);
+
+    flowController.reserve(1);
+    Thread thread =
+        new Thread(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  flowController.reserve(1);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+            });
+    thread.start();
+
+    // Wait for the second reservation to be throttled
+    while (thread.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+
+    clock.advance(Duration.ofSeconds(1));
+    flowController.recordRpcLatency(Duration.ofMillis(10).toNanos());
+    assertThat(flowController.getCurrentLimit()).isEqualTo(2);
+
+    thread.join();
+    assertThat(flowController.getOutstandingElementCount()).isEqualTo(2);
+  }
+
+  private AdaptiveFlowController newFlowController(long initialElementCount, long minElementCount) {
+    return new AdaptiveFlowController(
+        initialElementCount,
+        minElementCount,
+        200,
+        1000,
+        Duration.ofMillis(100),
+        Duration.ofSeconds(1),
+        clock);
+  }
+
+  private static class FakeClock implements ApiClock {
+    private volatile long nanos;
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+
+    @Override
+    public long nanoTime() {
+      return nanos;
+    }
+
+    @Override
+    public long millisTime() {
+      return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+  }
+}
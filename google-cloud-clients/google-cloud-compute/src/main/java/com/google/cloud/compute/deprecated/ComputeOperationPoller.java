@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.compute.deprecated;
+
+import com.google.api.core.CurrentMillisClock;
+import com.google.cloud.OperationPoller;
+import com.google.cloud.compute.deprecated.Compute.OperationOption;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import org.threeten.bp.Duration;
+
+/**
+ * Polls the operations waited for with {@link Operation#waitForAsync}, for all the {@link Compute}
+ * instances. Only the status of an operation is fetched while it is running.
+ *
+ * <p>Polls block on Compute requests, so they run on a dedicated pool of daemon threads rather
+ * than on the executor shared by the asynchronous calls of the services.
+ */
+final class ComputeOperationPoller
+    extends OperationPoller<ComputeOperationPoller.Key, Operation> {
+
+  private static final int POLLER_THREADS = 4;
+
+  private static final ComputeOperationPoller INSTANCE = new ComputeOperationPoller();
+
+  /** Identifies an operation of a service. Keys of different services are never equal. */
+  static final class Key {
+
+    private final Compute compute;
+    private final OperationId operationId;
+
+    Key(Compute compute, OperationId operationId) {
+      this.compute = compute;
+      this.operationId = operationId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return compute == other.compute && operationId.equals(other.operationId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(compute), operationId);
+    }
+
+    @Override
+    public String toString() {
+      return operationId.toString();
+    }
+  }
+
+  private ComputeOperationPoller() {
+    super(
+        Executors.newScheduledThreadPool(
+            POLLER_THREADS,
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("compute-operation-poller-%d")
+                .build()),
+        CurrentMillisClock.getDefaultClock(),
+        Duration.ofMillis(100));
+  }
+
+  static ComputeOperationPoller getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  protected Map<Key, Operation> poll(Set<Key> keys, Map<Key, Throwable> failures) {
+    Map<Key, Operation> operations = new HashMap<>();
+    for (Key key : keys) {
+      try {
+        Operation operation =
+            key.compute.getOperation(
+                key.operationId, OperationOption.fields(Compute.OperationField.STATUS));
+        if (operation != null) {
+          operations.put(key, operation);
+        }
+      } catch (ComputeException e) {
+        if (e.isRetryable()) {
+          // Polled again later.
+          operations.put(key, null);
+        } else {
+          failures.put(key, e);
+        }
+      }
+    }
+    return operations;
+  }
+
+  @Override
+  protected boolean isDone(Operation operation) {
+    return operation.getStatus() == Operation.Status.DONE;
+  }
+
+  @Override
+  protected Operation onDone(Key key, Operation operation) {
+    // Fetches all the fields of the completed operation.
+    return key.compute.getOperation(key.operationId);
+  }
+}
@@ -18,6 +18,8 @@ package com.google.cloud.compute.deprecated;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
 import com.google.api.gax.retrying.BasicResultRetryAlgorithm;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.cloud.RetryHelper;
@@ -716,6 +718,24 @@ public class Operation implements Serializable {
     }
   }
 
+  /**
+   * Returns a future that completes with the operation's latest information once it completes its
+   * execution, or with {@code null} if the operation no longer exists. Unlike {@link
+   * #waitFor(RetryOption...)}, no thread is blocked while waiting: the operations waited for by all
+   * the futures are polled by a shared poller, which fetches only their status until they are done.
+   *
+   * @param waitOptions options to configure checking period and timeout
+   * @return a future that fails with a {@link ComputeException} upon failure, or with a {@link
+   *     com.google.api.gax.retrying.PollException} if the operation doesn't complete in time
+   */
+  @BetaApi
+  public ApiFuture<Operation> waitForAsync(RetryOption... waitOptions) {
+    RetrySettings waitSettings =
+        RetryOption.mergeToSettings(DEFAULT_OPERATION_WAIT_SETTINGS, waitOptions);
+    return ComputeOperationPoller.getInstance()
+        .watch(new ComputeOperationPoller.Key(compute, operationId), waitSettings);
+  }
+
   /**
    * Fetches current operation's latest information. Returns {@code null} if the operation does not
    * exist.
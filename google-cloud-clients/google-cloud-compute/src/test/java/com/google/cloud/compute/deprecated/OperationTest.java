@@ -380,6 +380,22 @@ public class OperationTest {
     verify(mockOptions);
   }
 
+  @Test
+  public void testWaitForAsync() throws Exception {
+    initializeExpectedOperation(4);
+    Compute.OperationOption[] expectedOptions =
+        {Compute.OperationOption.fields(Compute.OperationField.STATUS)};
+    Operation successOperation =
+        Operation.fromPb(serviceMockReturnsOptions, globalOperation.toPb().setError(null));
+    expect(compute.getOptions()).andReturn(mockOptions);
+    expect(compute.getOperation(GLOBAL_OPERATION_ID, expectedOptions)).andReturn(successOperation);
+    expect(compute.getOperation(GLOBAL_OPERATION_ID)).andReturn(successOperation);
+    replay(compute, mockOptions);
+    initializeOperation();
+    assertSame(successOperation, operation.waitForAsync().get());
+    verify(compute);
+  }
+
   @Test
   public void testWaitFor_Null() throws InterruptedException {
     initializeExpectedOperation(3);
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the progress of the bulk operations of {@link CloudStorageFileSystem}.
+ *
+ * <p>Objects are processed concurrently, so the methods of a listener may be called concurrently
+ * from several threads, and must be thread-safe.
+ *
+ * @see CloudStorageFileSystem#copyAll
+ * @see CloudStorageFileSystem#moveAll
+ * @see CloudStorageFileSystem#deleteAll
+ */
+public interface CloudStorageBulkListener {
+
+  /**
+   * Called after each rewrite call made to copy {@code source}, with the number of bytes copied
+   * so far and the size of the object.
+   */
+  void onProgress(Path source, long bytesCopied, long totalBytes);
+
+  /**
+   * Called once for each object, when the operation on it has succeeded or failed.
+   */
+  void onComplete(CloudStorageBulkResult result);
+}
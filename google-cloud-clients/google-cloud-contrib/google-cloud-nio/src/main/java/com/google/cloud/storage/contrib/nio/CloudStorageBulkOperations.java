@@ -0,0 +1,325 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.cloud.BatchResult;
+import com.google.cloud.storage.CopyWriter;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageBatch;
+import com.google.cloud.storage.StorageException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+/**
+ * Copies, moves and deletes many objects concurrently.
+ *
+ * <p>Each copy is a server-side rewrite, driven to completion by one of {@link
+ * CloudStorageConfiguration#bulkParallelism()} threads, so that many rewrites make progress at the
+ * same time. Deletes are sent in batches of up to {@value #MAX_BATCH_SIZE} objects, and batches are
+ * also sent concurrently. A failure only fails the object it concerns, and is reported in its
+ * {@link CloudStorageBulkResult}.
+ *
+ * @see CloudStorageFileSystem#copyAll
+ */
+final class CloudStorageBulkOperations {
+
+  // Cloud Storage accepts at most 100 calls in a batch request.
+  static final int MAX_BATCH_SIZE = 100;
+
+  private static final CloudStorageBulkListener NO_LISTENER =
+      new CloudStorageBulkListener() {
+        @Override
+        public void onProgress(Path source, long bytesCopied, long totalBytes) {}
+
+        @Override
+        public void onComplete(CloudStorageBulkResult result) {}
+      };
+
+  private final CloudStorageFileSystemProvider provider;
+  private final Storage storage;
+  private final int parallelism;
+  private final CloudStorageBulkListener listener;
+
+  CloudStorageBulkOperations(
+      CloudStorageFileSystemProvider provider,
+      Storage storage,
+      int parallelism,
+      @Nullable CloudStorageBulkListener listener) {
+    this.provider = provider;
+    this.storage = storage;
+    this.parallelism = parallelism;
+    this.listener = listener == null ? NO_LISTENER : listener;
+  }
+
+  /**
+   * Copies each key of {@code sourcesToTargets} to its value, and returns the results in the
+   * iteration order of the map.
+   */
+  List<CloudStorageBulkResult> copy(
+      Map<? extends Path, ? extends Path> sourcesToTargets, boolean replaceExisting) {
+    return copy(sourcesToTargets, replaceExisting, true);
+  }
+
+  /**
+   * Copies each key of {@code sourcesToTargets} to its value, then deletes the sources that were
+   * copied. A source whose copy failed is not deleted.
+   */
+  List<CloudStorageBulkResult> move(
+      Map<? extends Path, ? extends Path> sourcesToTargets, boolean replaceExisting) {
+    List<CloudStorageBulkResult> copies = copy(sourcesToTargets, replaceExisting, false);
+    List<Path> copied = new ArrayList<>();
+    for (CloudStorageBulkResult copy : copies) {
+      if (copy.isSuccess()) {
+        copied.add(copy.getSource());
+      }
+    }
+    Iterator<CloudStorageBulkResult> deletes = delete(copied, false).iterator();
+    List<CloudStorageBulkResult> results = new ArrayList<>(copies.size());
+    for (CloudStorageBulkResult copy : copies) {
+      CloudStorageBulkResult result = copy;
+      if (copy.isSuccess()) {
+        CloudStorageBulkResult delete = deletes.next();
+        if (!delete.isSuccess()) {
+          result = copy.withError(delete.getError());
+        }
+        listener.onComplete(result);
+      }
+      results.add(result);
+    }
+    return results;
+  }
+
+  /**
+   * Deletes {@code paths}, and returns the results in the same order. Deleting an object that
+   * doesn't exist fails with {@link NoSuchFileException}.
+   */
+  List<CloudStorageBulkResult> delete(List<? extends Path> paths) {
+    return delete(paths, true);
+  }
+
+  private List<CloudStorageBulkResult> copy(
+      Map<? extends Path, ? extends Path> sourcesToTargets,
+      final boolean replaceExisting,
+      final boolean notifySuccess) {
+    ExecutorService executor = newExecutor(sourcesToTargets.size());
+    try {
+      List<Future<CloudStorageBulkResult>> futures = new ArrayList<>(sourcesToTargets.size());
+      for (final Map.Entry<? extends Path, ? extends Path> entry : sourcesToTargets.entrySet()) {
+        futures.add(
+            executor.submit(
+                new Callable<CloudStorageBulkResult>() {
+                  @Override
+                  public CloudStorageBulkResult call() {
+                    CloudStorageBulkResult result =
+                        copyOne(entry.getKey(), entry.getValue(), replaceExisting);
+                    if (notifySuccess || !result.isSuccess()) {
+                      listener.onComplete(result);
+                    }
+                    return result;
+                  }
+                }));
+      }
+      return getAll(futures);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private CloudStorageBulkResult copyOne(Path source, Path target, boolean replaceExisting) {
+    CloudStoragePath fromPath = CloudStorageUtil.checkPath(source);
+    CloudStoragePath toPath = CloudStorageUtil.checkPath(target);
+    if (fromPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
+      return new CloudStorageBulkResult(
+          source, target, 0, new CloudStoragePseudoDirectoryException(fromPath));
+    }
+    if (toPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
+      return new CloudStorageBulkResult(
+          source, target, 0, new CloudStoragePseudoDirectoryException(toPath));
+    }
+    Storage.CopyRequest.Builder request =
+        Storage.CopyRequest.newBuilder().setSource(fromPath.getBlobId());
+    if (replaceExisting) {
+      request.setTarget(toPath.getBlobId());
+    } else {
+      request.setTarget(toPath.getBlobId(), Storage.BlobTargetOption.doesNotExist());
+    }
+    final CloudStorageRetryHandler retryHandler =
+        new CloudStorageRetryHandler(CloudStorageUtil.getMaxChannelReopensFromPath(source));
+    // Loop will terminate via an exception if all retries are exhausted
+    while (true) {
+      try {
+        // copy() makes the first rewrite call, and each copyChunk() continues the rewrite.
+        CopyWriter copyWriter;
+        try {
+          copyWriter = storage.copy(request.build());
+          listener.onProgress(source, copyWriter.getTotalBytesCopied(), copyWriter.getBlobSize());
+          while (!copyWriter.isDone()) {
+            copyWriter.copyChunk();
+            listener.onProgress(
+                source, copyWriter.getTotalBytesCopied(), copyWriter.getBlobSize());
+          }
+        } finally {
+          provider.invalidateMetadata(toPath.getBlobId());
+        }
+        return new CloudStorageBulkResult(source, target, copyWriter.getBlobSize(), null);
+      } catch (StorageException oops) {
+        try {
+          // Will rethrow a StorageException if all retries/reopens are exhausted
+          retryHandler.handleStorageException(oops);
+        } catch (StorageException retriesExhaustedException) {
+          return new CloudStorageBulkResult(
+              source,
+              target,
+              0,
+              CloudStorageFileSystemProvider.asIoException(retriesExhaustedException));
+        }
+      }
+    }
+  }
+
+  private List<CloudStorageBulkResult> delete(List<? extends Path> paths, final boolean notify) {
+    final CloudStorageBulkResult[] results = new CloudStorageBulkResult[paths.size()];
+    int batches = (paths.size() + MAX_BATCH_SIZE - 1) / MAX_BATCH_SIZE;
+    ExecutorService executor = newExecutor(batches);
+    try {
+      List<Future<Void>> futures = new ArrayList<>(batches);
+      for (int start = 0; start < paths.size(); start += MAX_BATCH_SIZE) {
+        final int offset = start;
+        final List<? extends Path> batch =
+            paths.subList(start, Math.min(start + MAX_BATCH_SIZE, paths.size()));
+        futures.add(
+            executor.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() {
+                    deleteBatch(batch, results, offset);
+                    if (notify) {
+                      for (int i = offset; i < offset + batch.size(); i++) {
+                        listener.onComplete(results[i]);
+                      }
+                    }
+                    return null;
+                  }
+                }));
+      }
+      getAll(futures);
+    } finally {
+      executor.shutdownNow();
+    }
+    return Arrays.asList(results);
+  }
+
+  private void deleteBatch(
+      List<? extends Path> paths, final CloudStorageBulkResult[] results, int offset) {
+    StorageBatch batch = storage.batch();
+    List<Integer> submitted = new ArrayList<>(paths.size());
+    for (int i = 0; i < paths.size(); i++) {
+      final Path path = paths.get(i);
+      final int index = offset + i;
+      final CloudStoragePath cloudPath = CloudStorageUtil.checkPath(path);
+      if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
+        results[index] =
+            new CloudStorageBulkResult(
+                path, null, 0, new CloudStoragePseudoDirectoryException(cloudPath));
+        continue;
+      }
+      batch
+          .delete(cloudPath.getBlobId())
+          .notify(
+              new BatchResult.Callback<Boolean, StorageException>() {
+                @Override
+                public void success(Boolean deleted) {
+                  results[index] =
+                      new CloudStorageBulkResult(
+                          path,
+                          null,
+                          0,
+                          deleted ? null : new NoSuchFileException(cloudPath.toString()));
+                }
+
+                @Override
+                public void error(StorageException exception) {
+                  results[index] =
+                      new CloudStorageBulkResult(
+                          path, null, 0, CloudStorageFileSystemProvider.asIoException(exception));
+                }
+              });
+      submitted.add(index);
+    }
+    if (submitted.isEmpty()) {
+      return;
+    }
+    try {
+      batch.submit();
+    } catch (StorageException oops) {
+      // The batch request itself failed, fail the deletes that didn't get a response.
+      IOException error = CloudStorageFileSystemProvider.asIoException(oops);
+      for (int index : submitted) {
+        if (results[index] == null) {
+          results[index] = new CloudStorageBulkResult(paths.get(index - offset), null, 0, error);
+        }
+      }
+    } finally {
+      for (int index : submitted) {
+        provider.invalidateMetadata(
+            CloudStorageUtil.checkPath(paths.get(index - offset)).getBlobId());
+      }
+    }
+  }
+
+  private ExecutorService newExecutor(int tasks) {
+    return Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, tasks)),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gcs-nio-bulk-%d").build());
+  }
+
+  private static <T> List<T> getAll(List<Future<T>> futures) {
+    List<T> results = new ArrayList<>(futures.size());
+    for (Future<T> future : futures) {
+      try {
+        results.add(Uninterruptibles.getUninterruptibly(future));
+      } catch (ExecutionException e) {
+        // Failures are reported in the results, so this is a bug or a listener failure.
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+    return results;
+  }
+}
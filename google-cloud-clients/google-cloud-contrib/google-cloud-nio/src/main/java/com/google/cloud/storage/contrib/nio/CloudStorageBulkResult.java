@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.common.base.MoreObjects;
+
+import java.nio.file.Path;
+
+import javax.annotation.Nullable;
+
+/**
+ * Outcome of a bulk operation of {@link CloudStorageFileSystem} on a single object.
+ */
+public final class CloudStorageBulkResult {
+
+  private final Path source;
+  @Nullable private final Path target;
+  private final long bytesCopied;
+  @Nullable private final Exception error;
+
+  CloudStorageBulkResult(
+      Path source, @Nullable Path target, long bytesCopied, @Nullable Exception error) {
+    this.source = source;
+    this.target = target;
+    this.bytesCopied = bytesCopied;
+    this.error = error;
+  }
+
+  /**
+   * Returns the path that was copied, moved or deleted.
+   */
+  public Path getSource() {
+    return source;
+  }
+
+  /**
+   * Returns the path {@link #getSource()} was copied or moved to, or {@code null} for a delete.
+   */
+  @Nullable
+  public Path getTarget() {
+    return target;
+  }
+
+  /**
+   * Returns the number of bytes copied, or zero for a delete or a failed copy.
+   */
+  public long getBytesCopied() {
+    return bytesCopied;
+  }
+
+  /**
+   * Returns {@code true} if the operation on this object succeeded.
+   */
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /**
+   * Returns why the operation on this object failed, or {@code null} if it succeeded. This is
+   * either an {@link java.io.IOException}, e.g. {@link java.nio.file.NoSuchFileException} or
+   * {@link java.nio.file.FileAlreadyExistsException}, or a {@link
+   * CloudStoragePseudoDirectoryException}.
+   */
+  @Nullable
+  public Exception getError() {
+    return error;
+  }
+
+  CloudStorageBulkResult withError(Exception error) {
+    return new CloudStorageBulkResult(source, target, bytesCopied, error);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("source", source)
+        .add("target", target)
+        .add("bytesCopied", bytesCopied)
+        .add("error", error)
+        .toString();
+  }
+}
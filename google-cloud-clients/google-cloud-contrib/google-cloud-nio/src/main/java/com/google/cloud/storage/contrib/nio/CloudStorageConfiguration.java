@@ -65,6 +65,35 @@ public abstract class CloudStorageConfiguration {
    */
   public abstract int maxChannelReopens();
 
+  /**
+   * Returns {@code true} if directory listings fetch the next page of results in the background
+   * while the current page is being iterated.
+   */
+  public abstract boolean prefetchListingPages();
+
+  /**
+   * Returns the number of pseudo-directories listed concurrently by {@link
+   * CloudStorageFileSystemProvider#walkFiles}.
+   */
+  public abstract int listingParallelism();
+
+  /**
+   * Returns for how long, in seconds, the metadata of listed objects is cached and used to answer
+   * attribute and access checks without an RPC. Zero disables the cache.
+   */
+  public abstract int metadataCacheTtlSeconds();
+
+  /**
+   * Returns the maximum number of objects whose metadata is cached.
+   */
+  public abstract int metadataCacheMaxEntries();
+
+  /**
+   * Returns the number of objects copied, moved or deleted concurrently by the bulk operations of
+   * {@link CloudStorageFileSystem}.
+   */
+  public abstract int bulkParallelism();
+
   /**
    * Creates a new builder, initialized with the following settings:
    *
@@ -73,6 +102,7 @@ public abstract class CloudStorageConfiguration {
    * <li>The prefix slash on absolute paths will be removed when converting to an object name.
    * <li>Pseudo-directories are enabled, so any path with a trailing slash is a fake directory.
    * <li>Channel re-opens are disabled.
+   * <li>Listing pages are not prefetched, and listed metadata is not cached.
    * </ul>
    */
   public static Builder builder() {
@@ -90,6 +120,11 @@ public abstract class CloudStorageConfiguration {
     private boolean usePseudoDirectories = true;
     private int blockSize = CloudStorageFileSystem.BLOCK_SIZE_DEFAULT;
     private int maxChannelReopens = 0;
+    private boolean prefetchListingPages;
+    private int listingParallelism = 8;
+    private int metadataCacheTtlSeconds;
+    private int metadataCacheMaxEntries = 100000;
+    private int bulkParallelism = 16;
 
     /**
      * Changes current working directory for new filesystem. This defaults to the root directory.
@@ -147,6 +182,59 @@ public abstract class CloudStorageConfiguration {
       return this;
     }
 
+    /**
+     * Configures whether directory listings fetch the next page of results in the background while
+     * the current page is being iterated. Disabled by default.
+     */
+    public Builder prefetchListingPages(boolean value) {
+      prefetchListingPages = value;
+      return this;
+    }
+
+    /**
+     * Sets the number of pseudo-directories listed concurrently by {@link
+     * CloudStorageFileSystemProvider#walkFiles}. The default is 8.
+     */
+    public Builder listingParallelism(int value) {
+      checkArgument(value > 0, "listingParallelism must be > 0: %s", value);
+      listingParallelism = value;
+      return this;
+    }
+
+    /**
+     * Sets for how long, in seconds, the metadata of listed objects is cached. While cached,
+     * {@link java.nio.file.Files#readAttributes}, {@link java.nio.file.Files#size} and {@link
+     * java.nio.file.Files#exists} on a listed file make no RPC, but may not reflect changes made
+     * by other clients. Changes made through the file system provider invalidate the cache. The
+     * default is 0, which disables the cache.
+     */
+    public Builder metadataCacheTtlSeconds(int value) {
+      checkArgument(value >= 0, "metadataCacheTtlSeconds must be >= 0: %s", value);
+      metadataCacheTtlSeconds = value;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of objects whose metadata is cached. The default is 100000.
+     */
+    public Builder metadataCacheMaxEntries(int value) {
+      checkArgument(value > 0, "metadataCacheMaxEntries must be > 0: %s", value);
+      metadataCacheMaxEntries = value;
+      return this;
+    }
+
+    /**
+     * Sets the number of objects copied, moved or deleted concurrently by {@link
+     * CloudStorageFileSystem#copyAll}, {@link CloudStorageFileSystem#moveAll} and {@link
+     * CloudStorageFileSystem#deleteAll}. For deletes, this is the number of concurrent batch
+     * requests. The default is 16.
+     */
+    public Builder bulkParallelism(int value) {
+      checkArgument(value > 0, "bulkParallelism must be > 0: %s", value);
+      bulkParallelism = value;
+      return this;
+    }
+
     /**
      * Creates new instance without destroying builder.
      */
@@ -157,7 +245,12 @@ public abstract class CloudStorageConfiguration {
           stripPrefixSlash,
           usePseudoDirectories,
           blockSize,
-          maxChannelReopens);
+          maxChannelReopens,
+          prefetchListingPages,
+          listingParallelism,
+          metadataCacheTtlSeconds,
+          metadataCacheMaxEntries,
+          bulkParallelism);
     }
 
     Builder(CloudStorageConfiguration toModify) {
@@ -167,6 +260,11 @@ public abstract class CloudStorageConfiguration {
       usePseudoDirectories = toModify.usePseudoDirectories();
       blockSize = toModify.blockSize();
       maxChannelReopens = toModify.maxChannelReopens();
+      prefetchListingPages = toModify.prefetchListingPages();
+      listingParallelism = toModify.listingParallelism();
+      metadataCacheTtlSeconds = toModify.metadataCacheTtlSeconds();
+      metadataCacheMaxEntries = toModify.metadataCacheMaxEntries();
+      bulkParallelism = toModify.bulkParallelism();
     }
 
     Builder() {}
@@ -201,6 +299,21 @@ public abstract class CloudStorageConfiguration {
         case "maxChannelReopens":
           builder.maxChannelReopens((Integer) entry.getValue());
           break;
+        case "prefetchListingPages":
+          builder.prefetchListingPages((Boolean) entry.getValue());
+          break;
+        case "listingParallelism":
+          builder.listingParallelism((Integer) entry.getValue());
+          break;
+        case "metadataCacheTtlSeconds":
+          builder.metadataCacheTtlSeconds((Integer) entry.getValue());
+          break;
+        case "metadataCacheMaxEntries":
+          builder.metadataCacheMaxEntries((Integer) entry.getValue());
+          break;
+        case "bulkParallelism":
+          builder.bulkParallelism((Integer) entry.getValue());
+          break;
         default:
           throw new IllegalArgumentException(entry.getKey());
       }
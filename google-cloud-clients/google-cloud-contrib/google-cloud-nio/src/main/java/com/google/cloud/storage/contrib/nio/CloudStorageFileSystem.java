@@ -25,14 +25,19 @@ import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.CopyOption;
 import java.nio.file.FileStore;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.WatchService;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -179,6 +184,85 @@ public final class CloudStorageFileSystem extends FileSystem {
     return CloudStoragePath.getPath(this, first, more);
   }
 
+  /**
+   * Copies each key of {@code sourcesToTargets} to its value, concurrently, and returns one result
+   * per entry, in the iteration order of the map.
+   *
+   * <p>Unlike {@link java.nio.file.Files#copy(Path, Path, CopyOption...)}, which waits for each
+   * object to be copied before starting the next one, up to {@link
+   * CloudStorageConfiguration#bulkParallelism()} objects are rewritten at the same time. Failing to
+   * copy an object doesn't stop the others: the failure is reported in its result. The metadata of
+   * each source object is copied to its target.
+   *
+   * @param listener if not {@code null}, notified of the progress of each copy and of each result
+   * @param options only {@link StandardCopyOption#REPLACE_EXISTING} is supported. Without it,
+   *     copying over an existing object fails with {@link java.nio.file.FileAlreadyExistsException}
+   * @throws java.nio.file.ProviderMismatchException if a path isn't a Cloud Storage path
+   */
+  public List<CloudStorageBulkResult> copyAll(
+      Map<? extends Path, ? extends Path> sourcesToTargets,
+      @Nullable CloudStorageBulkListener listener,
+      CopyOption... options) {
+    boolean replaceExisting = checkBulkOptions(sourcesToTargets, options);
+    return provider.bulkOperations(config, listener).copy(sourcesToTargets, replaceExisting);
+  }
+
+  /**
+   * Moves each key of {@code sourcesToTargets} to its value, concurrently, and returns one result
+   * per entry, in the iteration order of the map.
+   *
+   * <p>All objects are copied as by {@link #copyAll}, then the sources that were copied are deleted
+   * in batches. A source whose copy failed is left in place. A move is not atomic: if deleting the
+   * source fails, the result reports the failure but the target has been written.
+   *
+   * @param listener if not {@code null}, notified of the progress of each copy and of each result
+   * @param options only {@link StandardCopyOption#REPLACE_EXISTING} is supported
+   * @throws java.nio.file.ProviderMismatchException if a path isn't a Cloud Storage path
+   */
+  public List<CloudStorageBulkResult> moveAll(
+      Map<? extends Path, ? extends Path> sourcesToTargets,
+      @Nullable CloudStorageBulkListener listener,
+      CopyOption... options) {
+    boolean replaceExisting = checkBulkOptions(sourcesToTargets, options);
+    return provider.bulkOperations(config, listener).move(sourcesToTargets, replaceExisting);
+  }
+
+  /**
+   * Deletes {@code paths} and returns one result per path, in the same order.
+   *
+   * <p>Objects are deleted in batch requests of up to 100 objects, and up to {@link
+   * CloudStorageConfiguration#bulkParallelism()} batch requests are sent at the same time.
+   * Deleting an object that doesn't exist fails with {@link java.nio.file.NoSuchFileException}, and
+   * deleting a pseudo-directory fails with {@link CloudStoragePseudoDirectoryException}.
+   *
+   * @param listener if not {@code null}, notified of each result
+   * @throws java.nio.file.ProviderMismatchException if a path isn't a Cloud Storage path
+   */
+  public List<CloudStorageBulkResult> deleteAll(
+      Iterable<? extends Path> paths, @Nullable CloudStorageBulkListener listener) {
+    List<Path> toDelete = new ArrayList<>();
+    for (Path path : paths) {
+      toDelete.add(CloudStorageUtil.checkPath(path));
+    }
+    return provider.bulkOperations(config, listener).delete(toDelete);
+  }
+
+  private static boolean checkBulkOptions(
+      Map<? extends Path, ? extends Path> sourcesToTargets, CopyOption... options) {
+    for (Map.Entry<? extends Path, ? extends Path> entry : sourcesToTargets.entrySet()) {
+      CloudStorageUtil.checkPath(entry.getKey());
+      CloudStorageUtil.checkPath(entry.getValue());
+    }
+    boolean replaceExisting = false;
+    for (CopyOption option : options) {
+      if (option != StandardCopyOption.REPLACE_EXISTING) {
+        throw new UnsupportedOperationException(option.toString());
+      }
+      replaceExisting = true;
+    }
+    return replaceExisting;
+  }
+
   /**
    * Does nothing currently. This method <i>might</i> be updated in the future to close all channels
    * associated with this file system object. However it's unlikely that even then, calling this
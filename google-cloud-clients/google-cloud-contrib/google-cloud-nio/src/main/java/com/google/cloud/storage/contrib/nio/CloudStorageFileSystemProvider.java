@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import com.google.api.gax.paging.Page;
 import com.google.auto.service.AutoService;
 import com.google.cloud.storage.Acl;
 import com.google.cloud.storage.Blob;
@@ -35,6 +36,8 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.net.UrlEscapers;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
@@ -69,6 +72,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -87,8 +95,15 @@ import javax.inject.Singleton;
 @AutoService(FileSystemProvider.class)
 public final class CloudStorageFileSystemProvider extends FileSystemProvider {
 
+  // Fetches the next page of directory listings in the background, see prefetchListingPages.
+  private static final ExecutorService LISTING_EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("gcs-nio-listing-%d").build());
+
   private Storage storage;
   private StorageOptions storageOptions;
+  // Shared by all the file systems of this provider, created by the first one that enables it.
+  private volatile CloudStorageMetadataCache metadataCache;
 
   // used only when we create a new instance of CloudStorageFileSystemProvider.
   private static StorageOptions futureStorageOptions;
@@ -98,21 +113,28 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     private final Filter<? super Path> filter;
     private final CloudStorageFileSystem fileSystem;
     private final String prefix;
+    @Nullable private final CloudStorageMetadataCache metadataCache;
 
     LazyPathIterator(CloudStorageFileSystem fileSystem,
                      String prefix,
                      Iterator<Blob> blobIterator,
-                     Filter<? super Path> filter) {
+                     Filter<? super Path> filter,
+                     @Nullable CloudStorageMetadataCache metadataCache) {
       this.prefix = prefix;
       this.blobIterator = blobIterator;
       this.filter = filter;
       this.fileSystem = fileSystem;
+      this.metadataCache = metadataCache;
     }
 
     @Override
     protected Path computeNext() {
       while (blobIterator.hasNext()) {
-        Path path = fileSystem.getPath(blobIterator.next().getName());
+        Blob blob = blobIterator.next();
+        if (metadataCache != null) {
+          metadataCache.put(blob);
+        }
+        Path path = fileSystem.getPath(blob.getName());
         try {
           if (path.toString().equals(prefix)) {
             // do not return ourselves, because that confuses recursive descents.
@@ -129,6 +151,53 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     }
   }
 
+  /**
+   * Iterates over the blobs of a listing, fetching the next page in the background while the
+   * current one is being iterated.
+   */
+  private static class PrefetchingBlobIterator extends AbstractIterator<Blob> {
+    private Iterator<Blob> current;
+    @Nullable private Future<Page<Blob>> nextPage;
+
+    PrefetchingBlobIterator(Page<Blob> firstPage) {
+      this.current = firstPage.getValues().iterator();
+      this.nextPage = prefetch(firstPage);
+    }
+
+    @Override
+    protected Blob computeNext() {
+      while (!current.hasNext()) {
+        if (nextPage == null) {
+          return endOfData();
+        }
+        Page<Blob> page;
+        try {
+          page = Uninterruptibles.getUninterruptibly(nextPage);
+        } catch (ExecutionException e) {
+          Throwables.propagateIfPossible(e.getCause());
+          throw new DirectoryIteratorException(new IOException(e.getCause()));
+        }
+        current = page.getValues().iterator();
+        nextPage = prefetch(page);
+      }
+      return current.next();
+    }
+
+    @Nullable
+    private static Future<Page<Blob>> prefetch(final Page<Blob> page) {
+      if (!page.hasNextPage()) {
+        return null;
+      }
+      return LISTING_EXECUTOR.submit(
+          new Callable<Page<Blob>>() {
+            @Override
+            public Page<Blob> call() {
+              return page.getNextPage();
+            }
+          });
+    }
+  }
+
   /**
    * Sets options that are only used by the constructor.
    */
@@ -311,7 +380,7 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     if (cloudPath.seemsLikeADirectoryAndUsePseudoDirectories()) {
       throw new CloudStoragePseudoDirectoryException(cloudPath);
     }
-    BlobId file = cloudPath.getBlobId();
+    final BlobId file = cloudPath.getBlobId();
     BlobInfo.Builder infoBuilder = BlobInfo.newBuilder(file);
     List<Storage.BlobWriteOption> writeOptions = new ArrayList<>();
     List<Acl> acls = new ArrayList<>();
@@ -372,7 +441,14 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     try {
       return new CloudStorageWriteChannel(
           storage.writer(infoBuilder.build(),
-              writeOptions.toArray(new Storage.BlobWriteOption[writeOptions.size()])));
+              writeOptions.toArray(new Storage.BlobWriteOption[writeOptions.size()])),
+          new Runnable() {
+            @Override
+            public void run() {
+              // The object is only replaced once the upload is finished by closing the channel.
+              invalidateMetadata(file);
+            }
+          });
     } catch (StorageException oops) {
       throw asIoException(oops);
     }
@@ -413,7 +489,11 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     // Loop will terminate via an exception if all retries are exhausted
     while (true) {
       try {
-        return storage.delete(cloudPath.getBlobId());
+        try {
+          return storage.delete(cloudPath.getBlobId());
+        } finally {
+          invalidateMetadata(cloudPath.getBlobId());
+        }
       } catch (StorageException exs) {
         // Will rethrow a StorageException if all retries/reopens are exhausted
         retryHandler.handleStorageException(exs);
@@ -560,8 +640,12 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
         } else {
           copyReqBuilder = copyReqBuilder.setTarget(tgtInfo, Storage.BlobTargetOption.doesNotExist());
         }
-        CopyWriter copyWriter = storage.copy(copyReqBuilder.build());
-        copyWriter.getResult();
+        try {
+          CopyWriter copyWriter = storage.copy(copyReqBuilder.build());
+          copyWriter.getResult();
+        } finally {
+          invalidateMetadata(toPath.getBlobId());
+        }
         break;
       } catch ( StorageException oops ) {
         try {
@@ -611,6 +695,9 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
         if ( cloudPath.seemsLikeADirectoryAndUsePseudoDirectories() ) {
           return;
         }
+        if ( cachedMetadata(cloudPath) != null ) {
+          return;
+        }
         if ( storage.get(cloudPath.getBlobId(), Storage.BlobGetOption.fields(Storage.BlobField.ID))
                 == null ) {
           throw new NoSuchFileException(path.toString());
@@ -644,7 +731,10 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
           A result = (A) new CloudStoragePseudoDirectoryAttributes(cloudPath);
           return result;
         }
-        BlobInfo blobInfo = storage.get(cloudPath.getBlobId());
+        BlobInfo blobInfo = cachedMetadata(cloudPath);
+        if ( blobInfo == null ) {
+          blobInfo = storage.get(cloudPath.getBlobId());
+        }
         // null size indicate a file that we haven't closed yet, so GCS treats it as not there yet.
         if ( null == blobInfo || blobInfo.getSize() == null ) {
           throw new NoSuchFileException(
@@ -705,13 +795,23 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     while (true) {
       try {
         final String prefix = cloudPath.toRealPath().toString();
-        final Iterator<Blob> blobIterator = storage.list(cloudPath.bucket(),
+        CloudStorageConfiguration config = cloudPath.getFileSystem().config();
+        final CloudStorageMetadataCache cache = metadataCache(config);
+        // The full metadata of the listed objects is only needed to cache it.
+        Page<Blob> page = cache == null
+            ? storage.list(cloudPath.bucket(),
                 Storage.BlobListOption.prefix(prefix), Storage.BlobListOption.currentDirectory(),
-                Storage.BlobListOption.fields()).iterateAll().iterator();
+                Storage.BlobListOption.fields())
+            : storage.list(cloudPath.bucket(),
+                Storage.BlobListOption.prefix(prefix), Storage.BlobListOption.currentDirectory());
+        final Iterator<Blob> blobIterator = config.prefetchListingPages()
+            ? new PrefetchingBlobIterator(page)
+            : page.iterateAll().iterator();
         return new DirectoryStream<Path>() {
           @Override
           public Iterator<Path> iterator() {
-            return new LazyPathIterator(cloudPath.getFileSystem(), prefix, blobIterator, filter);
+            return new LazyPathIterator(
+                cloudPath.getFileSystem(), prefix, blobIterator, filter, cache);
           }
 
           @Override
@@ -727,6 +827,33 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     }
   }
 
+  /**
+   * Returns the files under {@code dir}, at any depth, in no particular order. Unlike walking the
+   * tree with {@link Files#walkFileTree}, pseudo-directories are listed concurrently, by up to
+   * {@link CloudStorageConfiguration#listingParallelism()} threads, and files are returned as soon
+   * as they are listed. Pseudo-directories themselves are not returned.
+   *
+   * <p>If {@link CloudStorageConfiguration#metadataCacheTtlSeconds()} is set, the metadata of the
+   * returned files is cached, so that reading their attributes afterwards makes no RPC.
+   *
+   * <p>The returned stream must be closed, which stops the listing if it is still running.
+   */
+  public DirectoryStream<Path> walkFiles(Path dir, Filter<? super Path> filter) {
+    CloudStoragePath cloudPath = CloudStorageUtil.checkPath(dir);
+    checkNotNull(filter);
+    initStorage();
+    String prefix = cloudPath.toRealPath().toString();
+    if (!prefix.isEmpty() && !prefix.endsWith(cloudPath.getFileSystem().getSeparator())) {
+      prefix += cloudPath.getFileSystem().getSeparator();
+    }
+    return new CloudStorageFileWalker(
+        storage,
+        cloudPath.getFileSystem(),
+        prefix,
+        filter,
+        metadataCache(cloudPath.getFileSystem().config()));
+  }
+
   /**
    * Throws {@link UnsupportedOperationException} because Cloud Storage objects are immutable.
    */
@@ -761,7 +888,45 @@ public final class CloudStorageFileSystemProvider extends FileSystemProvider {
     return MoreObjects.toStringHelper(this).add("storage", storage).toString();
   }
 
-  private IOException asIoException(StorageException oops) {
+  /** Returns the metadata cache, or {@code null} if {@code config} doesn't enable it. */
+  @Nullable
+  private CloudStorageMetadataCache metadataCache(CloudStorageConfiguration config) {
+    if (config.metadataCacheTtlSeconds() == 0) {
+      return null;
+    }
+    if (metadataCache == null) {
+      synchronized (this) {
+        if (metadataCache == null) {
+          metadataCache = new CloudStorageMetadataCache(
+              config.metadataCacheMaxEntries(), config.metadataCacheTtlSeconds());
+        }
+      }
+    }
+    return metadataCache;
+  }
+
+  /** Returns bulk operations that run with the parallelism of {@code config}. */
+  CloudStorageBulkOperations bulkOperations(
+      CloudStorageConfiguration config, @Nullable CloudStorageBulkListener listener) {
+    initStorage();
+    return new CloudStorageBulkOperations(this, storage, config.bulkParallelism(), listener);
+  }
+
+  @Nullable
+  private BlobInfo cachedMetadata(CloudStoragePath cloudPath) {
+    CloudStorageMetadataCache cache = metadataCache(cloudPath.getFileSystem().config());
+    return cache == null ? null : cache.get(cloudPath.getBlobId());
+  }
+
+  void invalidateMetadata(BlobId blobId) {
+    // Invalidate even if the path's own file system doesn't use the cache, others might.
+    CloudStorageMetadataCache cache = metadataCache;
+    if (cache != null) {
+      cache.invalidate(blobId);
+    }
+  }
+
+  static IOException asIoException(StorageException oops) {
     // RPC API can only throw StorageException, but CloudStorageFileSystemProvider
     // can only throw IOException. Square peg, round hole.
     // TODO(#810): Research if other codes should be translated similarly.
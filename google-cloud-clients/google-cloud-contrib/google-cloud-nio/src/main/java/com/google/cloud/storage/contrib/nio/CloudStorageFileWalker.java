@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.Storage;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Lists all the files under a prefix, at any depth, listing pseudo-directories concurrently.
+ *
+ * <p>Each pseudo-directory is listed with a delimiter by one of {@link
+ * CloudStorageConfiguration#listingParallelism()} threads, and the pseudo-directories it contains
+ * are queued to be listed in turn. Files are handed to the caller through a bounded queue as soon
+ * as they're listed, so listing stops making progress when the caller stops iterating. The threads
+ * are released once everything is listed, or when the stream is closed.
+ *
+ * @see CloudStorageFileSystemProvider#walkFiles
+ */
+final class CloudStorageFileWalker implements DirectoryStream<Path> {
+
+  private static final int QUEUE_CAPACITY = 10000;
+  private static final Object END = new Object();
+
+  private final Storage storage;
+  private final CloudStorageFileSystem fileSystem;
+  private final Filter<? super Path> filter;
+  @Nullable private final CloudStorageMetadataCache metadataCache;
+  private final ExecutorService executor;
+  private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+  private final AtomicInteger pendingDirectories = new AtomicInteger();
+  private final AtomicBoolean iteratorReturned = new AtomicBoolean();
+  private volatile boolean closed;
+
+  CloudStorageFileWalker(
+      Storage storage,
+      CloudStorageFileSystem fileSystem,
+      String prefix,
+      Filter<? super Path> filter,
+      @Nullable CloudStorageMetadataCache metadataCache) {
+    this.storage = storage;
+    this.fileSystem = fileSystem;
+    this.filter = filter;
+    this.metadataCache = metadataCache;
+    this.executor =
+        Executors.newFixedThreadPool(
+            fileSystem.config().listingParallelism(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("gcs-nio-walker-%d")
+                .build());
+    listDirectory(prefix);
+  }
+
+  @Override
+  public Iterator<Path> iterator() {
+    if (!iteratorReturned.compareAndSet(false, true)) {
+      throw new IllegalStateException("Iterator already obtained");
+    }
+    return new AbstractIterator<Path>() {
+      @Override
+      protected Path computeNext() {
+        while (!closed) {
+          Object item;
+          try {
+            item = queue.take();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DirectoryIteratorException(new IOException("Interrupted while listing", e));
+          }
+          if (item == END) {
+            break;
+          }
+          if (item instanceof RuntimeException) {
+            RuntimeException e = (RuntimeException) item;
+            throw new DirectoryIteratorException(new IOException(e.getMessage(), e));
+          }
+          Path path = (Path) item;
+          try {
+            if (filter.accept(path)) {
+              return path;
+            }
+          } catch (IOException e) {
+            throw new DirectoryIteratorException(e);
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  /** Stops listing. */
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+    queue.clear();
+  }
+
+  private void listDirectory(final String prefix) {
+    pendingDirectories.incrementAndGet();
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              for (Blob blob :
+                  storage.list(fileSystem.bucket(), listOptions(prefix)).iterateAll()) {
+                if (closed) {
+                  return;
+                }
+                String name = blob.getName();
+                if (name.equals(prefix)) {
+                  // Placeholder object of the directory being listed.
+                  continue;
+                }
+                if (blob.isDirectory() || name.endsWith(fileSystem.getSeparator())) {
+                  listDirectory(name);
+                  continue;
+                }
+                if (metadataCache != null) {
+                  metadataCache.put(blob);
+                }
+                queue.put(fileSystem.getPath(name));
+              }
+            } catch (RuntimeException e) {
+              offer(e);
+            } catch (InterruptedException e) {
+              // The stream was closed.
+            } finally {
+              if (pendingDirectories.decrementAndGet() == 0) {
+                // Nothing is left to list, so release the threads even if the stream isn't closed.
+                executor.shutdown();
+                offer(END);
+              }
+            }
+          }
+        });
+  }
+
+  private Storage.BlobListOption[] listOptions(String prefix) {
+    List<Storage.BlobListOption> options = new ArrayList<>();
+    options.add(Storage.BlobListOption.prefix(prefix));
+    options.add(Storage.BlobListOption.currentDirectory());
+    if (metadataCache == null) {
+      // Only the names are needed if the metadata isn't cached.
+      options.add(Storage.BlobListOption.fields());
+    }
+    return options.toArray(new Storage.BlobListOption[options.size()]);
+  }
+
+  private void offer(Object item) {
+    try {
+      if (!closed) {
+        queue.put(item);
+      }
+    } catch (InterruptedException e) {
+      // The stream was closed.
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio;
+
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Bounded cache of the metadata of objects seen in directory listings, so that checking the
+ * attributes of a file that was just listed doesn't need another RPC.
+ *
+ * <p>Entries expire a fixed time after they were listed. Only files are cached: a miss doesn't mean
+ * the file doesn't exist, so callers fall back to fetching the metadata.
+ */
+@ThreadSafe
+final class CloudStorageMetadataCache {
+
+  private final Cache<BlobId, BlobInfo> cache;
+
+  CloudStorageMetadataCache(int maxEntries, int ttlSeconds) {
+    this(maxEntries, ttlSeconds, Ticker.systemTicker());
+  }
+
+  CloudStorageMetadataCache(int maxEntries, int ttlSeconds, Ticker ticker) {
+    cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+  }
+
+  /** Returns the cached metadata of the latest generation of {@code blobId}, if any. */
+  @Nullable
+  BlobInfo get(BlobId blobId) {
+    return cache.getIfPresent(key(blobId));
+  }
+
+  /** Caches {@code blobInfo}, unless it describes a directory or an incomplete upload. */
+  void put(BlobInfo blobInfo) {
+    if (blobInfo.isDirectory() || blobInfo.getSize() == null) {
+      return;
+    }
+    cache.put(key(blobInfo.getBlobId()), blobInfo);
+  }
+
+  /** Drops the cached metadata of {@code blobId}, after it was changed or deleted. */
+  void invalidate(BlobId blobId) {
+    cache.invalidate(key(blobId));
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  long missCount() {
+    return cache.stats().missCount();
+  }
+
+  private static BlobId key(BlobId blobId) {
+    return blobId.getGeneration() == null
+        ? blobId
+        : BlobId.of(blobId.getBucket(), blobId.getName());
+  }
+}
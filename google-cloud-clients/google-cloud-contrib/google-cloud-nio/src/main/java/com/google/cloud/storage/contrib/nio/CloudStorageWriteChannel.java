@@ -24,6 +24,7 @@ import java.nio.channels.ClosedChannelException;
 import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.SeekableByteChannel;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -37,11 +38,18 @@ import javax.annotation.concurrent.ThreadSafe;
 final class CloudStorageWriteChannel implements SeekableByteChannel {
 
   private final WriteChannel channel;
+  @Nullable private final Runnable closeListener;
   private long position;
   private long size;
 
   CloudStorageWriteChannel(WriteChannel channel) {
+    this(channel, null);
+  }
+
+  /** Creates a channel that runs {@code closeListener} after the channel is closed. */
+  CloudStorageWriteChannel(WriteChannel channel, @Nullable Runnable closeListener) {
     this.channel = channel;
+    this.closeListener = closeListener;
   }
 
   @Override
@@ -54,7 +62,13 @@ final class CloudStorageWriteChannel implements SeekableByteChannel {
   @Override
   public void close() throws IOException {
     synchronized (this) {
-      channel.close();
+      try {
+        channel.close();
+      } finally {
+        if (closeListener != null) {
+          closeListener.run();
+        }
+      }
     }
   }
 
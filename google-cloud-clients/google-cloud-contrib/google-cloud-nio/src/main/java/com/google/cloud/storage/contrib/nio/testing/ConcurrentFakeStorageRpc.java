@@ -0,0 +1,908 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio.testing;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.util.DateTime;
+import com.google.api.services.storage.model.Bucket;
+import com.google.api.services.storage.model.BucketAccessControl;
+import com.google.api.services.storage.model.Notification;
+import com.google.api.services.storage.model.ObjectAccessControl;
+import com.google.api.services.storage.model.Policy;
+import com.google.api.services.storage.model.ServiceAccount;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.api.services.storage.model.TestIamPermissionsResponse;
+import com.google.cloud.Tuple;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.spi.v1.RpcBatch;
+import com.google.cloud.storage.spi.v1.StorageRpc;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Striped;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A thread-safe in-memory implementation of StorageRpc, meant for tests and benchmarks that read
+ * and write objects from many threads.
+ *
+ * <p>Objects are kept in a sorted concurrent map per bucket and are replaced as a whole when a new
+ * generation is written, so readers never block and always see a complete generation. Writes to
+ * the same object are serialized by a lock picked from a fixed set of lock stripes, which is where
+ * generation and metageneration preconditions are checked. Object contents are stored in direct
+ * (off-heap) byte buffers of a fixed chunk size; ranged reads only copy the requested bytes, and
+ * copies and compositions share the chunks of their sources.
+ *
+ * <ul>
+ * <li>Supported
+ *   <ul>
+ *   <li>bucket create, get, delete and list
+ *   <li>object create, get, patch, delete, compose and rewrite
+ *   <li>list the contents of a bucket, with prefix, delimiter and paging
+ *   <li>resumable uploads and ranged reads
+ *   <li>generations, metagenerations and their preconditions
+ *   <li>checksums, etags
+ *   <li>createBatch
+ *   </ul>
+ * <li>Unsupported
+ *   <ul>
+ *   <li>bucket patch
+ *   <li>object versioning (only the latest generation is kept)
+ *   <li>ACL, IAM and notification operations
+ *   </ul>
+ * </ul>
+ *
+ * <p>Buckets are created implicitly when an object is first written to them.
+ */
+@ThreadSafe
+class ConcurrentFakeStorageRpc implements StorageRpc {
+
+  static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+  private static final int LOCK_STRIPES = 64;
+
+  private final int chunkSize;
+  private final ConcurrentMap<String, BucketEntry> buckets = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Upload> uploads = new ConcurrentHashMap<>();
+  private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+  private final AtomicLong lastGeneration = new AtomicLong();
+
+  ConcurrentFakeStorageRpc() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  ConcurrentFakeStorageRpc(int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be > 0");
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  // remove all buckets, objects and pending uploads
+  void reset() {
+    buckets.clear();
+    uploads.clear();
+  }
+
+  @Override
+  public Bucket create(Bucket bucket, Map<Option, ?> options) throws StorageException {
+    BucketEntry entry = new BucketEntry(newBucket(bucket.getName(), bucket));
+    if (buckets.putIfAbsent(bucket.getName(), entry) != null) {
+      throw new StorageException(409, "Bucket already exists: " + bucket.getName());
+    }
+    return entry.bucket.clone();
+  }
+
+  @Override
+  public StorageObject create(StorageObject object, InputStream content, Map<Option, ?> options)
+      throws StorageException {
+    checkPreconditions(fullname(object), getEntry(object), options, false);
+    ContentWriter writer = new ContentWriter(chunkSize);
+    byte[] buffer = new byte[8192];
+    try {
+      int read;
+      while ((read = content.read(buffer)) != -1) {
+        writer.write(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new StorageException(e);
+    }
+    return commit(object, writer.finish(), writer.crc32c(), writer.md5(), options);
+  }
+
+  @Override
+  public Tuple<String, Iterable<Bucket>> list(Map<Option, ?> options) throws StorageException {
+    String prefix = (String) options.get(Option.PREFIX);
+    List<Bucket> values = new ArrayList<>();
+    for (BucketEntry entry : buckets.values()) {
+      if (prefix == null || entry.bucket.getName().startsWith(prefix)) {
+        values.add(entry.bucket.clone());
+      }
+    }
+    return Tuple.of(null, (Iterable<Bucket>) values);
+  }
+
+  @Override
+  public Tuple<String, Iterable<StorageObject>> list(String bucket, Map<Option, ?> options)
+      throws StorageException {
+    BucketEntry bucketEntry = buckets.get(bucket);
+    if (bucketEntry == null) {
+      throw new StorageException(404, "Bucket not found: " + bucket);
+    }
+    String prefix = (String) options.get(Option.PREFIX);
+    if (prefix == null) {
+      prefix = "";
+    }
+    String delimiter = (String) options.get(Option.DELIMITER);
+    String pageToken = (String) options.get(Option.PAGE_TOKEN);
+    Long maxResults = (Long) options.get(Option.MAX_RESULTS);
+    long limit = maxResults == null ? Long.MAX_VALUE : maxResults;
+
+    ConcurrentNavigableMap<String, ObjectEntry> candidates =
+        pageToken == null
+            ? bucketEntry.objects.tailMap(prefix, true)
+            : bucketEntry.objects.tailMap(pageToken, false);
+    List<StorageObject> values = new ArrayList<>();
+    List<StorageObject> folders = new ArrayList<>();
+    String lastFolder =
+        delimiter != null && pageToken != null && pageToken.endsWith(delimiter) ? pageToken : null;
+    String lastName = null;
+    String nextPageToken = null;
+    for (Map.Entry<String, ObjectEntry> candidate : candidates.entrySet()) {
+      String name = candidate.getKey();
+      if (!name.startsWith(prefix)) {
+        break;
+      }
+      String folder = null;
+      if (delimiter != null) {
+        int index = name.indexOf(delimiter, prefix.length());
+        if (index >= 0) {
+          folder = name.substring(0, index + delimiter.length());
+          if (folder.equals(lastFolder)) {
+            continue;
+          }
+        }
+      }
+      if (values.size() + folders.size() >= limit) {
+        nextPageToken = lastName;
+        break;
+      }
+      if (folder != null) {
+        folders.add(
+            new StorageObject()
+                .set("isDirectory", true)
+                .setBucket(bucket)
+                .setName(folder)
+                .setSize(BigInteger.ZERO));
+        lastFolder = folder;
+        lastName = folder;
+      } else {
+        values.add(candidate.getValue().metadata.clone());
+        lastName = name;
+      }
+    }
+    values.addAll(folders);
+    return Tuple.of(nextPageToken, (Iterable<StorageObject>) values);
+  }
+
+  /**
+   * Returns the requested bucket or {@code null} if not found.
+   */
+  @Override
+  public Bucket get(Bucket bucket, Map<Option, ?> options) throws StorageException {
+    BucketEntry entry = buckets.get(bucket.getName());
+    return entry == null ? null : entry.bucket.clone();
+  }
+
+  /**
+   * Returns the requested storage object or {@code null} if not found.
+   */
+  @Override
+  public StorageObject get(StorageObject object, Map<Option, ?> options) throws StorageException {
+    ObjectEntry entry = getEntry(object);
+    if (entry == null) {
+      return null;
+    }
+    checkPreconditions(fullname(object), entry, options, false);
+    return entry.metadata.clone();
+  }
+
+  @Override
+  public Bucket patch(Bucket bucket, Map<Option, ?> options) throws StorageException {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public StorageObject patch(StorageObject storageObject, Map<Option, ?> options)
+      throws StorageException {
+    BucketEntry bucketEntry = buckets.get(storageObject.getBucket());
+    String key = fullname(storageObject);
+    Lock lock = locks.get(key);
+    lock.lock();
+    try {
+      ObjectEntry current = getEntry(storageObject);
+      if (bucketEntry == null || current == null) {
+        throw new StorageException(404, "Object not found: " + key);
+      }
+      checkPreconditions(key, current, options, false);
+      StorageObject metadata = current.metadata.clone();
+      metadata.setContentType(storageObject.getContentType());
+      metadata.setContentEncoding(storageObject.getContentEncoding());
+      metadata.setContentDisposition(storageObject.getContentDisposition());
+      metadata.setContentLanguage(storageObject.getContentLanguage());
+      metadata.setCacheControl(storageObject.getCacheControl());
+      metadata.setMetadata(storageObject.getMetadata());
+      metadata.setMetageneration(current.metadata.getMetageneration() + 1);
+      metadata.setUpdated(new DateTime(System.currentTimeMillis()));
+      bucketEntry.objects.put(storageObject.getName(), new ObjectEntry(metadata, current.content));
+      return metadata.clone();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean delete(Bucket bucket, Map<Option, ?> options) throws StorageException {
+    BucketEntry entry = buckets.get(bucket.getName());
+    if (entry == null) {
+      return false;
+    }
+    if (!entry.objects.isEmpty()) {
+      throw new StorageException(409, "Bucket is not empty: " + bucket.getName());
+    }
+    return buckets.remove(bucket.getName(), entry);
+  }
+
+  @Override
+  public boolean delete(StorageObject object, Map<Option, ?> options) throws StorageException {
+    BucketEntry bucketEntry = buckets.get(object.getBucket());
+    String key = fullname(object);
+    Lock lock = locks.get(key);
+    lock.lock();
+    try {
+      ObjectEntry current = getEntry(object);
+      if (bucketEntry == null || current == null) {
+        return false;
+      }
+      checkPreconditions(key, current, options, false);
+      return bucketEntry.objects.remove(object.getName(), current);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public RpcBatch createBatch() {
+    return new FakeRpcBatch();
+  }
+
+  @Override
+  public StorageObject compose(Iterable<StorageObject> sources, StorageObject target,
+                               Map<Option, ?> targetOptions) throws StorageException {
+    List<Content> contents = new ArrayList<>();
+    for (StorageObject source : sources) {
+      StorageObject sourceObject =
+          new StorageObject()
+              .setBucket(target.getBucket())
+              .setName(source.getName())
+              .setGeneration(source.getGeneration());
+      ObjectEntry entry = getEntry(sourceObject);
+      if (entry == null) {
+        throw new StorageException(404, "Object not found: " + fullname(sourceObject));
+      }
+      contents.add(entry.content);
+    }
+    Content content = Content.concat(contents);
+    // Like Cloud Storage, composite objects have a CRC32C checksum but no MD5 hash.
+    return commit(target, content, content.crc32c(), null, targetOptions);
+  }
+
+  @Override
+  public byte[] load(StorageObject storageObject, Map<Option, ?> options) throws StorageException {
+    ObjectEntry entry = getExistingEntry(storageObject, options);
+    if (entry.content.size() > Integer.MAX_VALUE) {
+      throw new StorageException(400, "Object too large to load: " + fullname(storageObject));
+    }
+    return entry.content.read(0, (int) entry.content.size());
+  }
+
+  @Override
+  public Tuple<String, byte[]> read(
+      StorageObject from, Map<Option, ?> options, long position, int bytes)
+      throws StorageException {
+    ObjectEntry entry = getExistingEntry(from, options);
+    return Tuple.of(entry.metadata.getEtag(), entry.content.read(position, bytes));
+  }
+
+  @Override
+  public String open(StorageObject object, Map<Option, ?> options) throws StorageException {
+    // Preconditions are checked both when the upload starts and when it is finalized.
+    checkPreconditions(fullname(object), getEntry(object), options, false);
+    String uploadId = UUID.randomUUID().toString();
+    uploads.put(uploadId, new Upload(object.clone(), options, new ContentWriter(chunkSize)));
+    return uploadId;
+  }
+
+  @Override
+  public void write(String uploadId, byte[] toWrite, int toWriteOffset, long destOffset,
+                    int length, boolean last) throws StorageException {
+    Upload upload = uploads.get(uploadId);
+    if (upload == null) {
+      throw new StorageException(404, "Upload not found: " + uploadId);
+    }
+    synchronized (upload) {
+      long size = upload.writer.size();
+      if (destOffset > size) {
+        throw new StorageException(
+            400, "Invalid upload offset " + destOffset + ", " + size + " bytes were written");
+      }
+      // Bytes before the current size were already received, as when a chunk is retried.
+      int skip = (int) Math.min(length, size - destOffset);
+      upload.writer.write(toWrite, toWriteOffset + skip, length - skip);
+      if (last) {
+        uploads.remove(uploadId);
+        commit(
+            upload.object,
+            upload.writer.finish(),
+            upload.writer.crc32c(),
+            upload.writer.md5(),
+            upload.options);
+      }
+    }
+  }
+
+  @Override
+  public RewriteResponse openRewrite(RewriteRequest rewriteRequest) throws StorageException {
+    ObjectEntry source = getEntry(rewriteRequest.source);
+    if (source == null) {
+      throw new StorageException(404, "Object not found: " + fullname(rewriteRequest.source));
+    }
+    checkPreconditions(fullname(rewriteRequest.source), source, rewriteRequest.sourceOptions, true);
+    StorageObject target;
+    if (rewriteRequest.overrideInfo) {
+      target = rewriteRequest.target.clone();
+    } else {
+      target =
+          source.metadata.clone()
+              .setBucket(rewriteRequest.target.getBucket())
+              .setName(rewriteRequest.target.getName());
+    }
+    StorageObject result =
+        commit(
+            target,
+            source.content,
+            source.metadata.getCrc32c(),
+            source.metadata.getMd5Hash(),
+            rewriteRequest.targetOptions);
+    long size = source.content.size();
+    return new RewriteResponse(rewriteRequest, result, size, true, null, size);
+  }
+
+  @Override
+  public RewriteResponse continueRewrite(RewriteResponse previousResponse) throws StorageException {
+    // openRewrite always completes the rewrite in a single call.
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public BucketAccessControl getAcl(String bucket, String entity, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean deleteAcl(String bucket, String entity, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public BucketAccessControl createAcl(BucketAccessControl acl, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public BucketAccessControl patchAcl(BucketAccessControl acl, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<BucketAccessControl> listAcls(String bucket, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ObjectAccessControl getDefaultAcl(String bucket, String entity) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean deleteDefaultAcl(String bucket, String entity) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ObjectAccessControl createDefaultAcl(ObjectAccessControl acl) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ObjectAccessControl patchDefaultAcl(ObjectAccessControl acl) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<ObjectAccessControl> listDefaultAcls(String bucket) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ObjectAccessControl getAcl(String bucket, String object, Long generation, String entity) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean deleteAcl(String bucket, String object, Long generation, String entity) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ObjectAccessControl createAcl(ObjectAccessControl acl) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ObjectAccessControl patchAcl(ObjectAccessControl acl) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<ObjectAccessControl> listAcls(String bucket, String object, Long generation) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Policy getIamPolicy(String bucket, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Policy setIamPolicy(String bucket, Policy policy, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public TestIamPermissionsResponse testIamPermissions(
+      String bucket, List<String> permissions, Map<Option, ?> options) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean deleteNotification(String bucket, String notification) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<Notification> listNotifications(String bucket) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Notification createNotification(String bucket, Notification notification) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public ServiceAccount getServiceAccount(String projectId) {
+    return null;
+  }
+
+  /**
+   * Stores a new generation of {@code object}, checking the preconditions in {@code options}
+   * against the current generation while holding the object's lock.
+   */
+  private StorageObject commit(
+      StorageObject object,
+      Content content,
+      String crc32c,
+      @Nullable String md5,
+      Map<Option, ?> options) {
+    BucketEntry bucketEntry = buckets.get(object.getBucket());
+    if (bucketEntry == null) {
+      BucketEntry newEntry = new BucketEntry(newBucket(object.getBucket(), null));
+      bucketEntry = buckets.putIfAbsent(object.getBucket(), newEntry);
+      if (bucketEntry == null) {
+        bucketEntry = newEntry;
+      }
+    }
+    String key = fullname(object);
+    Lock lock = locks.get(key);
+    lock.lock();
+    try {
+      ObjectEntry current = bucketEntry.objects.get(object.getName());
+      checkPreconditions(key, current, options, false);
+      long generation = lastGeneration.incrementAndGet();
+      DateTime now = new DateTime(System.currentTimeMillis());
+      StorageObject metadata = object.clone();
+      metadata
+          .setId(key + "/" + generation)
+          .setGeneration(generation)
+          .setMetageneration(1L)
+          .setSize(BigInteger.valueOf(content.size()))
+          .setCrc32c(crc32c)
+          .setMd5Hash(md5)
+          .setEtag(Long.toHexString(generation))
+          .setTimeCreated(now)
+          .setUpdated(now);
+      if (metadata.getContentType() == null) {
+        metadata.setContentType("application/octet-stream");
+      }
+      bucketEntry.objects.put(object.getName(), new ObjectEntry(metadata, content));
+      return metadata.clone();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Nullable
+  private ObjectEntry getEntry(StorageObject object) {
+    BucketEntry bucketEntry = buckets.get(object.getBucket());
+    if (bucketEntry == null) {
+      return null;
+    }
+    ObjectEntry entry = bucketEntry.objects.get(object.getName());
+    if (entry == null
+        || (object.getGeneration() != null
+            && !object.getGeneration().equals(entry.metadata.getGeneration()))) {
+      // Only the latest generation is kept.
+      return null;
+    }
+    return entry;
+  }
+
+  private ObjectEntry getExistingEntry(StorageObject object, Map<Option, ?> options) {
+    ObjectEntry entry = getEntry(object);
+    if (entry == null) {
+      throw new StorageException(404, "Object not found: " + fullname(object));
+    }
+    checkPreconditions(fullname(object), entry, options, false);
+    return entry;
+  }
+
+  /**
+   * Throws a 412 error if the generation or metageneration of {@code current} (0 if the object
+   * does not exist) does not satisfy the preconditions in {@code options}.
+   *
+   * @param source if true, checks the preconditions on the source object of a rewrite
+   */
+  private static void checkPreconditions(
+      String key, @Nullable ObjectEntry current, Map<Option, ?> options, boolean source) {
+    long generation = current == null ? 0L : current.metadata.getGeneration();
+    long metageneration = current == null ? 0L : current.metadata.getMetageneration();
+    Long generationMatch =
+        (Long) options.get(source ? Option.IF_SOURCE_GENERATION_MATCH : Option.IF_GENERATION_MATCH);
+    Long generationNotMatch =
+        (Long)
+            options.get(
+                source ? Option.IF_SOURCE_GENERATION_NOT_MATCH : Option.IF_GENERATION_NOT_MATCH);
+    Long metagenerationMatch =
+        (Long)
+            options.get(
+                source ? Option.IF_SOURCE_METAGENERATION_MATCH : Option.IF_METAGENERATION_MATCH);
+    Long metagenerationNotMatch =
+        (Long)
+            options.get(
+                source
+                    ? Option.IF_SOURCE_METAGENERATION_NOT_MATCH
+                    : Option.IF_METAGENERATION_NOT_MATCH);
+    if (generationMatch != null && generationMatch == 0L && current != null) {
+      // Keeps the cause CloudStorageFileSystemProvider translates to FileAlreadyExistsException.
+      throw new StorageException(
+          412, "Precondition Failed: " + key + " exists", new FileAlreadyExistsException(key));
+    }
+    if ((generationMatch != null && generationMatch != generation)
+        || (generationNotMatch != null && generationNotMatch == generation)
+        || (metagenerationMatch != null && metagenerationMatch != metageneration)
+        || (metagenerationNotMatch != null && metagenerationNotMatch == metageneration)) {
+      throw new StorageException(
+          412,
+          "Precondition Failed: " + key + " is at generation " + generation + ", metageneration "
+              + metageneration);
+    }
+  }
+
+  private static Bucket newBucket(String name, @Nullable Bucket bucket) {
+    Bucket newBucket = bucket == null ? new Bucket() : bucket.clone();
+    DateTime now = new DateTime(System.currentTimeMillis());
+    return newBucket
+        .setName(name)
+        .setId(name)
+        .setMetageneration(1L)
+        .setTimeCreated(now)
+        .setUpdated(now);
+  }
+
+  private static String fullname(StorageObject so) {
+    return so.getBucket() + "/" + so.getName();
+  }
+
+  private static final class BucketEntry {
+    private final Bucket bucket;
+    // object name -> latest generation, sorted for listing by prefix.
+    private final ConcurrentSkipListMap<String, ObjectEntry> objects =
+        new ConcurrentSkipListMap<>();
+
+    BucketEntry(Bucket bucket) {
+      this.bucket = bucket;
+    }
+  }
+
+  /** A generation of an object. Neither the metadata nor the content are modified once stored. */
+  private static final class ObjectEntry {
+    private final StorageObject metadata;
+    private final Content content;
+
+    ObjectEntry(StorageObject metadata, Content content) {
+      this.metadata = metadata;
+      this.content = content;
+    }
+  }
+
+  private static final class Upload {
+    private final StorageObject object;
+    private final Map<Option, ?> options;
+    private final ContentWriter writer;
+
+    Upload(StorageObject object, Map<Option, ?> options, ContentWriter writer) {
+      this.object = object;
+      this.options = options;
+      this.writer = writer;
+    }
+  }
+
+  /** Immutable object contents, stored as a sequence of read-only direct buffers. */
+  private static final class Content {
+    private final ByteBuffer[] chunks;
+    // offsets[i] is the position in the object of the first byte of chunks[i].
+    private final long[] offsets;
+    private final long size;
+
+    Content(List<ByteBuffer> chunks) {
+      this.chunks = new ByteBuffer[chunks.size()];
+      this.offsets = new long[chunks.size()];
+      long position = 0;
+      for (int i = 0; i < this.chunks.length; i++) {
+        this.chunks[i] = chunks.get(i).asReadOnlyBuffer();
+        this.offsets[i] = position;
+        position += this.chunks[i].remaining();
+      }
+      this.size = position;
+    }
+
+    static Content concat(List<Content> contents) {
+      List<ByteBuffer> chunks = new ArrayList<>();
+      for (Content content : contents) {
+        chunks.addAll(Arrays.asList(content.chunks));
+      }
+      return new Content(chunks);
+    }
+
+    long size() {
+      return size;
+    }
+
+    /** Copies up to {@code length} bytes starting at {@code position}. */
+    byte[] read(long position, int length) {
+      long start = Math.max(0L, position);
+      int count = (int) Math.max(0L, Math.min(length, size - start));
+      byte[] bytes = new byte[count];
+      if (count == 0) {
+        return bytes;
+      }
+      int index = Arrays.binarySearch(offsets, start);
+      if (index < 0) {
+        index = -index - 2;
+      }
+      int copied = 0;
+      long chunkPosition = start - offsets[index];
+      while (copied < count) {
+        // Skip empty chunks, which have the same offset as the next one.
+        ByteBuffer chunk = chunks[index++].duplicate();
+        if (chunkPosition >= chunk.remaining()) {
+          chunkPosition -= chunk.remaining();
+          continue;
+        }
+        chunk.position(chunk.position() + (int) chunkPosition);
+        int n = Math.min(count - copied, chunk.remaining());
+        chunk.get(bytes, copied, n);
+        copied += n;
+        chunkPosition = 0;
+      }
+      return bytes;
+    }
+
+    String crc32c() {
+      Hasher hasher = Hashing.crc32c().newHasher();
+      for (ByteBuffer chunk : chunks) {
+        ByteBuffer duplicate = chunk.duplicate();
+        byte[] bytes = new byte[duplicate.remaining()];
+        duplicate.get(bytes);
+        hasher.putBytes(bytes);
+      }
+      return BaseEncoding.base64().encode(Ints.toByteArray(hasher.hash().asInt()));
+    }
+  }
+
+  /** Writes contents into direct buffers of {@code chunkSize} bytes, computing their checksums. */
+  private static final class ContentWriter {
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final Hasher crc32c = Hashing.crc32c().newHasher();
+    @SuppressWarnings("deprecation")
+    private final Hasher md5 = Hashing.md5().newHasher();
+    private ByteBuffer current;
+    private long size;
+
+    ContentWriter(int chunkSize) {
+      this.chunkSize = chunkSize;
+    }
+
+    long size() {
+      return size;
+    }
+
+    void write(byte[] bytes, int offset, int length) {
+      crc32c.putBytes(bytes, offset, length);
+      md5.putBytes(bytes, offset, length);
+      size += length;
+      while (length > 0) {
+        if (current == null || !current.hasRemaining()) {
+          addCurrent();
+          current = ByteBuffer.allocateDirect(chunkSize);
+        }
+        int n = Math.min(length, current.remaining());
+        current.put(bytes, offset, n);
+        offset += n;
+        length -= n;
+      }
+    }
+
+    Content finish() {
+      addCurrent();
+      return new Content(chunks);
+    }
+
+    String crc32c() {
+      return BaseEncoding.base64().encode(Ints.toByteArray(crc32c.hash().asInt()));
+    }
+
+    String md5() {
+      return BaseEncoding.base64().encode(md5.hash().asBytes());
+    }
+
+    private void addCurrent() {
+      if (current == null) {
+        return;
+      }
+      current.flip();
+      if (current.remaining() < chunkSize / 2) {
+        // Don't hold on to a mostly empty chunk for small objects.
+        ByteBuffer trimmed = ByteBuffer.allocateDirect(current.remaining());
+        trimmed.put(current);
+        trimmed.flip();
+        current = trimmed;
+      }
+      chunks.add(current);
+      current = null;
+    }
+  }
+
+  /** Runs the requests of a batch one after the other when it is submitted. */
+  private final class FakeRpcBatch implements RpcBatch {
+    private final List<BatchRequest<?>> requests = new ArrayList<>();
+
+    @Override
+    public void addDelete(final StorageObject storageObject, Callback<Void> callback,
+        final Map<Option, ?> options) {
+      requests.add(
+          new BatchRequest<Void>(callback) {
+            @Override
+            Void execute() {
+              if (!delete(storageObject, options)) {
+                throw new StorageException(404, "Object not found: " + fullname(storageObject));
+              }
+              return null;
+            }
+          });
+    }
+
+    @Override
+    public void addPatch(final StorageObject storageObject, Callback<StorageObject> callback,
+        final Map<Option, ?> options) {
+      requests.add(
+          new BatchRequest<StorageObject>(callback) {
+            @Override
+            StorageObject execute() {
+              return patch(storageObject, options);
+            }
+          });
+    }
+
+    @Override
+    public void addGet(final StorageObject storageObject, Callback<StorageObject> callback,
+        final Map<Option, ?> options) {
+      requests.add(
+          new BatchRequest<StorageObject>(callback) {
+            @Override
+            StorageObject execute() {
+              StorageObject result = get(storageObject, options);
+              if (result == null) {
+                throw new StorageException(404, "Object not found: " + fullname(storageObject));
+              }
+              return result;
+            }
+          });
+    }
+
+    @Override
+    public void submit() {
+      for (BatchRequest<?> request : requests) {
+        request.run();
+      }
+      requests.clear();
+    }
+  }
+
+  private abstract static class BatchRequest<T> {
+    private final RpcBatch.Callback<T> callback;
+
+    BatchRequest(RpcBatch.Callback<T> callback) {
+      this.callback = callback;
+    }
+
+    abstract T execute();
+
+    void run() {
+      T result;
+      try {
+        result = execute();
+      } catch (StorageException e) {
+        GoogleJsonError error = new GoogleJsonError();
+        error.setCode(e.getCode());
+        error.setMessage(e.getMessage());
+        callback.onFailure(error);
+        return;
+      }
+      callback.onSuccess(result);
+    }
+  }
+}
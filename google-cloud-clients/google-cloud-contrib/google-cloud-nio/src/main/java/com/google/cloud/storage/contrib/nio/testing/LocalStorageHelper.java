@@ -52,6 +52,10 @@ import com.google.cloud.storage.StorageOptions;
  * {@link FakeStorageRpc#list(String, java.util.Map)} lists all the objects that have been created rather than
  * the objects in the provided bucket. Since this class does not support creating, listing and deleting buckets,
  * the parameter bucket here is not actually used and on serves as a placeholder.
+ *
+ * <p>For tests and benchmarks that use storage from several threads, {@link
+ * #getConcurrentOptions()} returns options that point to a thread-safe in-memory implementation
+ * that also supports buckets, generations, preconditions, compose, copy and batches.
  */
 public final class LocalStorageHelper {
 
@@ -78,6 +82,24 @@ public final class LocalStorageHelper {
       .build();
   }
 
+  /**
+   * Returns a {@link StorageOptions} that use a new, thread-safe in-memory storage. All services
+   * created from the returned options share the same objects.
+   */
+  public static StorageOptions getConcurrentOptions() {
+    final ConcurrentFakeStorageRpc rpc = new ConcurrentFakeStorageRpc();
+    return StorageOptions.newBuilder()
+      .setProjectId("dummy-project-for-testing")
+      .setServiceRpcFactory(
+        new ServiceRpcFactory<StorageOptions>() {
+          @Override
+          public StorageRpc create(StorageOptions options) {
+            return rpc;
+          }
+        })
+      .build();
+  }
+
   /**
    * Returns a {@link StorageOptions} that creates a new FakeStorageRpc instance with the given
    * option.
@@ -27,6 +27,8 @@ import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 import static java.nio.file.StandardOpenOption.WRITE;
 
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.StorageOptions;
 import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.testing.NullPointerTester;
@@ -46,6 +48,7 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
@@ -54,6 +57,7 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -676,6 +680,66 @@ public class CloudStorageFileSystemProviderTest {
     assertThat(path4.toString()).isEqualTo("/with/a%20percent");
   }
 
+  @Test
+  public void testWalkFiles() throws Exception {
+    try (CloudStorageFileSystem fs =
+        forBucket("bucket", CloudStorageConfiguration.builder().listingParallelism(2).build())) {
+      for (String name : ImmutableList.of("top", "dir/a", "dir/sub/b", "dir/sub/deeper/c")) {
+        Files.write(fs.getPath(name), SINGULARITY.getBytes(UTF_8));
+      }
+      List<String> names = new ArrayList<>();
+      try (DirectoryStream<Path> files =
+          fs.provider().walkFiles(fs.getPath("dir"), acceptAll())) {
+        for (Path file : files) {
+          names.add(file.toString());
+        }
+      }
+      assertThat(names).containsExactly("dir/a", "dir/sub/b", "dir/sub/deeper/c");
+    }
+  }
+
+  @Test
+  public void testMetadataCache() throws Exception {
+    StorageOptions options = LocalStorageHelper.getConcurrentOptions();
+    CloudStorageConfiguration config =
+        CloudStorageConfiguration.builder()
+            .metadataCacheTtlSeconds(60)
+            .prefetchListingPages(true)
+            .build();
+    try (CloudStorageFileSystem fs = forBucket("bucket", config, options)) {
+      Path path = fs.getPath("dir/file");
+      Files.write(path, SINGULARITY.getBytes(UTF_8));
+      try (DirectoryStream<Path> paths = Files.newDirectoryStream(fs.getPath("dir/"))) {
+        assertThat(paths.iterator().next()).isEqualTo(path);
+      }
+      // Deleted behind the file system's back: the listed metadata is still cached.
+      options.getService().delete(BlobId.of("bucket", "dir/file"));
+      assertThat(Files.size(path)).isEqualTo(SINGULARITY.getBytes(UTF_8).length);
+      assertThat(Files.exists(path)).isTrue();
+
+      // Writes through the file system invalidate the cached metadata.
+      Files.write(path, "longer contents".getBytes(UTF_8));
+      assertThat(Files.size(path)).isEqualTo("longer contents".getBytes(UTF_8).length);
+
+      // The file is only replaced once the written channel is closed, so metadata cached while
+      // writing is invalidated then.
+      try (OutputStream output = Files.newOutputStream(path)) {
+        output.write('x');
+        assertThat(Files.size(path)).isEqualTo("longer contents".getBytes(UTF_8).length);
+      }
+      assertThat(Files.size(path)).isEqualTo(1);
+    }
+  }
+
+  private static DirectoryStream.Filter<Path> acceptAll() {
+    return new DirectoryStream.Filter<Path>() {
+      @Override
+      public boolean accept(Path entry) {
+        return true;
+      }
+    };
+  }
+
   private static CloudStorageConfiguration permitEmptyPathComponents(boolean value) {
     return CloudStorageConfiguration.builder().permitEmptyPathComponents(value).build();
   }
@@ -35,13 +35,22 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.FileSystem;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.FileVisitResult;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -339,6 +348,123 @@ public class CloudStorageFileSystemTest {
     }
   }
 
+  @Test
+  public void testCopyAll() throws IOException {
+    CloudStorageFileSystem fs = forBulkOperations();
+    Map<Path, Path> copies = new LinkedHashMap<>();
+    for (int i = 0; i < 20; i++) {
+      Path source = fs.getPath("src/file" + i);
+      Files.write(source, ALONE.getBytes(UTF_8));
+      copies.put(source, fs.getPath("dst/file" + i));
+    }
+    Files.write(fs.getPath("dst/file3"), "existing".getBytes(UTF_8));
+    copies.put(fs.getPath("src/missing"), fs.getPath("dst/missing"));
+    RecordingListener listener = new RecordingListener();
+
+    List<CloudStorageBulkResult> results = fs.copyAll(copies, listener);
+
+    assertThat(results).hasSize(21);
+    for (int i = 0; i < 20; i++) {
+      CloudStorageBulkResult result = results.get(i);
+      assertThat(result.getSource()).isEqualTo(fs.getPath("src/file" + i));
+      assertThat(result.getTarget()).isEqualTo(fs.getPath("dst/file" + i));
+      if (i == 3) {
+        assertThat(result.getError()).isInstanceOf(FileAlreadyExistsException.class);
+      } else {
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(result.getBytesCopied()).isEqualTo(ALONE.getBytes(UTF_8).length);
+        assertThat(new String(Files.readAllBytes(result.getTarget()), UTF_8)).isEqualTo(ALONE);
+      }
+    }
+    assertThat(results.get(20).getError()).isInstanceOf(NoSuchFileException.class);
+    assertThat(listener.completed).hasSize(21);
+    assertThat(listener.bytesCopied.get()).isEqualTo(19L * ALONE.getBytes(UTF_8).length);
+
+    results = fs.copyAll(copies, null, StandardCopyOption.REPLACE_EXISTING);
+    assertThat(results.get(3).isSuccess()).isTrue();
+    assertThat(new String(Files.readAllBytes(fs.getPath("dst/file3")), UTF_8)).isEqualTo(ALONE);
+  }
+
+  @Test
+  public void testMoveAll() throws IOException {
+    CloudStorageFileSystem fs = forBulkOperations();
+    Map<Path, Path> moves = new LinkedHashMap<>();
+    for (int i = 0; i < 5; i++) {
+      Path source = fs.getPath("src/file" + i);
+      Files.write(source, ALONE.getBytes(UTF_8));
+      moves.put(source, fs.getPath("dst/file" + i));
+    }
+    moves.put(fs.getPath("src/dir/"), fs.getPath("dst/dir/"));
+    RecordingListener listener = new RecordingListener();
+
+    List<CloudStorageBulkResult> results = fs.moveAll(moves, listener);
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(results.get(i).isSuccess()).isTrue();
+      assertThat(Files.exists(fs.getPath("src/file" + i))).isFalse();
+      assertThat(Files.exists(fs.getPath("dst/file" + i))).isTrue();
+    }
+    assertThat(results.get(5).getError()).isInstanceOf(CloudStoragePseudoDirectoryException.class);
+    assertThat(listener.completed).hasSize(6);
+  }
+
+  @Test
+  public void testDeleteAll() throws IOException {
+    CloudStorageFileSystem fs = forBulkOperations();
+    List<Path> paths = new ArrayList<>();
+    // More than one batch.
+    for (int i = 0; i < 250; i++) {
+      Path path = fs.getPath("dir/file" + i);
+      Files.write(path, ALONE.getBytes(UTF_8));
+      paths.add(path);
+    }
+    paths.add(fs.getPath("dir/missing"));
+    RecordingListener listener = new RecordingListener();
+
+    List<CloudStorageBulkResult> results = fs.deleteAll(paths, listener);
+
+    assertThat(results).hasSize(251);
+    for (int i = 0; i < 250; i++) {
+      assertThat(results.get(i).getSource()).isEqualTo(paths.get(i));
+      assertThat(results.get(i).isSuccess()).isTrue();
+      assertThat(Files.exists(paths.get(i))).isFalse();
+    }
+    assertThat(results.get(250).getError()).isInstanceOf(NoSuchFileException.class);
+    assertThat(listener.completed).hasSize(251);
+  }
+
+  @Test
+  public void testBulkOptions() {
+    CloudStorageFileSystem fs = forBulkOperations();
+    thrown.expect(UnsupportedOperationException.class);
+    fs.moveAll(new HashMap<Path, Path>(), null, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static CloudStorageFileSystem forBulkOperations() {
+    return CloudStorageFileSystem.forBucket(
+        "bucket",
+        CloudStorageConfiguration.builder().bulkParallelism(4).build(),
+        LocalStorageHelper.getConcurrentOptions());
+  }
+
+  private static class RecordingListener implements CloudStorageBulkListener {
+    private final Map<Path, Long> progress = new ConcurrentHashMap<>();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final List<CloudStorageBulkResult> completed =
+        Collections.synchronizedList(new ArrayList<CloudStorageBulkResult>());
+
+    @Override
+    public void onProgress(Path source, long bytes, long totalBytes) {
+      Long previous = progress.put(source, bytes);
+      bytesCopied.addAndGet(bytes - (previous == null ? 0 : previous));
+    }
+
+    @Override
+    public void onComplete(CloudStorageBulkResult result) {
+      completed.add(result);
+    }
+  }
+
   /**
    * Delete the given directory and all of its contents if non-empty.
    * @param directory the directory to delete
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.contrib.nio.testing;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.ReadChannel;
+import com.google.cloud.WriteChannel;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Unit tests for {@link ConcurrentFakeStorageRpc}.
+ */
+@RunWith(JUnit4.class)
+public class ConcurrentFakeStorageRpcTest {
+
+  private static final String BUCKET = "bucket";
+
+  private Storage storage;
+
+  @Before
+  public void before() {
+    storage = LocalStorageHelper.getConcurrentOptions().getService();
+  }
+
+  @Test
+  public void testCreateAndRead() {
+    Blob blob = storage.create(blobInfo("a"), "hello".getBytes(UTF_8));
+    assertThat(blob.getSize()).isEqualTo(5L);
+    assertThat(blob.getGeneration()).isNotNull();
+    assertThat(blob.getMetageneration()).isEqualTo(1L);
+    assertThat(blob.getCrc32c()).isNotNull();
+    assertThat(blob.getMd5()).isNotNull();
+    assertThat(new String(storage.readAllBytes(BlobId.of(BUCKET, "a")), UTF_8)).isEqualTo("hello");
+    assertThat(storage.get(BlobId.of(BUCKET, "missing"))).isNull();
+  }
+
+  @Test
+  public void testRangedReadsAcrossChunks() throws IOException {
+    byte[] content = bytes(3 * ConcurrentFakeStorageRpc.DEFAULT_CHUNK_SIZE + 17);
+    storage.create(blobInfo("big"), content);
+    try (ReadChannel reader = storage.reader(BlobId.of(BUCKET, "big"))) {
+      long position = ConcurrentFakeStorageRpc.DEFAULT_CHUNK_SIZE - 10;
+      reader.seek(position);
+      ByteBuffer buffer = ByteBuffer.allocate(ConcurrentFakeStorageRpc.DEFAULT_CHUNK_SIZE + 20);
+      while (buffer.hasRemaining() && reader.read(buffer) >= 0) {
+        // keep reading
+      }
+      assertThat(buffer.array())
+          .isEqualTo(Arrays.copyOfRange(content, (int) position, (int) position + buffer.limit()));
+    }
+  }
+
+  @Test
+  public void testResumableUpload() throws IOException {
+    byte[] content = bytes(2 * ConcurrentFakeStorageRpc.DEFAULT_CHUNK_SIZE + 5);
+    try (WriteChannel writer = storage.writer(blobInfo("upload"))) {
+      writer.setChunkSize(ConcurrentFakeStorageRpc.DEFAULT_CHUNK_SIZE);
+      writer.write(ByteBuffer.wrap(content));
+      // Not visible until the upload is finalized.
+      assertThat(storage.get(BlobId.of(BUCKET, "upload"))).isNull();
+    }
+    assertThat(storage.readAllBytes(BlobId.of(BUCKET, "upload"))).isEqualTo(content);
+  }
+
+  @Test
+  public void testGenerationPreconditions() {
+    Blob first = storage.create(blobInfo("a"), bytes(10));
+    try {
+      storage.create(blobInfo("a"), bytes(10), Storage.BlobTargetOption.doesNotExist());
+      fail("Expected StorageException");
+    } catch (StorageException e) {
+      assertThat(e.getCode()).isEqualTo(412);
+    }
+    Blob second = storage.create(first, bytes(20), Storage.BlobTargetOption.generationMatch());
+    assertThat(second.getGeneration()).isGreaterThan(first.getGeneration());
+    try {
+      storage.create(first, bytes(30), Storage.BlobTargetOption.generationMatch());
+      fail("Expected StorageException");
+    } catch (StorageException e) {
+      assertThat(e.getCode()).isEqualTo(412);
+    }
+    // Reading a generation that was replaced fails.
+    try {
+      storage.readAllBytes(first.getBlobId());
+      fail("Expected StorageException");
+    } catch (StorageException e) {
+      assertThat(e.getCode()).isEqualTo(404);
+    }
+    assertThat(storage.readAllBytes(BlobId.of(BUCKET, "a"))).hasLength(20);
+  }
+
+  @Test
+  public void testUpdateIncrementsMetageneration() {
+    Blob blob = storage.create(blobInfo("a"), bytes(10));
+    Blob updated = storage.update(blob.toBuilder().setContentType("text/plain").build());
+    assertThat(updated.getContentType()).isEqualTo("text/plain");
+    assertThat(updated.getGeneration()).isEqualTo(blob.getGeneration());
+    assertThat(updated.getMetageneration()).isEqualTo(2L);
+  }
+
+  @Test
+  public void testListWithDelimiterAndPages() {
+    for (String name : Arrays.asList("a", "b", "dir/c", "dir/d", "dir/sub/e", "z")) {
+      storage.create(blobInfo(name), bytes(1));
+    }
+    List<String> names = new ArrayList<>();
+    Page<Blob> page =
+        storage.list(
+            BUCKET, Storage.BlobListOption.currentDirectory(), Storage.BlobListOption.pageSize(2));
+    for (Blob blob : page.iterateAll()) {
+      names.add(blob.getName());
+    }
+    assertThat(names).containsExactly("a", "b", "dir/", "z");
+
+    names.clear();
+    for (Blob blob :
+        storage
+            .list(
+                BUCKET,
+                Storage.BlobListOption.prefix("dir/"),
+                Storage.BlobListOption.currentDirectory())
+            .iterateAll()) {
+      names.add(blob.getName());
+    }
+    assertThat(names).containsExactly("dir/c", "dir/d", "dir/sub/");
+  }
+
+  @Test
+  public void testComposeAndCopy() {
+    storage.create(blobInfo("a"), "abc".getBytes(UTF_8));
+    storage.create(blobInfo("b"), "def".getBytes(UTF_8));
+    Blob composed =
+        storage.compose(
+            Storage.ComposeRequest.newBuilder()
+                .addSource("a", "b")
+                .setTarget(blobInfo("ab"))
+                .build());
+    assertThat(composed.getSize()).isEqualTo(6L);
+    assertThat(composed.getMd5()).isNull();
+    assertThat(new String(storage.readAllBytes(BlobId.of(BUCKET, "ab")), UTF_8))
+        .isEqualTo("abcdef");
+
+    Blob copy =
+        storage
+            .copy(Storage.CopyRequest.of(BUCKET, "ab", BlobId.of("other-bucket", "copy")))
+            .getResult();
+    assertThat(copy.getCrc32c()).isEqualTo(composed.getCrc32c());
+    assertThat(new String(storage.readAllBytes(copy.getBlobId()), UTF_8)).isEqualTo("abcdef");
+  }
+
+  @Test
+  public void testBatchDelete() {
+    storage.create(blobInfo("a"), bytes(1));
+    storage.create(blobInfo("b"), bytes(1));
+    List<Boolean> deleted =
+        storage.delete(
+            BlobId.of(BUCKET, "a"), BlobId.of(BUCKET, "missing"), BlobId.of(BUCKET, "b"));
+    assertThat(deleted).containsExactly(true, false, true).inOrder();
+    assertThat(storage.get(BlobId.of(BUCKET, "a"))).isNull();
+  }
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    final int threads = 8;
+    final int writesPerThread = 50;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        results.add(
+            executor.submit(
+                new Callable<Integer>() {
+                  @Override
+                  public Integer call() {
+                    int conflicts = 0;
+                    for (int i = 0; i < writesPerThread; i++) {
+                      storage.create(blobInfo("own-" + thread + "-" + i), bytes(100));
+                      // All threads race to update a shared object with a generation precondition.
+                      Blob shared = storage.get(BlobId.of(BUCKET, "shared"));
+                      try {
+                        if (shared == null) {
+                          storage.create(
+                              blobInfo("shared"),
+                              bytes(1),
+                              Storage.BlobTargetOption.doesNotExist());
+                        } else {
+                          storage.create(
+                              shared, bytes(1), Storage.BlobTargetOption.generationMatch());
+                        }
+                      } catch (StorageException e) {
+                        assertThat(e.getCode()).isEqualTo(412);
+                        conflicts++;
+                      }
+                    }
+                    return conflicts;
+                  }
+                }));
+      }
+      int conflicts = 0;
+      for (Future<Integer> result : results) {
+        conflicts += result.get();
+      }
+      int objects = 0;
+      for (Blob blob : storage.list(BUCKET, Storage.BlobListOption.prefix("own-")).iterateAll()) {
+        assertThat(blob.getSize()).isEqualTo(100L);
+        objects++;
+      }
+      assertThat(objects).isEqualTo(threads * writesPerThread);
+      // Conditional writes of the shared object either succeeded or failed their precondition.
+      assertThat(conflicts).isLessThan(threads * writesPerThread);
+      assertThat(storage.get(BlobId.of(BUCKET, "shared")).getMetageneration()).isEqualTo(1L);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static BlobInfo blobInfo(String name) {
+    return BlobInfo.newBuilder(BUCKET, name).build();
+  }
+
+  private static byte[] bytes(int size) {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte) (i * 31);
+    }
+    return bytes;
+  }
+}
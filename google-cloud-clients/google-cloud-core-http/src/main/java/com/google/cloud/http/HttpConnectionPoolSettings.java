@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.core.BetaApi;
+import com.google.common.base.MoreObjects;
+import java.io.Serializable;
+import java.util.Objects;
+import org.threeten.bp.Duration;
+
+/**
+ * Settings for the connection pool of a {@link PooledHttpTransportFactory}.
+ */
+@BetaApi
+public final class HttpConnectionPoolSettings implements Serializable {
+
+  private static final long serialVersionUID = -4069378367813426384L;
+
+  private final int maxConnectionsPerRoute;
+  private final int maxConnectionsTotal;
+  private final Duration maxIdleTime;
+  private final Duration connectionTimeToLive;
+  private final boolean tcpNoDelay;
+
+  /**
+   * Builder for {@code HttpConnectionPoolSettings}.
+   */
+  public static class Builder {
+
+    private int maxConnectionsPerRoute = 20;
+    private int maxConnectionsTotal = 200;
+    private Duration maxIdleTime = Duration.ofSeconds(60);
+    private Duration connectionTimeToLive = Duration.ofMinutes(5);
+    private boolean tcpNoDelay = true;
+
+    private Builder() {}
+
+    private Builder(HttpConnectionPoolSettings settings) {
+      maxConnectionsPerRoute = settings.maxConnectionsPerRoute;
+      maxConnectionsTotal = settings.maxConnectionsTotal;
+      maxIdleTime = settings.maxIdleTime;
+      connectionTimeToLive = settings.connectionTimeToLive;
+      tcpNoDelay = settings.tcpNoDelay;
+    }
+
+    /**
+     * Sets the maximum number of connections to a single host, including connections that are
+     * in use. Requests that can't get a connection wait until one is returned to the pool. The
+     * default value is 20.
+     *
+     * @return the builder
+     */
+    public Builder setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+      this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of connections across all hosts. The default value is 200.
+     *
+     * @return the builder
+     */
+    public Builder setMaxConnectionsTotal(int maxConnectionsTotal) {
+      this.maxConnectionsTotal = maxConnectionsTotal;
+      return this;
+    }
+
+    /**
+     * Sets how long a connection may stay unused in the pool before it is closed. Evicting idle
+     * connections before the server closes them avoids failures when reusing a half-closed
+     * connection. {@link Duration#ZERO} disables idle eviction. The default value is 60 seconds.
+     *
+     * @return the builder
+     */
+    public Builder setMaxIdleTime(Duration maxIdleTime) {
+      this.maxIdleTime = maxIdleTime;
+      return this;
+    }
+
+    /**
+     * Sets the maximum time a connection is kept alive for reuse after a response. If the server
+     * asks for a shorter keep-alive through the {@code Keep-Alive} header, the server's value is
+     * used. The default value is 5 minutes.
+     *
+     * @return the builder
+     */
+    public Builder setConnectionTimeToLive(Duration connectionTimeToLive) {
+      this.connectionTimeToLive = connectionTimeToLive;
+      return this;
+    }
+
+    /**
+     * Sets whether Nagle's algorithm is disabled on new connections. The default value is
+     * {@code true}.
+     *
+     * @return the builder
+     */
+    public Builder setTcpNoDelay(boolean tcpNoDelay) {
+      this.tcpNoDelay = tcpNoDelay;
+      return this;
+    }
+
+    public HttpConnectionPoolSettings build() {
+      checkArgument(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be positive");
+      checkArgument(maxConnectionsTotal >= maxConnectionsPerRoute,
+          "maxConnectionsTotal must not be less than maxConnectionsPerRoute");
+      checkArgument(!checkNotNull(maxIdleTime).isNegative(), "maxIdleTime must not be negative");
+      checkArgument(!checkNotNull(connectionTimeToLive).isNegative()
+          && !connectionTimeToLive.isZero(), "connectionTimeToLive must be positive");
+      return new HttpConnectionPoolSettings(this);
+    }
+  }
+
+  private HttpConnectionPoolSettings(Builder builder) {
+    maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+    maxConnectionsTotal = builder.maxConnectionsTotal;
+    maxIdleTime = builder.maxIdleTime;
+    connectionTimeToLive = builder.connectionTimeToLive;
+    tcpNoDelay = builder.tcpNoDelay;
+  }
+
+  /**
+   * Returns the maximum number of connections to a single host.
+   */
+  public int getMaxConnectionsPerRoute() {
+    return maxConnectionsPerRoute;
+  }
+
+  /**
+   * Returns the maximum number of connections across all hosts.
+   */
+  public int getMaxConnectionsTotal() {
+    return maxConnectionsTotal;
+  }
+
+  /**
+   * Returns how long a connection may stay unused in the pool before it is closed.
+   */
+  public Duration getMaxIdleTime() {
+    return maxIdleTime;
+  }
+
+  /**
+   * Returns the maximum time a connection is kept alive for reuse after a response.
+   */
+  public Duration getConnectionTimeToLive() {
+    return connectionTimeToLive;
+  }
+
+  /**
+   * Returns whether Nagle's algorithm is disabled on new connections.
+   */
+  public boolean getTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  public Builder toBuilder() {
+    return new Builder(this);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(maxConnectionsPerRoute, maxConnectionsTotal, maxIdleTime,
+        connectionTimeToLive, tcpNoDelay);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof HttpConnectionPoolSettings)) {
+      return false;
+    }
+    HttpConnectionPoolSettings other = (HttpConnectionPoolSettings) obj;
+    return maxConnectionsPerRoute == other.maxConnectionsPerRoute
+        && maxConnectionsTotal == other.maxConnectionsTotal
+        && Objects.equals(maxIdleTime, other.maxIdleTime)
+        && Objects.equals(connectionTimeToLive, other.connectionTimeToLive)
+        && tcpNoDelay == other.tcpNoDelay;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("maxConnectionsPerRoute", maxConnectionsPerRoute)
+        .add("maxConnectionsTotal", maxConnectionsTotal)
+        .add("maxIdleTime", maxIdleTime)
+        .add("connectionTimeToLive", connectionTimeToLive)
+        .add("tcpNoDelay", tcpNoDelay)
+        .toString();
+  }
+
+  /**
+   * Returns a builder initialized with the default settings.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the default settings.
+   */
+  public static HttpConnectionPoolSettings getDefaultInstance() {
+    return newBuilder().build();
+  }
+}
@@ -23,6 +23,7 @@ import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.core.BetaApi;
 import com.google.api.gax.core.GaxProperties;
 import com.google.api.gax.httpjson.HttpHeadersUtils;
 import com.google.api.gax.rpc.ApiClientHeaderProvider;
@@ -48,6 +49,7 @@ public class HttpTransportOptions implements TransportOptions {
   private final int connectTimeout;
   private final int readTimeout;
   private final String httpTransportFactoryClassName;
+  private final HttpConnectionPoolSettings connectionPoolSettings;
 
   private transient HttpTransportFactory httpTransportFactory;
 
@@ -77,6 +79,7 @@ public class HttpTransportOptions implements TransportOptions {
     private HttpTransportFactory httpTransportFactory;
     private int connectTimeout = -1;
     private int readTimeout = -1;
+    private HttpConnectionPoolSettings connectionPoolSettings;
 
     private Builder() {}
 
@@ -84,6 +87,7 @@ public class HttpTransportOptions implements TransportOptions {
       httpTransportFactory = options.httpTransportFactory;
       connectTimeout = options.connectTimeout;
       readTimeout = options.readTimeout;
+      connectionPoolSettings = options.connectionPoolSettings;
     }
 
     public HttpTransportOptions build() {
@@ -123,12 +127,38 @@ public class HttpTransportOptions implements TransportOptions {
       this.readTimeout = readTimeout;
       return this;
     }
+
+    /**
+     * Sets the settings of a pool of keep-alive connections shared by the transports created by
+     * these options. When set, a {@link PooledHttpTransportFactory} is used instead of the default
+     * HTTP transport factory. Ignored if an HTTP transport factory is set with
+     * {@link #setHttpTransportFactory(HttpTransportFactory)}.
+     *
+     * @return the builder
+     */
+    @BetaApi
+    public Builder setConnectionPoolSettings(HttpConnectionPoolSettings connectionPoolSettings) {
+      this.connectionPoolSettings = connectionPoolSettings;
+      // A pooled factory copied from existing options must not shadow the new settings
+      if (httpTransportFactory instanceof PooledHttpTransportFactory
+          && !((PooledHttpTransportFactory) httpTransportFactory).getSettings()
+              .equals(connectionPoolSettings)) {
+        httpTransportFactory = null;
+      }
+      return this;
+    }
   }
 
   private HttpTransportOptions(Builder builder) {
-    httpTransportFactory = firstNonNull(builder.httpTransportFactory,
-        ServiceOptions.getFromServiceLoader(HttpTransportFactory.class,
-            DefaultHttpTransportFactory.INSTANCE));
+    if (builder.httpTransportFactory == null && builder.connectionPoolSettings != null) {
+      httpTransportFactory = new PooledHttpTransportFactory(builder.connectionPoolSettings);
+    } else {
+      httpTransportFactory = firstNonNull(builder.httpTransportFactory,
+          ServiceOptions.getFromServiceLoader(HttpTransportFactory.class,
+              DefaultHttpTransportFactory.INSTANCE));
+    }
+    connectionPoolSettings = httpTransportFactory instanceof PooledHttpTransportFactory
+        ? ((PooledHttpTransportFactory) httpTransportFactory).getSettings() : null;
     httpTransportFactoryClassName = httpTransportFactory.getClass().getName();
     connectTimeout = builder.connectTimeout;
     readTimeout = builder.readTimeout;
@@ -197,6 +227,15 @@ public class HttpTransportOptions implements TransportOptions {
     return readTimeout;
   }
 
+  /**
+   * Returns the settings of the connection pool used by the HTTP transport factory, or
+   * {@code null} if the transport factory is not a {@link PooledHttpTransportFactory}.
+   */
+  @BetaApi
+  public HttpConnectionPoolSettings getConnectionPoolSettings() {
+    return connectionPoolSettings;
+  }
+
   public Builder toBuilder() {
     return new Builder(this);
   }
@@ -204,7 +243,7 @@ public class HttpTransportOptions implements TransportOptions {
   @Override
   public int hashCode() {
     return Objects.hash(httpTransportFactoryClassName, connectTimeout,
-        readTimeout);
+        readTimeout, connectionPoolSettings);
   }
 
   @Override
@@ -218,12 +257,17 @@ public class HttpTransportOptions implements TransportOptions {
     HttpTransportOptions other = (HttpTransportOptions) obj;
     return Objects.equals(httpTransportFactoryClassName, other.httpTransportFactoryClassName)
         && Objects.equals(connectTimeout, other.connectTimeout)
-        && Objects.equals(readTimeout, other.readTimeout);
+        && Objects.equals(readTimeout, other.readTimeout)
+        && Objects.equals(connectionPoolSettings, other.connectionPoolSettings);
   }
 
   private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
     input.defaultReadObject();
-    httpTransportFactory = ServiceOptions.newInstance(httpTransportFactoryClassName);
+    if (connectionPoolSettings != null) {
+      httpTransportFactory = new PooledHttpTransportFactory(connectionPoolSettings);
+    } else {
+      httpTransportFactory = ServiceOptions.newInstance(httpTransportFactoryClassName);
+    }
   }
 
   public static Builder newBuilder() {
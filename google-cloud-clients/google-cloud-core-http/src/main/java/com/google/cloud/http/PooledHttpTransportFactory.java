@@ -0,0 +1,272 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.client.extensions.appengine.http.UrlFetchTransport;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.google.api.core.BetaApi;
+import com.google.auth.http.HttpTransportFactory;
+import com.google.cloud.PlatformInformation;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ProxySelector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * An {@link HttpTransportFactory} whose transports share a pool of keep-alive connections.
+ *
+ * <p>The default transport relies on {@code HttpURLConnection}, whose connection reuse can only be
+ * tuned through JVM wide system properties and keeps at most 5 idle connections per host. This
+ * factory uses an Apache HTTP client with a connection pool configured by
+ * {@link HttpConnectionPoolSettings}. All the transports created by the same factory share its
+ * pool, so a single factory can be used by several services to bound the total number of
+ * connections.
+ *
+ * <p>On App Engine Standard for Java 7 sockets are not available, and this factory returns a
+ * {@link UrlFetchTransport} instead.
+ *
+ * <p>Example of using a pooled transport:
+ * <pre> {@code
+ * HttpTransportOptions transportOptions = HttpTransportOptions.newBuilder()
+ *     .setConnectionPoolSettings(HttpConnectionPoolSettings.newBuilder()
+ *         .setMaxConnectionsPerRoute(50)
+ *         .build())
+ *     .build();
+ * }</pre>
+ */
+// ApacheHttpTransport in google-http-client 1.23 reads and updates the client's HttpParams, which
+// clients built with HttpClientBuilder do not support (getParams() throws). The HttpParams based
+// client and connection manager APIs, deprecated since HttpClient 4.3, are therefore required.
+@SuppressWarnings("deprecation")
+@BetaApi
+public class PooledHttpTransportFactory implements HttpTransportFactory {
+
+  private static final int HTTP_PORT = 80;
+  private static final int HTTPS_PORT = 443;
+  private static final long MIN_EVICTION_INTERVAL_MILLIS = 1000;
+
+  private final HttpConnectionPoolSettings settings;
+  private final AtomicLong connectionRequests = new AtomicLong();
+  private final AtomicLong connectionsOpened = new AtomicLong();
+
+  private DefaultHttpClient httpClient;
+  private CountingConnectionManager connectionManager;
+  private ScheduledExecutorService evictionExecutor;
+
+  /**
+   * Creates a factory with the default {@link HttpConnectionPoolSettings}.
+   */
+  public PooledHttpTransportFactory() {
+    this(HttpConnectionPoolSettings.getDefaultInstance());
+  }
+
+  public PooledHttpTransportFactory(HttpConnectionPoolSettings settings) {
+    this.settings = checkNotNull(settings);
+  }
+
+  /**
+   * Returns the settings of the connection pool.
+   */
+  public HttpConnectionPoolSettings getSettings() {
+    return settings;
+  }
+
+  @Override
+  public HttpTransport create() {
+    // Consider App Engine Standard
+    if (PlatformInformation.isOnGAEStandard7()) {
+      try {
+        return new UrlFetchTransport();
+      } catch (Exception ignore) {
+        // Maybe not on App Engine
+      }
+    }
+    return new ApacheHttpTransport(getHttpClient());
+  }
+
+  private synchronized DefaultHttpClient getHttpClient() {
+    if (httpClient == null) {
+      HttpParams params = new BasicHttpParams();
+      HttpConnectionParams.setStaleCheckingEnabled(params, false);
+      HttpConnectionParams.setSocketBufferSize(params, 8192);
+      HttpConnectionParams.setTcpNoDelay(params, settings.getTcpNoDelay());
+      ConnManagerParams.setMaxTotalConnections(params, settings.getMaxConnectionsTotal());
+      ConnManagerParams.setMaxConnectionsPerRoute(params,
+          new ConnPerRouteBean(settings.getMaxConnectionsPerRoute()));
+
+      SchemeRegistry registry = new SchemeRegistry();
+      registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), HTTP_PORT));
+      registry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), HTTPS_PORT));
+
+      connectionManager = new CountingConnectionManager(params, registry);
+      httpClient = new DefaultHttpClient(connectionManager, params);
+      // Retries are handled by the google-http-client and service layers
+      httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+      httpClient.setRoutePlanner(
+          new ProxySelectorRoutePlanner(registry, ProxySelector.getDefault()));
+      httpClient.setKeepAliveStrategy(
+          new BoundedKeepAliveStrategy(settings.getConnectionTimeToLive().toMillis()));
+      startEviction();
+    }
+    return httpClient;
+  }
+
+  private void startEviction() {
+    final long maxIdleMillis = settings.getMaxIdleTime().toMillis();
+    if (maxIdleMillis == 0) {
+      return;
+    }
+    long intervalMillis = Math.max(maxIdleMillis / 2, MIN_EVICTION_INTERVAL_MILLIS);
+    evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("http-connection-eviction-%d")
+        .build());
+    evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS);
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the number of times a connection was requested from the pool, that is the number of
+   * HTTP requests sent through this factory's transports.
+   */
+  public long getConnectionRequestCount() {
+    return connectionRequests.get();
+  }
+
+  /**
+   * Returns the number of new connections that were opened.
+   */
+  public long getConnectionOpenCount() {
+    return connectionsOpened.get();
+  }
+
+  /**
+   * Returns the number of requests that were sent on a connection reused from the pool.
+   */
+  public long getConnectionReuseCount() {
+    return Math.max(0, connectionRequests.get() - connectionsOpened.get());
+  }
+
+  /**
+   * Returns the number of open connections, both idle and in use.
+   */
+  public synchronized int getConnectionsInPool() {
+    return connectionManager == null ? 0 : connectionManager.getConnectionsInPool();
+  }
+
+  /**
+   * Closes all pooled connections and stops the idle connection eviction. Transports created by
+   * this factory must not be used after calling this method, but new transports can be created.
+   */
+  public synchronized void shutdown() {
+    if (evictionExecutor != null) {
+      evictionExecutor.shutdownNow();
+      evictionExecutor = null;
+    }
+    if (connectionManager != null) {
+      connectionManager.shutdown();
+      connectionManager = null;
+      httpClient = null;
+    }
+  }
+
+  /**
+   * Connection manager that counts the connection requests and the connections that are opened.
+   */
+  private class CountingConnectionManager extends ThreadSafeClientConnManager {
+
+    CountingConnectionManager(HttpParams params, SchemeRegistry registry) {
+      super(params, registry);
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+      connectionRequests.incrementAndGet();
+      return super.requestConnection(route, state);
+    }
+
+    @Override
+    protected ClientConnectionOperator createConnectionOperator(SchemeRegistry registry) {
+      return new DefaultClientConnectionOperator(registry) {
+        @Override
+        public void openConnection(OperatedClientConnection connection, HttpHost target,
+            InetAddress local, HttpContext context, HttpParams params) throws IOException {
+          super.openConnection(connection, target, local, context, params);
+          connectionsOpened.incrementAndGet();
+        }
+      };
+    }
+  }
+
+  /**
+   * Honors the server's {@code Keep-Alive} header, but never keeps a connection alive longer than
+   * the configured time to live.
+   */
+  private static class BoundedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+    private final ConnectionKeepAliveStrategy delegate = new DefaultConnectionKeepAliveStrategy();
+    private final long maxKeepAliveMillis;
+
+    BoundedKeepAliveStrategy(long maxKeepAliveMillis) {
+      this.maxKeepAliveMillis = maxKeepAliveMillis;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+      long keepAliveMillis = delegate.getKeepAliveDuration(response, context);
+      if (keepAliveMillis <= 0 || keepAliveMillis > maxKeepAliveMillis) {
+        return maxKeepAliveMillis;
+      }
+      return keepAliveMillis;
+    }
+  }
+}
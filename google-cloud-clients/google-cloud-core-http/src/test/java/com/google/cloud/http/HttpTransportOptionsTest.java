@@ -18,6 +18,7 @@ package com.google.cloud.http;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -41,6 +42,11 @@ public class HttpTransportOptionsTest {
   private static final HttpTransportOptions DEFAULT_OPTIONS =
       HttpTransportOptions.newBuilder().build();
   private static final HttpTransportOptions OPTIONS_COPY = OPTIONS.toBuilder().build();
+  private static final HttpConnectionPoolSettings POOL_SETTINGS =
+      HttpConnectionPoolSettings.newBuilder().setMaxConnectionsPerRoute(50).build();
+  private static final HttpTransportOptions POOLED_OPTIONS = HttpTransportOptions.newBuilder()
+      .setConnectionPoolSettings(POOL_SETTINGS)
+      .build();
 
   @Test
   public void testBuilder() {
@@ -50,12 +56,42 @@ public class HttpTransportOptionsTest {
     assertEquals(-1, DEFAULT_OPTIONS.getConnectTimeout());
     assertTrue(DEFAULT_OPTIONS.getHttpTransportFactory() instanceof DefaultHttpTransportFactory);
     assertEquals(-1, DEFAULT_OPTIONS.getReadTimeout());
+    assertNull(DEFAULT_OPTIONS.getConnectionPoolSettings());
+  }
+
+  @Test
+  public void testConnectionPoolSettings() {
+    assertTrue(POOLED_OPTIONS.getHttpTransportFactory() instanceof PooledHttpTransportFactory);
+    assertEquals(POOL_SETTINGS, POOLED_OPTIONS.getConnectionPoolSettings());
+    assertEquals(POOL_SETTINGS,
+        ((PooledHttpTransportFactory) POOLED_OPTIONS.getHttpTransportFactory()).getSettings());
+
+    // Copies share the connection pool
+    HttpTransportOptions copy = POOLED_OPTIONS.toBuilder().build();
+    assertSame(POOLED_OPTIONS.getHttpTransportFactory(), copy.getHttpTransportFactory());
+    assertEquals(POOLED_OPTIONS, copy);
+
+    HttpConnectionPoolSettings otherSettings =
+        POOL_SETTINGS.toBuilder().setMaxConnectionsPerRoute(10).build();
+    HttpTransportOptions otherOptions =
+        POOLED_OPTIONS.toBuilder().setConnectionPoolSettings(otherSettings).build();
+    assertEquals(otherSettings, otherOptions.getConnectionPoolSettings());
+    assertNotEquals(POOLED_OPTIONS, otherOptions);
+
+    // An explicit transport factory takes precedence
+    HttpTransportOptions explicitFactory = HttpTransportOptions.newBuilder()
+        .setConnectionPoolSettings(POOL_SETTINGS)
+        .setHttpTransportFactory(MOCK_HTTP_TRANSPORT_FACTORY)
+        .build();
+    assertSame(MOCK_HTTP_TRANSPORT_FACTORY, explicitFactory.getHttpTransportFactory());
+    assertNull(explicitFactory.getConnectionPoolSettings());
   }
 
   @Test
   public void testBaseEquals() {
     assertEquals(OPTIONS, OPTIONS_COPY);
     assertNotEquals(DEFAULT_OPTIONS, OPTIONS);
+    assertNotEquals(DEFAULT_OPTIONS, POOLED_OPTIONS);
   }
 
   @Test
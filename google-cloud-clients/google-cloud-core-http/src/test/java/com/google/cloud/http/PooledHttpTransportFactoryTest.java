@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.ApacheHttpTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+public class PooledHttpTransportFactoryTest {
+
+  private static final byte[] RESPONSE = "hello".getBytes(StandardCharsets.UTF_8);
+
+  private HttpServer server;
+  private String url;
+  private PooledHttpTransportFactory factory;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, RESPONSE.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+          body.write(RESPONSE);
+        }
+      }
+    });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/";
+    factory = new PooledHttpTransportFactory();
+  }
+
+  @After
+  public void tearDown() {
+    factory.shutdown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testSettings() {
+    HttpConnectionPoolSettings settings = HttpConnectionPoolSettings.newBuilder()
+        .setMaxConnectionsPerRoute(5)
+        .setMaxConnectionsTotal(10)
+        .setMaxIdleTime(Duration.ofSeconds(1))
+        .setConnectionTimeToLive(Duration.ofSeconds(2))
+        .setTcpNoDelay(false)
+        .build();
+    assertEquals(5, settings.getMaxConnectionsPerRoute());
+    assertEquals(10, settings.getMaxConnectionsTotal());
+    assertEquals(Duration.ofSeconds(1), settings.getMaxIdleTime());
+    assertEquals(Duration.ofSeconds(2), settings.getConnectionTimeToLive());
+    assertEquals(false, settings.getTcpNoDelay());
+    assertEquals(settings, settings.toBuilder().build());
+    assertEquals(settings.hashCode(), settings.toBuilder().build().hashCode());
+    assertEquals(HttpConnectionPoolSettings.getDefaultInstance(),
+        new PooledHttpTransportFactory().getSettings());
+  }
+
+  @Test
+  public void testInvalidSettings() {
+    try {
+      HttpConnectionPoolSettings.newBuilder()
+          .setMaxConnectionsPerRoute(10)
+          .setMaxConnectionsTotal(5)
+          .build();
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+    try {
+      HttpConnectionPoolSettings.newBuilder().setConnectionTimeToLive(Duration.ZERO).build();
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testTransportsSharePool() throws IOException {
+    HttpTransport first = factory.create();
+    HttpTransport second = factory.create();
+    assertTrue(first instanceof ApacheHttpTransport);
+    assertNotSame(first, second);
+
+    get(first);
+    get(second);
+    get(first);
+
+    assertEquals(3, factory.getConnectionRequestCount());
+    assertEquals(1, factory.getConnectionOpenCount());
+    assertEquals(2, factory.getConnectionReuseCount());
+    assertEquals(1, factory.getConnectionsInPool());
+  }
+
+  @Test
+  public void testShutdown() throws IOException {
+    get(factory.create());
+    assertEquals(1, factory.getConnectionsInPool());
+
+    factory.shutdown();
+    assertEquals(0, factory.getConnectionsInPool());
+
+    // New transports get a new pool
+    get(factory.create());
+    assertEquals(2, factory.getConnectionOpenCount());
+  }
+
+  private void get(HttpTransport transport) throws IOException {
+    HttpResponse response =
+        transport.createRequestFactory().buildGetRequest(new GenericUrl(url)).execute();
+    assertEquals("hello", response.parseAsString());
+  }
+}
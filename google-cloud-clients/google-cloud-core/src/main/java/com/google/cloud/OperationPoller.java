@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.retrying.PollException;
+import com.google.api.gax.retrying.RetrySettings;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+import org.threeten.bp.Duration;
+
+/**
+ * Waits for many long-running operations without a thread per operation.
+ *
+ * <p>Each call to {@link #watch(Object, RetrySettings)} returns a future that completes when the
+ * operation identified by the key is done. Waiters are kept in a single schedule, ordered by the
+ * time of their next poll, and a task on the executor wakes up when the earliest waiter is due. All
+ * the waiters due within the coalescing window are then polled together, with one call to {@link
+ * #poll(Set, Map)}, which lets implementations fetch the state of many operations with a single list
+ * request.
+ *
+ * <p>The interval between two polls of a waiter grows exponentially, from the initial to the
+ * maximum retry delay of its {@link RetrySettings}, so that short operations complete quickly
+ * while long ones are polled less and less often. A waiter fails with a {@link PollException} if
+ * its operation is still running after the total timeout, or after the maximum number of attempts.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @param <K> the type of the keys identifying the operations
+ * @param <V> the type of the state of an operation
+ */
+@BetaApi
+public abstract class OperationPoller<K, V> {
+
+  private static final Comparator<Waiter<?, ?>> BY_NEXT_POLL =
+      new Comparator<Waiter<?, ?>>() {
+        @Override
+        public int compare(Waiter<?, ?> a, Waiter<?, ?> b) {
+          return Long.compare(a.nextPollNanos, b.nextPollNanos);
+        }
+      };
+
+  private final ScheduledExecutorService executor;
+  private final ApiClock clock;
+  private final long coalescingWindowNanos;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final PriorityQueue<Waiter<K, V>> schedule = new PriorityQueue<>(16, BY_NEXT_POLL);
+
+  @GuardedBy("lock")
+  private ScheduledFuture<?> wakeUp;
+
+  @GuardedBy("lock")
+  private long wakeUpNanos;
+
+  private final AtomicLong pollCount = new AtomicLong();
+  private final AtomicLong polledKeyCount = new AtomicLong();
+
+  private final Runnable wakeUpTask =
+      new Runnable() {
+        @Override
+        public void run() {
+          pollDueWaiters();
+        }
+      };
+
+  /**
+   * Creates a poller.
+   *
+   * @param executor runs the polls, it should have enough threads for the polls that are expected
+   *     to run at the same time
+   * @param clock the clock used to schedule polls
+   * @param coalescingWindow waiters whose next poll is due within this duration of the waiter
+   *     that triggered a poll are polled together with it
+   */
+  protected OperationPoller(
+      ScheduledExecutorService executor, ApiClock clock, Duration coalescingWindow) {
+    this.executor = checkNotNull(executor);
+    this.clock = checkNotNull(clock);
+    this.coalescingWindowNanos = coalescingWindow.toNanos();
+  }
+
+  /**
+   * Fetches the state of the operations identified by {@code keys}.
+   *
+   * <p>The returned map has no entry for an operation that no longer exists, whose waiters then
+   * complete with {@code null}. An entry with a {@code null} value means the state of the operation
+   * is unknown, and its waiters are polled again later. The waiters of an operation whose state
+   * couldn't be fetched fail with the exception put in {@code failures} for its key. If this method
+   * throws an exception, the waiters of all the {@code keys} fail with it.
+   */
+  protected abstract Map<K, V> poll(Set<K> keys, Map<K, Throwable> failures) throws Exception;
+
+  /** Returns {@code true} if {@code value} is the state of a completed operation. */
+  protected abstract boolean isDone(V value);
+
+  /**
+   * Returns the value the waiters of a completed operation complete with. This is called once per
+   * completed operation, and can be used to fetch more information than {@link #poll(Set, Map)}
+   * did.
+   * Returns {@code value} by default.
+   */
+  protected V onDone(K key, V value) throws Exception {
+    return value;
+  }
+
+  /**
+   * Returns a future that completes with the state of the operation identified by {@code key} once
+   * {@link #isDone} is {@code true}, or with {@code null} if the operation no longer exists. The
+   * first poll is made right away, together with the other waiters due at this time.
+   *
+   * <p>Cancelling the returned future stops polling for it.
+   *
+   * @param pollSettings the initial, maximum and multiplier of the delay between polls, and the
+   *     total timeout and maximum number of polls
+   */
+  public ApiFuture<V> watch(K key, RetrySettings pollSettings) {
+    Waiter<K, V> waiter = new Waiter<>(checkNotNull(key), pollSettings, clock.nanoTime());
+    synchronized (lock) {
+      schedule.add(waiter);
+      scheduleWakeUpLocked();
+    }
+    return waiter.future;
+  }
+
+  /** Returns the number of operations being waited for. */
+  public int getWaiterCount() {
+    synchronized (lock) {
+      return schedule.size();
+    }
+  }
+
+  /** Returns the number of calls made to {@link #poll(Set, Map)}. */
+  public long getPollCount() {
+    return pollCount.get();
+  }
+
+  /**
+   * Returns the total number of keys passed to {@link #poll(Set, Map)}. Divided by {@link
+   * #getPollCount()}, this is the average number of operations polled together.
+   */
+  public long getPolledKeyCount() {
+    return polledKeyCount.get();
+  }
+
+  @GuardedBy("lock")
+  private void scheduleWakeUpLocked() {
+    Waiter<K, V> first = schedule.peek();
+    if (first == null || (wakeUp != null && wakeUpNanos <= first.nextPollNanos)) {
+      return;
+    }
+    if (wakeUp != null) {
+      wakeUp.cancel(false);
+    }
+    wakeUpNanos = first.nextPollNanos;
+    wakeUp =
+        executor.schedule(
+            wakeUpTask, Math.max(0, wakeUpNanos - clock.nanoTime()), TimeUnit.NANOSECONDS);
+  }
+
+  private void pollDueWaiters() {
+    List<Waiter<K, V>> due = new ArrayList<>();
+    synchronized (lock) {
+      wakeUp = null;
+      long horizon = clock.nanoTime() + coalescingWindowNanos;
+      while (!schedule.isEmpty() && schedule.peek().nextPollNanos <= horizon) {
+        Waiter<K, V> waiter = schedule.poll();
+        // Cancelled waiters are dropped here rather than searched for when they're cancelled.
+        if (!waiter.future.isDone()) {
+          due.add(waiter);
+        }
+      }
+      // The next wake up may poll concurrently with this one, their waiters are distinct.
+      scheduleWakeUpLocked();
+    }
+    if (!due.isEmpty()) {
+      pollWaiters(due);
+    }
+  }
+
+  private void pollWaiters(List<Waiter<K, V>> waiters) {
+    Set<K> keys = new LinkedHashSet<>();
+    for (Waiter<K, V> waiter : waiters) {
+      keys.add(waiter.key);
+    }
+    Map<K, V> states;
+    Map<K, Throwable> failures = new HashMap<>();
+    try {
+      pollCount.incrementAndGet();
+      polledKeyCount.addAndGet(keys.size());
+      states = poll(Collections.unmodifiableSet(keys), failures);
+    } catch (Throwable t) {
+      for (Waiter<K, V> waiter : waiters) {
+        waiter.future.setException(t);
+      }
+      return;
+    }
+    long now = clock.nanoTime();
+    // Several waiters of the same operation share the result of onDone.
+    Map<K, V> completed = new HashMap<>();
+    List<Waiter<K, V>> pending = new ArrayList<>();
+    for (Waiter<K, V> waiter : waiters) {
+      if (failures.containsKey(waiter.key)) {
+        waiter.future.setException(failures.get(waiter.key));
+        continue;
+      }
+      if (!states.containsKey(waiter.key)) {
+        waiter.future.set(null);
+        continue;
+      }
+      V state = states.get(waiter.key);
+      if (state != null && isDone(state)) {
+        try {
+          if (!completed.containsKey(waiter.key)) {
+            completed.put(waiter.key, onDone(waiter.key, state));
+          }
+          waiter.future.set(completed.get(waiter.key));
+        } catch (Throwable t) {
+          waiter.future.setException(t);
+        }
+      } else if (!waiter.scheduleNextPoll(now)) {
+        waiter.future.setException(
+            new PollException("Operation " + waiter.key + " did not complete in time"));
+      } else {
+        pending.add(waiter);
+      }
+    }
+    if (!pending.isEmpty()) {
+      synchronized (lock) {
+        schedule.addAll(pending);
+        scheduleWakeUpLocked();
+      }
+    }
+  }
+
+  private static final class Waiter<K, V> {
+
+    private final K key;
+    private final RetrySettings settings;
+    private final long startNanos;
+    private final SettableApiFuture<V> future = SettableApiFuture.create();
+    private long delayNanos;
+    private int attempts;
+    private long nextPollNanos;
+
+    Waiter(K key, RetrySettings settings, long nowNanos) {
+      this.key = key;
+      this.settings = settings;
+      this.startNanos = nowNanos;
+      this.nextPollNanos = nowNanos;
+      this.delayNanos = settings.getInitialRetryDelay().toNanos();
+    }
+
+    /**
+     * Schedules the next poll of a waiter whose operation isn't done, and returns {@code false} if
+     * it shouldn't be polled again.
+     */
+    boolean scheduleNextPoll(long nowNanos) {
+      attempts++;
+      long delay = delayNanos;
+      if (settings.isJittered() && delay > 1) {
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay - delay / 2);
+      }
+      delayNanos =
+          Math.min(
+              (long) (delayNanos * settings.getRetryDelayMultiplier()),
+              settings.getMaxRetryDelay().toNanos());
+      long totalTimeout = settings.getTotalTimeout().toNanos();
+      if (settings.getMaxAttempts() > 0 && attempts >= settings.getMaxAttempts()) {
+        return false;
+      }
+      if (totalTimeout > 0 && nowNanos + delay - startNanos > totalTimeout) {
+        return false;
+      }
+      nextPollNanos = nowNanos + delay;
+      return true;
+    }
+  }
+}
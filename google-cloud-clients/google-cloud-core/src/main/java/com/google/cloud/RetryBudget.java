@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.api.core.BetaApi;
+import com.google.common.base.MoreObjects;
+
+/**
+ * Caps the number of retries as a fraction of the number of requests, so that a service that is
+ * failing most requests doesn't receive an additional load of retries.
+ *
+ * <p>The budget is a token bucket: every request deposits {@code retryRatio} tokens and every retry
+ * withdraws one token. Retries are rejected when less than one token is available. The bucket holds
+ * at most {@code maxTokens} tokens and starts full, which allows a burst of retries when few
+ * requests have been sent. A single budget is meant to be shared by all the requests sent to a
+ * service.
+ *
+ * <p>This class is thread-safe.
+ */
+@BetaApi
+public final class RetryBudget {
+
+  private final double retryRatio;
+  private final double maxTokens;
+
+  private double tokens;
+  private long requestCount;
+  private long retryCount;
+  private long rejectedRetryCount;
+
+  private RetryBudget(double retryRatio, int maxTokens) {
+    this.retryRatio = retryRatio;
+    this.maxTokens = maxTokens;
+    this.tokens = maxTokens;
+  }
+
+  /**
+   * Creates a retry budget.
+   *
+   * @param retryRatio the number of retries allowed per request in the long run, for instance
+   *     {@code 0.1} allows one retry every ten requests
+   * @param maxTokens the maximum number of retries that can be accumulated
+   */
+  public static RetryBudget create(double retryRatio, int maxTokens) {
+    checkArgument(retryRatio >= 0, "retryRatio must not be negative");
+    checkArgument(maxTokens >= 1, "maxTokens must be at least 1");
+    return new RetryBudget(retryRatio, maxTokens);
+  }
+
+  /**
+   * Records a new request, that is the first attempt of an operation.
+   */
+  public synchronized void onRequest() {
+    requestCount++;
+    tokens = Math.min(maxTokens, tokens + retryRatio);
+  }
+
+  /**
+   * Returns {@code true} and withdraws a token if a retry is allowed, {@code false} otherwise.
+   */
+  public synchronized boolean tryAcquireRetry() {
+    if (tokens >= 1) {
+      tokens--;
+      retryCount++;
+      return true;
+    }
+    rejectedRetryCount++;
+    return false;
+  }
+
+  /**
+   * Returns the number of retries allowed per request.
+   */
+  public double getRetryRatio() {
+    return retryRatio;
+  }
+
+  /**
+   * Returns the number of requests recorded by this budget.
+   */
+  public synchronized long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * Returns the number of retries allowed by this budget.
+   */
+  public synchronized long getRetryCount() {
+    return retryCount;
+  }
+
+  /**
+   * Returns the number of retries rejected because the budget was exhausted.
+   */
+  public synchronized long getRejectedRetryCount() {
+    return rejectedRetryCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("retryRatio", retryRatio)
+        .add("maxTokens", maxTokens)
+        .add("tokens", tokens)
+        .add("requestCount", requestCount)
+        .add("retryCount", retryCount)
+        .add("rejectedRetryCount", rejectedRetryCount)
+        .toString();
+  }
+}
@@ -17,6 +17,9 @@
 package com.google.cloud;
 
 import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFunction;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.api.core.BetaApi;
 import com.google.api.gax.retrying.ExponentialPollAlgorithm;
 import com.google.api.gax.retrying.ResultRetryAlgorithm;
@@ -27,9 +30,15 @@ import com.google.api.gax.retrying.ExponentialRetryAlgorithm;
 import com.google.api.gax.retrying.RetryAlgorithm;
 import com.google.api.gax.retrying.RetryingExecutor;
 import com.google.api.gax.retrying.RetryingFuture;
+import com.google.api.gax.retrying.ScheduledRetryingExecutor;
+import com.google.api.gax.retrying.TimedAttemptSettings;
 import com.google.api.gax.retrying.TimedRetryAlgorithm;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Utility class for retrying operations. For more details about the parameters, see {@link
@@ -55,6 +64,86 @@ public class RetryHelper {
     }
   }
 
+  /**
+   * Runs {@code callable} with retries without blocking the calling thread. Attempts run on
+   * {@code executor}, and the delay between attempts is scheduled on it rather than spent sleeping,
+   * so a thread is only used while an attempt is running. The delays are jittered if
+   * {@link RetrySettings#isJittered()} is {@code true}.
+   *
+   * <p>If retrying is unsuccessful, the returned future fails with a {@link RetryHelperException}
+   * whose cause is the exception thrown by the last attempt.
+   */
+  public static <V> ApiFuture<V> runWithRetriesAsync(
+      Callable<V> callable,
+      RetrySettings retrySettings,
+      ResultRetryAlgorithm<?> resultRetryAlgorithm,
+      ApiClock clock,
+      ScheduledExecutorService executor) {
+    return runWithRetriesAsync(
+        callable, retrySettings, resultRetryAlgorithm, clock, executor, null);
+  }
+
+  /**
+   * Runs {@code callable} with retries without blocking the calling thread, like
+   * {@link #runWithRetriesAsync(Callable, RetrySettings, ResultRetryAlgorithm, ApiClock,
+   * ScheduledExecutorService)}. In addition, every retry must be allowed by {@code retryBudget};
+   * when the budget is exhausted the exception of the last attempt is returned without retrying.
+   */
+  public static <V> ApiFuture<V> runWithRetriesAsync(
+      Callable<V> callable,
+      RetrySettings retrySettings,
+      ResultRetryAlgorithm<?> resultRetryAlgorithm,
+      ApiClock clock,
+      ScheduledExecutorService executor,
+      final RetryBudget retryBudget) {
+    // See runWithRetries
+    @SuppressWarnings("unchecked")
+    ResultRetryAlgorithm<V> resultAlgorithm = (ResultRetryAlgorithm<V>) resultRetryAlgorithm;
+    TimedRetryAlgorithm timedAlgorithm = new ExponentialRetryAlgorithm(retrySettings, clock);
+    RetryAlgorithm<V> retryAlgorithm;
+    if (retryBudget == null) {
+      retryAlgorithm = new RetryAlgorithm<>(resultAlgorithm, timedAlgorithm);
+    } else {
+      retryBudget.onRequest();
+      retryAlgorithm = new RetryAlgorithm<V>(resultAlgorithm, timedAlgorithm) {
+        @Override
+        public boolean shouldRetry(Throwable prevThrowable, V prevResponse,
+            TimedAttemptSettings nextAttemptSettings) throws CancellationException {
+          return super.shouldRetry(prevThrowable, prevResponse, nextAttemptSettings)
+              && retryBudget.tryAcquireRetry();
+        }
+      };
+    }
+    RetryingExecutor<V> retryingExecutor =
+        new ScheduledRetryingExecutor<>(retryAlgorithm, executor);
+    RetryingFuture<V> retryingFuture = retryingExecutor.createFuture(callable);
+    ApiFuture<V> future = retryingExecutor.submit(retryingFuture);
+    return ApiFutures.catching(future, Throwable.class, new ApiFunction<Throwable, V>() {
+      @Override
+      public V apply(Throwable throwable) {
+        if (throwable instanceof CancellationException) {
+          throw (CancellationException) throwable;
+        }
+        throw new RetryHelperException(throwable);
+      }
+    });
+  }
+
+  /**
+   * Returns a shared executor suitable for
+   * {@link #runWithRetriesAsync(Callable, RetrySettings, ResultRetryAlgorithm, ApiClock,
+   * ScheduledExecutorService)}. Its threads are daemon threads.
+   *
+   * <p>The executor is shared by the whole JVM and has {@code max(8, 2 * availableProcessors)}
+   * threads. An attempt blocks its thread while waiting for the response, so at most that many
+   * attempts run concurrently and the others are queued. Applications that need more concurrent
+   * operations should supply their own executor, for instance through
+   * {@code StorageOptions.Builder.setAsyncExecutor}.
+   */
+  public static ScheduledExecutorService getDefaultAsyncExecutor() {
+    return DefaultAsyncExecutorHolder.INSTANCE;
+  }
+
   public static <V> V poll(
       Callable<V> callable,
       RetrySettings pollSettings,
@@ -75,6 +164,20 @@ public class RetryHelper {
       return retryingFuture.get();
   }
 
+  private static class DefaultAsyncExecutorHolder {
+
+    // Attempts block while waiting for the response, so use more threads than processors. This
+    // bounds the number of concurrent attempts, see getDefaultAsyncExecutor()
+    private static final int THREAD_COUNT =
+        Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final ScheduledExecutorService INSTANCE =
+        Executors.newScheduledThreadPool(THREAD_COUNT, new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("google-cloud-retry-%d")
+            .build());
+  }
+
   public static class RetryHelperException extends RuntimeException {
 
     private static final long serialVersionUID = -8519852520090965314L;
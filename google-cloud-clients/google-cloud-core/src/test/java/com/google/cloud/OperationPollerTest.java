@@ -0,0 +1,225 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.CurrentMillisClock;
+import com.google.api.gax.retrying.PollException;
+import com.google.api.gax.retrying.RetrySettings;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+public class OperationPollerTest {
+
+  private static final RetrySettings POLL_SETTINGS = RetrySettings.newBuilder()
+      .setInitialRetryDelay(Duration.ofMillis(10))
+      .setRetryDelayMultiplier(1.0)
+      .setMaxRetryDelay(Duration.ofMillis(10))
+      .setTotalTimeout(Duration.ofSeconds(10))
+      .build();
+
+  private ScheduledExecutorService executor;
+
+  /** Operations are done after being polled a given number of times, and gone if unknown. */
+  private static class TestPoller extends OperationPoller<String, String> {
+
+    private final Map<String, Integer> remainingPolls = new HashMap<>();
+    private final AtomicInteger onDoneCount = new AtomicInteger();
+    private IOException failure;
+
+    TestPoller(ScheduledExecutorService executor) {
+      super(executor, CurrentMillisClock.getDefaultClock(), Duration.ofMillis(5));
+    }
+
+    @Override
+    protected synchronized Map<String, String> poll(
+        Set<String> keys, Map<String, Throwable> failures) throws IOException {
+      if (failure != null) {
+        throw failure;
+      }
+      Map<String, String> states = new HashMap<>();
+      for (String key : keys) {
+        if (key.startsWith("failing")) {
+          failures.put(key, new IOException(key));
+          continue;
+        }
+        Integer remaining = remainingPolls.get(key);
+        if (remaining != null) {
+          remainingPolls.put(key, remaining - 1);
+          states.put(key, remaining <= 1 ? "done" : "running");
+        }
+      }
+      return states;
+    }
+
+    @Override
+    protected boolean isDone(String value) {
+      return value.equals("done");
+    }
+
+    @Override
+    protected String onDone(String key, String value) {
+      onDoneCount.incrementAndGet();
+      return key + ":" + value;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    executor = Executors.newScheduledThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testPollsAreCoalesced() throws Exception {
+    TestPoller poller = new TestPoller(executor);
+    CountDownLatch release = blockExecutor();
+    List<ApiFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      poller.remainingPolls.put("op" + i, 2);
+      futures.add(poller.watch("op" + i, POLL_SETTINGS));
+    }
+    release.countDown();
+    for (int i = 0; i < 10; i++) {
+      assertEquals("op" + i + ":done", futures.get(i).get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(2, poller.getPollCount());
+    assertEquals(20, poller.getPolledKeyCount());
+    assertEquals(0, poller.getWaiterCount());
+  }
+
+  @Test
+  public void testWaitersOfTheSameOperation() throws Exception {
+    TestPoller poller = new TestPoller(executor);
+    poller.remainingPolls.put("op", 3);
+    CountDownLatch release = blockExecutor();
+    ApiFuture<String> first = poller.watch("op", POLL_SETTINGS);
+    ApiFuture<String> second = poller.watch("op", POLL_SETTINGS);
+    release.countDown();
+    assertEquals("op:done", first.get(5, TimeUnit.SECONDS));
+    assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, poller.onDoneCount.get());
+  }
+
+  @Test
+  public void testMissingOperation() throws Exception {
+    TestPoller poller = new TestPoller(executor);
+    assertNull(poller.watch("missing", POLL_SETTINGS).get(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testPollFailure() throws Exception {
+    TestPoller poller = new TestPoller(executor);
+    poller.failure = new IOException("poll failed");
+    try {
+      poller.watch("op", POLL_SETTINGS).get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertSame(poller.failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void testOperationFailure() throws Exception {
+    TestPoller poller = new TestPoller(executor);
+    poller.remainingPolls.put("op", 1);
+    CountDownLatch release = blockExecutor();
+    ApiFuture<String> failing = poller.watch("failing", POLL_SETTINGS);
+    ApiFuture<String> succeeding = poller.watch("op", POLL_SETTINGS);
+    release.countDown();
+    assertEquals("op:done", succeeding.get(5, TimeUnit.SECONDS));
+    try {
+      failing.get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertEquals("failing", e.getCause().getMessage());
+    }
+    assertEquals(1, poller.getPollCount());
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    TestPoller poller = new TestPoller(executor);
+    poller.remainingPolls.put("op", Integer.MAX_VALUE);
+    RetrySettings settings =
+        POLL_SETTINGS.toBuilder().setTotalTimeout(Duration.ofMillis(50)).build();
+    try {
+      poller.watch("op", settings).get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PollException);
+    }
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    TestPoller poller = new TestPoller(executor);
+    poller.remainingPolls.put("op", Integer.MAX_VALUE);
+    ApiFuture<String> future = poller.watch("op", POLL_SETTINGS);
+    assertTrue(future.cancel(false));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (poller.getWaiterCount() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, poller.getWaiterCount());
+  }
+
+  /** Occupies all the executor threads until the returned latch is released. */
+  private CountDownLatch blockExecutor() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch blocked = new CountDownLatch(2);
+    for (int i = 0; i < 2; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+    }
+    blocked.await();
+    return release;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.core.CurrentMillisClock;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.cloud.RetryHelper.RetryHelperException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.threeten.bp.Duration;
+
+public class RetryBudgetTest {
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private static final RetrySettings RETRY_SETTINGS = RetrySettings.newBuilder()
+      .setMaxAttempts(5)
+      .setTotalTimeout(Duration.ofSeconds(10))
+      .setInitialRetryDelay(Duration.ofMillis(1))
+      .setRetryDelayMultiplier(1.0)
+      .setMaxRetryDelay(Duration.ofMillis(1))
+      .build();
+  private static final ExceptionHandler RETRY_IO_EXCEPTIONS = ExceptionHandler.newBuilder()
+      .retryOn(IOException.class)
+      .build();
+
+  @Test
+  public void testBudget() {
+    RetryBudget budget = RetryBudget.create(0.5, 2);
+
+    // The budget starts full
+    assertTrue(budget.tryAcquireRetry());
+    assertTrue(budget.tryAcquireRetry());
+    assertFalse(budget.tryAcquireRetry());
+
+    // Two requests pay for one retry
+    budget.onRequest();
+    assertFalse(budget.tryAcquireRetry());
+    budget.onRequest();
+    assertTrue(budget.tryAcquireRetry());
+
+    assertEquals(2, budget.getRequestCount());
+    assertEquals(3, budget.getRetryCount());
+    assertEquals(2, budget.getRejectedRetryCount());
+  }
+
+  @Test
+  public void testBudgetIsCapped() {
+    RetryBudget budget = RetryBudget.create(1, 2);
+    for (int i = 0; i < 10; i++) {
+      budget.onRequest();
+    }
+    assertTrue(budget.tryAcquireRetry());
+    assertTrue(budget.tryAcquireRetry());
+    assertFalse(budget.tryAcquireRetry());
+  }
+
+  @Test
+  public void testInvalidBudget() {
+    thrown.expect(IllegalArgumentException.class);
+    RetryBudget.create(0.1, 0);
+  }
+
+  @Test
+  public void testRunWithRetriesAsync() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    Callable<String> callable = new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        if (attempts.incrementAndGet() < 3) {
+          throw new IOException("transient");
+        }
+        return "done";
+      }
+    };
+    String result = RetryHelper.runWithRetriesAsync(callable, RETRY_SETTINGS,
+        RETRY_IO_EXCEPTIONS, CurrentMillisClock.getDefaultClock(),
+        RetryHelper.getDefaultAsyncExecutor()).get();
+    assertEquals("done", result);
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void testRunWithRetriesAsyncExhaustedBudget() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    Callable<String> callable = new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        attempts.incrementAndGet();
+        throw new IOException("transient");
+      }
+    };
+    RetryBudget budget = RetryBudget.create(0, 1);
+    try {
+      RetryHelper.runWithRetriesAsync(callable, RETRY_SETTINGS, RETRY_IO_EXCEPTIONS,
+          CurrentMillisClock.getDefaultClock(), RetryHelper.getDefaultAsyncExecutor(), budget)
+          .get();
+      fail("Expected RetryHelperException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RetryHelperException);
+      assertTrue(e.getCause().getCause() instanceof IOException);
+    }
+    // One retry was allowed by the budget
+    assertEquals(2, attempts.get());
+    assertEquals(1, budget.getRequestCount());
+    assertEquals(1, budget.getRetryCount());
+    assertEquals(1, budget.getRejectedRetryCount());
+  }
+}
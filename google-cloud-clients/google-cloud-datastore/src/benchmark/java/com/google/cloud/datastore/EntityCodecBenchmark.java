@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cost of decoding and encoding entities of the size typically read at high rates.
+ * Decoding keeps the protobuf and creates {@link Value}s lazily, so the benchmark compares reading
+ * a few properties, materializing all of them as decoding used to, writing a decoded entity back
+ * unchanged or with one modified property, and encoding an entity created with a builder.
+ *
+ * <p>The benchmark is in the {@code com.google.cloud.datastore} package because the protobuf
+ * conversions are package-private.
+ */
+public class EntityCodecBenchmark {
+  private static final double NS_PER_SECOND = 1000 * 1000 * 1000;
+
+  private EntityCodecBenchmark() {}
+
+  private interface Codec {
+    Object run(com.google.datastore.v1.Entity entityPb);
+  }
+
+  public static void main(String[] args) {
+    int numEntities = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int propertiesPerEntity = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int stringSize = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+    int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+    List<com.google.datastore.v1.Entity> entities =
+        createEntities(numEntities, propertiesPerEntity, stringSize);
+    System.out.println(
+        String.format(
+            "%d entities, %d properties per entity, %d bytes per entity, %d iterations",
+            numEntities,
+            propertiesPerEntity,
+            entities.get(0).getSerializedSize(),
+            iterations));
+
+    Codec[] codecs = {
+      new Codec() {
+        @Override
+        public Object run(com.google.datastore.v1.Entity entityPb) {
+          Entity entity = Entity.fromPb(entityPb);
+          return entity.getString("p0") + entity.getLong("p1");
+        }
+      },
+      new Codec() {
+        @Override
+        public Object run(com.google.datastore.v1.Entity entityPb) {
+          // Creates every Value, as Entity.fromPb did before decoding became lazy.
+          return Entity.newBuilder(Entity.fromPb(entityPb)).build();
+        }
+      },
+      new Codec() {
+        @Override
+        public Object run(com.google.datastore.v1.Entity entityPb) {
+          return Entity.fromPb(entityPb).toPb();
+        }
+      },
+      new Codec() {
+        @Override
+        public Object run(com.google.datastore.v1.Entity entityPb) {
+          return Entity.newBuilder(Entity.fromPb(entityPb)).set("p1", 0L).build().toPb();
+        }
+      },
+      new Codec() {
+        @Override
+        public Object run(com.google.datastore.v1.Entity entityPb) {
+          return Entity.newBuilder(Entity.fromPb(entityPb)).build().toPb();
+        }
+      },
+    };
+    String[] names = {
+      "decode, read 2 properties",
+      "decode, materialize all",
+      "decode, encode unchanged",
+      "decode, modify 1, encode",
+      "decode, rebuild, encode"
+    };
+
+    // Warm up all codecs before measuring any.
+    for (Codec codec : codecs) {
+      run("warmup", codec, entities, iterations, false);
+    }
+    for (int i = 0; i < codecs.length; i++) {
+      run(names[i], codecs[i], entities, iterations, true);
+    }
+  }
+
+  private static void run(
+      String name,
+      Codec codec,
+      List<com.google.datastore.v1.Entity> entities,
+      int iterations,
+      boolean report) {
+    long count = 0;
+    long startAllocated = allocatedBytes();
+    long startNanos = System.nanoTime();
+
+    for (int i = 0; i < iterations; i++) {
+      for (com.google.datastore.v1.Entity entityPb : entities) {
+        if (codec.run(entityPb) != null) {
+          count++;
+        }
+      }
+    }
+
+    long elapsedNanos = System.nanoTime() - startNanos;
+    long allocated = allocatedBytes() - startAllocated;
+
+    if (!report) {
+      return;
+    }
+    double seconds = elapsedNanos / NS_PER_SECOND;
+    System.out.println(
+        String.format(
+            "%s: %.0f entities/s, %s",
+            name,
+            count / seconds,
+            startAllocated < 0 ? "allocation unavailable" : (allocated / count) + " bytes/entity"));
+  }
+
+  private static List<com.google.datastore.v1.Entity> createEntities(
+      int numEntities, int propertiesPerEntity, int stringSize) {
+    KeyFactory keyFactory = new KeyFactory("benchmark").setKind("Benchmark");
+    StringBuilder string = new StringBuilder();
+    for (int i = 0; i < stringSize; i++) {
+      string.append((char) ('a' + i % 26));
+    }
+    List<com.google.datastore.v1.Entity> entities = new ArrayList<>(numEntities);
+    for (int e = 0; e < numEntities; e++) {
+      Entity.Builder builder = Entity.newBuilder(keyFactory.newKey(e + 1));
+      for (int p = 0; p < propertiesPerEntity; p++) {
+        String name = "p" + p;
+        switch (p % 4) {
+          case 0:
+            builder.set(name, string.toString());
+            break;
+          case 1:
+            builder.set(name, (long) e * p);
+            break;
+          case 2:
+            builder.set(name, e * 0.5);
+            break;
+          default:
+            builder.set(name, p % 2 == 0);
+            break;
+        }
+      }
+      // Encode a fresh entity, so that decoding starts from a protobuf like one read from the wire.
+      entities.add(builder.build().toPb());
+    }
+    return entities;
+  }
+
+  /** Returns the bytes allocated by the current thread, or -1 if the JVM doesn't support it. */
+  private static long allocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+      if (sunBean.isThreadAllocatedMemorySupported()) {
+        return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+}
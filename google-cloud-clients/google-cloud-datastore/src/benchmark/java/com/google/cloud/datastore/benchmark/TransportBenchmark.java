@@ -0,0 +1,241 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore.benchmark;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.Key;
+import com.google.cloud.datastore.KeyFactory;
+import com.google.datastore.v1.Entity;
+import com.google.datastore.v1.EntityResult;
+import com.google.datastore.v1.LookupRequest;
+import com.google.datastore.v1.LookupResponse;
+import com.google.datastore.v1.Value;
+import com.google.protobuf.ByteString;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the latency and throughput of lookups sent over HTTP and over gRPC. Both transports
+ * talk to fake Datastore servers running in the benchmark's JVM, on the loopback interface, that
+ * answer each lookup with an entity per key. Only the client and transport overhead is measured.
+ */
+public class TransportBenchmark {
+  private static final double NS_PER_MS = 1000 * 1000;
+  private static final double NS_PER_SECOND = 1000 * 1000 * 1000;
+  private static final String PROJECT_ID = "benchmark";
+
+  private TransportBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+    int lookupsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+    int keysPerLookup = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    int valueSize = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+    FakeDatastore fake = new FakeDatastore(valueSize);
+    HttpServer httpServer = fake.startHttpServer();
+    Server grpcServer = fake.startGrpcServer();
+    try {
+      Datastore http =
+          DatastoreOptions.newBuilder()
+              .setProjectId(PROJECT_ID)
+              .setCredentials(NoCredentials.getInstance())
+              .setHost("http://localhost:" + httpServer.getAddress().getPort())
+              .build()
+              .getService();
+      Datastore grpc =
+          DatastoreOptions.newBuilder()
+              .setProjectId(PROJECT_ID)
+              .setCredentials(NoCredentials.getInstance())
+              .setHost("localhost:" + grpcServer.getPort())
+              .setTransportOptions(DatastoreOptions.getDefaultGrpcTransportOptions())
+              .build()
+              .getService();
+      System.out.println(
+          String.format(
+              "%d threads, %d lookups per thread, %d keys per lookup, %d byte values",
+              threads, lookupsPerThread, keysPerLookup, valueSize));
+
+      // Warm up both transports before measuring either.
+      run("warmup", http, threads, lookupsPerThread / 10, keysPerLookup, false);
+      run("warmup", grpc, threads, lookupsPerThread / 10, keysPerLookup, false);
+
+      run("HTTP", http, threads, lookupsPerThread, keysPerLookup, true);
+      run("gRPC", grpc, threads, lookupsPerThread, keysPerLookup, true);
+    } finally {
+      httpServer.stop(0);
+      grpcServer.shutdownNow();
+    }
+    // Exit without waiting for the idle threads of the servers' executors.
+    System.exit(0);
+  }
+
+  private static void run(
+      String name,
+      final Datastore datastore,
+      int threads,
+      final int lookups,
+      final int keysPerLookup,
+      boolean report)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      long startNanos = System.nanoTime();
+      List<Future<long[]>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(
+            executor.submit(
+                new Callable<long[]>() {
+                  @Override
+                  public long[] call() {
+                    KeyFactory keyFactory = datastore.newKeyFactory().setKind("Benchmark");
+                    Key[] keys = new Key[keysPerLookup];
+                    long[] latencies = new long[lookups];
+                    for (int i = 0; i < lookups; i++) {
+                      for (int k = 0; k < keysPerLookup; k++) {
+                        keys[k] = keyFactory.newKey("key-" + thread + "-" + i + "-" + k);
+                      }
+                      long lookupStart = System.nanoTime();
+                      datastore.fetch(keys);
+                      latencies[i] = System.nanoTime() - lookupStart;
+                    }
+                    return latencies;
+                  }
+                }));
+      }
+      long[] latencies = new long[threads * lookups];
+      int count = 0;
+      for (Future<long[]> future : futures) {
+        long[] threadLatencies = future.get();
+        System.arraycopy(threadLatencies, 0, latencies, count, threadLatencies.length);
+        count += threadLatencies.length;
+      }
+      long elapsedNanos = System.nanoTime() - startNanos;
+      if (!report) {
+        return;
+      }
+      Arrays.sort(latencies);
+      System.out.println(
+          String.format(
+              "%s: %.0f lookups/s, latency p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+              name,
+              latencies.length / (elapsedNanos / NS_PER_SECOND),
+              latencies[latencies.length / 2] / NS_PER_MS,
+              latencies[(int) (latencies.length * 0.99)] / NS_PER_MS,
+              latencies[latencies.length - 1] / NS_PER_MS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Answers lookups over both transports with an entity per key. */
+  private static class FakeDatastore {
+
+    private static final MethodDescriptor<LookupRequest, LookupResponse> LOOKUP_METHOD =
+        MethodDescriptor.<LookupRequest, LookupResponse>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName(
+                MethodDescriptor.generateFullMethodName("google.datastore.v1.Datastore", "Lookup"))
+            .setRequestMarshaller(ProtoUtils.marshaller(LookupRequest.getDefaultInstance()))
+            .setResponseMarshaller(ProtoUtils.marshaller(LookupResponse.getDefaultInstance()))
+            .build();
+
+    private final Value value;
+
+    FakeDatastore(int valueSize) {
+      value =
+          Value.newBuilder()
+              .setBlobValue(ByteString.copyFrom(new byte[valueSize]))
+              .setExcludeFromIndexes(true)
+              .build();
+    }
+
+    LookupResponse lookup(LookupRequest request) {
+      LookupResponse.Builder response = LookupResponse.newBuilder();
+      for (com.google.datastore.v1.Key key : request.getKeysList()) {
+        response.addFound(
+            EntityResult.newBuilder()
+                .setEntity(Entity.newBuilder().setKey(key).putProperties("value", value)));
+      }
+      return response.build();
+    }
+
+    HttpServer startHttpServer() throws IOException {
+      HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext(
+          "/v1/projects/" + PROJECT_ID + ":lookup",
+          new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+              LookupResponse response;
+              try (InputStream in = exchange.getRequestBody()) {
+                response = lookup(LookupRequest.parseFrom(in));
+              }
+              byte[] bytes = response.toByteArray();
+              exchange.getResponseHeaders().set("Content-Type", "application/x-protobuf");
+              exchange.sendResponseHeaders(200, bytes.length);
+              try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+              }
+            }
+          });
+      server.setExecutor(Executors.newCachedThreadPool());
+      server.start();
+      return server;
+    }
+
+    Server startGrpcServer() throws IOException {
+      ServerServiceDefinition service =
+          ServerServiceDefinition.builder("google.datastore.v1.Datastore")
+              .addMethod(
+                  LOOKUP_METHOD,
+                  ServerCalls.asyncUnaryCall(
+                      new ServerCalls.UnaryMethod<LookupRequest, LookupResponse>() {
+                        @Override
+                        public void invoke(
+                            LookupRequest request, StreamObserver<LookupResponse> observer) {
+                          observer.onNext(lookup(request));
+                          observer.onCompleted();
+                        }
+                      }))
+              .build();
+      return ServerBuilder.forPort(0).addService(service).build().start();
+    }
+  }
+}
@@ -31,8 +31,11 @@ import static com.google.cloud.datastore.StringValue.of;
 import com.google.cloud.Timestamp;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableSortedMap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.datastore.v1.Value.ValueTypeCase;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -48,14 +51,21 @@ import java.util.Set;
  * and a value (as {@link com.google.cloud.datastore.Value}), and may be associated with a
  * key. For a list of possible values see {@link ValueType}.
  *
+ * <p>An entity read from Datastore keeps the protobuf it was decoded from. Its {@link Value}s are
+ * only created when they are first needed, the typed getters of scalar properties read the
+ * protobuf directly, and writing the entity back sends the original protobuf.
+ *
  * @see <a href="https://cloud.google.com/datastore/docs/concepts/entities">Google Cloud Datastore
  *     Entities, Properties, and Keys</a>
  */
 public abstract class BaseEntity<K extends IncompleteKey> implements Serializable {
 
   private static final long serialVersionUID = -9070588108769487081L;
-  private final ImmutableSortedMap<String, Value<?>> properties;
+  // Created from entityPb on first use for decoded entities, always set after serialization.
+  private volatile ImmutableSortedMap<String, Value<?>> properties;
   private final K key;
+  // The protobuf of a decoded entity, or null for an entity created with a builder.
+  private final transient com.google.datastore.v1.Entity entityPb;
 
   public abstract static class Builder<K extends IncompleteKey, B extends Builder<K, B>> {
 
@@ -75,7 +85,7 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
 
     Builder(K key, BaseEntity<?> entity) {
       setKey(key);
-      setProperties(entity.properties);
+      setProperties(entity.getProperties());
     }
 
     protected K key() {
@@ -91,20 +101,6 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
       return (B) this;
     }
 
-    @SuppressWarnings("unchecked")
-    B fill(com.google.datastore.v1.Entity entityPb) {
-      Map<String, Value<?>> copiedProperties = Maps.newHashMap();
-      for (Map.Entry<String, com.google.datastore.v1.Value> entry :
-          entityPb.getPropertiesMap().entrySet()) {
-        copiedProperties.put(entry.getKey(), Value.fromPb(entry.getValue()));
-      }
-      setProperties(copiedProperties);
-      if (entityPb.hasKey()) {
-        setKey((K) IncompleteKey.fromPb(entityPb.getKey()));
-      }
-      return self();
-    }
-
     protected B setProperties(Map<String, Value<?>> properties) {
       this.properties.putAll(properties);
       return self();
@@ -456,24 +452,31 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
   BaseEntity(Builder<K, ?> builder) {
     this.key = builder.key;
     this.properties = ImmutableSortedMap.copyOf(builder.properties);
+    this.entityPb = null;
   }
 
   BaseEntity(BaseEntity<K> from) {
     this.key = from.getKey();
     this.properties = from.properties;
+    this.entityPb = from.entityPb;
+  }
+
+  BaseEntity(K key, com.google.datastore.v1.Entity entityPb) {
+    this.key = key;
+    this.entityPb = entityPb;
   }
 
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
         .add("key", key)
-        .add("properties", properties)
+        .add("properties", getProperties())
         .toString();
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(key, properties);
+    return Objects.hash(key, getProperties());
   }
 
   @Override
@@ -486,7 +489,7 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
     }
     BaseEntity<?> other = (BaseEntity<?>) obj;
     return Objects.equals(key, other.key)
-        && Objects.equals(properties, other.properties);
+        && Objects.equals(getProperties(), other.getProperties());
   }
 
   /**
@@ -508,6 +511,9 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    * Returns {@code true} if the entity contains a property with the given {@code name}.
    */
   public boolean contains(String name) {
+    if (entityPb != null) {
+      return entityPb.getPropertiesMap().containsKey(name);
+    }
     return properties.containsKey(name);
   }
 
@@ -518,7 +524,7 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    */
   public <V extends Value<?>> V getValue(String name) {
     @SuppressWarnings("unchecked")
-    V property = (V) properties.get(name);
+    V property = (V) getProperties().get(name);
     if (property == null) {
       throw DatastoreException.throwInvalidRequest("No such property %s", name);
     }
@@ -531,6 +537,10 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    * @throws DatastoreException if no such property
    */
   public boolean isNull(String name) {
+    com.google.datastore.v1.Value valuePb = getValuePb(name);
+    if (valuePb != null) {
+      return valuePb.getValueTypeCase() == ValueTypeCase.NULL_VALUE;
+    }
     return getValue(name) instanceof NullValue;
   }
 
@@ -543,6 +553,10 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    */
   @SuppressWarnings("unchecked")
   public String getString(String name) {
+    com.google.datastore.v1.Value valuePb = getValuePb(name);
+    if (valuePb != null && valuePb.getValueTypeCase() == ValueTypeCase.STRING_VALUE) {
+      return valuePb.getStringValue();
+    }
     return ((Value<String>) getValue(name)).get();
   }
 
@@ -554,6 +568,10 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    */
   @SuppressWarnings("unchecked")
   public long getLong(String name) {
+    com.google.datastore.v1.Value valuePb = getValuePb(name);
+    if (valuePb != null && valuePb.getValueTypeCase() == ValueTypeCase.INTEGER_VALUE) {
+      return valuePb.getIntegerValue();
+    }
     return ((Value<Long>) getValue(name)).get();
   }
 
@@ -565,6 +583,10 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    */
   @SuppressWarnings("unchecked")
   public double getDouble(String name) {
+    com.google.datastore.v1.Value valuePb = getValuePb(name);
+    if (valuePb != null && valuePb.getValueTypeCase() == ValueTypeCase.DOUBLE_VALUE) {
+      return valuePb.getDoubleValue();
+    }
     return ((Value<Double>) getValue(name)).get();
   }
 
@@ -576,6 +598,10 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    */
   @SuppressWarnings("unchecked")
   public boolean getBoolean(String name) {
+    com.google.datastore.v1.Value valuePb = getValuePb(name);
+    if (valuePb != null && valuePb.getValueTypeCase() == ValueTypeCase.BOOLEAN_VALUE) {
+      return valuePb.getBooleanValue();
+    }
     return ((Value<Boolean>) getValue(name)).get();
   }
 
@@ -650,21 +676,53 @@ public abstract class BaseEntity<K extends IncompleteKey> implements Serializabl
    * Returns the properties name.
    */
   public Set<String> getNames() {
-    return properties.keySet();
+    ImmutableSortedMap<String, Value<?>> materialized = properties;
+    if (materialized == null) {
+      return ImmutableSortedSet.copyOf(entityPb.getPropertiesMap().keySet());
+    }
+    return materialized.keySet();
   }
 
   ImmutableSortedMap<String, Value<?>> getProperties() {
-    return properties;
+    ImmutableSortedMap<String, Value<?>> materialized = properties;
+    if (materialized == null) {
+      ImmutableSortedMap.Builder<String, Value<?>> builder = ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, com.google.datastore.v1.Value> entry :
+          entityPb.getPropertiesMap().entrySet()) {
+        builder.put(entry.getKey(), Value.fromPb(entry.getValue()));
+      }
+      materialized = builder.build();
+      properties = materialized;
+    }
+    return materialized;
+  }
+
+  /**
+   * Returns the protobuf of property {@code name} of a decoded entity, or {@code null} if the
+   * entity was not decoded or has no such property.
+   */
+  private com.google.datastore.v1.Value getValuePb(String name) {
+    return entityPb == null ? null : entityPb.getPropertiesMap().get(name);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    // entityPb is not serialized, so the properties must be.
+    getProperties();
+    out.defaultWriteObject();
   }
 
   final com.google.datastore.v1.Entity toPb() {
-    com.google.datastore.v1.Entity.Builder entityPb = com.google.datastore.v1.Entity.newBuilder();
+    if (entityPb != null) {
+      // Entities are immutable, so the protobuf they were decoded from still encodes them.
+      return entityPb;
+    }
+    com.google.datastore.v1.Entity.Builder builder = com.google.datastore.v1.Entity.newBuilder();
     for (Map.Entry<String, Value<?>> entry : properties.entrySet()) {
-      entityPb.putProperties(entry.getKey(), entry.getValue().toPb());
+      builder.putProperties(entry.getKey(), entry.getValue().toPb());
     }
     if (key != null) {
-      entityPb.setKey(key.toPb());
+      builder.setKey(key.toPb());
     }
-    return entityPb.build();
+    return builder.build();
   }
 }
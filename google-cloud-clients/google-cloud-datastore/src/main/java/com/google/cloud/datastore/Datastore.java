@@ -131,6 +131,24 @@ public interface Datastore extends Service<DatastoreOptions>, DatastoreReaderWri
    */
   Batch newBatch();
 
+  /**
+   * Returns a writer that packs writes into non-transactional commits and runs several commits in
+   * parallel. It's intended for writing a large number of independent entities, as the writes are
+   * not applied atomically. See {@link DatastoreBulkWriter}.
+   *
+   * <p>Example of loading entities.
+   * <pre> {@code
+   * KeyFactory keyFactory = datastore.newKeyFactory().setKind("MyKind");
+   * try (DatastoreBulkWriter writer =
+   *     datastore.newBulkWriter(DatastoreBulkWriterOptions.newBuilder().build())) {
+   *   for (int i = 0; i < 1000000; i++) {
+   *     writer.put(Entity.newBuilder(keyFactory.newKey(i)).set("value", i).build());
+   *   }
+   * }
+   * }</pre>
+   */
+  DatastoreBulkWriter newBulkWriter(DatastoreBulkWriterOptions options);
+
   /**
    * Allocate a unique id for the given key.
    * The returned key will have the same information (projectId, kind, namespace and ancestors)
@@ -347,10 +365,14 @@ public interface Datastore extends Service<DatastoreOptions>, DatastoreReaderWri
 
   /**
    * Returns an {@link Entity} for each given {@link Key} that exists in the Datastore. The order of
-   * the result is unspecified. Results are loaded lazily, so it is possible to get a
-   * {@code DatastoreException} from the returned {@code Iterator}'s
-   * {@link Iterator#hasNext hasNext} or {@link Iterator#next next} methods. {@link ReadOption}s can
-   * be specified if desired.
+   * the result is unspecified, unless {@link ReadOption#keyOrder()} is specified. Results are
+   * loaded lazily, so it is possible to get a {@code DatastoreException} from the returned
+   * {@code Iterator}'s {@link Iterator#hasNext hasNext} or {@link Iterator#next next} methods.
+   * {@link ReadOption}s can be specified if desired.
+   *
+   * <p>Large sets of keys are looked up in chunks of {@link DatastoreOptions#getLookupChunkSize()}
+   * keys, up to {@link DatastoreOptions#getLookupParallelism()} at a time, and entities are
+   * returned as soon as their chunk has been looked up.
    *
    * <p>Example of getting multiple entity objects.
    * <pre> {@code
@@ -434,4 +456,12 @@ public interface Datastore extends Service<DatastoreOptions>, DatastoreReaderWri
    * @throws DatastoreException upon failure
    */
   <T> QueryResults<T> run(Query<T> query, ReadOption... options);
+
+  /**
+   * Releases the connections of the service's transport. With the gRPC transport, this shuts down
+   * the channels, which are shared by all the services created from the same {@link
+   * DatastoreOptions} instance. These services must not be used after calling this method. Does
+   * nothing with the HTTP transport, whose connections are managed by its {@code HttpTransport}.
+   */
+  void close();
 }
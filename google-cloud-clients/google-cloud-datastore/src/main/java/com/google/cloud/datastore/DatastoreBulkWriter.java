@@ -0,0 +1,425 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.BaseServiceException;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes a large number of entities by packing their mutations into non-transactional commits and
+ * running several commits in parallel. Commits are cut according to the limits of {@link
+ * DatastoreBulkWriterOptions}, so callers don't have to split their writes to stay under the
+ * commit limits of Datastore.
+ *
+ * <p>Entities can be written concurrently from several threads. Each write returns a future that
+ * completes with the key of the written entity, including the id allocated by Datastore for an
+ * incomplete key, once its commit succeeds. A commit that fails with a transient error is sent
+ * again on its own, without affecting the other commits, when all its mutations can safely be
+ * applied twice. There is no atomicity across commits and no ordering guarantee between writes of
+ * different commits, so writing the same key twice may apply the writes in any order.
+ *
+ * <p>Example of loading entities:
+ *
+ * <pre> {@code
+ * try (DatastoreBulkWriter writer =
+ *     datastore.newBulkWriter(DatastoreBulkWriterOptions.newBuilder().build())) {
+ *   KeyFactory keyFactory = datastore.newKeyFactory().setKind("MyKind");
+ *   for (int i = 0; i < 1000000; i++) {
+ *     writer.put(Entity.newBuilder(keyFactory.newKey(i)).set("value", i).build());
+ *   }
+ * }
+ * }</pre>
+ */
+public class DatastoreBulkWriter implements AutoCloseable {
+
+  // ABORTED, DEADLINE_EXCEEDED and UNAVAILABLE, see DatastoreException.
+  private static final Set<Integer> TRANSIENT_ERROR_CODES = ImmutableSet.of(10, 4, 14);
+
+  private final DatastoreImpl datastore;
+  private final DatastoreBulkWriterOptions options;
+  private final ExecutorService executor;
+  // Bounds the number of commits that are running or waiting to run.
+  private final Semaphore commitPermits;
+
+  private final Object lock = new Object();
+
+  // Guarded by lock.
+  private Chunk chunk = new Chunk();
+  private int pendingCommits;
+  private DatastoreException failure;
+  private int failureCount;
+  private boolean closed;
+
+  private final long startNanos = System.nanoTime();
+  private final AtomicLong committedMutations = new AtomicLong();
+  private final AtomicLong failedMutations = new AtomicLong();
+  private final AtomicLong committedBytes = new AtomicLong();
+  private final AtomicLong commits = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+
+  DatastoreBulkWriter(DatastoreImpl datastore, DatastoreBulkWriterOptions options) {
+    this.datastore = datastore;
+    this.options = options;
+    this.executor =
+        Executors.newFixedThreadPool(
+            options.getMaxParallelCommits(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("datastore-bulk-writer-%d")
+                .build());
+    this.commitPermits = new Semaphore(2 * options.getMaxParallelCommits());
+  }
+
+  /**
+   * Inserts {@code entity}. If an entity with the same key exists, the future fails with a {@link
+   * DatastoreException} with {@link DatastoreException#getReason()} equal to
+   * {@code "ALREADY_EXISTS"}, as do the futures of the other entities of the same commit.
+   *
+   * @return a future with the key of the entity, allocated by Datastore if {@code entity} has an
+   *     incomplete key
+   * @throws IllegalStateException if the writer is closed
+   */
+  public ApiFuture<Key> add(FullEntity<?> entity) {
+    return write(
+        com.google.datastore.v1.Mutation.newBuilder().setInsert(entity.toPb()).build(),
+        entity.getKey(), false);
+  }
+
+  /**
+   * Inserts {@code entity}, or replaces the existing entity with the same key.
+   *
+   * @return a future with the key of the entity, allocated by Datastore if {@code entity} has an
+   *     incomplete key
+   * @throws IllegalStateException if the writer is closed
+   */
+  public ApiFuture<Key> put(FullEntity<?> entity) {
+    return write(
+        com.google.datastore.v1.Mutation.newBuilder().setUpsert(entity.toPb()).build(),
+        entity.getKey(), entity.getKey() instanceof Key);
+  }
+
+  /**
+   * Replaces the existing entity with the key of {@code entity}. If no such entity exists, the
+   * future fails, as do the futures of the other entities of the same commit.
+   *
+   * @return a future with the key of the entity
+   * @throws IllegalStateException if the writer is closed
+   */
+  public ApiFuture<Key> update(Entity entity) {
+    return write(
+        com.google.datastore.v1.Mutation.newBuilder().setUpdate(entity.toPb()).build(),
+        entity.getKey(), true);
+  }
+
+  /**
+   * Deletes the entity with {@code key}, if any.
+   *
+   * @return a future with {@code key}
+   * @throws IllegalStateException if the writer is closed
+   */
+  public ApiFuture<Key> delete(Key key) {
+    return write(
+        com.google.datastore.v1.Mutation.newBuilder().setDelete(key.toPb()).build(), key, true);
+  }
+
+  private ApiFuture<Key> write(com.google.datastore.v1.Mutation mutationPb, IncompleteKey key,
+      boolean idempotent) {
+    Preconditions.checkArgument(key != null, "Entity must have a key");
+    Write write = new Write(mutationPb, key instanceof Key ? (Key) key : null, idempotent);
+    List<Chunk> ready = new ArrayList<>(2);
+    synchronized (lock) {
+      Preconditions.checkState(!closed, "DatastoreBulkWriter is closed");
+      if (!chunk.isEmpty() && !chunk.fits(write)) {
+        ready.add(chunk);
+        chunk = new Chunk();
+      }
+      chunk.add(write);
+      if (chunk.writes.size() >= options.getMaxMutationsPerCommit()) {
+        ready.add(chunk);
+        chunk = new Chunk();
+      }
+      pendingCommits += ready.size();
+    }
+    submit(ready);
+    return write.future;
+  }
+
+  /**
+   * Commits all buffered writes and waits for all commits to complete.
+   *
+   * @throws DatastoreException the first commit failure since the last call to {@code flush()}, if
+   *     any. The futures of the writes tell which writes failed.
+   */
+  public void flush() {
+    List<Chunk> ready = new ArrayList<>(1);
+    synchronized (lock) {
+      if (!chunk.isEmpty()) {
+        ready.add(chunk);
+        chunk = new Chunk();
+        pendingCommits++;
+      }
+    }
+    submit(ready);
+
+    synchronized (lock) {
+      try {
+        while (pendingCommits > 0) {
+          lock.wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new DatastoreException(BaseServiceException.UNKNOWN_CODE,
+            "Interrupted while waiting for commits", null, e);
+      }
+      if (failure != null) {
+        DatastoreException e = failure;
+        if (failureCount > 1) {
+          e = new DatastoreException(e.getCode(),
+              failureCount + " commits failed, first failure: " + e.getMessage(), e.getReason(), e);
+        }
+        failure = null;
+        failureCount = 0;
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Commits all buffered writes, waits for all commits to complete and releases the resources of
+   * this writer.
+   *
+   * @throws DatastoreException if a commit failed, see {@link #flush()}
+   */
+  @Override
+  public void close() {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    try {
+      flush();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Returns the number of mutations that were successfully committed. */
+  public long getCommittedMutationCount() {
+    return committedMutations.get();
+  }
+
+  /** Returns the number of mutations whose commit failed. */
+  public long getFailedMutationCount() {
+    return failedMutations.get();
+  }
+
+  /** Returns the encoded size of the mutations that were successfully committed. */
+  public long getCommittedBytes() {
+    return committedBytes.get();
+  }
+
+  /** Returns the number of successful commits. */
+  public long getCommitCount() {
+    return commits.get();
+  }
+
+  /** Returns the number of times a commit was sent again after a transient error. */
+  public long getRetryCount() {
+    return retries.get();
+  }
+
+  /** Returns the average number of mutations committed per second since this writer was created. */
+  public double getMutationsPerSecond() {
+    return perSecond(committedMutations.get());
+  }
+
+  /** Returns the average number of bytes committed per second since this writer was created. */
+  public double getBytesPerSecond() {
+    return perSecond(committedBytes.get());
+  }
+
+  private double perSecond(long count) {
+    long elapsedNanos = System.nanoTime() - startNanos;
+    if (elapsedNanos <= 0) {
+      return 0;
+    }
+    return count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  private void submit(List<Chunk> ready) {
+    for (int i = 0; i < ready.size(); i++) {
+      final Chunk toCommit = ready.get(i);
+      try {
+        commitPermits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        // The remaining chunks are lost, account for them as failures.
+        DatastoreException error = new DatastoreException(BaseServiceException.UNKNOWN_CODE,
+            "Interrupted while waiting to commit", null, e);
+        for (Chunk lost : ready.subList(i, ready.size())) {
+          onCommitDone(lost, null, error);
+        }
+        throw error;
+      }
+      executor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              try {
+                commit(toCommit);
+              } finally {
+                commitPermits.release();
+              }
+            }
+          });
+    }
+  }
+
+  private void commit(Chunk chunk) {
+    com.google.datastore.v1.CommitRequest.Builder requestPb =
+        com.google.datastore.v1.CommitRequest.newBuilder();
+    requestPb.setMode(com.google.datastore.v1.CommitRequest.Mode.NON_TRANSACTIONAL);
+    for (Write write : chunk.writes) {
+      requestPb.addMutations(write.mutationPb);
+    }
+    int attempts = 0;
+    while (true) {
+      attempts++;
+      try {
+        // Retries are handled here, as only commits of idempotent mutations can be sent again.
+        onCommitDone(chunk, datastore.commitWithoutRetries(requestPb.build()), null);
+        return;
+      } catch (DatastoreException e) {
+        if (attempts >= options.getMaxAttemptsPerCommit() || !chunk.idempotent
+            || !TRANSIENT_ERROR_CODES.contains(e.getCode())) {
+          onCommitDone(chunk, null, e);
+          return;
+        }
+      } catch (RuntimeException e) {
+        onCommitDone(chunk, null,
+            new DatastoreException(BaseServiceException.UNKNOWN_CODE, e.getMessage(), null, e));
+        return;
+      }
+      retries.incrementAndGet();
+      try {
+        TimeUnit.MILLISECONDS.sleep(retryDelayMillis(attempts));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        onCommitDone(chunk, null, new DatastoreException(BaseServiceException.UNKNOWN_CODE,
+            "Interrupted while waiting to retry a commit", null, e));
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the delay before sending a commit again after the given number of attempts: the
+   * initial delay doubled for every attempt but the first, capped at the max delay.
+   */
+  long retryDelayMillis(int attempts) {
+    long initialMillis = options.getInitialRetryDelay().toMillis();
+    // Shifting by more than the leading zeros would overflow, and the cap is reached anyway.
+    int shift = Math.min(attempts - 1, Long.numberOfLeadingZeros(initialMillis) - 1);
+    return Math.min(options.getMaxRetryDelay().toMillis(), initialMillis << shift);
+  }
+
+  private void onCommitDone(Chunk chunk, com.google.datastore.v1.CommitResponse responsePb,
+      DatastoreException error) {
+    if (error == null) {
+      commits.incrementAndGet();
+      committedMutations.addAndGet(chunk.writes.size());
+      committedBytes.addAndGet(chunk.sizeBytes);
+      for (int i = 0; i < chunk.writes.size(); i++) {
+        Write write = chunk.writes.get(i);
+        com.google.datastore.v1.MutationResult resultPb = responsePb.getMutationResults(i);
+        write.future.set(resultPb.hasKey() ? Key.fromPb(resultPb.getKey()) : write.key);
+      }
+    } else {
+      failedMutations.addAndGet(chunk.writes.size());
+      for (Write write : chunk.writes) {
+        write.future.setException(error);
+      }
+    }
+    synchronized (lock) {
+      if (error != null) {
+        if (failure == null) {
+          failure = error;
+        }
+        failureCount++;
+      }
+      pendingCommits--;
+      lock.notifyAll();
+    }
+  }
+
+  /** A single mutation and its future. */
+  private static final class Write {
+    private final com.google.datastore.v1.Mutation mutationPb;
+    // The key of the mutation, or null if it's incomplete.
+    private final Key key;
+    private final boolean idempotent;
+    private final SettableApiFuture<Key> future = SettableApiFuture.create();
+
+    Write(com.google.datastore.v1.Mutation mutationPb, Key key, boolean idempotent) {
+      this.mutationPb = mutationPb;
+      this.key = key;
+      this.idempotent = idempotent;
+    }
+  }
+
+  /** Writes packed into a single commit. */
+  private final class Chunk {
+    private final List<Write> writes = new ArrayList<>();
+    // Datastore rejects commits with several mutations of the same entity.
+    private final Set<Key> keys = new HashSet<>();
+    private long sizeBytes;
+    private boolean idempotent = true;
+
+    boolean isEmpty() {
+      return writes.isEmpty();
+    }
+
+    boolean fits(Write write) {
+      return sizeBytes + write.mutationPb.getSerializedSize() <= options.getMaxCommitSizeBytes()
+          && (write.key == null || !keys.contains(write.key));
+    }
+
+    void add(Write write) {
+      writes.add(write);
+      if (write.key != null) {
+        keys.add(write.key);
+      }
+      sizeBytes += write.mutationPb.getSerializedSize();
+      idempotent &= write.idempotent;
+    }
+  }
+}
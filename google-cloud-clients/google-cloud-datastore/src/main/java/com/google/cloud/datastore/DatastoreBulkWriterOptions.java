@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore;
+
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/** Options for a {@link DatastoreBulkWriter}. */
+public class DatastoreBulkWriterOptions {
+
+  private final int maxMutationsPerCommit;
+  private final long maxCommitSizeBytes;
+  private final int maxParallelCommits;
+  private final int maxAttemptsPerCommit;
+  private final Duration initialRetryDelay;
+  private final Duration maxRetryDelay;
+
+  private DatastoreBulkWriterOptions(Builder builder) {
+    this.maxMutationsPerCommit = builder.maxMutationsPerCommit;
+    this.maxCommitSizeBytes = builder.maxCommitSizeBytes;
+    this.maxParallelCommits = builder.maxParallelCommits;
+    this.maxAttemptsPerCommit = builder.maxAttemptsPerCommit;
+    this.initialRetryDelay = builder.initialRetryDelay;
+    this.maxRetryDelay = builder.maxRetryDelay;
+  }
+
+  public int getMaxMutationsPerCommit() {
+    return maxMutationsPerCommit;
+  }
+
+  public long getMaxCommitSizeBytes() {
+    return maxCommitSizeBytes;
+  }
+
+  public int getMaxParallelCommits() {
+    return maxParallelCommits;
+  }
+
+  public int getMaxAttemptsPerCommit() {
+    return maxAttemptsPerCommit;
+  }
+
+  public Duration getInitialRetryDelay() {
+    return initialRetryDelay;
+  }
+
+  public Duration getMaxRetryDelay() {
+    return maxRetryDelay;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating DatastoreBulkWriterOptions. */
+  public static class Builder {
+
+    private int maxMutationsPerCommit = 500;
+    private long maxCommitSizeBytes = 5 * 1024 * 1024;
+    private int maxParallelCommits = 4;
+    private int maxAttemptsPerCommit = 3;
+    private Duration initialRetryDelay = Duration.ofMillis(100);
+    private Duration maxRetryDelay = Duration.ofSeconds(10);
+
+    private Builder() {}
+
+    /**
+     * Maximum number of mutations in a single commit. Defaults to 500, the largest number of
+     * mutations Datastore accepts in a commit.
+     */
+    public Builder setMaxMutationsPerCommit(int maxMutationsPerCommit) {
+      this.maxMutationsPerCommit = maxMutationsPerCommit;
+      return this;
+    }
+
+    /**
+     * Maximum encoded size of the mutations of a single commit. A mutation larger than this limit
+     * is committed on its own. Defaults to 5 MiB, half the size limit of a Datastore commit.
+     */
+    public Builder setMaxCommitSizeBytes(long maxCommitSizeBytes) {
+      this.maxCommitSizeBytes = maxCommitSizeBytes;
+      return this;
+    }
+
+    /**
+     * Maximum number of commits in flight. When this many commits are running and as many are
+     * waiting, writing entities blocks. Defaults to 4.
+     */
+    public Builder setMaxParallelCommits(int maxParallelCommits) {
+      this.maxParallelCommits = maxParallelCommits;
+      return this;
+    }
+
+    /**
+     * Maximum number of times a commit that fails with a transient error is sent. Only commits
+     * whose mutations can safely be applied twice, that is upserts, updates and deletes of
+     * complete keys, are sent again. Defaults to 3.
+     */
+    public Builder setMaxAttemptsPerCommit(int maxAttemptsPerCommit) {
+      this.maxAttemptsPerCommit = maxAttemptsPerCommit;
+      return this;
+    }
+
+    /**
+     * Delay before sending a failed commit again. The delay doubles with every attempt, up to
+     * {@link #setMaxRetryDelay(Duration)}. Defaults to 100 milliseconds.
+     */
+    public Builder setInitialRetryDelay(Duration initialRetryDelay) {
+      this.initialRetryDelay = initialRetryDelay;
+      return this;
+    }
+
+    /**
+     * Maximum delay before sending a failed commit again. Must not be less than the initial retry
+     * delay. Defaults to 10 seconds.
+     */
+    public Builder setMaxRetryDelay(Duration maxRetryDelay) {
+      this.maxRetryDelay = maxRetryDelay;
+      return this;
+    }
+
+    /** Build a DatastoreBulkWriterOptions object */
+    public DatastoreBulkWriterOptions build() {
+      validate();
+      return new DatastoreBulkWriterOptions(this);
+    }
+
+    private void validate() {
+      Preconditions.checkArgument(maxMutationsPerCommit > 0,
+          "Max mutations per commit(%s) must be > 0", maxMutationsPerCommit);
+      Preconditions.checkArgument(maxCommitSizeBytes > 0, "Max commit size(%s) must be > 0",
+          maxCommitSizeBytes);
+      Preconditions.checkArgument(maxParallelCommits > 0, "Max parallel commits(%s) must be > 0",
+          maxParallelCommits);
+      Preconditions.checkArgument(maxAttemptsPerCommit > 0,
+          "Max attempts per commit(%s) must be > 0", maxAttemptsPerCommit);
+      Preconditions.checkArgument(!initialRetryDelay.isNegative(),
+          "Initial retry delay(%s) must be >= 0", initialRetryDelay);
+      Preconditions.checkArgument(maxRetryDelay.compareTo(initialRetryDelay) >= 0,
+          "Max retry delay(%s) must be >= initial retry delay(%s)", maxRetryDelay,
+          initialRetryDelay);
+    }
+  }
+}
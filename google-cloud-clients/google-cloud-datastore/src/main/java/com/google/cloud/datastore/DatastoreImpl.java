@@ -22,11 +22,13 @@ import com.google.cloud.ExceptionHandler;
 import com.google.cloud.RetryHelper;
 import com.google.cloud.RetryHelper.RetryHelperException;
 import com.google.cloud.ServiceOptions;
+import com.google.cloud.datastore.ReadOption.ChunkStatsListener;
 import com.google.cloud.datastore.ReadOption.EventualConsistency;
+import com.google.cloud.datastore.ReadOption.KeyOrder;
 import com.google.cloud.datastore.spi.v1.DatastoreRpc;
+import com.google.cloud.datastore.spi.v1.GrpcDatastoreRpc;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
@@ -63,6 +65,18 @@ final class DatastoreImpl extends BaseService<DatastoreOptions> implements Datas
     return new BatchImpl(this);
   }
 
+  @Override
+  public DatastoreBulkWriter newBulkWriter(DatastoreBulkWriterOptions options) {
+    return new DatastoreBulkWriter(this, options);
+  }
+
+  @Override
+  public void close() {
+    if (datastoreRpc instanceof GrpcDatastoreRpc) {
+      ((GrpcDatastoreRpc) datastoreRpc).close();
+    }
+  }
+
   @Override
   public Transaction newTransaction(TransactionOptions transactionOptions) {
     return new TransactionImpl(this, transactionOptions);
@@ -302,7 +316,11 @@ final class DatastoreImpl extends BaseService<DatastoreOptions> implements Datas
 
   @Override
   public Iterator<Entity> get(Iterable<Key> keys, ReadOption... options) {
-    return get(toReadOptionsPb(options), Iterables.toArray(keys, Key.class));
+    Map<Class<? extends ReadOption>, ReadOption> optionsMap =
+        ReadOption.asImmutableMap(options != null ? options : new ReadOption[0]);
+    ChunkStatsListener listener = (ChunkStatsListener) optionsMap.get(ChunkStatsListener.class);
+    return get(toReadOptionsPb(options), optionsMap.containsKey(KeyOrder.class),
+        listener != null ? listener.getListener() : null, Iterables.toArray(keys, Key.class));
   }
 
   private static com.google.datastore.v1.ReadOptions toReadOptionsPb(ReadOption... options) {
@@ -326,51 +344,17 @@ final class DatastoreImpl extends BaseService<DatastoreOptions> implements Datas
     return DatastoreHelper.fetch(this, Iterables.toArray(keys, Key.class), options);
   }
 
-  Iterator<Entity> get(com.google.datastore.v1.ReadOptions readOptionsPb, final Key... keys) {
-    if (keys.length == 0) {
-      return Collections.emptyIterator();
-    }
-    com.google.datastore.v1.LookupRequest.Builder requestPb =
-        com.google.datastore.v1.LookupRequest.newBuilder();
-    if (readOptionsPb != null) {
-      requestPb.setReadOptions(readOptionsPb);
-    }
-    for (Key k : Sets.newLinkedHashSet(Arrays.asList(keys))) {
-      requestPb.addKeys(k.toPb());
-    }
-    return new ResultsIterator(requestPb);
+  Iterator<Entity> get(com.google.datastore.v1.ReadOptions readOptionsPb, Key... keys) {
+    return get(readOptionsPb, false, null, keys);
   }
 
-  final class ResultsIterator extends AbstractIterator<Entity> {
-
-    private final com.google.datastore.v1.LookupRequest.Builder requestPb;
-    Iterator<com.google.datastore.v1.EntityResult> iter;
-
-    ResultsIterator(com.google.datastore.v1.LookupRequest.Builder requestPb) {
-      this.requestPb = requestPb;
-      loadResults();
-    }
-
-    private void loadResults() {
-      com.google.datastore.v1.LookupResponse responsePb = lookup(requestPb.build());
-      iter = responsePb.getFoundList().iterator();
-      requestPb.clearKeys();
-      if (responsePb.getDeferredCount() > 0) {
-        requestPb.addAllKeys(responsePb.getDeferredList());
-      }
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    protected Entity computeNext() {
-      while (!iter.hasNext()) {
-        if (requestPb.getKeysCount() == 0) {
-          return endOfData();
-        }
-        loadResults();
-      }
-      return Entity.fromPb(iter.next().getEntity());
+  private Iterator<Entity> get(com.google.datastore.v1.ReadOptions readOptionsPb,
+      boolean keyOrder, LookupChunkStats.Listener listener, Key... keys) {
+    if (keys.length == 0) {
+      return Collections.emptyIterator();
     }
+    List<Key> uniqueKeys = ImmutableList.copyOf(Sets.newLinkedHashSet(Arrays.asList(keys)));
+    return new ParallelLookup(this, readOptionsPb, uniqueKeys, keyOrder, listener);
   }
 
   com.google.datastore.v1.LookupResponse lookup(
@@ -492,6 +476,15 @@ final class DatastoreImpl extends BaseService<DatastoreOptions> implements Datas
     }
   }
 
+  /**
+   * Sends a commit request once, without the service's retries. Used by callers that decide
+   * themselves which commits can safely be sent again.
+   */
+  com.google.datastore.v1.CommitResponse commitWithoutRetries(
+      com.google.datastore.v1.CommitRequest requestPb) {
+    return datastoreRpc.commit(requestPb);
+  }
+
   ByteString requestTransactionId(
       com.google.datastore.v1.BeginTransactionRequest.Builder requestPb) {
     return beginTransaction(requestPb.build()).getTransaction();
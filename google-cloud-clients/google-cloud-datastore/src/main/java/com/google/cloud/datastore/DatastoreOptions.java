@@ -18,6 +18,7 @@ package com.google.cloud.datastore;
 
 import static com.google.cloud.datastore.Validator.validateNamespace;
 
+import com.google.cloud.grpc.GrpcTransportOptions;
 import com.google.cloud.http.HttpTransportOptions;
 import com.google.cloud.ServiceDefaults;
 import com.google.cloud.ServiceOptions;
@@ -25,8 +26,10 @@ import com.google.cloud.ServiceRpc;
 import com.google.cloud.TransportOptions;
 import com.google.cloud.datastore.spi.v1.DatastoreRpc;
 import com.google.cloud.datastore.spi.DatastoreRpcFactory;
+import com.google.cloud.datastore.spi.v1.GrpcDatastoreRpc;
 import com.google.cloud.datastore.spi.v1.HttpDatastoreRpc;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 import java.lang.reflect.Method;
 import java.util.Objects;
@@ -39,8 +42,14 @@ public class DatastoreOptions
   private static final String API_SHORT_NAME = "Datastore";
   private static final String DATASTORE_SCOPE = "https://www.googleapis.com/auth/datastore";
   private static final Set<String> SCOPES = ImmutableSet.of(DATASTORE_SCOPE);
+  private static final int DEFAULT_NUM_CHANNELS = 4;
+  private static final int DEFAULT_LOOKUP_CHUNK_SIZE = 1000;
+  private static final int DEFAULT_LOOKUP_PARALLELISM = 4;
 
   private final String namespace;
+  private final int numChannels;
+  private final int lookupChunkSize;
+  private final int lookupParallelism;
 
   public static class DefaultDatastoreFactory implements DatastoreFactory {
 
@@ -58,6 +67,9 @@ public class DatastoreOptions
 
     @Override
     public ServiceRpc create(DatastoreOptions options) {
+      if (options.getTransportOptions() instanceof GrpcTransportOptions) {
+        return new GrpcDatastoreRpc(options);
+      }
       return new HttpDatastoreRpc(options);
     }
   }
@@ -66,6 +78,9 @@ public class DatastoreOptions
       ServiceOptions.Builder<Datastore, DatastoreOptions, Builder> {
 
     private String namespace;
+    private int numChannels = DEFAULT_NUM_CHANNELS;
+    private int lookupChunkSize = DEFAULT_LOOKUP_CHUNK_SIZE;
+    private int lookupParallelism = DEFAULT_LOOKUP_PARALLELISM;
 
     private Builder() {
     }
@@ -73,17 +88,60 @@ public class DatastoreOptions
     private Builder(DatastoreOptions options) {
       super(options);
       namespace = options.namespace;
+      numChannels = options.numChannels;
+      lookupChunkSize = options.lookupChunkSize;
+      lookupParallelism = options.lookupParallelism;
     }
 
+    /**
+     * Sets the transport options. Requests are sent over HTTP/1.1 with {@link
+     * HttpTransportOptions}, the default, and over gRPC with {@link GrpcTransportOptions}.
+     */
     @Override
     public Builder setTransportOptions(TransportOptions transportOptions) {
-      if (!(transportOptions instanceof HttpTransportOptions)) {
+      if (!(transportOptions instanceof HttpTransportOptions)
+          && !(transportOptions instanceof GrpcTransportOptions)) {
         throw new IllegalArgumentException(
-            "Only http transport is allowed for " + API_SHORT_NAME + ".");
+            "Only http and grpc transports are allowed for " + API_SHORT_NAME + ".");
       }
       return super.setTransportOptions(transportOptions);
     }
 
+    /**
+     * Sets the number of gRPC channels requests are spread over, when using {@link
+     * GrpcTransportOptions}. Each channel multiplexes concurrent requests over one connection.
+     * Defaults to 4.
+     */
+    public Builder setNumChannels(int numChannels) {
+      Preconditions.checkArgument(numChannels > 0, "Number of channels(%s) must be > 0",
+          numChannels);
+      this.numChannels = numChannels;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of keys sent in a single {@code Lookup} request. Gets and fetches of
+     * more keys are split into chunks of this size. Defaults to 1000, the largest number of keys
+     * Datastore accepts in a lookup.
+     */
+    public Builder setLookupChunkSize(int lookupChunkSize) {
+      Preconditions.checkArgument(lookupChunkSize > 0, "Lookup chunk size(%s) must be > 0",
+          lookupChunkSize);
+      this.lookupChunkSize = lookupChunkSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of concurrent {@code Lookup} requests sent by a single get or fetch.
+     * Defaults to 4.
+     */
+    public Builder setLookupParallelism(int lookupParallelism) {
+      Preconditions.checkArgument(lookupParallelism > 0, "Lookup parallelism(%s) must be > 0",
+          lookupParallelism);
+      this.lookupParallelism = lookupParallelism;
+      return this;
+    }
+
     @Override
     public DatastoreOptions build() {
       return new DatastoreOptions(this);
@@ -101,6 +159,9 @@ public class DatastoreOptions
   private DatastoreOptions(Builder builder) {
     super(DatastoreFactory.class, DatastoreRpcFactory.class, builder, new DatastoreDefaults());
     namespace = builder.namespace != null ? builder.namespace : defaultNamespace();
+    numChannels = builder.numChannels;
+    lookupChunkSize = builder.lookupChunkSize;
+    lookupParallelism = builder.lookupParallelism;
   }
 
   @Override
@@ -142,6 +203,13 @@ public class DatastoreOptions
     return HttpTransportOptions.newBuilder().build();
   }
 
+  /**
+   * Returns default gRPC transport options. Use them with {@link Builder#setTransportOptions} to
+   * send requests over gRPC.
+   */
+  public static GrpcTransportOptions getDefaultGrpcTransportOptions() {
+    return GrpcTransportOptions.newBuilder().build();
+  }
 
   /**
    * Returns the default namespace to be used by the datastore service.
@@ -150,6 +218,28 @@ public class DatastoreOptions
     return namespace;
   }
 
+  /**
+   * Returns the number of gRPC channels requests are spread over, when using {@link
+   * GrpcTransportOptions}.
+   */
+  public int getNumChannels() {
+    return numChannels;
+  }
+
+  /**
+   * Returns the maximum number of keys sent in a single {@code Lookup} request.
+   */
+  public int getLookupChunkSize() {
+    return lookupChunkSize;
+  }
+
+  /**
+   * Returns the maximum number of concurrent {@code Lookup} requests sent by a single get or fetch.
+   */
+  public int getLookupParallelism() {
+    return lookupParallelism;
+  }
+
 
   /**
    * Returns a default {@code DatastoreOptions} instance.
@@ -187,7 +277,8 @@ public class DatastoreOptions
 
   @Override
   public int hashCode() {
-    return Objects.hash(baseHashCode(), namespace);
+    return Objects.hash(baseHashCode(), namespace, numChannels, lookupChunkSize,
+        lookupParallelism);
   }
 
   @Override
@@ -196,7 +287,11 @@ public class DatastoreOptions
       return false;
     }
     DatastoreOptions other = (DatastoreOptions) obj;
-    return baseEquals(other) && Objects.equals(namespace, other.namespace);
+    return baseEquals(other)
+        && Objects.equals(namespace, other.namespace)
+        && numChannels == other.numChannels
+        && lookupChunkSize == other.lookupChunkSize
+        && lookupParallelism == other.lookupParallelism;
   }
 
 
@@ -91,7 +91,12 @@ public final class Entity extends FullEntity<Key> {
     return new Builder(key, copyFrom);
   }
 
+  Entity(Key key, com.google.datastore.v1.Entity entityPb) {
+    super(key, entityPb);
+  }
+
   static Entity fromPb(com.google.datastore.v1.Entity entityPb) {
-    return new Builder().fill(entityPb).build();
+    Preconditions.checkState(entityPb.hasKey());
+    return new Entity(Key.fromPb(entityPb.getKey()), entityPb);
   }
 }
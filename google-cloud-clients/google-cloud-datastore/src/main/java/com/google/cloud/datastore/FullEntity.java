@@ -66,7 +66,12 @@ public class FullEntity<K extends IncompleteKey> extends BaseEntity<K> {
     return new Builder<>(copyFrom);
   }
 
+  FullEntity(K key, com.google.datastore.v1.Entity entityPb) {
+    super(key, entityPb);
+  }
+
   static FullEntity<?> fromPb(com.google.datastore.v1.Entity entityPb) {
-    return new Builder<>().fill(entityPb).build();
+    IncompleteKey key = entityPb.hasKey() ? IncompleteKey.fromPb(entityPb.getKey()) : null;
+    return new FullEntity<>(key, entityPb);
   }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore;
+
+import com.google.common.base.MoreObjects;
+import org.threeten.bp.Duration;
+
+/**
+ * Statistics of one {@code Lookup} request sent by {@link Datastore#get(Iterable, ReadOption...)}
+ * or {@link Datastore#fetch(Iterable, ReadOption...)}. Large sets of keys are looked up in chunks,
+ * and keys deferred by Datastore are looked up again in a new chunk; a {@link Listener} registered
+ * with {@link ReadOption#chunkStatsListener(Listener)} receives the statistics of every chunk.
+ */
+public final class LookupChunkStats {
+
+  /** Receives the statistics of the chunks of a lookup. */
+  public interface Listener {
+
+    /**
+     * Called once for every chunk when its response is received. Chunks are looked up
+     * concurrently, so this method may be called from several threads at the same time.
+     */
+    void onChunkComplete(LookupChunkStats stats);
+  }
+
+  private final int keyCount;
+  private final int foundCount;
+  private final int missingCount;
+  private final int deferredCount;
+  private final int round;
+  private final Duration latency;
+
+  LookupChunkStats(int keyCount, int foundCount, int missingCount, int deferredCount, int round,
+      Duration latency) {
+    this.keyCount = keyCount;
+    this.foundCount = foundCount;
+    this.missingCount = missingCount;
+    this.deferredCount = deferredCount;
+    this.round = round;
+    this.latency = latency;
+  }
+
+  /** Returns the number of keys looked up by the chunk. */
+  public int getKeyCount() {
+    return keyCount;
+  }
+
+  /** Returns the number of entities found. */
+  public int getFoundCount() {
+    return foundCount;
+  }
+
+  /** Returns the number of keys with no entity. */
+  public int getMissingCount() {
+    return missingCount;
+  }
+
+  /** Returns the number of keys deferred by Datastore and looked up again in a new chunk. */
+  public int getDeferredCount() {
+    return deferredCount;
+  }
+
+  /**
+   * Returns 0 for a chunk of the requested keys, and {@code n} for a chunk of keys deferred
+   * {@code n} times.
+   */
+  public int getRound() {
+    return round;
+  }
+
+  /** Returns the time taken by the {@code Lookup} request, including retries. */
+  public Duration getLatency() {
+    return latency;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("keyCount", keyCount)
+        .add("foundCount", foundCount)
+        .add("missingCount", missingCount)
+        .add("deferredCount", deferredCount)
+        .add("round", round)
+        .add("latency", latency)
+        .toString();
+  }
+}
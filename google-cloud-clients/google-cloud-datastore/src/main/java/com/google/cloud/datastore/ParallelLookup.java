@@ -0,0 +1,268 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore;
+
+import com.google.api.core.ApiClock;
+import com.google.cloud.BaseServiceException;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.threeten.bp.Duration;
+
+/**
+ * Looks up a set of keys with chunked, concurrent {@code Lookup} requests and streams the found
+ * entities back as the responses arrive.
+ *
+ * <p>The keys are split into chunks of at most {@link DatastoreOptions#getLookupChunkSize()} keys,
+ * and up to {@link DatastoreOptions#getLookupParallelism()} chunks are looked up at a time. Keys
+ * deferred by Datastore are looked up again as soon as the response deferring them arrives,
+ * concurrently with the remaining chunks. Lookups stop being issued while the responses of as many
+ * chunks as the parallelism are waiting to be iterated.
+ *
+ * <p>A single chunk is looked up on the calling thread, as a plain lookup would be. Otherwise the
+ * chunks are looked up on a shared pool of daemon threads, and a failed chunk stops the lookup of
+ * the remaining ones and is thrown by {@link #hasNext()} or {@link #next()}.
+ */
+final class ParallelLookup extends AbstractIterator<Entity> {
+
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("datastore-lookup-%d").build());
+
+  private final DatastoreImpl datastore;
+  private final com.google.datastore.v1.ReadOptions readOptionsPb;
+  private final int parallelism;
+  private final LookupChunkStats.Listener listener;
+  private final ApiClock clock;
+  private final Executor executor;
+  private final BlockingQueue<ChunkResult> results = new LinkedBlockingQueue<>();
+
+  // Guarded by this.
+  private final Deque<Chunk> pending = new ArrayDeque<>();
+  private int inFlight;
+  private boolean failed;
+
+  // Only accessed by the iterating thread.
+  private final List<List<Key>> orderedChunks;
+  private final Map<Key, Entity> heldBack = new HashMap<>();
+  private final int[] openChunks;
+  private int nextOrderedChunk;
+  private int unconsumedChunks;
+  private Iterator<Entity> current = Collections.emptyIterator();
+
+  /**
+   * Starts looking up {@code keys}, which must not contain duplicates.
+   *
+   * @param keyOrder whether to return entities in the order of {@code keys}
+   * @param listener receives the statistics of each chunk, or {@code null}
+   */
+  ParallelLookup(DatastoreImpl datastore, com.google.datastore.v1.ReadOptions readOptionsPb,
+      List<Key> keys, boolean keyOrder, LookupChunkStats.Listener listener) {
+    DatastoreOptions options = datastore.getOptions();
+    this.datastore = datastore;
+    this.readOptionsPb = readOptionsPb;
+    this.parallelism = options.getLookupParallelism();
+    this.listener = listener;
+    this.clock = options.getClock();
+    List<List<Key>> chunks = Lists.partition(keys, options.getLookupChunkSize());
+    this.executor = chunks.size() == 1 ? MoreExecutors.directExecutor() : EXECUTOR;
+    this.orderedChunks = keyOrder ? chunks : null;
+    this.openChunks = new int[chunks.size()];
+    this.unconsumedChunks = chunks.size();
+    for (int i = 0; i < chunks.size(); i++) {
+      List<com.google.datastore.v1.Key> keysPb = new ArrayList<>(chunks.get(i).size());
+      for (Key key : chunks.get(i)) {
+        keysPb.add(key.toPb());
+      }
+      pending.add(new Chunk(keysPb, i, 0));
+      openChunks[i] = 1;
+    }
+    startLookups();
+    if (executor != EXECUTOR) {
+      // Lookups on the calling thread fail like a plain lookup would.
+      for (ChunkResult result : results) {
+        if (result.error != null) {
+          throw result.error;
+        }
+      }
+    }
+  }
+
+  @Override
+  protected Entity computeNext() {
+    while (!current.hasNext()) {
+      if (unconsumedChunks == 0) {
+        return endOfData();
+      }
+      ChunkResult result = takeResult();
+      unconsumedChunks--;
+      if (result.deferred) {
+        unconsumedChunks++;
+      }
+      List<Entity> entities = new ArrayList<>(result.found.size());
+      for (com.google.datastore.v1.EntityResult entityPb : result.found) {
+        entities.add(Entity.fromPb(entityPb.getEntity()));
+      }
+      current = orderedChunks == null ? entities.iterator() : releaseInKeyOrder(result, entities);
+    }
+    return current.next();
+  }
+
+  private ChunkResult takeResult() {
+    ChunkResult result;
+    try {
+      result = results.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      synchronized (this) {
+        failed = true;
+      }
+      throw new DatastoreException(BaseServiceException.UNKNOWN_CODE,
+          "Interrupted while waiting for lookup results", null, e);
+    }
+    if (result.error != null) {
+      throw result.error;
+    }
+    startLookups();
+    return result;
+  }
+
+  /**
+   * Holds back the entities of {@code result} and returns the ones whose chunk and all earlier
+   * chunks, including their deferred keys, have been looked up.
+   */
+  private Iterator<Entity> releaseInKeyOrder(ChunkResult result, List<Entity> entities) {
+    for (Entity entity : entities) {
+      heldBack.put(entity.getKey(), entity);
+    }
+    int index = result.chunk.index;
+    openChunks[index] += result.deferred ? 0 : -1;
+    List<Entity> released = new ArrayList<>();
+    while (nextOrderedChunk < openChunks.length && openChunks[nextOrderedChunk] == 0) {
+      for (Key key : orderedChunks.get(nextOrderedChunk)) {
+        Entity entity = heldBack.remove(key);
+        if (entity != null) {
+          released.add(entity);
+        }
+      }
+      nextOrderedChunk++;
+    }
+    return released.iterator();
+  }
+
+  private synchronized void startLookups() {
+    while (!failed && !pending.isEmpty() && inFlight < parallelism
+        && results.size() < parallelism) {
+      inFlight++;
+      executor.execute(new LookupTask(pending.poll()));
+    }
+  }
+
+  /** Keys looked up by a single request. */
+  private static final class Chunk {
+    private final List<com.google.datastore.v1.Key> keysPb;
+    // The index of the chunk of requested keys these keys come from.
+    private final int index;
+    private final int round;
+
+    Chunk(List<com.google.datastore.v1.Key> keysPb, int index, int round) {
+      this.keysPb = keysPb;
+      this.index = index;
+      this.round = round;
+    }
+  }
+
+  private static final class ChunkResult {
+    private final Chunk chunk;
+    private final List<com.google.datastore.v1.EntityResult> found;
+    private final boolean deferred;
+    private final RuntimeException error;
+
+    ChunkResult(Chunk chunk, List<com.google.datastore.v1.EntityResult> found, boolean deferred,
+        RuntimeException error) {
+      this.chunk = chunk;
+      this.found = found;
+      this.deferred = deferred;
+      this.error = error;
+    }
+  }
+
+  private final class LookupTask implements Runnable {
+    private final Chunk chunk;
+
+    LookupTask(Chunk chunk) {
+      this.chunk = chunk;
+    }
+
+    @Override
+    public void run() {
+      ChunkResult result;
+      try {
+        result = lookup();
+      } catch (RuntimeException e) {
+        synchronized (ParallelLookup.this) {
+          inFlight--;
+          failed = true;
+        }
+        results.add(new ChunkResult(chunk, null, false, e));
+        return;
+      }
+      results.add(result);
+      startLookups();
+    }
+
+    private ChunkResult lookup() {
+      com.google.datastore.v1.LookupRequest.Builder requestPb =
+          com.google.datastore.v1.LookupRequest.newBuilder().addAllKeys(chunk.keysPb);
+      if (readOptionsPb != null) {
+        requestPb.setReadOptions(readOptionsPb);
+      }
+      long startNanos = clock.nanoTime();
+      com.google.datastore.v1.LookupResponse responsePb = datastore.lookup(requestPb.build());
+      Duration latency = Duration.ofNanos(clock.nanoTime() - startNanos);
+      int deferredCount = responsePb.getDeferredCount();
+      if (listener != null) {
+        listener.onChunkComplete(new LookupChunkStats(chunk.keysPb.size(),
+            responsePb.getFoundCount(), responsePb.getMissingCount(), deferredCount, chunk.round,
+            latency));
+      }
+      synchronized (ParallelLookup.this) {
+        inFlight--;
+        if (deferredCount > 0) {
+          // Deferred keys go ahead of the remaining chunks so that their entities are not
+          // held back for long when returning entities in key order.
+          pending.addFirst(new Chunk(responsePb.getDeferredList(), chunk.index, chunk.round + 1));
+        }
+      }
+      return new ChunkResult(chunk, responsePb.getFoundList(), deferredCount > 0, null);
+    }
+  }
+}
@@ -72,8 +72,13 @@ public final class ProjectionEntity extends BaseEntity<Key> {
     return ((Value<Blob>) value).get();
   }
 
+  ProjectionEntity(Key key, com.google.datastore.v1.Entity entityPb) {
+    super(key, entityPb);
+  }
+
   static ProjectionEntity fromPb(com.google.datastore.v1.Entity entityPb) {
-    return new Builder().fill(entityPb).build();
+    Key key = entityPb.hasKey() ? Key.fromPb(entityPb.getKey()) : null;
+    return new ProjectionEntity(key, entityPb);
   }
 
 
@@ -16,6 +16,8 @@
 
 package com.google.cloud.datastore;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 import com.google.common.collect.ImmutableMap;
 
 import java.io.Serializable;
@@ -48,6 +50,37 @@ public abstract class ReadOption implements Serializable {
     }
   }
 
+  /**
+   * Specifies that the entities returned by gets are ordered like the requested keys. Without
+   * this option, entities are returned in the order Datastore returns them. Fetches always return
+   * entities in the order of the requested keys. Queries ignore this option.
+   */
+  public static final class KeyOrder extends ReadOption {
+
+    private static final long serialVersionUID = 3417328945106232375L;
+
+    private KeyOrder() {}
+  }
+
+  /**
+   * Specifies a listener that receives the statistics of every {@code Lookup} request sent by a
+   * get or fetch. Queries ignore this option. The listener is not serialized.
+   */
+  public static final class ChunkStatsListener extends ReadOption {
+
+    private static final long serialVersionUID = -2286734181473527961L;
+
+    private final transient LookupChunkStats.Listener listener;
+
+    private ChunkStatsListener(LookupChunkStats.Listener listener) {
+      this.listener = checkNotNull(listener);
+    }
+
+    public LookupChunkStats.Listener getListener() {
+      return listener;
+    }
+  }
+
   private ReadOption() {}
 
   /**
@@ -58,6 +91,23 @@ public abstract class ReadOption implements Serializable {
     return new EventualConsistency(true);
   }
 
+  /**
+   * Returns a {@code ReadOption} that makes gets return entities in the order of the requested
+   * keys. Entities are still streamed as they are looked up, but an entity is held back until all
+   * the entities of earlier keys have been returned.
+   */
+  public static KeyOrder keyOrder() {
+    return new KeyOrder();
+  }
+
+  /**
+   * Returns a {@code ReadOption} that reports the statistics of every {@code Lookup} request sent
+   * by a get or fetch to {@code listener}.
+   */
+  public static ChunkStatsListener chunkStatsListener(LookupChunkStats.Listener listener) {
+    return new ChunkStatsListener(listener);
+  }
+
   static Map<Class<? extends ReadOption>, ReadOption> asImmutableMap(ReadOption... options) {
     ImmutableMap.Builder<Class<? extends ReadOption>, ReadOption> builder = ImmutableMap.builder();
     for (ReadOption option : options) {
@@ -41,6 +41,8 @@ public abstract class Value<V> implements Serializable {
   private final boolean excludeFromIndexes;
   private final int meaning;
   private final V value;
+  // The protobuf a decoded value was created from, reused when encoding it.
+  private transient com.google.datastore.v1.Value valuePb;
 
   interface BuilderFactory<V, P extends Value<V>, B extends ValueBuilder<V, P, B>>
       extends java.io.Serializable {
@@ -214,13 +216,18 @@ public abstract class Value<V> implements Serializable {
 
   @SuppressWarnings("unchecked")
   com.google.datastore.v1.Value toPb() {
+    if (valuePb != null) {
+      return valuePb;
+    }
     return getType().getMarshaller().toProto(this);
   }
 
   static Value<?> fromPb(com.google.datastore.v1.Value proto) {
     ValueTypeCase descriptorId = proto.getValueTypeCase();
     ValueType valueType = ValueType.getByDescriptorId(descriptorId.getNumber());
-    return valueType == null ? RawValue.MARSHALLER.fromProto(proto).build()
+    Value<?> value = valueType == null ? RawValue.MARSHALLER.fromProto(proto).build()
         : valueType.getMarshaller().fromProto(proto).build();
+    value.valuePb = proto;
+    return value;
   }
 }
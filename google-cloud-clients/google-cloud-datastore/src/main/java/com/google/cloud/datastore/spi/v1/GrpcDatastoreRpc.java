@@ -0,0 +1,299 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore.spi.v1;
+
+import com.google.auth.Credentials;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.datastore.DatastoreException;
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.grpc.GrpcTransportOptions;
+import com.google.cloud.grpc.GrpcTransportOptions.ExecutorFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.datastore.v1.AllocateIdsRequest;
+import com.google.datastore.v1.AllocateIdsResponse;
+import com.google.datastore.v1.BeginTransactionRequest;
+import com.google.datastore.v1.BeginTransactionResponse;
+import com.google.datastore.v1.CommitRequest;
+import com.google.datastore.v1.CommitResponse;
+import com.google.datastore.v1.LookupRequest;
+import com.google.datastore.v1.LookupResponse;
+import com.google.datastore.v1.RollbackRequest;
+import com.google.datastore.v1.RollbackResponse;
+import com.google.datastore.v1.RunQueryRequest;
+import com.google.datastore.v1.RunQueryResponse;
+import com.google.protobuf.Message;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.auth.MoreCallCredentials;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCalls;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link DatastoreRpc} that sends the requests with gRPC, over a pool of HTTP/2 channels. Each
+ * channel multiplexes concurrent requests over a single connection, and requests are spread over
+ * the channels round-robin.
+ *
+ * <p>This implementation is used when {@link DatastoreOptions} are built with {@link
+ * GrpcTransportOptions}. The channels are plaintext for hosts with an {@code http} scheme and for
+ * local hosts without a scheme, such as the Datastore emulator, and use TLS otherwise.
+ *
+ * <p>The RPC is created once per {@link DatastoreOptions} instance, so the channels are shared by
+ * all the services of the same options. They are released by {@link
+ * com.google.cloud.datastore.Datastore#close()}.
+ */
+public class GrpcDatastoreRpc implements DatastoreRpc {
+
+  static final String SERVICE_NAME = "google.datastore.v1.Datastore";
+
+  static final MethodDescriptor<AllocateIdsRequest, AllocateIdsResponse> ALLOCATE_IDS_METHOD =
+      unaryMethod(
+          "AllocateIds",
+          AllocateIdsRequest.getDefaultInstance(),
+          AllocateIdsResponse.getDefaultInstance());
+  static final MethodDescriptor<BeginTransactionRequest, BeginTransactionResponse>
+      BEGIN_TRANSACTION_METHOD =
+          unaryMethod(
+              "BeginTransaction",
+              BeginTransactionRequest.getDefaultInstance(),
+              BeginTransactionResponse.getDefaultInstance());
+  static final MethodDescriptor<CommitRequest, CommitResponse> COMMIT_METHOD =
+      unaryMethod(
+          "Commit", CommitRequest.getDefaultInstance(), CommitResponse.getDefaultInstance());
+  static final MethodDescriptor<LookupRequest, LookupResponse> LOOKUP_METHOD =
+      unaryMethod(
+          "Lookup", LookupRequest.getDefaultInstance(), LookupResponse.getDefaultInstance());
+  static final MethodDescriptor<RollbackRequest, RollbackResponse> ROLLBACK_METHOD =
+      unaryMethod(
+          "Rollback", RollbackRequest.getDefaultInstance(), RollbackResponse.getDefaultInstance());
+  static final MethodDescriptor<RunQueryRequest, RunQueryResponse> RUN_QUERY_METHOD =
+      unaryMethod(
+          "RunQuery", RunQueryRequest.getDefaultInstance(), RunQueryResponse.getDefaultInstance());
+
+  private static final int DEFAULT_TLS_PORT = 443;
+  private static final int DEFAULT_PLAINTEXT_PORT = 80;
+  private static final int MAX_MESSAGE_SIZE = 100 * 1024 * 1024;
+
+  private final String projectId;
+  private final List<ManagedChannel> channels;
+  private final CallOptions callOptions;
+  private final AtomicInteger nextChannel = new AtomicInteger();
+  private final ExecutorFactory<ScheduledExecutorService> executorFactory;
+  private final ScheduledExecutorService executor;
+
+  private boolean closed;
+
+  public GrpcDatastoreRpc(DatastoreOptions options) {
+    this(options, null);
+  }
+
+  /**
+   * Creates an RPC that sends the requests over {@code channels}, which are shut down by {@link
+   * #close()}, or over new channels to the host of {@code options} if {@code channels} is {@code
+   * null}.
+   */
+  GrpcDatastoreRpc(DatastoreOptions options, List<ManagedChannel> channels) {
+    GrpcTransportOptions transportOptions = (GrpcTransportOptions) options.getTransportOptions();
+    this.projectId = options.getProjectId();
+    this.executorFactory = transportOptions.getExecutorFactory();
+    this.executor = executorFactory.get();
+    this.channels =
+        channels != null ? ImmutableList.copyOf(channels) : createChannels(options, executor);
+    Credentials credentials = options.getScopedCredentials();
+    CallOptions callOptions = CallOptions.DEFAULT;
+    if (credentials != null && !NoCredentials.getInstance().equals(credentials)) {
+      callOptions = callOptions.withCallCredentials(MoreCallCredentials.from(credentials));
+    }
+    this.callOptions = callOptions;
+  }
+
+  private static List<ManagedChannel> createChannels(
+      DatastoreOptions options, ScheduledExecutorService executor) {
+    URI uri = toUri(options.getHost());
+    boolean plaintext =
+        "http".equals(uri.getScheme()) || (uri.getScheme() == null && isLocalHost(uri.getHost()));
+    int port = uri.getPort();
+    if (port < 0) {
+      port = plaintext ? DEFAULT_PLAINTEXT_PORT : DEFAULT_TLS_PORT;
+    }
+    ImmutableList.Builder<ManagedChannel> channels = ImmutableList.builder();
+    for (int i = 0; i < options.getNumChannels(); i++) {
+      ManagedChannelBuilder<?> builder =
+          ManagedChannelBuilder.forAddress(uri.getHost(), port)
+              .executor(executor)
+              .maxInboundMessageSize(MAX_MESSAGE_SIZE)
+              .userAgent(options.getApplicationName());
+      if (plaintext) {
+        builder.usePlaintext(true);
+      }
+      channels.add(builder.build());
+    }
+    return channels.build();
+  }
+
+  /** Parses {@code host}, leaving the scheme {@code null} if {@code host} has none. */
+  private static URI toUri(String host) {
+    String normalizedHost = host != null ? host.toLowerCase() : "";
+    if (normalizedHost.startsWith("http://") || normalizedHost.startsWith("https://")) {
+      return URI.create(normalizedHost);
+    }
+    return URI.create("//" + normalizedHost);
+  }
+
+  private static boolean isLocalHost(String host) {
+    try {
+      InetAddress hostAddr = InetAddress.getByName(host);
+      return hostAddr.isAnyLocalAddress() || hostAddr.isLoopbackAddress();
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  private static <ReqT extends Message, RespT extends Message>
+      MethodDescriptor<ReqT, RespT> unaryMethod(
+          String methodName, ReqT requestPrototype, RespT responsePrototype) {
+    return MethodDescriptor.<ReqT, RespT>newBuilder()
+        .setType(MethodDescriptor.MethodType.UNARY)
+        .setFullMethodName(MethodDescriptor.generateFullMethodName(SERVICE_NAME, methodName))
+        .setRequestMarshaller(ProtoUtils.marshaller(requestPrototype))
+        .setResponseMarshaller(ProtoUtils.marshaller(responsePrototype))
+        .build();
+  }
+
+  private <ReqT, RespT> RespT call(
+      MethodDescriptor<ReqT, RespT> method, ReqT request, boolean idempotent) {
+    ManagedChannel channel =
+        channels.get((nextChannel.getAndIncrement() & Integer.MAX_VALUE) % channels.size());
+    try {
+      return ClientCalls.blockingUnaryCall(channel, method, callOptions, request);
+    } catch (StatusRuntimeException ex) {
+      throw translate(ex, idempotent);
+    }
+  }
+
+  private static DatastoreException translate(
+      StatusRuntimeException exception, boolean idempotent) {
+    Status status = exception.getStatus();
+    return new DatastoreException(
+        status.getCode().value(),
+        status.getDescription(),
+        status.getCode().name(),
+        idempotent,
+        exception);
+  }
+
+  private AllocateIdsRequest withProjectId(AllocateIdsRequest request) {
+    return request.getProjectId().isEmpty()
+        ? request.toBuilder().setProjectId(projectId).build()
+        : request;
+  }
+
+  private BeginTransactionRequest withProjectId(BeginTransactionRequest request) {
+    return request.getProjectId().isEmpty()
+        ? request.toBuilder().setProjectId(projectId).build()
+        : request;
+  }
+
+  private CommitRequest withProjectId(CommitRequest request) {
+    return request.getProjectId().isEmpty()
+        ? request.toBuilder().setProjectId(projectId).build()
+        : request;
+  }
+
+  private LookupRequest withProjectId(LookupRequest request) {
+    return request.getProjectId().isEmpty()
+        ? request.toBuilder().setProjectId(projectId).build()
+        : request;
+  }
+
+  private RollbackRequest withProjectId(RollbackRequest request) {
+    return request.getProjectId().isEmpty()
+        ? request.toBuilder().setProjectId(projectId).build()
+        : request;
+  }
+
+  private RunQueryRequest withProjectId(RunQueryRequest request) {
+    return request.getProjectId().isEmpty()
+        ? request.toBuilder().setProjectId(projectId).build()
+        : request;
+  }
+
+  @Override
+  public AllocateIdsResponse allocateIds(AllocateIdsRequest request) {
+    return call(ALLOCATE_IDS_METHOD, withProjectId(request), true);
+  }
+
+  @Override
+  public BeginTransactionResponse beginTransaction(BeginTransactionRequest request) {
+    return call(BEGIN_TRANSACTION_METHOD, withProjectId(request), true);
+  }
+
+  @Override
+  public CommitResponse commit(CommitRequest request) {
+    return call(
+        COMMIT_METHOD,
+        withProjectId(request),
+        request.getMode() == CommitRequest.Mode.NON_TRANSACTIONAL);
+  }
+
+  @Override
+  public LookupResponse lookup(LookupRequest request) {
+    return call(LOOKUP_METHOD, withProjectId(request), true);
+  }
+
+  @Override
+  public RollbackResponse rollback(RollbackRequest request) {
+    return call(ROLLBACK_METHOD, withProjectId(request), true);
+  }
+
+  @Override
+  public RunQueryResponse runQuery(RunQueryRequest request) {
+    return call(RUN_QUERY_METHOD, withProjectId(request), true);
+  }
+
+  /**
+   * Shuts down the channels of this RPC, waiting for the pending requests to complete. If the
+   * calling thread is interrupted, the channels are shut down without waiting.
+   */
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (ManagedChannel channel : channels) {
+      channel.shutdown();
+    }
+    try {
+      for (ManagedChannel channel : channels) {
+        channel.awaitTermination(10, TimeUnit.SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executorFactory.release(executor);
+    }
+  }
+}
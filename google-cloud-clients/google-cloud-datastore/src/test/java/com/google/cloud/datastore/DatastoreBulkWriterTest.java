@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.ServiceOptions;
+import com.google.cloud.datastore.spi.DatastoreRpcFactory;
+import com.google.cloud.datastore.spi.v1.DatastoreRpc;
+import com.google.datastore.v1.CommitRequest;
+import com.google.datastore.v1.CommitResponse;
+import com.google.datastore.v1.Mutation;
+import com.google.datastore.v1.MutationResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.threeten.bp.Duration;
+
+public class DatastoreBulkWriterTest {
+
+  private static final String PROJECT_ID = "project-id";
+  private static final KeyFactory KEY_FACTORY = new KeyFactory(PROJECT_ID).setKind("kind");
+  private static final long ALLOCATED_ID = 42L;
+
+  private DatastoreImpl datastore;
+  private List<CommitRequest> commits;
+  private AtomicInteger failuresToInject;
+  private int failureCode;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Before
+  public void setUp() {
+    commits = Collections.synchronizedList(new ArrayList<CommitRequest>());
+    failuresToInject = new AtomicInteger();
+    DatastoreRpcFactory rpcFactoryMock = EasyMock.createMock(DatastoreRpcFactory.class);
+    DatastoreRpc rpcMock = EasyMock.createMock(DatastoreRpc.class);
+    DatastoreOptions options = DatastoreOptions.newBuilder()
+        .setProjectId(PROJECT_ID)
+        .setCredentials(NoCredentials.getInstance())
+        // The writer must not use the service's retries, which would send inserts again.
+        .setRetrySettings(ServiceOptions.getDefaultRetrySettings())
+        .setServiceRpcFactory(rpcFactoryMock)
+        .build();
+    EasyMock.expect(rpcFactoryMock.create(options)).andReturn(rpcMock);
+    EasyMock.expect(rpcMock.commit(EasyMock.anyObject(CommitRequest.class)))
+        .andAnswer(new IAnswer<CommitResponse>() {
+          @Override
+          public CommitResponse answer() {
+            if (failuresToInject.getAndDecrement() > 0) {
+              throw new DatastoreException(failureCode, "injected", null);
+            }
+            CommitRequest requestPb = (CommitRequest) EasyMock.getCurrentArguments()[0];
+            commits.add(requestPb);
+            CommitResponse.Builder responsePb = CommitResponse.newBuilder();
+            for (Mutation mutationPb : requestPb.getMutationsList()) {
+              MutationResult.Builder resultPb = MutationResult.newBuilder();
+              com.google.datastore.v1.Key keyPb = mutationPb.getUpsert().getKey();
+              if (mutationPb.hasUpsert() && keyPb.getPath(keyPb.getPathCount() - 1).getId() == 0
+                  && keyPb.getPath(keyPb.getPathCount() - 1).getName().isEmpty()) {
+                com.google.datastore.v1.Key.Builder allocated = keyPb.toBuilder();
+                allocated.getPathBuilder(keyPb.getPathCount() - 1).setId(ALLOCATED_ID);
+                resultPb.setKey(allocated);
+              }
+              responsePb.addMutationResults(resultPb);
+            }
+            return responsePb.build();
+          }
+        })
+        .anyTimes();
+    EasyMock.replay(rpcFactoryMock, rpcMock);
+    datastore = (DatastoreImpl) options.getService();
+  }
+
+  @Test
+  public void testCutByMutationCount() throws Exception {
+    DatastoreBulkWriter writer = newWriter(
+        DatastoreBulkWriterOptions.newBuilder().setMaxMutationsPerCommit(2).build());
+    List<ApiFuture<Key>> futures = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      futures.add(writer.put(Entity.newBuilder(KEY_FACTORY.newKey(i)).set("value", i).build()));
+    }
+    writer.close();
+
+    assertEquals(3, commits.size());
+    int mutations = 0;
+    for (CommitRequest requestPb : commits) {
+      assertEquals(CommitRequest.Mode.NON_TRANSACTIONAL, requestPb.getMode());
+      assertTrue(requestPb.getMutationsCount() <= 2);
+      mutations += requestPb.getMutationsCount();
+    }
+    assertEquals(5, mutations);
+    for (int i = 1; i <= 5; i++) {
+      assertEquals(KEY_FACTORY.newKey(i), futures.get(i - 1).get());
+    }
+    assertEquals(5, writer.getCommittedMutationCount());
+    assertEquals(3, writer.getCommitCount());
+    assertEquals(0, writer.getFailedMutationCount());
+    assertTrue(writer.getCommittedBytes() > 0);
+  }
+
+  @Test
+  public void testCutBySize() {
+    Entity entity = Entity.newBuilder(KEY_FACTORY.newKey(1)).set("value", "value").build();
+    int size = Mutation.newBuilder().setUpsert(entity.toPb()).build().getSerializedSize();
+    DatastoreBulkWriter writer = newWriter(
+        DatastoreBulkWriterOptions.newBuilder().setMaxCommitSizeBytes(size * 3 / 2).build());
+    for (int i = 1; i <= 3; i++) {
+      writer.put(Entity.newBuilder(KEY_FACTORY.newKey(i)).set("value", "value").build());
+    }
+    writer.close();
+
+    assertEquals(3, commits.size());
+    assertEquals(3, writer.getCommittedMutationCount());
+  }
+
+  @Test
+  public void testSameKeyInSeparateCommits() {
+    DatastoreBulkWriter writer = newWriter(DatastoreBulkWriterOptions.newBuilder().build());
+    Key key = KEY_FACTORY.newKey(1);
+    writer.put(Entity.newBuilder(key).build());
+    writer.delete(key);
+    writer.delete(KEY_FACTORY.newKey(2));
+    writer.close();
+
+    assertEquals(2, commits.size());
+    assertEquals(3, writer.getCommittedMutationCount());
+  }
+
+  @Test
+  public void testIncompleteKey() throws Exception {
+    DatastoreBulkWriter writer = newWriter(DatastoreBulkWriterOptions.newBuilder().build());
+    ApiFuture<Key> future =
+        writer.put(FullEntity.newBuilder(KEY_FACTORY.newKey()).set("value", 1).build());
+    writer.close();
+
+    assertEquals(ALLOCATED_ID, (long) future.get().getId());
+  }
+
+  @Test
+  public void testRetryTransientFailure() throws Exception {
+    failureCode = 10;
+    failuresToInject.set(1);
+    DatastoreBulkWriter writer = newWriter(
+        DatastoreBulkWriterOptions.newBuilder().setInitialRetryDelay(Duration.ofMillis(1)).build());
+    ApiFuture<Key> future = writer.update(Entity.newBuilder(KEY_FACTORY.newKey(1)).build());
+    writer.close();
+
+    assertEquals(KEY_FACTORY.newKey(1), future.get());
+    assertEquals(1, writer.getRetryCount());
+    assertEquals(1, writer.getCommitCount());
+  }
+
+  @Test
+  public void testNoRetryOfInsert() throws Exception {
+    failureCode = 10;
+    failuresToInject.set(1);
+    DatastoreBulkWriter writer = newWriter(
+        DatastoreBulkWriterOptions.newBuilder().setInitialRetryDelay(Duration.ofMillis(1)).build());
+    ApiFuture<Key> future = writer.add(Entity.newBuilder(KEY_FACTORY.newKey(1)).build());
+    try {
+      writer.close();
+      fail("Expected DatastoreException");
+    } catch (DatastoreException expected) {
+      assertEquals(10, expected.getCode());
+    }
+    try {
+      future.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof DatastoreException);
+    }
+    assertEquals(0, writer.getRetryCount());
+    assertEquals(1, writer.getFailedMutationCount());
+    assertTrue(commits.isEmpty());
+  }
+
+  @Test
+  public void testNoRetryOfPermanentFailure() {
+    failureCode = 3;
+    failuresToInject.set(1);
+    DatastoreBulkWriter writer = newWriter(DatastoreBulkWriterOptions.newBuilder().build());
+    writer.delete(KEY_FACTORY.newKey(1));
+    try {
+      writer.flush();
+      fail("Expected DatastoreException");
+    } catch (DatastoreException expected) {
+      assertEquals(3, expected.getCode());
+    }
+    writer.delete(KEY_FACTORY.newKey(2));
+    writer.close();
+    assertEquals(0, writer.getRetryCount());
+    assertEquals(1, writer.getCommittedMutationCount());
+    assertEquals(1, writer.getFailedMutationCount());
+  }
+
+  @Test
+  public void testWriteAfterClose() {
+    DatastoreBulkWriter writer = newWriter(DatastoreBulkWriterOptions.newBuilder().build());
+    writer.close();
+    thrown.expect(IllegalStateException.class);
+    writer.delete(KEY_FACTORY.newKey(1));
+  }
+
+  @Test
+  public void testNewBulkWriter() {
+    DatastoreBulkWriterOptions options = DatastoreBulkWriterOptions.newBuilder().build();
+    DatastoreBulkWriter writer = datastore.newBulkWriter(options);
+    assertNotNull(writer);
+    writer.close();
+    assertEquals(0, writer.getCommitCount());
+  }
+
+  @Test
+  public void testRetryDelayCapped() {
+    DatastoreBulkWriter writer = newWriter(
+        DatastoreBulkWriterOptions.newBuilder()
+            .setInitialRetryDelay(Duration.ofMillis(100))
+            .setMaxRetryDelay(Duration.ofSeconds(1))
+            .build());
+    assertEquals(100, writer.retryDelayMillis(1));
+    assertEquals(400, writer.retryDelayMillis(3));
+    assertEquals(1000, writer.retryDelayMillis(5));
+    assertEquals(1000, writer.retryDelayMillis(Integer.MAX_VALUE));
+    writer.close();
+  }
+
+  @Test
+  public void testInvalidMaxRetryDelay() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Max retry delay");
+    DatastoreBulkWriterOptions.newBuilder().setMaxRetryDelay(Duration.ofMillis(10)).build();
+  }
+
+  @Test
+  public void testInvalidOptions() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Max mutations per commit");
+    DatastoreBulkWriterOptions.newBuilder().setMaxMutationsPerCommit(0).build();
+  }
+
+  private DatastoreBulkWriter newWriter(DatastoreBulkWriterOptions options) {
+    return new DatastoreBulkWriter(datastore, options);
+  }
+}
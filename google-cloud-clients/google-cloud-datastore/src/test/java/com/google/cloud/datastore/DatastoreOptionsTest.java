@@ -23,6 +23,7 @@ import static org.junit.Assert.assertTrue;
 import com.google.cloud.TransportOptions;
 import com.google.cloud.datastore.spi.DatastoreRpcFactory;
 import com.google.cloud.datastore.spi.v1.DatastoreRpc;
+import com.google.cloud.grpc.GrpcTransportOptions;
 import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Rule;
@@ -84,6 +85,49 @@ public class DatastoreOptionsTest {
     assertEquals(original.getHost(), copy.getHost());
     assertEquals(original.getRetrySettings(), copy.getRetrySettings());
     assertEquals(original.getCredentials(), copy.getCredentials());
+    assertEquals(original.getNumChannels(), copy.getNumChannels());
+    assertEquals(original.getLookupChunkSize(), copy.getLookupChunkSize());
+    assertEquals(original.getLookupParallelism(), copy.getLookupParallelism());
+  }
+
+  @Test
+  public void testGrpcTransport() {
+    assertEquals(4, options.build().getNumChannels());
+    DatastoreOptions grpcOptions =
+        options
+            .setTransportOptions(DatastoreOptions.getDefaultGrpcTransportOptions())
+            .setNumChannels(8)
+            .build();
+    assertTrue(grpcOptions.getTransportOptions() instanceof GrpcTransportOptions);
+    assertEquals(8, grpcOptions.getNumChannels());
+  }
+
+  @Test
+  public void testInvalidNumChannels() {
+    thrown.expect(IllegalArgumentException.class);
+    DatastoreOptions.newBuilder().setNumChannels(0);
+  }
+
+  @Test
+  public void testLookupSettings() {
+    assertEquals(1000, options.build().getLookupChunkSize());
+    assertEquals(4, options.build().getLookupParallelism());
+    DatastoreOptions lookupOptions =
+        options.setLookupChunkSize(100).setLookupParallelism(8).build();
+    assertEquals(100, lookupOptions.getLookupChunkSize());
+    assertEquals(8, lookupOptions.getLookupParallelism());
+  }
+
+  @Test
+  public void testInvalidLookupChunkSize() {
+    thrown.expect(IllegalArgumentException.class);
+    DatastoreOptions.newBuilder().setLookupChunkSize(0);
+  }
+
+  @Test
+  public void testInvalidLookupParallelism() {
+    thrown.expect(IllegalArgumentException.class);
+    DatastoreOptions.newBuilder().setLookupParallelism(0);
   }
 
   @Test
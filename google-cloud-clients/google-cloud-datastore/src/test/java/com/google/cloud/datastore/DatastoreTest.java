@@ -867,6 +867,118 @@ public class DatastoreTest {
     assertEquals(foundEntities.size(), 5);
   }
 
+  @Test
+  public void testFetchInChunks() {
+    DatastoreRpc chunkedRpcMock = EasyMock.createMock(DatastoreRpc.class);
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY1, KEY2)))
+        .andReturn(LookupResponse.newBuilder()
+            .addFound(EntityResult.newBuilder().setEntity(ENTITY1.toPb()))
+            .addMissing(EntityResult.newBuilder().setEntity(Entity.newBuilder(KEY2).build().toPb()))
+            .build());
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY3, KEY4)))
+        .andReturn(LookupResponse.newBuilder()
+            .addFound(EntityResult.newBuilder().setEntity(ENTITY3.toPb()))
+            .addDeferred(KEY4.toPb())
+            .build());
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY4)))
+        .andReturn(LookupResponse.getDefaultInstance());
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY5)))
+        .andReturn(LookupResponse.getDefaultInstance());
+    EasyMock.replay(chunkedRpcMock);
+    final List<LookupChunkStats> stats =
+        Collections.synchronizedList(new ArrayList<LookupChunkStats>());
+    List<Entity> entities = createDatastoreForChunkedLookup(chunkedRpcMock).fetch(
+        ImmutableList.of(KEY1, KEY2, KEY3, KEY4, KEY5),
+        ReadOption.chunkStatsListener(new LookupChunkStats.Listener() {
+          @Override
+          public void onChunkComplete(LookupChunkStats chunkStats) {
+            stats.add(chunkStats);
+          }
+        }));
+    assertEquals(5, entities.size());
+    assertEquals(ENTITY1, entities.get(0));
+    assertNull(entities.get(1));
+    assertEquals(ENTITY3, entities.get(2));
+    assertNull(entities.get(3));
+    assertNull(entities.get(4));
+    assertEquals(4, stats.size());
+    int deferredChunks = 0;
+    for (LookupChunkStats chunkStats : stats) {
+      if (chunkStats.getRound() == 1) {
+        deferredChunks++;
+        assertEquals(1, chunkStats.getKeyCount());
+      } else if (chunkStats.getDeferredCount() == 1) {
+        assertEquals(1, chunkStats.getFoundCount());
+      }
+    }
+    assertEquals(1, deferredChunks);
+    EasyMock.verify(chunkedRpcMock);
+  }
+
+  @Test
+  public void testGetInChunksWithKeyOrder() {
+    Entity entity4 = Entity.newBuilder(KEY4).set("value", "value").build();
+    DatastoreRpc chunkedRpcMock = EasyMock.createMock(DatastoreRpc.class);
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY1, KEY2)))
+        .andReturn(LookupResponse.newBuilder()
+            .addFound(EntityResult.newBuilder().setEntity(ENTITY2.toPb()))
+            .addDeferred(KEY1.toPb())
+            .build());
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY1)))
+        .andReturn(LookupResponse.newBuilder()
+            .addFound(EntityResult.newBuilder().setEntity(ENTITY1.toPb()))
+            .build());
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY3, KEY4)))
+        .andReturn(LookupResponse.newBuilder()
+            .addFound(EntityResult.newBuilder().setEntity(entity4.toPb()))
+            .addFound(EntityResult.newBuilder().setEntity(ENTITY3.toPb()))
+            .build());
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY5)))
+        .andReturn(LookupResponse.getDefaultInstance());
+    EasyMock.replay(chunkedRpcMock);
+    Iterator<Entity> iter = createDatastoreForChunkedLookup(chunkedRpcMock)
+        .get(ImmutableList.of(KEY1, KEY2, KEY3, KEY4, KEY5), ReadOption.keyOrder());
+    assertEquals(ImmutableList.of(ENTITY1, ENTITY2, ENTITY3, entity4), ImmutableList.copyOf(iter));
+    EasyMock.verify(chunkedRpcMock);
+  }
+
+  @Test
+  public void testGetInChunksFailure() {
+    DatastoreRpc chunkedRpcMock = EasyMock.createMock(DatastoreRpc.class);
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY1, KEY2)))
+        .andThrow(
+            new DatastoreException(DatastoreException.UNKNOWN_CODE, "denied", "PERMISSION_DENIED"));
+    EasyMock.expect(chunkedRpcMock.lookup(lookupRequest(KEY3)))
+        .andReturn(LookupResponse.getDefaultInstance())
+        .anyTimes();
+    EasyMock.replay(chunkedRpcMock);
+    Iterator<Entity> iter =
+        createDatastoreForChunkedLookup(chunkedRpcMock).get(ImmutableList.of(KEY1, KEY2, KEY3));
+    thrown.expect(DatastoreException.class);
+    thrown.expectMessage("denied");
+    Iterators.size(iter);
+  }
+
+  private Datastore createDatastoreForChunkedLookup(DatastoreRpc chunkedRpcMock) {
+    DatastoreRpcFactory chunkedRpcFactoryMock = EasyMock.createMock(DatastoreRpcFactory.class);
+    DatastoreOptions chunkedOptions = rpcMockOptions.toBuilder()
+        .setServiceRpcFactory(chunkedRpcFactoryMock)
+        .setLookupChunkSize(2)
+        .setLookupParallelism(2)
+        .build();
+    EasyMock.expect(chunkedRpcFactoryMock.create(chunkedOptions)).andReturn(chunkedRpcMock);
+    EasyMock.replay(chunkedRpcFactoryMock);
+    return chunkedOptions.getService();
+  }
+
+  private static LookupRequest lookupRequest(Key... keys) {
+    LookupRequest.Builder requestPb = LookupRequest.newBuilder();
+    for (Key key : keys) {
+      requestPb.addKeys(key.toPb());
+    }
+    return requestPb.build();
+  }
+
   private Datastore createDatastoreForDeferredLookup() throws DatastoreException {
     List<com.google.datastore.v1.Key> keysPb = new ArrayList<>();
     keysPb.add(KEY1.toPb());
@@ -17,9 +17,17 @@
 package com.google.cloud.datastore;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import org.junit.Test;
 
 public class EntityTest {
@@ -57,4 +65,77 @@ public class EntityTest {
     assertNotEquals(INCOMPLETE_ENTITY, entity);
     assertEquals(INCOMPLETE_ENTITY.getProperties(), entity.getProperties());
   }
+
+  @Test
+  public void testFromPbKeepsProtobuf() throws Exception {
+    Entity entity = Entity.newBuilder(KEY1)
+        .set("str", "bar")
+        .set("long", 7L)
+        .set("double", 1.5)
+        .set("bool", true)
+        .setNull("null")
+        .set("list", 1L, 2L)
+        .build();
+    com.google.datastore.v1.Entity entityPb = entity.toPb();
+    Entity decoded = Entity.fromPb(entityPb);
+    assertSame(entityPb, decoded.toPb());
+    assertEquals("bar", decoded.getString("str"));
+    assertEquals(7L, decoded.getLong("long"));
+    assertEquals(1.5, decoded.getDouble("double"), 0);
+    assertTrue(decoded.getBoolean("bool"));
+    assertTrue(decoded.isNull("null"));
+    assertFalse(decoded.isNull("str"));
+    assertTrue(decoded.contains("list"));
+    assertFalse(decoded.contains("missing"));
+    assertEquals(ImmutableSet.of("bool", "double", "list", "long", "null", "str"),
+        decoded.getNames());
+    assertEquals(2, decoded.getList("list").size());
+    assertEquals(entity, decoded);
+    assertEquals(entity.hashCode(), decoded.hashCode());
+  }
+
+  @Test
+  public void testFromPbTypeMismatch() throws Exception {
+    Entity decoded = Entity.fromPb(ENTITY.toPb());
+    try {
+      decoded.getLong("foo");
+      fail("Expected ClassCastException");
+    } catch (ClassCastException expected) {
+      // expected
+    }
+    try {
+      decoded.getString("missing");
+      fail("Expected DatastoreException");
+    } catch (DatastoreException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCopyFromDecodedEntity() throws Exception {
+    Entity decoded =
+        Entity.fromPb(Entity.newBuilder(KEY1).set("a", "b").set("c", 1L).build().toPb());
+    Entity modified = Entity.newBuilder(decoded).set("c", 2L).build();
+    com.google.datastore.v1.Entity modifiedPb = modified.toPb();
+    // Unmodified properties reuse the protobuf they were decoded from.
+    assertSame(decoded.toPb().getPropertiesMap().get("a"), modifiedPb.getPropertiesMap().get("a"));
+    assertEquals(2L, modifiedPb.getPropertiesMap().get("c").getIntegerValue());
+    assertEquals(Entity.newBuilder(KEY1).set("a", "b").set("c", 2L).build(), modified);
+  }
+
+  @Test
+  public void testSerializeDecodedEntity() throws Exception {
+    Entity decoded = Entity.fromPb(ENTITY.toPb());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(decoded);
+    }
+    try (ObjectInputStream input =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      Entity copy = (Entity) input.readObject();
+      assertEquals(ENTITY, copy);
+      assertEquals("bar", copy.getString("foo"));
+      assertEquals(ENTITY.toPb(), copy.toPb());
+    }
+  }
 }
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.datastore.spi.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.ServiceRpc;
+import com.google.cloud.datastore.Datastore;
+import com.google.cloud.datastore.DatastoreException;
+import com.google.cloud.datastore.DatastoreOptions;
+import com.google.cloud.datastore.spi.DatastoreRpcFactory;
+import com.google.datastore.v1.CommitRequest;
+import com.google.datastore.v1.CommitResponse;
+import com.google.datastore.v1.Entity;
+import com.google.datastore.v1.EntityResult;
+import com.google.datastore.v1.Key;
+import com.google.datastore.v1.LookupRequest;
+import com.google.datastore.v1.LookupResponse;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GrpcDatastoreRpcTest {
+
+  private static final String SERVER_NAME = "fake-datastore";
+  private static final String PROJECT_ID = "project-id";
+  private static final Key KEY =
+      Key.newBuilder()
+          .addPath(Key.PathElement.newBuilder().setKind("kind").setName("name"))
+          .build();
+
+  private final List<String> requestProjectIds =
+      Collections.synchronizedList(new ArrayList<String>());
+  private Server server;
+  private DatastoreOptions options;
+  private List<ManagedChannel> channels;
+  private GrpcDatastoreRpc rpc;
+
+  @Before
+  public void setUp() throws Exception {
+    ServerServiceDefinition service =
+        ServerServiceDefinition.builder(GrpcDatastoreRpc.SERVICE_NAME)
+            .addMethod(
+                GrpcDatastoreRpc.LOOKUP_METHOD,
+                ServerCalls.asyncUnaryCall(
+                    new ServerCalls.UnaryMethod<LookupRequest, LookupResponse>() {
+                      @Override
+                      public void invoke(
+                          LookupRequest request, StreamObserver<LookupResponse> observer) {
+                        requestProjectIds.add(request.getProjectId());
+                        LookupResponse.Builder response = LookupResponse.newBuilder();
+                        for (Key key : request.getKeysList()) {
+                          response.addFound(
+                              EntityResult.newBuilder().setEntity(Entity.newBuilder().setKey(key)));
+                        }
+                        observer.onNext(response.build());
+                        observer.onCompleted();
+                      }
+                    }))
+            .addMethod(
+                GrpcDatastoreRpc.COMMIT_METHOD,
+                ServerCalls.asyncUnaryCall(
+                    new ServerCalls.UnaryMethod<CommitRequest, CommitResponse>() {
+                      @Override
+                      public void invoke(
+                          CommitRequest request, StreamObserver<CommitResponse> observer) {
+                        observer.onError(
+                            Status.ABORTED.withDescription("aborted").asException());
+                      }
+                    }))
+            .build();
+    server =
+        InProcessServerBuilder.forName(SERVER_NAME).directExecutor().addService(service).build();
+    server.start();
+    options =
+        DatastoreOptions.newBuilder()
+            .setProjectId(PROJECT_ID)
+            .setCredentials(NoCredentials.getInstance())
+            .setTransportOptions(DatastoreOptions.getDefaultGrpcTransportOptions())
+            .build();
+    channels = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      channels.add(InProcessChannelBuilder.forName(SERVER_NAME).directExecutor().build());
+    }
+    rpc = new GrpcDatastoreRpc(options, channels);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    rpc.close();
+    server.shutdownNow();
+  }
+
+  @Test
+  public void testLookup() {
+    for (int i = 0; i < 3; i++) {
+      LookupResponse response = rpc.lookup(LookupRequest.newBuilder().addKeys(KEY).build());
+      assertEquals(1, response.getFoundCount());
+      assertEquals(KEY, response.getFound(0).getEntity().getKey());
+    }
+    assertEquals(Collections.nCopies(3, PROJECT_ID), requestProjectIds);
+  }
+
+  @Test
+  public void testServiceCloseShutsDownChannels() {
+    Datastore datastore =
+        options
+            .toBuilder()
+            .setServiceRpcFactory(
+                new DatastoreRpcFactory() {
+                  @Override
+                  public ServiceRpc create(DatastoreOptions options) {
+                    return rpc;
+                  }
+                })
+            .build()
+            .getService();
+    datastore.close();
+    for (ManagedChannel channel : channels) {
+      assertTrue(channel.isShutdown());
+    }
+    // Closing again does nothing.
+    datastore.close();
+  }
+
+  @Test
+  public void testError() {
+    try {
+      rpc.commit(CommitRequest.newBuilder().setMode(CommitRequest.Mode.NON_TRANSACTIONAL).build());
+      fail("Expected DatastoreException");
+    } catch (DatastoreException ex) {
+      assertEquals(Status.Code.ABORTED.value(), ex.getCode());
+      assertEquals("ABORTED", ex.getReason());
+      assertEquals("aborted", ex.getMessage());
+      assertTrue(ex.isRetryable());
+    }
+    try {
+      rpc.commit(CommitRequest.newBuilder().setMode(CommitRequest.Mode.TRANSACTIONAL).build());
+      fail("Expected DatastoreException");
+    } catch (DatastoreException ex) {
+      // Transactional commits are not idempotent.
+      assertFalse(ex.isRetryable());
+    }
+  }
+}
@@ -18,13 +18,19 @@ package com.google.cloud.dns;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.BetaApi;
+import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.services.dns.model.Change;
+import com.google.cloud.RetryOption;
 import com.google.common.base.Function;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.List;
 import java.util.Objects;
+import org.threeten.bp.Duration;
 
 /**
  * An immutable class representing an atomic update to a collection of {@link RecordSet}s within a
@@ -35,6 +41,14 @@ import java.util.Objects;
 public class ChangeRequest extends ChangeRequestInfo {
 
   private static final long serialVersionUID = 5335667200595081449L;
+  private static final RetrySettings DEFAULT_WAIT_SETTINGS =
+      RetrySettings.newBuilder()
+          .setTotalTimeout(Duration.ofHours(12L))
+          .setInitialRetryDelay(Duration.ofMillis(500L))
+          .setRetryDelayMultiplier(2.0)
+          .setJittered(false)
+          .setMaxRetryDelay(Duration.ofSeconds(10L))
+          .build();
   private final DnsOptions options;
   private final String zone;
   private transient Dns dns;
@@ -190,6 +204,28 @@ public class ChangeRequest extends ChangeRequestInfo {
     return updated == null || updated.status() == Status.DONE;
   }
 
+  /**
+   * Returns a future that completes with the up-to-date change request once its status is {@link
+   * ChangeRequestInfo.Status#DONE}, or with {@code null} if it no longer exists. No thread is
+   * blocked while waiting: the change requests waited for by all the futures are polled by a shared
+   * poller, which fetches only their status until they are done.
+   *
+   * <p>By default, the status is polled with an initial delay of 500 milliseconds that doubles up
+   * to 10 seconds, for at most 12 hours. Use {@link RetryOption} to change these settings.
+   *
+   * @return a future that fails with a {@link DnsException} upon failure of an API call, or with a
+   *     {@link com.google.api.gax.retrying.PollException} if the change request isn't done in time
+   */
+  @BetaApi
+  public ApiFuture<ChangeRequest> waitForAsync(RetryOption... waitOptions) {
+    if (getStatus() == Status.DONE) {
+      return ApiFutures.immediateFuture(this);
+    }
+    RetrySettings waitSettings = RetryOption.mergeToSettings(DEFAULT_WAIT_SETTINGS, waitOptions);
+    return ChangeRequestPoller.getInstance()
+        .watch(new ChangeRequestPoller.Key(dns, zone, getGeneratedId()), waitSettings);
+  }
+
   @Override
   public Builder toBuilder() {
     return new Builder(this);
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.dns;
+
+import com.google.api.core.CurrentMillisClock;
+import com.google.cloud.OperationPoller;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import org.threeten.bp.Duration;
+
+/**
+ * Polls the change requests waited for with {@link ChangeRequest#waitForAsync}, for all the
+ * {@link Dns} instances. Only the status of a change request is fetched while it is pending.
+ *
+ * <p>Polls block on DNS requests, so they run on a dedicated pool of daemon threads rather
+ * than on the executor shared by the asynchronous calls of the services.
+ */
+final class ChangeRequestPoller extends OperationPoller<ChangeRequestPoller.Key, ChangeRequest> {
+
+  private static final int POLLER_THREADS = 4;
+
+  private static final ChangeRequestPoller INSTANCE = new ChangeRequestPoller();
+
+  /** Identifies a change request of a service. Keys of different services are never equal. */
+  static final class Key {
+
+    private final Dns dns;
+    private final String zone;
+    private final String changeRequestId;
+
+    Key(Dns dns, String zone, String changeRequestId) {
+      this.dns = dns;
+      this.zone = zone;
+      this.changeRequestId = changeRequestId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return dns == other.dns
+          && zone.equals(other.zone)
+          && changeRequestId.equals(other.changeRequestId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(dns), zone, changeRequestId);
+    }
+
+    @Override
+    public String toString() {
+      return zone + "/" + changeRequestId;
+    }
+  }
+
+  private ChangeRequestPoller() {
+    super(
+        Executors.newScheduledThreadPool(
+            POLLER_THREADS,
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("dns-change-request-poller-%d")
+                .build()),
+        CurrentMillisClock.getDefaultClock(),
+        Duration.ofMillis(100));
+  }
+
+  static ChangeRequestPoller getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  protected Map<Key, ChangeRequest> poll(Set<Key> keys, Map<Key, Throwable> failures) {
+    Map<Key, ChangeRequest> changeRequests = new HashMap<>();
+    for (Key key : keys) {
+      try {
+        ChangeRequest changeRequest =
+            key.dns.getChangeRequest(
+                key.zone,
+                key.changeRequestId,
+                Dns.ChangeRequestOption.fields(Dns.ChangeRequestField.STATUS));
+        if (changeRequest != null) {
+          changeRequests.put(key, changeRequest);
+        }
+      } catch (DnsException e) {
+        if (e.isRetryable()) {
+          // Polled again later.
+          changeRequests.put(key, null);
+        } else {
+          failures.put(key, e);
+        }
+      }
+    }
+    return changeRequests;
+  }
+
+  @Override
+  protected boolean isDone(ChangeRequest changeRequest) {
+    return changeRequest.getStatus() == ChangeRequestInfo.Status.DONE;
+  }
+
+  @Override
+  protected ChangeRequest onDone(Key key, ChangeRequest changeRequest) {
+    // Fetches all the fields of the completed change request.
+    return key.dns.getChangeRequest(key.zone, key.changeRequestId);
+  }
+}
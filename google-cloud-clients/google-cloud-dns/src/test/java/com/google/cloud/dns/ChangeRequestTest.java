@@ -26,11 +26,14 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import com.google.cloud.RetryOption;
 import com.google.common.collect.ImmutableList;
 
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.threeten.bp.Duration;
 
 public class ChangeRequestTest {
 
@@ -174,4 +177,26 @@ public class ChangeRequestTest {
     assertTrue(changeRequestPending.isDone());
     verify(dns);
   }
+
+  @Test
+  public void testWaitForAsync() throws Exception {
+    replay(dns);
+    assertSame(changeRequest, changeRequest.waitForAsync().get());
+    verify(dns);
+    reset(dns);
+    Dns.ChangeRequestOption statusOption =
+        Dns.ChangeRequestOption.fields(Dns.ChangeRequestField.STATUS);
+    expect(dns.getChangeRequest(ZONE_NAME, changeRequest.getGeneratedId(), statusOption))
+        .andReturn(changeRequestPending);
+    expect(dns.getChangeRequest(ZONE_NAME, changeRequest.getGeneratedId(), statusOption))
+        .andReturn(changeRequest);
+    expect(dns.getChangeRequest(ZONE_NAME, changeRequest.getGeneratedId()))
+        .andReturn(changeRequest);
+    replay(dns);
+    assertSame(
+        changeRequest,
+        changeRequestPending
+            .waitForAsync(RetryOption.initialRetryDelay(Duration.ofMillis(1L)))
+            .get(3, TimeUnit.SECONDS));
+  }
 }
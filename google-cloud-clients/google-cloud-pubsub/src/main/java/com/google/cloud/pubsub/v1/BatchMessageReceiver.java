@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub.v1;
+
+import com.google.api.core.BetaApi;
+import com.google.pubsub.v1.PubsubMessage;
+import java.util.List;
+
+/**
+ * This interface can be implemented by users of {@link Subscriber} to receive messages in batches,
+ * for example to write them to a sink that accepts batched writes.
+ *
+ * <p>Messages are grouped until the batch reaches the element count or byte threshold of the
+ * subscriber's receiver batching settings, or until the oldest message in the batch has waited for
+ * the delay threshold. Every message of a batch still counts against the subscriber's flow control
+ * settings, and its ack deadline is extended, until the batch is acked or nacked.
+ *
+ * @see Subscriber#newBatchBuilder(String, BatchMessageReceiver)
+ * @see Subscriber.Builder#setReceiverBatchingSettings
+ */
+@BetaApi
+public interface BatchMessageReceiver {
+  /**
+   * Called when a batch of messages is received by the subscriber. The implementation must arrange
+   * for {@link AckReplyConsumer#ack()} or {@link AckReplyConsumer#nack()} to be called after
+   * processing the {@code messages}, which acks or nacks all the messages of the batch.
+   *
+   * <p>This method can be called concurrently from multiple threads. If it throws an exception,
+   * all the messages of the batch are nacked.
+   */
+  void receiveMessages(final List<PubsubMessage> messages, final AckReplyConsumer consumer);
+}
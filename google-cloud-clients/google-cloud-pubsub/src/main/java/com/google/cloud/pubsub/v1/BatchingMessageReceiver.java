@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub.v1;
+
+import com.google.api.gax.batching.BatchingSettings;
+import com.google.pubsub.v1.PubsubMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adapts a {@link BatchMessageReceiver} to the {@link MessageReceiver} used by {@link
+ * MessageDispatcher}.
+ *
+ * <p>Messages are collected together with their {@link AckReplyConsumer}s, and acking or nacking a
+ * batch acks or nacks each of its messages. The dispatcher therefore keeps tracking every message
+ * individually: a message holds its flow control reservation, and its deadline keeps being
+ * extended, until the batch it belongs to is acked or nacked.
+ */
+final class BatchingMessageReceiver implements MessageReceiver {
+  private static final Logger logger = Logger.getLogger(BatchingMessageReceiver.class.getName());
+
+  private final BatchMessageReceiver receiver;
+  private final long elementCountThreshold;
+  private final long requestByteThreshold;
+  private final long delayThresholdMs;
+  private final Executor executor;
+  private final ScheduledExecutorService alarmsExecutor;
+
+  private final Object lock = new Object();
+  // Guarded by lock.
+  private Batch batch = new Batch();
+  private ScheduledFuture<?> flushAlarm;
+
+  BatchingMessageReceiver(
+      BatchMessageReceiver receiver,
+      BatchingSettings batchingSettings,
+      Executor executor,
+      ScheduledExecutorService alarmsExecutor) {
+    this.receiver = receiver;
+    this.elementCountThreshold =
+        batchingSettings.getElementCountThreshold() == null
+            ? Long.MAX_VALUE
+            : batchingSettings.getElementCountThreshold();
+    this.requestByteThreshold =
+        batchingSettings.getRequestByteThreshold() == null
+            ? Long.MAX_VALUE
+            : batchingSettings.getRequestByteThreshold();
+    this.delayThresholdMs = batchingSettings.getDelayThreshold().toMillis();
+    this.executor = executor;
+    this.alarmsExecutor = alarmsExecutor;
+  }
+
+  @Override
+  public void receiveMessage(PubsubMessage message, AckReplyConsumer consumer) {
+    Batch fullBatch = null;
+    synchronized (lock) {
+      batch.add(message, consumer);
+      if (batch.messages.size() >= elementCountThreshold || batch.bytes >= requestByteThreshold) {
+        fullBatch = takeBatch();
+      } else if (flushAlarm == null) {
+        flushAlarm =
+            alarmsExecutor.schedule(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    flushAfterDelay();
+                  }
+                },
+                delayThresholdMs,
+                TimeUnit.MILLISECONDS);
+      }
+    }
+    if (fullBatch != null) {
+      // Already on an executor thread, deliver right away.
+      deliver(fullBatch);
+    }
+  }
+
+  private void flushAfterDelay() {
+    final Batch delayedBatch;
+    synchronized (lock) {
+      flushAlarm = null;
+      if (batch.messages.isEmpty()) {
+        return;
+      }
+      delayedBatch = takeBatch();
+    }
+    // Never run the user's receiver on the alarms executor.
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            deliver(delayedBatch);
+          }
+        });
+  }
+
+  private Batch takeBatch() {
+    if (flushAlarm != null) {
+      flushAlarm.cancel(false);
+      flushAlarm = null;
+    }
+    Batch taken = batch;
+    batch = new Batch();
+    return taken;
+  }
+
+  private void deliver(Batch batch) {
+    try {
+      receiver.receiveMessages(Collections.unmodifiableList(batch.messages), batch);
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "BatchMessageReceiver failed, nacking the batch", e);
+      batch.nack();
+    }
+  }
+
+  /** Messages to be delivered together, acked or nacked through their individual consumers. */
+  private static final class Batch implements AckReplyConsumer {
+    private final List<PubsubMessage> messages = new ArrayList<>();
+    private final List<AckReplyConsumer> consumers = new ArrayList<>();
+    private long bytes;
+
+    void add(PubsubMessage message, AckReplyConsumer consumer) {
+      messages.add(message);
+      consumers.add(consumer);
+      bytes += message.getSerializedSize();
+    }
+
+    @Override
+    public void ack() {
+      for (AckReplyConsumer consumer : consumers) {
+        consumer.ack();
+      }
+    }
+
+    @Override
+    public void nack() {
+      for (AckReplyConsumer consumer : consumers) {
+        consumer.nack();
+      }
+    }
+  }
+}
@@ -51,6 +51,7 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import org.threeten.bp.Duration;
 import org.threeten.bp.Instant;
 import org.threeten.bp.temporal.ChronoUnit;
@@ -96,6 +97,9 @@ class MessageDispatcher {
   // To keep track of number of seconds the receiver takes to process messages.
   private final Distribution ackLatencyDistribution;
 
+  // If set, messages with the same ordering key are delivered one at a time.
+  @Nullable private volatile OrderingKeyQueue orderingKeyQueue;
+
   /** Stores the data needed to asynchronously modify acknowledgement deadlines. */
   static class PendingModifyAckDeadline {
     final List<String> ackIds;
@@ -286,6 +290,15 @@ class MessageDispatcher {
     return messageDeadlineSeconds.get();
   }
 
+  /**
+   * Delivers the messages that have an ordering key through {@code orderingKeyQueue}, so that the
+   * messages of a key are processed one at a time. The queue may be shared with other dispatchers.
+   */
+  @InternalApi
+  void setOrderingKeyQueue(@Nullable OrderingKeyQueue orderingKeyQueue) {
+    this.orderingKeyQueue = orderingKeyQueue;
+  }
+
   static class OutstandingMessageBatch {
     private final Deque<OutstandingMessage> messages;
     private final Runnable doneCallback;
@@ -395,7 +408,7 @@ class MessageDispatcher {
             }
           };
       Futures.addCallback(response, ackHandler);
-      executor.execute(
+      Runnable deliverMessage =
           new Runnable() {
             @Override
             public void run() {
@@ -405,7 +418,14 @@ class MessageDispatcher {
                 response.setException(e);
               }
             }
-          });
+          };
+      OrderingKeyQueue queue = orderingKeyQueue;
+      String orderingKey = queue == null ? null : queue.getOrderingKey(message);
+      if (orderingKey == null) {
+        executor.execute(deliverMessage);
+      } else {
+        queue.deliver(orderingKey, deliverMessage, response);
+      }
       if (batchDone) {
         batchCallback.run();
       }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub.v1;
+
+import com.google.cloud.pubsub.v1.MessageDispatcher.AckReply;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.pubsub.v1.PubsubMessage;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Delivers the messages that have the same value for an ordering key attribute one at a time, in
+ * the order they were received. A single instance is shared by all the streaming pull connections
+ * of a {@link Subscriber}, so that the messages of a key are ordered even when they are received
+ * on different streams.
+ */
+final class OrderingKeyQueue {
+  private static final Logger logger = Logger.getLogger(OrderingKeyQueue.class.getName());
+
+  private final String orderingKeyAttribute;
+  private final int maxQueuedMessagesPerKey;
+  private final Executor executor;
+
+  // Maps each ordering key with a message being processed to the state of the key, guarded by
+  // itself.
+  private final Map<String, KeyState> keys = new HashMap<>();
+
+  private static final class KeyState {
+    private final Deque<Runnable> waitingMessages = new LinkedList<>();
+    // Set once a message of the key was nacked because too many were waiting.
+    private boolean overflowed;
+  }
+
+  OrderingKeyQueue(String orderingKeyAttribute, int maxQueuedMessagesPerKey, Executor executor) {
+    Preconditions.checkArgument(maxQueuedMessagesPerKey > 0);
+    this.orderingKeyAttribute = Preconditions.checkNotNull(orderingKeyAttribute);
+    this.maxQueuedMessagesPerKey = maxQueuedMessagesPerKey;
+    this.executor = Preconditions.checkNotNull(executor);
+  }
+
+  /** Returns the ordering key of {@code message}, or {@code null} if it doesn't have one. */
+  @Nullable
+  String getOrderingKey(PubsubMessage message) {
+    return message.getAttributesOrDefault(orderingKeyAttribute, null);
+  }
+
+  /**
+   * Runs {@code deliverMessage} on the executor once the previous messages with the same ordering
+   * key have been acked or nacked, {@code response} being completed when the delivered message is.
+   *
+   * <p>When {@code maxQueuedMessagesPerKey} messages of the key are already waiting, the message is
+   * nacked so that one busy key cannot use up the flow control limits of the subscriber. The
+   * following messages of the key are then nacked as well until all the messages of the key have
+   * been processed, so that none of them is processed before the redelivery of the nacked one.
+   */
+  void deliver(
+      final String orderingKey, Runnable deliverMessage, SettableFuture<AckReply> response) {
+    boolean deliverNow = false;
+    boolean rejected = false;
+    synchronized (keys) {
+      KeyState state = keys.get(orderingKey);
+      if (state == null) {
+        keys.put(orderingKey, new KeyState());
+        deliverNow = true;
+      } else if (!state.overflowed && state.waitingMessages.size() < maxQueuedMessagesPerKey) {
+        state.waitingMessages.add(deliverMessage);
+      } else {
+        state.overflowed = true;
+        rejected = true;
+      }
+    }
+    if (rejected) {
+      logger.log(Level.FINE, "Too many messages waiting for ordering key {0}", orderingKey);
+      // Nack outside of the lock, since it releases flow control and dispatches more messages.
+      response.set(AckReply.NACK);
+      return;
+    }
+    response.addListener(
+        new Runnable() {
+          @Override
+          public void run() {
+            deliverNext(orderingKey);
+          }
+        },
+        MoreExecutors.directExecutor());
+    if (deliverNow) {
+      executor.execute(deliverMessage);
+    }
+  }
+
+  private void deliverNext(String orderingKey) {
+    Runnable next;
+    synchronized (keys) {
+      next = keys.get(orderingKey).waitingMessages.poll();
+      if (next == null) {
+        keys.remove(orderingKey);
+      }
+    }
+    if (next != null) {
+      executor.execute(next);
+    }
+  }
+}
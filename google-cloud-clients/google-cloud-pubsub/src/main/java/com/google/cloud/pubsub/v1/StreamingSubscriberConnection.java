@@ -70,6 +70,7 @@ final class StreamingSubscriberConnection extends AbstractApiService implements
 
   private final AtomicLong channelReconnectBackoffMillis =
       new AtomicLong(INITIAL_CHANNEL_RECONNECT_BACKOFF.toMillis());
+  private final AtomicLong receivedMessageCount = new AtomicLong();
 
   private final Lock lock = new ReentrantLock();
   private ClientCallStreamObserver<StreamingPullRequest> requestObserver;
@@ -85,7 +86,8 @@ final class StreamingSubscriberConnection extends AbstractApiService implements
       Deque<MessageDispatcher.OutstandingMessageBatch> outstandingMessageBatches,
       ScheduledExecutorService executor,
       ScheduledExecutorService systemExecutor,
-      ApiClock clock) {
+      ApiClock clock,
+      @Nullable OrderingKeyQueue orderingKeyQueue) {
     this.subscription = subscription;
     this.systemExecutor = systemExecutor;
     this.stub = stub;
@@ -101,6 +103,7 @@ final class StreamingSubscriberConnection extends AbstractApiService implements
             executor,
             systemExecutor,
             clock);
+    messageDispatcher.setOrderingKeyQueue(orderingKeyQueue);
   }
 
   @Override
@@ -151,6 +154,7 @@ final class StreamingSubscriberConnection extends AbstractApiService implements
     @Override
     public void onNext(StreamingPullResponse response) {
       channelReconnectBackoffMillis.set(INITIAL_CHANNEL_RECONNECT_BACKOFF.toMillis());
+      receivedMessageCount.addAndGet(response.getReceivedMessagesCount());
       messageDispatcher.processReceivedMessages(
           response.getReceivedMessagesList(),
           new Runnable() {
@@ -263,6 +267,11 @@ final class StreamingSubscriberConnection extends AbstractApiService implements
         });
   }
 
+  /** Returns the number of messages received on this connection since it was created. */
+  long getReceivedMessageCount() {
+    return receivedMessageCount.get();
+  }
+
   private boolean isAlive() {
     State state = state(); // Read the state only once.
     return state == State.RUNNING || state == State.STARTING;
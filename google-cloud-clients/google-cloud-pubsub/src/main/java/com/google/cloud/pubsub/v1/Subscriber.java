@@ -22,6 +22,7 @@ import com.google.api.core.ApiService;
 import com.google.api.core.BetaApi;
 import com.google.api.core.CurrentMillisClock;
 import com.google.api.core.InternalApi;
+import com.google.api.gax.batching.BatchingSettings;
 import com.google.api.gax.batching.FlowControlSettings;
 import com.google.api.gax.batching.FlowController;
 import com.google.api.gax.batching.FlowController.LimitExceededBehavior;
@@ -47,12 +48,17 @@ import io.grpc.Channel;
 import io.grpc.auth.MoreCallCredentials;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -79,6 +85,11 @@ import org.threeten.bp.Duration;
  *       message acknowledgement expiration.
  *   <li>Flow control: such as the maximum outstanding messages or maximum outstanding bytes to keep
  *       in memory before the receiver either ack or nack them.
+ *   <li>Ordering: messages sharing the value of an attribute can be delivered one at a time, see
+ *       {@link Builder#setOrderingKeyAttribute}.
+ *   <li>Scaling: the number of streaming pull connections and of executor threads can be adapted
+ *       to the message rate within configured bounds, see {@link
+ *       Builder#setMaxParallelPullCount} and {@link Builder#setMaxExecutorThreadCount}.
  * </ul>
  *
  * <p>{@link Subscriber} will use the credentials set on the channel, which uses application default
@@ -96,6 +107,7 @@ public class Subscriber extends AbstractApiService {
       20 * 1024 * 1024; // 20MB API maximum message size.
   @InternalApi static final int MAX_ACK_DEADLINE_SECONDS = 600;
   @InternalApi static final int MIN_ACK_DEADLINE_SECONDS = 10;
+  @InternalApi static final Duration SCALING_PERIOD = Duration.ofSeconds(10);
 
   private static final ScheduledExecutorService SHARED_SYSTEM_EXECUTOR =
       InstantiatingExecutorProvider.newBuilder().setExecutorThreadCount(6).build().getExecutor();
@@ -111,20 +123,34 @@ public class Subscriber extends AbstractApiService {
   private final Distribution ackLatencyDistribution =
       new Distribution(MAX_ACK_DEADLINE_SECONDS + 1);
   private final int numChannels;
+  private final int maxChannels;
+  @Nullable private final ThreadPoolExecutor scalableExecutor;
+  private final int minExecutorThreads;
+  private final int maxExecutorThreads;
   private final FlowController flowController;
   private final TransportChannelProvider channelProvider;
   private final CredentialsProvider credentialsProvider;
   private final List<Channel> channels;
   private final MessageReceiver receiver;
+  // Shared by all the connections, so that messages of a key are ordered across streams.
+  @Nullable private final OrderingKeyQueue orderingKeyQueue;
   private final List<StreamingSubscriberConnection> streamingSubscriberConnections;
   private final Deque<MessageDispatcher.OutstandingMessageBatch> outstandingMessageBatches =
       new LinkedList<>();
   private final ApiClock clock;
   private final List<AutoCloseable> closeables = new ArrayList<>();
   private ScheduledFuture<?> ackDeadlineUpdater;
+  private ScheduledFuture<?> scalingJob;
+
+  // State of the streaming connections, guarded by streamingSubscriberConnections.
+  private CallCredentials callCredentials;
+  private ApiService.Listener connectionsListener;
+  private final Map<StreamingSubscriberConnection, Long> lastReceivedMessageCounts =
+      new HashMap<>();
+  private long lastScalingMillis;
+  private volatile double messagesPerSecondPerStream;
 
   private Subscriber(Builder builder) {
-    receiver = builder.receiver;
     flowControlSettings = builder.flowControlSettings;
     subscriptionName = builder.subscriptionName;
 
@@ -166,6 +192,20 @@ public class Subscriber extends AbstractApiService {
             }
           });
     }
+    if (builder.orderingKeyAttribute != null) {
+      orderingKeyQueue =
+          new OrderingKeyQueue(
+              builder.orderingKeyAttribute, builder.maxQueuedMessagesPerOrderingKey, executor);
+    } else {
+      orderingKeyQueue = null;
+    }
+    if (builder.batchReceiver != null) {
+      receiver =
+          new BatchingMessageReceiver(
+              builder.batchReceiver, builder.receiverBatchingSettings, executor, alarmsExecutor);
+    } else {
+      receiver = builder.receiver;
+    }
 
     TransportChannelProvider channelProvider = builder.channelProvider;
     if (channelProvider.needsExecutor()) {
@@ -186,8 +226,20 @@ public class Subscriber extends AbstractApiService {
     credentialsProvider = builder.credentialsProvider;
 
     numChannels = builder.parallelPullCount;
+    maxChannels = Math.max(numChannels, builder.maxParallelPullCount);
     channels = new ArrayList<>(numChannels);
     streamingSubscriberConnections = new ArrayList<StreamingSubscriberConnection>(numChannels);
+
+    // Only resize executors created for this subscriber, never ones shared by the user.
+    if (builder.executorProvider.shouldAutoClose() && executor instanceof ThreadPoolExecutor) {
+      scalableExecutor = (ThreadPoolExecutor) executor;
+      minExecutorThreads = scalableExecutor.getCorePoolSize();
+      maxExecutorThreads = Math.max(minExecutorThreads, builder.maxExecutorThreadCount);
+    } else {
+      scalableExecutor = null;
+      minExecutorThreads = 0;
+      maxExecutorThreads = 0;
+    }
   }
 
   /**
@@ -212,6 +264,35 @@ public class Subscriber extends AbstractApiService {
     return new Builder(subscription, receiver);
   }
 
+  /**
+   * Constructs a new {@link Builder} for a subscriber that delivers messages in batches. This is a
+   * separate method from {@code newBuilder} so that a lambda or {@code null} receiver is not
+   * ambiguous.
+   *
+   * @param subscription Cloud Pub/Sub subscription to bind the subscriber to
+   * @param receiver an implementation of {@link BatchMessageReceiver} used to process the received
+   *     messages
+   * @see Builder#setReceiverBatchingSettings
+   */
+  @BetaApi
+  public static Builder newBatchBuilder(
+      ProjectSubscriptionName subscription, BatchMessageReceiver receiver) {
+    return newBatchBuilder(subscription.toString(), receiver);
+  }
+
+  /**
+   * Constructs a new {@link Builder} for a subscriber that delivers messages in batches.
+   *
+   * @param subscription Cloud Pub/Sub subscription to bind the subscriber to
+   * @param receiver an implementation of {@link BatchMessageReceiver} used to process the received
+   *     messages
+   * @see Builder#setReceiverBatchingSettings
+   */
+  @BetaApi
+  public static Builder newBatchBuilder(String subscription, BatchMessageReceiver receiver) {
+    return new Builder(subscription, receiver);
+  }
+
   /** Subscription which the subscriber is subscribed to. */
   public String getSubscriptionNameString() {
     return subscriptionName;
@@ -228,6 +309,36 @@ public class Subscriber extends AbstractApiService {
     return flowControlSettings;
   }
 
+  /** Returns the number of currently open streaming pull connections. */
+  @BetaApi
+  public int getStreamingPullCount() {
+    synchronized (streamingSubscriberConnections) {
+      return streamingSubscriberConnections.size();
+    }
+  }
+
+  /**
+   * Returns the average number of messages received per second by each streaming pull connection,
+   * measured over the last scaling period. Only measured when scaling is enabled with {@link
+   * Builder#setMaxParallelPullCount} or {@link Builder#setMaxExecutorThreadCount}, 0 otherwise.
+   */
+  @BetaApi
+  public double getMessagesPerSecondPerStream() {
+    return messagesPerSecondPerStream;
+  }
+
+  /**
+   * Returns the number of threads of the executor running the {@link MessageReceiver}, or 0 if the
+   * executor was supplied with {@link Builder#setExecutorProvider} and is not a thread pool.
+   */
+  @BetaApi
+  public int getExecutorThreadCount() {
+    if (executor instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) executor).getCorePoolSize();
+    }
+    return 0;
+  }
+
   /**
    * Initiates service startup and returns immediately.
    *
@@ -330,30 +441,8 @@ public class Subscriber extends AbstractApiService {
   private void startStreamingConnections() throws IOException {
     synchronized (streamingSubscriberConnections) {
       Credentials credentials = credentialsProvider.getCredentials();
-      CallCredentials callCredentials =
-          credentials == null ? null : MoreCallCredentials.from(credentials);
-
-      for (Channel channel : channels) {
-        SubscriberStub stub = SubscriberGrpc.newStub(channel);
-        if (callCredentials != null) {
-          stub = stub.withCallCredentials(callCredentials);
-        }
-        streamingSubscriberConnections.add(
-            new StreamingSubscriberConnection(
-                subscriptionName,
-                receiver,
-                ackExpirationPadding,
-                maxAckExtensionPeriod,
-                ackLatencyDistribution,
-                stub,
-                flowController,
-                outstandingMessageBatches,
-                executor,
-                alarmsExecutor,
-                clock));
-      }
-      startConnections(
-          streamingSubscriberConnections,
+      callCredentials = credentials == null ? null : MoreCallCredentials.from(credentials);
+      connectionsListener =
           new Listener() {
             @Override
             public void failed(State from, Throwable failure) {
@@ -369,7 +458,169 @@ public class Subscriber extends AbstractApiService {
                 // It could happen that we are shutting down while some channels fail.
               }
             }
-          });
+          };
+
+      for (Channel channel : channels) {
+        streamingSubscriberConnections.add(newStreamingConnection(channel));
+      }
+      startConnections(streamingSubscriberConnections, connectionsListener);
+      if (maxChannels > numChannels || maxExecutorThreads > minExecutorThreads) {
+        lastScalingMillis = clock.millisTime();
+        scalingJob =
+            alarmsExecutor.scheduleAtFixedRate(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    try {
+                      adjustScaling();
+                    } catch (Throwable t) {
+                      // Catch everything so that one run failing doesn't prevent subsequent runs.
+                      logger.log(Level.WARNING, "failed to adjust subscriber scaling", t);
+                    }
+                  }
+                },
+                SCALING_PERIOD.toMillis(),
+                SCALING_PERIOD.toMillis(),
+                TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private StreamingSubscriberConnection newStreamingConnection(Channel channel) {
+    SubscriberStub stub = SubscriberGrpc.newStub(channel);
+    if (callCredentials != null) {
+      stub = stub.withCallCredentials(callCredentials);
+    }
+    return new StreamingSubscriberConnection(
+        subscriptionName,
+        receiver,
+        ackExpirationPadding,
+        maxAckExtensionPeriod,
+        ackLatencyDistribution,
+        stub,
+        flowController,
+        outstandingMessageBatches,
+        executor,
+        alarmsExecutor,
+        clock,
+        orderingKeyQueue);
+  }
+
+  /**
+   * Adapts the number of streaming pull connections and executor threads to the observed load.
+   *
+   * <p>A connection is added when every connection received messages during the last period and
+   * none of them is held back by flow control, since the subscriber is then able to process more
+   * messages than it pulls. A connection is closed when one received nothing, since the backlog no
+   * longer needs it. Executor threads are added while messages wait for a thread to be processed,
+   * and removed when most threads are idle.
+   */
+  @InternalApi
+  void adjustScaling() {
+    boolean heldBackByFlowControl;
+    synchronized (outstandingMessageBatches) {
+      heldBackByFlowControl = !outstandingMessageBatches.isEmpty();
+    }
+    synchronized (streamingSubscriberConnections) {
+      if (!isRunning()) {
+        return;
+      }
+      long nowMillis = clock.millisTime();
+      long elapsedMillis = nowMillis - lastScalingMillis;
+      lastScalingMillis = nowMillis;
+      long receivedMessages = 0;
+      int idleConnections = 0;
+      for (StreamingSubscriberConnection connection : streamingSubscriberConnections) {
+        long count = connection.getReceivedMessageCount();
+        Long lastCount = lastReceivedMessageCounts.put(connection, count);
+        long received = count - (lastCount == null ? 0 : lastCount);
+        receivedMessages += received;
+        if (received == 0) {
+          idleConnections++;
+        }
+      }
+      int numConnections = streamingSubscriberConnections.size();
+      if (elapsedMillis > 0 && numConnections > 0) {
+        messagesPerSecondPerStream =
+            receivedMessages * 1000.0 / elapsedMillis / numConnections;
+      }
+
+      if (idleConnections == 0 && !heldBackByFlowControl && numConnections < maxChannels) {
+        addStreamingConnection();
+      } else if (idleConnections > 0 && numConnections > numChannels) {
+        removeStreamingConnection();
+      }
+    }
+    if (scalableExecutor != null && maxExecutorThreads > minExecutorThreads) {
+      adjustExecutorThreads();
+    }
+  }
+
+  // Must be called while holding the lock of streamingSubscriberConnections.
+  private void addStreamingConnection() {
+    int index = streamingSubscriberConnections.size();
+    if (index == channels.size()) {
+      try {
+        GrpcTransportChannel transportChannel =
+            (GrpcTransportChannel) channelProvider.getTransportChannel();
+        channels.add(transportChannel.getChannel());
+        if (channelProvider.shouldAutoClose()) {
+          closeables.add(transportChannel);
+        }
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "cannot create channel for additional streaming pull", e);
+        return;
+      }
+    }
+    StreamingSubscriberConnection connection = newStreamingConnection(channels.get(index));
+    streamingSubscriberConnections.add(connection);
+    lastReceivedMessageCounts.put(connection, 0L);
+    logger.log(Level.FINE, "Scaling up to {0} streaming pulls", index + 1);
+    startConnections(Collections.singletonList(connection), connectionsListener);
+  }
+
+  // Must be called while holding the lock of streamingSubscriberConnections.
+  private void removeStreamingConnection() {
+    final StreamingSubscriberConnection connection =
+        streamingSubscriberConnections.remove(streamingSubscriberConnections.size() - 1);
+    lastReceivedMessageCounts.remove(connection);
+    logger.log(
+        Level.FINE, "Scaling down to {0} streaming pulls", streamingSubscriberConnections.size());
+    // Stopping a connection waits for its outstanding messages to be processed, so it must not
+    // block the alarms executor. The connection is already removed from the list, and the channel
+    // is kept open for later use.
+    executor.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            connection.stopAsync();
+            try {
+              connection.awaitTerminated();
+            } catch (IllegalStateException e) {
+              // A failed connection fails the whole subscriber through its listener.
+            }
+          }
+        });
+  }
+
+  private void adjustExecutorThreads() {
+    int threads = scalableExecutor.getCorePoolSize();
+    int waitingTasks = 0;
+    for (Runnable task : scalableExecutor.getQueue()) {
+      // Scheduled executors also queue delayed tasks, which are not waiting for a thread.
+      if (!(task instanceof Delayed) || ((Delayed) task).getDelay(TimeUnit.NANOSECONDS) <= 0) {
+        waitingTasks++;
+      }
+    }
+    if (waitingTasks > 0 && threads < maxExecutorThreads) {
+      int newThreads = Math.min(maxExecutorThreads, threads + Math.max(1, threads / 4));
+      logger.log(Level.FINE, "Scaling up to {0} executor threads", newThreads);
+      scalableExecutor.setCorePoolSize(newThreads);
+    } else if (waitingTasks == 0
+        && scalableExecutor.getActiveCount() < threads / 2
+        && threads > minExecutorThreads) {
+      logger.log(Level.FINE, "Scaling down to {0} executor threads", threads - 1);
+      scalableExecutor.setCorePoolSize(threads - 1);
     }
   }
 
@@ -378,6 +629,9 @@ public class Subscriber extends AbstractApiService {
     if (ackDeadlineUpdater != null) {
       ackDeadlineUpdater.cancel(true);
     }
+    if (scalingJob != null) {
+      scalingJob.cancel(false);
+    }
   }
 
   private void startConnections(
@@ -424,8 +678,17 @@ public class Subscriber extends AbstractApiService {
                     * Runtime.getRuntime().availableProcessors())
             .build();
 
+    static final BatchingSettings DEFAULT_RECEIVER_BATCHING_SETTINGS =
+        BatchingSettings.newBuilder()
+            .setElementCountThreshold(100L)
+            .setRequestByteThreshold(1024L * 1024L) // 1 MiB
+            .setDelayThreshold(Duration.ofMillis(100))
+            .build();
+
     String subscriptionName;
     MessageReceiver receiver;
+    BatchMessageReceiver batchReceiver;
+    BatchingSettings receiverBatchingSettings = DEFAULT_RECEIVER_BATCHING_SETTINGS;
 
     Duration ackExpirationPadding = DEFAULT_ACK_EXPIRATION_PADDING;
     Duration maxAckExtensionPeriod = DEFAULT_MAX_ACK_EXTENSION_PERIOD;
@@ -447,12 +710,21 @@ public class Subscriber extends AbstractApiService {
         SubscriptionAdminSettings.defaultCredentialsProviderBuilder().build();
     Optional<ApiClock> clock = Optional.absent();
     int parallelPullCount = 1;
+    int maxParallelPullCount = 0;
+    int maxExecutorThreadCount = 0;
+    String orderingKeyAttribute;
+    int maxQueuedMessagesPerOrderingKey = 100;
 
     Builder(String subscriptionName, MessageReceiver receiver) {
       this.subscriptionName = subscriptionName;
       this.receiver = receiver;
     }
 
+    Builder(String subscriptionName, BatchMessageReceiver batchReceiver) {
+      this.subscriptionName = subscriptionName;
+      this.batchReceiver = batchReceiver;
+    }
+
     /**
      * {@code ChannelProvider} to use to create Channels, which must point at Cloud Pub/Sub
      * endpoint.
@@ -591,6 +863,88 @@ public class Subscriber extends AbstractApiService {
       return this;
     }
 
+    /**
+     * Sets the maximum number of pullers. If it is greater than the parallel pull count, the
+     * subscriber opens additional streaming pulls while every open one receives messages and flow
+     * control has room for more, and closes them again, down to the parallel pull count, when some
+     * go idle. A closed puller waits for its outstanding messages on a thread of the executor set
+     * with {@link #setExecutorProvider}. By default the number of pullers is fixed.
+     */
+    @BetaApi
+    public Builder setMaxParallelPullCount(int maxParallelPullCount) {
+      Preconditions.checkArgument(maxParallelPullCount > 0);
+      this.maxParallelPullCount = maxParallelPullCount;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of threads of the executor running the {@link MessageReceiver}. If it
+     * is greater than the initial number of threads of the executor, threads are added while
+     * received messages wait for one, and removed again, down to the initial number, when they are
+     * idle. Only applies to executors created by the subscriber from its {@link ExecutorProvider}
+     * that are thread pools, so executors shared through a {@link FixedExecutorProvider} are never
+     * resized. By default the number of threads is fixed.
+     */
+    @BetaApi
+    public Builder setMaxExecutorThreadCount(int maxExecutorThreadCount) {
+      Preconditions.checkArgument(maxExecutorThreadCount > 0);
+      this.maxExecutorThreadCount = maxExecutorThreadCount;
+      return this;
+    }
+
+    /**
+     * Sets the name of an attribute whose value is an ordering key. Messages with the same ordering
+     * key are handed to the {@link MessageReceiver} one at a time, in the order they were received
+     * by this subscriber: a message is delivered once the previous message with the same key has
+     * been acked or nacked. Messages with different keys, or without the attribute, are processed
+     * concurrently. Messages redelivered by the service may still arrive out of order.
+     */
+    @BetaApi
+    public Builder setOrderingKeyAttribute(String orderingKeyAttribute) {
+      this.orderingKeyAttribute = Preconditions.checkNotNull(orderingKeyAttribute);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of messages of one ordering key that wait for the previous message
+     * of the key to be processed. Further messages of the key are nacked, to be redelivered later,
+     * until all the waiting messages of the key have been processed, so that a single busy key
+     * cannot hold all the messages allowed by flow control and block the other keys. Defaults to
+     * 100. Only used with {@link #setOrderingKeyAttribute}.
+     */
+    @BetaApi
+    public Builder setMaxQueuedMessagesPerOrderingKey(int maxQueuedMessagesPerOrderingKey) {
+      Preconditions.checkArgument(maxQueuedMessagesPerOrderingKey > 0);
+      this.maxQueuedMessagesPerOrderingKey = maxQueuedMessagesPerOrderingKey;
+      return this;
+    }
+
+    /**
+     * Sets how messages are grouped into batches for a {@link BatchMessageReceiver}. A batch is
+     * delivered once it holds {@link BatchingSettings#getElementCountThreshold()} messages or
+     * {@link BatchingSettings#getRequestByteThreshold()} bytes, or once its first message has
+     * waited for {@link BatchingSettings#getDelayThreshold()}, whichever comes first. Defaults to
+     * 100 messages, 1 MiB and 100 milliseconds.
+     *
+     * <p>Messages waiting in a batch count against the flow control settings, so the maximum
+     * outstanding element count and bytes should be larger than the batch thresholds for batches to
+     * fill up. Only used with a subscriber built by {@link Subscriber#newBatchBuilder}.
+     */
+    @BetaApi
+    public Builder setReceiverBatchingSettings(BatchingSettings receiverBatchingSettings) {
+      Preconditions.checkNotNull(receiverBatchingSettings);
+      Preconditions.checkArgument(
+          receiverBatchingSettings.getElementCountThreshold() == null
+              || receiverBatchingSettings.getElementCountThreshold() > 0);
+      Preconditions.checkArgument(
+          receiverBatchingSettings.getRequestByteThreshold() == null
+              || receiverBatchingSettings.getRequestByteThreshold() > 0);
+      Preconditions.checkNotNull(receiverBatchingSettings.getDelayThreshold());
+      Preconditions.checkArgument(receiverBatchingSettings.getDelayThreshold().toMillis() > 0);
+      this.receiverBatchingSettings = receiverBatchingSettings;
+      return this;
+    }
+
     /** Gives the ability to set a custom clock. */
     Builder setClock(ApiClock clock) {
       this.clock = Optional.of(clock);
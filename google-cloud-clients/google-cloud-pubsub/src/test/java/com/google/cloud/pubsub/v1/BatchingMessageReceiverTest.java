@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.pubsub.v1;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.api.gax.batching.BatchingSettings;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+public class BatchingMessageReceiverTest {
+  private static final BatchingSettings BATCHING_SETTINGS =
+      BatchingSettings.newBuilder()
+          .setElementCountThreshold(3L)
+          .setRequestByteThreshold(1000L)
+          .setDelayThreshold(Duration.ofMillis(100))
+          .build();
+
+  private FakeScheduledExecutorService alarmsExecutor;
+  private List<List<PubsubMessage>> batches;
+  private List<AckReplyConsumer> batchConsumers;
+  private List<String> replies;
+
+  @Before
+  public void setUp() {
+    alarmsExecutor = new FakeScheduledExecutorService();
+    batches = new ArrayList<>();
+    batchConsumers = new ArrayList<>();
+    replies = new ArrayList<>();
+  }
+
+  @Test
+  public void testElementCountThreshold() {
+    MessageReceiver receiver = newReceiver(BATCHING_SETTINGS);
+    for (int i = 0; i < 7; i++) {
+      receiver.receiveMessage(message(i, 1), consumer(i));
+    }
+    assertThat(batches).hasSize(2);
+    assertThat(batches.get(0))
+        .containsExactly(message(0, 1), message(1, 1), message(2, 1))
+        .inOrder();
+    assertThat(batches.get(1))
+        .containsExactly(message(3, 1), message(4, 1), message(5, 1))
+        .inOrder();
+
+    // The last message is delivered after the delay threshold.
+    alarmsExecutor.advanceTime(Duration.ofMillis(99));
+    assertThat(batches).hasSize(2);
+    alarmsExecutor.advanceTime(Duration.ofMillis(1));
+    assertThat(batches).hasSize(3);
+    assertThat(batches.get(2)).containsExactly(message(6, 1));
+  }
+
+  @Test
+  public void testRequestByteThreshold() {
+    MessageReceiver receiver = newReceiver(BATCHING_SETTINGS);
+    receiver.receiveMessage(message(0, 600), consumer(0));
+    assertThat(batches).isEmpty();
+    receiver.receiveMessage(message(1, 600), consumer(1));
+    assertThat(batches).hasSize(1);
+    assertThat(batches.get(0)).hasSize(2);
+  }
+
+  @Test
+  public void testDelayAlarmCancelledByFullBatch() {
+    MessageReceiver receiver = newReceiver(BATCHING_SETTINGS);
+    for (int i = 0; i < 3; i++) {
+      receiver.receiveMessage(message(i, 1), consumer(i));
+    }
+    alarmsExecutor.advanceTime(Duration.ofMillis(100));
+    assertThat(batches).hasSize(1);
+  }
+
+  @Test
+  public void testBatchAckAndNack() {
+    MessageReceiver receiver = newReceiver(BATCHING_SETTINGS);
+    for (int i = 0; i < 6; i++) {
+      receiver.receiveMessage(message(i, 1), consumer(i));
+    }
+    batchConsumers.get(0).ack();
+    batchConsumers.get(1).nack();
+    assertThat(replies)
+        .containsExactly("ack-0", "ack-1", "ack-2", "nack-3", "nack-4", "nack-5")
+        .inOrder();
+  }
+
+  @Test
+  public void testReceiverFailureNacksBatch() {
+    MessageReceiver receiver =
+        new BatchingMessageReceiver(
+            new BatchMessageReceiver() {
+              @Override
+              public void receiveMessages(List<PubsubMessage> messages, AckReplyConsumer consumer) {
+                throw new IllegalStateException("receiver failed");
+              }
+            },
+            BATCHING_SETTINGS,
+            MoreExecutors.directExecutor(),
+            alarmsExecutor);
+    for (int i = 0; i < 3; i++) {
+      receiver.receiveMessage(message(i, 1), consumer(i));
+    }
+    assertThat(replies).containsExactly("nack-0", "nack-1", "nack-2");
+  }
+
+  private MessageReceiver newReceiver(BatchingSettings batchingSettings) {
+    return new BatchingMessageReceiver(
+        new BatchMessageReceiver() {
+          @Override
+          public void receiveMessages(List<PubsubMessage> messages, AckReplyConsumer consumer) {
+            batches.add(new ArrayList<PubsubMessage>(messages));
+            batchConsumers.add(consumer);
+          }
+        },
+        batchingSettings,
+        MoreExecutors.directExecutor(),
+        alarmsExecutor);
+  }
+
+  private static PubsubMessage message(int id, int size) {
+    return PubsubMessage.newBuilder()
+        .setMessageId(String.valueOf(id))
+        .setData(ByteString.copyFrom(new byte[size]))
+        .build();
+  }
+
+  private AckReplyConsumer consumer(final int id) {
+    return new AckReplyConsumer() {
+      @Override
+      public void ack() {
+        replies.add("ack-" + id);
+      }
+
+      @Override
+      public void nack() {
+        replies.add("nack-" + id);
+      }
+    };
+  }
+}
@@ -27,6 +27,7 @@ import com.google.protobuf.ByteString;
 import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.ReceivedMessage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -51,8 +52,12 @@ public class MessageDispatcherTest {
         }
       };
 
+  private MessageReceiver receiver;
+  private MessageDispatcher.AckProcessor processor;
+  private ScheduledThreadPoolExecutor systemExecutor;
   private MessageDispatcher dispatcher;
   private LinkedBlockingQueue<AckReplyConsumer> consumers;
+  private List<PubsubMessage> receivedMessages;
   private List<String> sentAcks;
   private List<ModAckItem> sentModAcks;
   private FakeClock clock;
@@ -71,17 +76,19 @@ public class MessageDispatcherTest {
   @Before
   public void setUp() {
     consumers = new LinkedBlockingQueue<>();
+    receivedMessages = new ArrayList<>();
     sentAcks = new ArrayList<>();
     sentModAcks = new ArrayList<>();
 
-    MessageReceiver receiver =
+    receiver =
         new MessageReceiver() {
           @Override
           public void receiveMessage(final PubsubMessage message, final AckReplyConsumer consumer) {
+            receivedMessages.add(message);
             consumers.add(consumer);
           }
         };
-    MessageDispatcher.AckProcessor processor =
+    processor =
         new MessageDispatcher.AckProcessor() {
           public void sendAckOperations(
               List<String> acksToSend,
@@ -97,12 +104,16 @@ public class MessageDispatcherTest {
 
     // This executor isn't used because we're not actually scheduling anything until we call
     // dispatcher.start(), which we're not doing here.
-    ScheduledThreadPoolExecutor systemExecutor = new ScheduledThreadPoolExecutor(1);
+    systemExecutor = new ScheduledThreadPoolExecutor(1);
     systemExecutor.shutdownNow();
 
     clock = new FakeClock();
 
-    dispatcher =
+    dispatcher = newDispatcher();
+  }
+
+  private MessageDispatcher newDispatcher() {
+    MessageDispatcher dispatcher =
         new MessageDispatcher(
             receiver,
             processor,
@@ -115,6 +126,7 @@ public class MessageDispatcherTest {
             systemExecutor,
             clock);
     dispatcher.setMessageDeadlineSeconds(Subscriber.MIN_ACK_DEADLINE_SECONDS);
+    return dispatcher;
   }
 
   @Test
@@ -194,4 +206,106 @@ public class MessageDispatcherTest {
 
     assertThat(dispatcher.computeDeadlineSeconds()).isEqualTo(42);
   }
+
+  @Test
+  public void testOrderedDelivery() throws Exception {
+    dispatcher.setOrderingKeyQueue(
+        new OrderingKeyQueue("key", 10, MoreExecutors.directExecutor()));
+    dispatcher.processReceivedMessages(
+        Arrays.asList(
+            keyedMessage("a1", "a"),
+            keyedMessage("a2", "a"),
+            keyedMessage("b1", "b"),
+            keyedMessage("n1", null)),
+        NOOP_RUNNABLE);
+
+    // Only the first message of each key is delivered, and messages without a key right away.
+    assertThat(ackIds(receivedMessages)).containsExactly("a1", "b1", "n1").inOrder();
+    AckReplyConsumer a1 = consumers.take();
+    consumers.take().ack();
+    consumers.take().ack();
+    assertThat(consumers).isEmpty();
+
+    // The next message of a key is delivered once the previous one is processed.
+    a1.nack();
+    assertThat(ackIds(receivedMessages)).containsExactly("a1", "b1", "n1", "a2").inOrder();
+    consumers.take().ack();
+
+    dispatcher.processOutstandingAckOperations();
+    assertThat(sentAcks).containsExactly("b1", "n1", "a2");
+    assertThat(sentModAcks).contains(ModAckItem.of("a1", 0));
+  }
+
+  @Test
+  public void testOrderedDelivery_AcrossDispatchers() throws Exception {
+    // Each streaming pull connection has its own dispatcher, sharing the queue of the subscriber.
+    OrderingKeyQueue queue = new OrderingKeyQueue("key", 10, MoreExecutors.directExecutor());
+    dispatcher.setOrderingKeyQueue(queue);
+    MessageDispatcher otherDispatcher = newDispatcher();
+    otherDispatcher.setOrderingKeyQueue(queue);
+
+    dispatcher.processReceivedMessages(
+        Collections.singletonList(keyedMessage("a1", "a")), NOOP_RUNNABLE);
+    otherDispatcher.processReceivedMessages(
+        Collections.singletonList(keyedMessage("a2", "a")), NOOP_RUNNABLE);
+    dispatcher.processReceivedMessages(
+        Collections.singletonList(keyedMessage("a3", "a")), NOOP_RUNNABLE);
+
+    // Messages of the key received on the other stream wait for the first one.
+    assertThat(ackIds(receivedMessages)).containsExactly("a1");
+    consumers.take().ack();
+    assertThat(ackIds(receivedMessages)).containsExactly("a1", "a2").inOrder();
+    consumers.take().ack();
+    assertThat(ackIds(receivedMessages)).containsExactly("a1", "a2", "a3").inOrder();
+    consumers.take().ack();
+
+    dispatcher.processOutstandingAckOperations();
+    otherDispatcher.processOutstandingAckOperations();
+    assertThat(sentAcks).containsExactly("a1", "a2", "a3");
+  }
+
+  @Test
+  public void testOrderedDelivery_QueueFull() throws Exception {
+    dispatcher.setOrderingKeyQueue(new OrderingKeyQueue("key", 1, MoreExecutors.directExecutor()));
+    dispatcher.processReceivedMessages(
+        Arrays.asList(keyedMessage("a1", "a"), keyedMessage("a2", "a"), keyedMessage("a3", "a")),
+        NOOP_RUNNABLE);
+
+    // a2 waits for a1, and a3 does not fit in the queue of the key.
+    assertThat(ackIds(receivedMessages)).containsExactly("a1");
+    dispatcher.processOutstandingAckOperations();
+    assertThat(sentModAcks).contains(ModAckItem.of("a3", 0));
+
+    // a4 would fit after a1 is processed, but is nacked to not overtake the redelivery of a3.
+    consumers.take().ack();
+    dispatcher.processReceivedMessages(
+        Collections.singletonList(keyedMessage("a4", "a")), NOOP_RUNNABLE);
+    dispatcher.processOutstandingAckOperations();
+    assertThat(sentModAcks).contains(ModAckItem.of("a4", 0));
+
+    // Once the key is idle, its messages are delivered again.
+    consumers.take().ack();
+    dispatcher.processReceivedMessages(
+        Collections.singletonList(keyedMessage("a3", "a")), NOOP_RUNNABLE);
+    consumers.take().ack();
+    assertThat(ackIds(receivedMessages)).containsExactly("a1", "a2", "a3").inOrder();
+  }
+
+  private static ReceivedMessage keyedMessage(String ackId, String key) {
+    // The data identifies the message, since the receiver doesn't see the ack ID.
+    PubsubMessage.Builder message =
+        PubsubMessage.newBuilder().setData(ByteString.copyFromUtf8(ackId));
+    if (key != null) {
+      message.putAttributes("key", key);
+    }
+    return ReceivedMessage.newBuilder().setAckId(ackId).setMessage(message).build();
+  }
+
+  private static List<String> ackIds(List<PubsubMessage> messages) {
+    List<String> ids = new ArrayList<>();
+    for (PubsubMessage message : messages) {
+      ids.add(message.getData().toStringUtf8());
+    }
+    return ids;
+  }
 }
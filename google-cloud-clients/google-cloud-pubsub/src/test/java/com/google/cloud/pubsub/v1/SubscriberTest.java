@@ -28,19 +28,25 @@ import com.google.api.gax.rpc.ApiException;
 import com.google.api.gax.rpc.FixedTransportChannelProvider;
 import com.google.api.gax.rpc.StatusCode;
 import com.google.cloud.pubsub.v1.Subscriber.Builder;
+import com.google.protobuf.ByteString;
 import com.google.pubsub.v1.ProjectSubscriptionName;
 import com.google.pubsub.v1.PubsubMessage;
+import com.google.pubsub.v1.ReceivedMessage;
+import com.google.pubsub.v1.StreamingPullResponse;
 import io.grpc.ManagedChannel;
 import io.grpc.Server;
 import io.grpc.Status;
 import io.grpc.StatusException;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
+import org.threeten.bp.Duration;
 
 /** Tests for {@link Subscriber}. */
 public class SubscriberTest {
@@ -140,6 +146,52 @@ public class SubscriberTest {
     }
   }
 
+  @Test
+  public void testStreamingPullScaling() throws Exception {
+    final CountDownLatch received = new CountDownLatch(1);
+    MessageReceiver receiver =
+        new MessageReceiver() {
+          @Override
+          public void receiveMessage(PubsubMessage message, AckReplyConsumer consumer) {
+            consumer.ack();
+            received.countDown();
+          }
+        };
+    Subscriber subscriber =
+        startSubscriber(getTestSubscriberBuilder(receiver).setMaxParallelPullCount(2));
+    assertEquals(1, fakeSubscriberServiceImpl.waitForOpenedStreams(1));
+    assertEquals(1, subscriber.getStreamingPullCount());
+
+    // The only stream receives messages and flow control has room, so a stream is added.
+    fakeSubscriberServiceImpl.sendStreamingResponse(
+        StreamingPullResponse.newBuilder()
+            .addReceivedMessages(
+                ReceivedMessage.newBuilder()
+                    .setAckId("ackId")
+                    .setMessage(
+                        PubsubMessage.newBuilder().setData(ByteString.copyFromUtf8("hello"))))
+            .build());
+    assertTrue(received.await(10, TimeUnit.SECONDS));
+    fakeExecutor.advanceTime(Duration.ofSeconds(1));
+    subscriber.adjustScaling();
+    assertEquals(2, fakeSubscriberServiceImpl.waitForOpenedStreams(2));
+    assertEquals(2, subscriber.getStreamingPullCount());
+    assertEquals(1.0, subscriber.getMessagesPerSecondPerStream(), 0.001);
+
+    // Both streams are idle, so the added stream is closed again.
+    fakeExecutor.advanceTime(Duration.ofSeconds(1));
+    subscriber.adjustScaling();
+    assertEquals(1, fakeSubscriberServiceImpl.waitForClosedStreams(1));
+    assertEquals(1, subscriber.getStreamingPullCount());
+    assertEquals(0.0, subscriber.getMessagesPerSecondPerStream(), 0.001);
+
+    // The minimum number of streams is kept.
+    subscriber.adjustScaling();
+    assertEquals(1, subscriber.getStreamingPullCount());
+
+    subscriber.stopAsync().awaitTerminated();
+  }
+
   private Subscriber startSubscriber(Builder testSubscriberBuilder) throws Exception {
     Subscriber subscriber = testSubscriberBuilder.build();
     subscriber.startAsync().awaitRunning();
@@ -219,6 +219,11 @@ public class BatchClientImpl implements BatchClient {
           partition.getPartitionToken());
     }
 
+    @Override
+    public PartitionExecutor newPartitionExecutor(PartitionExecutorOptions options) {
+      return new PartitionExecutor(this, checkNotNull(options));
+    }
+
     @Override
     public void close() {
       super.close();
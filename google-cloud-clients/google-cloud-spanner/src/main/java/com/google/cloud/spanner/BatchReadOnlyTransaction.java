@@ -111,4 +111,23 @@ public interface BatchReadOnlyTransaction extends ReadOnlyTransaction {
    * BatchTransactionId guarantees the subsequent read/query to be executed at the same timestamp.
    */
   BatchTransactionId getBatchTransactionId();
+
+  /**
+   * Returns an executor that runs partitions of this transaction in parallel and streams their rows
+   * to a single consumer. See {@link PartitionExecutor}.
+   *
+   * <p>Example of counting the rows of a table.
+   * <pre>{@code
+   * final AtomicLong count = new AtomicLong();
+   * List<Partition> partitions = txn.partitionRead(PartitionOptions.getDefaultInstance(),
+   *     "Singers", KeySet.all(), Arrays.asList("SingerId"));
+   * txn.newPartitionExecutor(PartitionExecutorOptions.newBuilder().build())
+   *     .execute(partitions, new PartitionExecutor.RowConsumer() {
+   *       public void onRow(Struct row) {
+   *         count.incrementAndGet();
+   *       }
+   *     });
+   * }</pre>
+   */
+  PartitionExecutor newPartitionExecutor(PartitionExecutorOptions options);
 }
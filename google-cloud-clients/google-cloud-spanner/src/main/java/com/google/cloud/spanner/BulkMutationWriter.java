@@ -0,0 +1,487 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Utf8;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Writes a large number of mutations by packing them into commits and running several commits in
+ * parallel. Commits are packed according to the limits of {@link BulkMutationWriterOptions}, so
+ * callers don't have to split their mutations to stay under the commit size limits of Cloud
+ * Spanner.
+ *
+ * <p>Mutations can be added concurrently from several threads. Each commit is a separate
+ * read-write transaction on a session from the pool, which is retried if it's aborted. There is no
+ * atomicity across commits and no ordering guarantee between mutations of different commits, so
+ * the writer is intended for loading or updating independent rows.
+ *
+ * <p>Example of loading rows:
+ *
+ * <pre>{@code
+ * try (BulkMutationWriter writer =
+ *     dbClient.newBulkMutationWriter(BulkMutationWriterOptions.newBuilder().build())) {
+ *   for (Singer singer : singers) {
+ *     writer.add(
+ *         Mutation.newInsertBuilder("Singers")
+ *             .set("SingerId").to(singer.id)
+ *             .set("FirstName").to(singer.firstName)
+ *             .build());
+ *   }
+ * }
+ * }</pre>
+ */
+public class BulkMutationWriter implements AutoCloseable {
+
+  /**
+   * Returns the key prefix of a mutation. Mutations with different prefixes are never committed
+   * together.
+   */
+  public interface KeyPrefixFunction {
+    /** Returns the key prefix of {@code mutation}, which must implement equals and hashCode. */
+    Object getKeyPrefix(Mutation mutation);
+  }
+
+  // Approximate sizes of the encoded values. Most scalar values are encoded as strings.
+  private static final int NULL_SIZE = 2;
+  private static final int BOOL_SIZE = 2;
+  private static final int INT64_SIZE = 20;
+  private static final int FLOAT64_SIZE = 9;
+  private static final int TIMESTAMP_SIZE = 32;
+  private static final int DATE_SIZE = 12;
+  private static final int FIELD_OVERHEAD = 2;
+
+  private static final Object DEFAULT_GROUP = new Object();
+
+  private final DatabaseClient client;
+  private final BulkMutationWriterOptions options;
+  private final ExecutorService executor;
+  // Bounds the number of packed commits that are running or waiting to run.
+  private final Semaphore commitPermits;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final LinkedHashMap<Object, Batch> batches = new LinkedHashMap<>();
+
+  @GuardedBy("lock")
+  private int pendingCommits;
+
+  @GuardedBy("lock")
+  private SpannerException failure;
+
+  @GuardedBy("lock")
+  private int failureCount;
+
+  @GuardedBy("lock")
+  private boolean closed;
+
+  private final long startNanos = System.nanoTime();
+  private final AtomicLong committedMutations = new AtomicLong();
+  private final AtomicLong failedMutations = new AtomicLong();
+  private final AtomicLong commits = new AtomicLong();
+  private final AtomicLong abortedRetries = new AtomicLong();
+
+  BulkMutationWriter(DatabaseClient client, BulkMutationWriterOptions options) {
+    this.client = client;
+    this.options = options;
+    this.executor =
+        Executors.newFixedThreadPool(
+            options.getMaxParallelCommits(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("spanner-bulk-mutation-writer-%d")
+                .build());
+    this.commitPermits = new Semaphore(2 * options.getMaxParallelCommits());
+  }
+
+  /**
+   * Adds a mutation to be committed. Blocks if the maximum number of parallel commits are running
+   * and as many are waiting.
+   *
+   * @throws IllegalStateException if the writer is closed
+   */
+  public void add(Mutation mutation) throws SpannerException {
+    Preconditions.checkNotNull(mutation);
+    long size = estimateSize(mutation);
+    int cells = countMutatedCells(mutation);
+    Object group =
+        options.getKeyPrefixFunction() == null
+            ? DEFAULT_GROUP
+            : options.getKeyPrefixFunction().getKeyPrefix(mutation);
+
+    List<Batch> ready = new ArrayList<>(2);
+    synchronized (lock) {
+      Preconditions.checkState(!closed, "BulkMutationWriter is closed");
+      Batch batch = batches.get(group);
+      if (batch != null && !batch.fits(size, cells)) {
+        batches.remove(group);
+        ready.add(batch);
+        batch = null;
+      }
+      if (batch == null) {
+        if (batches.size() >= options.getMaxBufferedGroups()) {
+          Iterator<Batch> oldest = batches.values().iterator();
+          ready.add(oldest.next());
+          oldest.remove();
+        }
+        batch = new Batch();
+        batches.put(group, batch);
+      }
+      batch.add(mutation, size, cells);
+      pendingCommits += ready.size();
+    }
+    submit(ready);
+  }
+
+  /** Adds mutations to be committed, as if by calling {@link #add(Mutation)} for each of them. */
+  public void addAll(Iterable<Mutation> mutations) throws SpannerException {
+    for (Mutation mutation : mutations) {
+      add(mutation);
+    }
+  }
+
+  /**
+   * Commits all buffered mutations and waits for all commits to complete.
+   *
+   * @throws SpannerException the first commit failure since the last call to {@code flush()}, if
+   *     any. The number of mutations that failed is available from {@link
+   *     #getFailedMutationCount()}.
+   */
+  public void flush() throws SpannerException {
+    List<Batch> ready;
+    synchronized (lock) {
+      ready = new ArrayList<>(batches.values());
+      batches.clear();
+      pendingCommits += ready.size();
+    }
+    submit(ready);
+
+    synchronized (lock) {
+      try {
+        while (pendingCommits > 0) {
+          lock.wait();
+        }
+      } catch (InterruptedException e) {
+        throw SpannerExceptionFactory.propagateInterrupt(e);
+      }
+      if (failure != null) {
+        SpannerException e = failure;
+        if (failureCount > 1) {
+          e =
+              SpannerExceptionFactory.newSpannerException(
+                  e.getErrorCode(), failureCount + " commits failed, first failure: "
+                      + e.getMessage(), e);
+        }
+        failure = null;
+        failureCount = 0;
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Commits all buffered mutations, waits for all commits to complete and releases the resources
+   * of this writer.
+   *
+   * @throws SpannerException if a commit failed, see {@link #flush()}
+   */
+  @Override
+  public void close() throws SpannerException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    try {
+      flush();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Returns the number of mutations that were successfully committed. */
+  public long getCommittedMutationCount() {
+    return committedMutations.get();
+  }
+
+  /** Returns the number of mutations whose commit failed. */
+  public long getFailedMutationCount() {
+    return failedMutations.get();
+  }
+
+  /** Returns the number of successful commits. */
+  public long getCommitCount() {
+    return commits.get();
+  }
+
+  /** Returns the number of times a commit was retried because its transaction was aborted. */
+  public long getAbortedRetryCount() {
+    return abortedRetries.get();
+  }
+
+  /**
+   * Returns the average number of rows, that is mutations, committed per second since this writer
+   * was created.
+   */
+  public double getRowsPerSecond() {
+    long elapsedNanos = System.nanoTime() - startNanos;
+    if (elapsedNanos <= 0) {
+      return 0;
+    }
+    return committedMutations.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  private void submit(List<Batch> ready) {
+    for (int i = 0; i < ready.size(); i++) {
+      final Batch batch = ready.get(i);
+      try {
+        commitPermits.acquire();
+      } catch (InterruptedException e) {
+        // The remaining batches are lost, account for them as failures.
+        SpannerException error = SpannerExceptionFactory.propagateInterrupt(e);
+        for (Batch lost : ready.subList(i, ready.size())) {
+          onCommitDone(lost, error);
+        }
+        throw error;
+      }
+      executor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              SpannerException error = null;
+              try {
+                commit(batch.mutations);
+              } catch (SpannerException e) {
+                error = e;
+              } catch (RuntimeException e) {
+                error = SpannerExceptionFactory.newSpannerException(e);
+              } finally {
+                commitPermits.release();
+                onCommitDone(batch, error);
+              }
+            }
+          });
+    }
+  }
+
+  private void commit(final List<Mutation> mutations) {
+    final AtomicInteger attempts = new AtomicInteger();
+    client
+        .readWriteTransaction()
+        .run(
+            new TransactionCallable<Void>() {
+              @Override
+              public Void run(TransactionContext transaction) {
+                if (attempts.incrementAndGet() > 1) {
+                  abortedRetries.incrementAndGet();
+                }
+                transaction.buffer(mutations);
+                return null;
+              }
+            });
+  }
+
+  private void onCommitDone(Batch batch, SpannerException error) {
+    if (error == null) {
+      commits.incrementAndGet();
+      committedMutations.addAndGet(batch.mutations.size());
+    } else {
+      failedMutations.addAndGet(batch.mutations.size());
+    }
+    synchronized (lock) {
+      if (error != null) {
+        if (failure == null) {
+          failure = error;
+        }
+        failureCount++;
+      }
+      pendingCommits--;
+      lock.notifyAll();
+    }
+  }
+
+  /** Returns the estimated encoded size of {@code mutation} in bytes. */
+  @VisibleForTesting
+  static long estimateSize(Mutation mutation) {
+    long size = Utf8.encodedLength(mutation.getTable()) + FIELD_OVERHEAD;
+    if (mutation.getOperation() == Mutation.Op.DELETE) {
+      KeySet keySet = mutation.getKeySet();
+      for (Key key : keySet.getKeys()) {
+        size += estimateSize(key);
+      }
+      for (KeyRange range : keySet.getRanges()) {
+        size += estimateSize(range.getStart()) + estimateSize(range.getEnd());
+      }
+      return size;
+    }
+    for (String column : mutation.getColumns()) {
+      size += Utf8.encodedLength(column) + FIELD_OVERHEAD;
+    }
+    for (Value value : mutation.getValues()) {
+      size += estimateSize(value);
+    }
+    return size;
+  }
+
+  /** Returns the number of cells mutated by {@code mutation}, excluding secondary indexes. */
+  @VisibleForTesting
+  static int countMutatedCells(Mutation mutation) {
+    int count = 0;
+    if (mutation.getOperation() == Mutation.Op.DELETE) {
+      KeySet keySet = mutation.getKeySet();
+      for (Key ignored : keySet.getKeys()) {
+        count++;
+      }
+      for (KeyRange ignored : keySet.getRanges()) {
+        count++;
+      }
+    } else {
+      for (String ignored : mutation.getColumns()) {
+        count++;
+      }
+    }
+    return Math.max(1, count);
+  }
+
+  private static long estimateSize(Key key) {
+    long size = FIELD_OVERHEAD;
+    for (Object part : key.getParts()) {
+      size += estimateSize(part);
+    }
+    return size;
+  }
+
+  private static long estimateSize(Value value) {
+    if (value.isNull()) {
+      return NULL_SIZE;
+    }
+    Type type = value.getType();
+    switch (type.getCode()) {
+      case BOOL:
+        return BOOL_SIZE;
+      case INT64:
+        return INT64_SIZE;
+      case FLOAT64:
+        return FLOAT64_SIZE;
+      case STRING:
+        return estimateSize(value.getString());
+      case BYTES:
+        return estimateSize(value.getBytes());
+      case TIMESTAMP:
+        return TIMESTAMP_SIZE;
+      case DATE:
+        return DATE_SIZE;
+      case ARRAY:
+        return estimateArraySize(value, type.getArrayElementType());
+      default:
+        return Utf8.encodedLength(value.toString()) + FIELD_OVERHEAD;
+    }
+  }
+
+  private static long estimateArraySize(Value value, Type elementType) {
+    long size = FIELD_OVERHEAD;
+    switch (elementType.getCode()) {
+      case BOOL:
+        return size + (long) value.getBoolArray().size() * BOOL_SIZE;
+      case INT64:
+        return size + (long) value.getInt64Array().size() * INT64_SIZE;
+      case FLOAT64:
+        return size + (long) value.getFloat64Array().size() * FLOAT64_SIZE;
+      case STRING:
+        for (String element : value.getStringArray()) {
+          size += estimateSize(element);
+        }
+        return size;
+      case BYTES:
+        for (ByteArray element : value.getBytesArray()) {
+          size += estimateSize(element);
+        }
+        return size;
+      case TIMESTAMP:
+        return size + (long) value.getTimestampArray().size() * TIMESTAMP_SIZE;
+      case DATE:
+        return size + (long) value.getDateArray().size() * DATE_SIZE;
+      default:
+        return size + Utf8.encodedLength(value.toString());
+    }
+  }
+
+  private static long estimateSize(Object keyPart) {
+    if (keyPart == null) {
+      return NULL_SIZE;
+    } else if (keyPart instanceof Boolean) {
+      return BOOL_SIZE;
+    } else if (keyPart instanceof Long) {
+      return INT64_SIZE;
+    } else if (keyPart instanceof Double) {
+      return FLOAT64_SIZE;
+    } else if (keyPart instanceof String) {
+      return estimateSize((String) keyPart);
+    } else if (keyPart instanceof ByteArray) {
+      return estimateSize((ByteArray) keyPart);
+    } else if (keyPart instanceof com.google.cloud.Timestamp) {
+      return TIMESTAMP_SIZE;
+    } else if (keyPart instanceof com.google.cloud.Date) {
+      return DATE_SIZE;
+    }
+    return Utf8.encodedLength(keyPart.toString()) + FIELD_OVERHEAD;
+  }
+
+  private static long estimateSize(String value) {
+    return value == null ? NULL_SIZE : Utf8.encodedLength(value) + FIELD_OVERHEAD;
+  }
+
+  private static long estimateSize(ByteArray value) {
+    // Bytes are base64 encoded.
+    return value == null ? NULL_SIZE : (value.length() + 2) / 3 * 4 + FIELD_OVERHEAD;
+  }
+
+  /** Mutations packed into a single commit. */
+  private final class Batch {
+    private final List<Mutation> mutations = new ArrayList<>();
+    private long sizeBytes;
+    private int cells;
+
+    boolean fits(long size, int cells) {
+      return sizeBytes + size <= options.getMaxCommitSizeBytes()
+          && this.cells + cells <= options.getMaxMutationsPerCommit();
+    }
+
+    void add(Mutation mutation, long size, int cells) {
+      mutations.add(mutation);
+      sizeBytes += size;
+      this.cells += cells;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Preconditions;
+import javax.annotation.Nullable;
+
+/** Options for a {@link BulkMutationWriter}. */
+public class BulkMutationWriterOptions {
+  private final long maxCommitSizeBytes;
+  private final int maxMutationsPerCommit;
+  private final int maxParallelCommits;
+  private final int maxBufferedGroups;
+  @Nullable private final BulkMutationWriter.KeyPrefixFunction keyPrefixFunction;
+
+  private BulkMutationWriterOptions(Builder builder) {
+    this.maxCommitSizeBytes = builder.maxCommitSizeBytes;
+    this.maxMutationsPerCommit = builder.maxMutationsPerCommit;
+    this.maxParallelCommits = builder.maxParallelCommits;
+    this.maxBufferedGroups = builder.maxBufferedGroups;
+    this.keyPrefixFunction = builder.keyPrefixFunction;
+  }
+
+  public long getMaxCommitSizeBytes() {
+    return maxCommitSizeBytes;
+  }
+
+  public int getMaxMutationsPerCommit() {
+    return maxMutationsPerCommit;
+  }
+
+  public int getMaxParallelCommits() {
+    return maxParallelCommits;
+  }
+
+  public int getMaxBufferedGroups() {
+    return maxBufferedGroups;
+  }
+
+  @Nullable
+  public BulkMutationWriter.KeyPrefixFunction getKeyPrefixFunction() {
+    return keyPrefixFunction;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating BulkMutationWriterOptions. */
+  public static class Builder {
+    private long maxCommitSizeBytes = 1024 * 1024;
+    private int maxMutationsPerCommit = 5000;
+    private int maxParallelCommits = 4;
+    private int maxBufferedGroups = 100;
+    private BulkMutationWriter.KeyPrefixFunction keyPrefixFunction;
+
+    private Builder() {}
+
+    /**
+     * Maximum estimated size of the mutations of a single commit. The size of a mutation is
+     * estimated from its table, column names and values, so the actual size of the commit request
+     * is somewhat larger. A mutation larger than this limit is committed on its own. Defaults to
+     * 1 MiB.
+     */
+    public Builder setMaxCommitSizeBytes(long maxCommitSizeBytes) {
+      this.maxCommitSizeBytes = maxCommitSizeBytes;
+      return this;
+    }
+
+    /**
+     * Maximum number of mutated cells in a single commit. Cloud Spanner counts every column of an
+     * insert or update as a mutation, as well as every affected secondary index entry, and limits
+     * the number of mutations per commit. The writer counts one cell per column of an insert or
+     * update and one per key or range of a delete, so the limit should leave room for secondary
+     * indexes. Defaults to 5000.
+     */
+    public Builder setMaxMutationsPerCommit(int maxMutationsPerCommit) {
+      this.maxMutationsPerCommit = maxMutationsPerCommit;
+      return this;
+    }
+
+    /**
+     * Maximum number of commits in flight. Each commit uses a session from the pool. When this many
+     * commits are running and as many are waiting, adding mutations blocks. Defaults to 4.
+     */
+    public Builder setMaxParallelCommits(int maxParallelCommits) {
+      this.maxParallelCommits = maxParallelCommits;
+      return this;
+    }
+
+    /**
+     * Maximum number of key prefixes with buffered mutations when a {@link
+     * BulkMutationWriter.KeyPrefixFunction} is set. When a mutation with a new prefix would exceed
+     * it, the mutations of the oldest prefix are committed. Defaults to 100.
+     */
+    public Builder setMaxBufferedGroups(int maxBufferedGroups) {
+      this.maxBufferedGroups = maxBufferedGroups;
+      return this;
+    }
+
+    /**
+     * Groups mutations by key prefix, for instance the key of the parent row of interleaved
+     * tables. Mutations with different prefixes are never committed together, which avoids commits
+     * that span several splits of the database. By default, mutations are committed in the order
+     * they are added regardless of their keys.
+     */
+    public Builder setKeyPrefixFunction(BulkMutationWriter.KeyPrefixFunction keyPrefixFunction) {
+      this.keyPrefixFunction = keyPrefixFunction;
+      return this;
+    }
+
+    /** Build a BulkMutationWriterOptions object */
+    public BulkMutationWriterOptions build() {
+      validate();
+      return new BulkMutationWriterOptions(this);
+    }
+
+    private void validate() {
+      Preconditions.checkArgument(
+          maxCommitSizeBytes > 0, "Max commit size(%s) must be > 0", maxCommitSizeBytes);
+      Preconditions.checkArgument(
+          maxMutationsPerCommit > 0,
+          "Max mutations per commit(%s) must be > 0",
+          maxMutationsPerCommit);
+      Preconditions.checkArgument(
+          maxParallelCommits > 0, "Max parallel commits(%s) must be > 0", maxParallelCommits);
+      Preconditions.checkArgument(
+          maxBufferedGroups > 0, "Max buffered groups(%s) must be > 0", maxBufferedGroups);
+    }
+  }
+}
@@ -269,4 +269,35 @@ public interface DatabaseClient {
    *
    */
   TransactionManager transactionManager();
+
+  /**
+   * Returns a writer that packs mutations into commits and runs several commits in parallel. It's
+   * intended for writing a large number of independent rows, as the mutations are not applied
+   * atomically. See {@link BulkMutationWriter}.
+   *
+   * <p>Example of loading rows.
+   * <pre>{@code
+   * try (BulkMutationWriter writer =
+   *     dbClient.newBulkMutationWriter(BulkMutationWriterOptions.newBuilder().build())) {
+   *   for (long singerId = 0; singerId < 1000000; singerId++) {
+   *     writer.add(Mutation.newInsertBuilder("Singers").set("SingerId").to(singerId).build());
+   *   }
+   * }
+   * }</pre>
+   */
+  BulkMutationWriter newBulkMutationWriter(BulkMutationWriterOptions options);
+
+  /**
+   * Returns a cache of single-use reads with a {@link TimestampBound.Mode#MAX_STALENESS} or {@link
+   * TimestampBound.Mode#MIN_READ_TIMESTAMP} bound. A read is served from the cache as long as the
+   * timestamp of the cached rows satisfies the bound. See {@link StaleReadCache}.
+   *
+   * <p>Example of reading a hot row with up to 10 seconds of staleness.
+   * <pre>{@code
+   * StaleReadCache cache = dbClient.newStaleReadCache(StaleReadCacheOptions.newBuilder().build());
+   * Struct row = cache.readRow("Singers", Key.of(singerId), Arrays.asList("FirstName"),
+   *     TimestampBound.ofMaxStaleness(10, TimeUnit.SECONDS));
+   * }</pre>
+   */
+  StaleReadCache newStaleReadCache(StaleReadCacheOptions options);
 }
@@ -155,6 +155,16 @@ class DatabaseClientImpl implements DatabaseClient {
     }
   }
 
+  @Override
+  public BulkMutationWriter newBulkMutationWriter(BulkMutationWriterOptions options) {
+    return new BulkMutationWriter(this, options);
+  }
+
+  @Override
+  public StaleReadCache newStaleReadCache(StaleReadCacheOptions options) {
+    return new StaleReadCache(this, options);
+  }
+
   ListenableFuture<Void> closeAsync() {
     return pool.closeAsync();
   }
@@ -20,229 +20,239 @@ import com.google.cloud.ByteArray;
 import com.google.cloud.Date;
 import com.google.cloud.Timestamp;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import java.util.List;
 
 /** Forwarding implements of StructReader */
 public class ForwardingStructReader implements StructReader {
 
-  private final StructReader delegate;
+  private final Supplier<? extends StructReader> delegate;
 
   public ForwardingStructReader(StructReader delegate) {
+    this.delegate = Suppliers.ofInstance(Preconditions.checkNotNull(delegate));
+  }
+
+  /**
+   * Creates a reader that forwards every call to the reader returned by {@code delegate} at the
+   * time of the call.
+   */
+  public ForwardingStructReader(Supplier<? extends StructReader> delegate) {
     this.delegate = Preconditions.checkNotNull(delegate);
   }
 
   @Override
   public Type getType() {
-    return delegate.getType();
+    return delegate.get().getType();
   }
 
   @Override
   public int getColumnCount() {
-    return delegate.getColumnCount();
+    return delegate.get().getColumnCount();
   }
 
   @Override
   public int getColumnIndex(String columnName) {
-    return delegate.getColumnIndex(columnName);
+    return delegate.get().getColumnIndex(columnName);
   }
 
   @Override
   public Type getColumnType(int columnIndex) {
-    return delegate.getColumnType(columnIndex);
+    return delegate.get().getColumnType(columnIndex);
   }
 
   @Override
   public Type getColumnType(String columnName) {
-    return delegate.getColumnType(columnName);
+    return delegate.get().getColumnType(columnName);
   }
 
   @Override
   public boolean isNull(int columnIndex) {
-    return delegate.isNull(columnIndex);
+    return delegate.get().isNull(columnIndex);
   }
 
   @Override
   public boolean isNull(String columnName) {
-    return delegate.isNull(columnName);
+    return delegate.get().isNull(columnName);
   }
 
   @Override
   public boolean getBoolean(int columnIndex) {
-    return delegate.getBoolean(columnIndex);
+    return delegate.get().getBoolean(columnIndex);
   }
 
   @Override
   public boolean getBoolean(String columnName) {
-    return delegate.getBoolean(columnName);
+    return delegate.get().getBoolean(columnName);
   }
 
   @Override
   public long getLong(int columnIndex) {
-    return delegate.getLong(columnIndex);
+    return delegate.get().getLong(columnIndex);
   }
 
   @Override
   public long getLong(String columnName) {
-    return delegate.getLong(columnName);
+    return delegate.get().getLong(columnName);
   }
 
   @Override
   public double getDouble(int columnIndex) {
-    return delegate.getDouble(columnIndex);
+    return delegate.get().getDouble(columnIndex);
   }
 
   @Override
   public double getDouble(String columnName) {
-    return delegate.getDouble(columnName);
+    return delegate.get().getDouble(columnName);
   }
 
   @Override
   public String getString(int columnIndex) {
-    return delegate.getString(columnIndex);
+    return delegate.get().getString(columnIndex);
   }
 
   @Override
   public String getString(String columnName) {
-    return delegate.getString(columnName);
+    return delegate.get().getString(columnName);
   }
 
   @Override
   public ByteArray getBytes(int columnIndex) {
-    return delegate.getBytes(columnIndex);
+    return delegate.get().getBytes(columnIndex);
   }
 
   @Override
   public ByteArray getBytes(String columnName) {
-    return delegate.getBytes(columnName);
+    return delegate.get().getBytes(columnName);
   }
 
   @Override
   public Timestamp getTimestamp(int columnIndex) {
-    return delegate.getTimestamp(columnIndex);
+    return delegate.get().getTimestamp(columnIndex);
   }
 
   @Override
   public Timestamp getTimestamp(String columnName) {
-    return delegate.getTimestamp(columnName);
+    return delegate.get().getTimestamp(columnName);
   }
 
   @Override
   public Date getDate(int columnIndex) {
-    return delegate.getDate(columnIndex);
+    return delegate.get().getDate(columnIndex);
   }
 
   @Override
   public Date getDate(String columnName) {
-    return delegate.getDate(columnName);
+    return delegate.get().getDate(columnName);
   }
 
   @Override
   public boolean[] getBooleanArray(int columnIndex) {
-    return delegate.getBooleanArray(columnIndex);
+    return delegate.get().getBooleanArray(columnIndex);
   }
 
   @Override
   public boolean[] getBooleanArray(String columnName) {
-    return delegate.getBooleanArray(columnName);
+    return delegate.get().getBooleanArray(columnName);
   }
 
   @Override
   public List<Boolean> getBooleanList(int columnIndex) {
-    return delegate.getBooleanList(columnIndex);
+    return delegate.get().getBooleanList(columnIndex);
   }
 
   @Override
   public List<Boolean> getBooleanList(String columnName) {
-    return delegate.getBooleanList(columnName);
+    return delegate.get().getBooleanList(columnName);
   }
 
   @Override
   public long[] getLongArray(int columnIndex) {
-    return delegate.getLongArray(columnIndex);
+    return delegate.get().getLongArray(columnIndex);
   }
 
   @Override
   public long[] getLongArray(String columnName) {
-    return delegate.getLongArray(columnName);
+    return delegate.get().getLongArray(columnName);
   }
 
   @Override
   public List<Long> getLongList(int columnIndex) {
-    return delegate.getLongList(columnIndex);
+    return delegate.get().getLongList(columnIndex);
   }
 
   @Override
   public List<Long> getLongList(String columnName) {
-    return delegate.getLongList(columnName);
+    return delegate.get().getLongList(columnName);
   }
 
   @Override
   public double[] getDoubleArray(int columnIndex) {
-    return delegate.getDoubleArray(columnIndex);
+    return delegate.get().getDoubleArray(columnIndex);
   }
 
   @Override
   public double[] getDoubleArray(String columnName) {
-    return delegate.getDoubleArray(columnName);
+    return delegate.get().getDoubleArray(columnName);
   }
 
   @Override
   public List<Double> getDoubleList(int columnIndex) {
-    return delegate.getDoubleList(columnIndex);
+    return delegate.get().getDoubleList(columnIndex);
   }
 
   @Override
   public List<Double> getDoubleList(String columnName) {
-    return delegate.getDoubleList(columnName);
+    return delegate.get().getDoubleList(columnName);
   }
 
   @Override
   public List<String> getStringList(int columnIndex) {
-    return delegate.getStringList(columnIndex);
+    return delegate.get().getStringList(columnIndex);
   }
 
   @Override
   public List<String> getStringList(String columnName) {
-    return delegate.getStringList(columnName);
+    return delegate.get().getStringList(columnName);
   }
 
   @Override
   public List<ByteArray> getBytesList(int columnIndex) {
-    return delegate.getBytesList(columnIndex);
+    return delegate.get().getBytesList(columnIndex);
   }
 
   @Override
   public List<ByteArray> getBytesList(String columnName) {
-    return delegate.getBytesList(columnName);
+    return delegate.get().getBytesList(columnName);
   }
 
   @Override
   public List<Timestamp> getTimestampList(int columnIndex) {
-    return delegate.getTimestampList(columnIndex);
+    return delegate.get().getTimestampList(columnIndex);
   }
 
   @Override
   public List<Timestamp> getTimestampList(String columnName) {
-    return delegate.getTimestampList(columnName);
+    return delegate.get().getTimestampList(columnName);
   }
 
   @Override
   public List<Date> getDateList(int columnIndex) {
-    return delegate.getDateList(columnIndex);
+    return delegate.get().getDateList(columnIndex);
   }
 
   @Override
   public List<Date> getDateList(String columnName) {
-    return delegate.getDateList(columnName);
+    return delegate.get().getDateList(columnName);
   }
 
   @Override
   public List<Struct> getStructList(int columnIndex) {
-    return delegate.getStructList(columnIndex);
+    return delegate.get().getStructList(columnIndex);
   }
 
   @Override
   public List<Struct> getStructList(String columnName) {
-    return delegate.getStructList(columnName);
+    return delegate.get().getStructList(columnName);
   }
 }
@@ -17,6 +17,10 @@
 package com.google.cloud.spanner;
 
 import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFunction;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.BetaApi;
 import com.google.api.core.CurrentMillisClock;
 import com.google.api.gax.retrying.BasicResultRetryAlgorithm;
 import com.google.api.gax.retrying.PollException;
@@ -186,6 +190,47 @@ public class Operation<R, M> {
     }
   }
 
+  /**
+   * Returns a future that completes with the operation once it is complete, or with {@code null} if
+   * the operation is not found. Unlike {@link #waitFor(RetryOption...)}, no thread is blocked while
+   * waiting: the operations waited for by all the futures are polled by a shared poller.
+   *
+   * @return a future that fails with a {@link SpannerException}, with {@link
+   *     ErrorCode#DEADLINE_EXCEEDED} if the operation doesn't complete in time
+   */
+  @BetaApi
+  public ApiFuture<Operation<R, M>> waitForAsync(RetryOption... waitOptions) {
+    if (isDone()) {
+      return ApiFutures.immediateFuture(this);
+    }
+    RetrySettings waitSettings =
+        RetryOption.mergeToSettings(DEFAULT_OPERATION_WAIT_SETTINGS, waitOptions);
+    ApiFuture<com.google.longrunning.Operation> proto =
+        SpannerOperationPoller.getInstance()
+            .watch(new SpannerOperationPoller.Key(rpc, name), waitSettings);
+    ApiFuture<Operation<R, M>> operation =
+        ApiFutures.transform(
+            proto,
+            new ApiFunction<com.google.longrunning.Operation, Operation<R, M>>() {
+              @Override
+              public Operation<R, M> apply(com.google.longrunning.Operation operationProto) {
+                return operationProto == null
+                    ? null
+                    : Operation.create(rpc, operationProto, parser, clock);
+              }
+            });
+    return ApiFutures.catching(
+        operation,
+        PollException.class,
+        new ApiFunction<PollException, Operation<R, M>>() {
+          @Override
+          public Operation<R, M> apply(PollException e) {
+            throw SpannerExceptionFactory.newSpannerException(
+                ErrorCode.DEADLINE_EXCEEDED, "Operation did not complete in the given time");
+          }
+        });
+  }
+
   /**
    * Returns the metadata returned by the last refresh of this operation. Returns null if no
    * metadata was returned or if this operation has not been refereshed.
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.threeten.bp.Duration;
+
+/**
+ * Executes the partitions of a {@link BatchReadOnlyTransaction} in parallel and streams the rows of
+ * all partitions to a single consumer.
+ *
+ * <p>The partitions are executed with bounded parallelism, all within the session of the
+ * transaction. Rows are handed to the consumer on the calling thread, and the partitions stop
+ * reading when the consumer falls behind by more than {@link
+ * PartitionExecutorOptions#getRowBufferSize()} rows. Rows of different partitions are interleaved
+ * in no particular order.
+ *
+ * <p>A partition that fails with a retryable error before returning any row is executed again, up
+ * to {@link PartitionExecutorOptions#getMaxAttemptsPerPartition()} times, without affecting the
+ * other partitions. Transient errors in the middle of a partition are already handled by resuming
+ * the stream, so any other failure stops the execution of all partitions.
+ */
+public class PartitionExecutor {
+
+  /** Receives the rows of all partitions. */
+  public interface RowConsumer {
+    /** Called on the thread that called {@link PartitionExecutor#execute} for every row. */
+    void onRow(Struct row);
+  }
+
+  /** Statistics of the execution of a partition. */
+  public static final class PartitionStats {
+    private final Partition partition;
+    private final long rowCount;
+    private final int attempts;
+    private final Duration latency;
+
+    PartitionStats(Partition partition, long rowCount, int attempts, Duration latency) {
+      this.partition = partition;
+      this.rowCount = rowCount;
+      this.attempts = attempts;
+      this.latency = latency;
+    }
+
+    public Partition getPartition() {
+      return partition;
+    }
+
+    /** Returns the number of rows read from the partition. */
+    public long getRowCount() {
+      return rowCount;
+    }
+
+    /** Returns the number of times the partition was executed. */
+    public int getAttempts() {
+      return attempts;
+    }
+
+    /**
+     * Returns the time from the start of the first execution of the partition to its last row
+     * being handed to the consumer buffer, including retries.
+     */
+    public Duration getLatency() {
+      return latency;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("rowCount", rowCount)
+          .add("attempts", attempts)
+          .add("latency", latency)
+          .toString();
+    }
+  }
+
+  private final BatchReadOnlyTransaction transaction;
+  private final PartitionExecutorOptions options;
+
+  PartitionExecutor(BatchReadOnlyTransaction transaction, PartitionExecutorOptions options) {
+    this.transaction = transaction;
+    this.options = options;
+  }
+
+  /**
+   * Executes all {@code partitions} and hands their rows to {@code consumer}. Returns when all the
+   * partitions have been read, or throws the first failure. If the consumer throws an exception,
+   * the execution of all partitions is cancelled and the exception is rethrown.
+   *
+   * @return the statistics of each partition, in the order the partitions completed
+   */
+  public List<PartitionStats> execute(List<Partition> partitions, RowConsumer consumer)
+      throws SpannerException {
+    if (partitions.isEmpty()) {
+      return ImmutableList.of();
+    }
+    BlockingQueue<Object> queue = new ArrayBlockingQueue<>(options.getRowBufferSize());
+    AtomicBoolean cancelled = new AtomicBoolean();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(options.getMaxParallelism(), partitions.size()),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("spanner-partition-executor-%d")
+                .build());
+    try {
+      for (Partition partition : partitions) {
+        executor.execute(new PartitionTask(partition, queue, cancelled));
+      }
+      List<PartitionStats> stats = new ArrayList<>(partitions.size());
+      while (stats.size() < partitions.size()) {
+        Object item = queue.take();
+        if (item instanceof Struct) {
+          consumer.onRow((Struct) item);
+        } else {
+          PartitionResult result = (PartitionResult) item;
+          if (result.error != null) {
+            throw result.error;
+          }
+          stats.add(result.stats);
+        }
+      }
+      return stats;
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    } finally {
+      cancelled.set(true);
+      executor.shutdownNow();
+    }
+  }
+
+  /** Marks the end of a partition in the row queue. */
+  private static final class PartitionResult {
+    private final PartitionStats stats;
+    private final SpannerException error;
+
+    PartitionResult(PartitionStats stats, SpannerException error) {
+      this.stats = stats;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Returns the delay before the execution following the given number of attempts: the initial
+   * delay doubled for every attempt but the first, capped at the max delay.
+   */
+  static long retryDelayMillis(Duration initialDelay, Duration maxDelay, int attempts) {
+    long initialMillis = initialDelay.toMillis();
+    // Shifting by more than the leading zeros would overflow, and the cap is reached anyway.
+    int shift = Math.min(attempts - 1, Long.numberOfLeadingZeros(initialMillis) - 1);
+    return Math.min(maxDelay.toMillis(), initialMillis << shift);
+  }
+
+  private final class PartitionTask implements Runnable {
+    private final Partition partition;
+    private final BlockingQueue<Object> queue;
+    private final AtomicBoolean cancelled;
+    private long rowCount;
+    private int attempts;
+
+    PartitionTask(Partition partition, BlockingQueue<Object> queue, AtomicBoolean cancelled) {
+      this.partition = partition;
+      this.queue = queue;
+      this.cancelled = cancelled;
+    }
+
+    @Override
+    public void run() {
+      long startNanos = System.nanoTime();
+      SpannerException error = null;
+      try {
+        read();
+      } catch (InterruptedException e) {
+        // The execution was cancelled.
+        return;
+      } catch (SpannerException e) {
+        error = e;
+      } catch (Throwable e) {
+        // Every task must end with a result, otherwise execute() would wait for it forever.
+        error = SpannerExceptionFactory.newSpannerException(e);
+      }
+      if (cancelled.get()) {
+        return;
+      }
+      Duration latency = Duration.ofNanos(System.nanoTime() - startNanos);
+      try {
+        queue.put(
+            new PartitionResult(
+                new PartitionStats(partition, rowCount, attempts, latency), error));
+      } catch (InterruptedException e) {
+        // The execution was cancelled.
+      }
+    }
+
+    private void read() throws InterruptedException {
+      while (!cancelled.get()) {
+        attempts++;
+        try (ResultSet resultSet = transaction.execute(partition)) {
+          while (resultSet.next()) {
+            if (cancelled.get()) {
+              return;
+            }
+            queue.put(resultSet.getCurrentRowAsStruct());
+            rowCount++;
+          }
+          return;
+        } catch (SpannerException e) {
+          if (rowCount > 0 || attempts >= options.getMaxAttemptsPerPartition()
+              || !e.isRetryable()) {
+            throw e;
+          }
+          TimeUnit.MILLISECONDS.sleep(
+              retryDelayMillis(
+                  options.getInitialRetryDelay(), options.getMaxRetryDelay(), attempts));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/** Options for executing partitions with a {@link PartitionExecutor}. */
+public class PartitionExecutorOptions {
+  private final int maxParallelism;
+  private final int rowBufferSize;
+  private final int maxAttemptsPerPartition;
+  private final Duration initialRetryDelay;
+  private final Duration maxRetryDelay;
+
+  private PartitionExecutorOptions(Builder builder) {
+    this.maxParallelism = builder.maxParallelism;
+    this.rowBufferSize = builder.rowBufferSize;
+    this.maxAttemptsPerPartition = builder.maxAttemptsPerPartition;
+    this.initialRetryDelay = builder.initialRetryDelay;
+    this.maxRetryDelay = builder.maxRetryDelay;
+  }
+
+  public int getMaxParallelism() {
+    return maxParallelism;
+  }
+
+  public int getRowBufferSize() {
+    return rowBufferSize;
+  }
+
+  public int getMaxAttemptsPerPartition() {
+    return maxAttemptsPerPartition;
+  }
+
+  public Duration getInitialRetryDelay() {
+    return initialRetryDelay;
+  }
+
+  public Duration getMaxRetryDelay() {
+    return maxRetryDelay;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating PartitionExecutorOptions. */
+  public static class Builder {
+    private int maxParallelism = 8;
+    private int rowBufferSize = 1000;
+    private int maxAttemptsPerPartition = 3;
+    private Duration initialRetryDelay = Duration.ofMillis(100);
+    private Duration maxRetryDelay = Duration.ofSeconds(10);
+
+    private Builder() {}
+
+    /** Maximum number of partitions executed at the same time. Defaults to 8. */
+    public Builder setMaxParallelism(int maxParallelism) {
+      this.maxParallelism = maxParallelism;
+      return this;
+    }
+
+    /**
+     * Maximum number of rows read from the partitions but not yet consumed. When the buffer is
+     * full, the partitions stop reading until the consumer catches up. Defaults to 1000.
+     */
+    public Builder setRowBufferSize(int rowBufferSize) {
+      this.rowBufferSize = rowBufferSize;
+      return this;
+    }
+
+    /**
+     * Maximum number of times a partition is executed if it fails with a retryable error before
+     * returning any row. Defaults to 3.
+     */
+    public Builder setMaxAttemptsPerPartition(int maxAttemptsPerPartition) {
+      this.maxAttemptsPerPartition = maxAttemptsPerPartition;
+      return this;
+    }
+
+    /**
+     * Delay before the first retry of a partition. The delay doubles with every retry, up to
+     * {@link #setMaxRetryDelay(Duration)}. Defaults to 100 milliseconds.
+     */
+    public Builder setInitialRetryDelay(Duration initialRetryDelay) {
+      this.initialRetryDelay = initialRetryDelay;
+      return this;
+    }
+
+    /**
+     * Maximum delay between two executions of a partition. Must not be less than the initial retry
+     * delay. Defaults to 10 seconds.
+     */
+    public Builder setMaxRetryDelay(Duration maxRetryDelay) {
+      this.maxRetryDelay = maxRetryDelay;
+      return this;
+    }
+
+    /** Build a PartitionExecutorOptions object */
+    public PartitionExecutorOptions build() {
+      validate();
+      return new PartitionExecutorOptions(this);
+    }
+
+    private void validate() {
+      Preconditions.checkArgument(
+          maxParallelism > 0, "Max parallelism(%s) must be > 0", maxParallelism);
+      Preconditions.checkArgument(
+          rowBufferSize > 0, "Row buffer size(%s) must be > 0", rowBufferSize);
+      Preconditions.checkArgument(
+          maxAttemptsPerPartition > 0,
+          "Max attempts per partition(%s) must be > 0",
+          maxAttemptsPerPartition);
+      Preconditions.checkArgument(
+          !Preconditions.checkNotNull(initialRetryDelay).isNegative(),
+          "Initial retry delay must not be negative");
+      Preconditions.checkArgument(
+          Preconditions.checkNotNull(maxRetryDelay).compareTo(initialRetryDelay) >= 0,
+          "Max retry delay(%s) must be >= initial retry delay(%s)",
+          maxRetryDelay,
+          initialRetryDelay);
+    }
+  }
+}
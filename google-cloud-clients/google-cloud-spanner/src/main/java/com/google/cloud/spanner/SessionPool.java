@@ -25,6 +25,7 @@ import com.google.cloud.spanner.Options.QueryOption;
 import com.google.cloud.spanner.Options.ReadOption;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -42,10 +43,12 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -561,6 +564,9 @@ final class SessionPool {
       // Now go over all the remaining sessions and see if they need to be kept alive explicitly.
       keepAliveSessions(currTime);
       replenishPool();
+      if (options.isAdaptiveWriteSessionsFraction()) {
+        rebalanceWriteSessions();
+      }
       synchronized (lock) {
         running = false;
         if (isClosed()) {
@@ -646,8 +652,34 @@ final class SessionPool {
         }
       }
     }
+
+    // Moves the fraction of write prepared sessions towards the share of read/write session
+    // requests since the last loop, and prepares idle sessions if there are too few prepared ones.
+    // Surplus prepared sessions are not released, as they can serve reads as well.
+    private void rebalanceWriteSessions() {
+      synchronized (lock) {
+        long numRequests = numReadSessionRequests + numReadWriteSessionRequests;
+        if (numRequests > 0) {
+          float observedFraction = (float) numReadWriteSessionRequests / numRequests;
+          writeSessionsFraction =
+              WRITE_FRACTION_SMOOTHING * observedFraction
+                  + (1 - WRITE_FRACTION_SMOOTHING) * writeSessionsFraction;
+          numReadSessionRequests = 0;
+          numReadWriteSessionRequests = 0;
+        }
+        while (readSessions.size() > 0 && shouldPrepareSession()) {
+          PooledSession session = readSessions.poll();
+          if (session.state != SessionState.CLOSING) {
+            prepareSession(session);
+          }
+        }
+      }
+    }
   }
 
+  // Weight of the requests of the last maintenance loop when adapting the write sessions fraction.
+  private static final float WRITE_FRACTION_SMOOTHING = 0.5f;
+
   private final SessionPoolOptions options;
   private final DatabaseId db;
   private final SpannerImpl spanner;
@@ -690,6 +722,26 @@ final class SessionPool {
   @GuardedBy("lock")
   private final Set<PooledSession> allSessions = new HashSet<>();
 
+  @GuardedBy("lock")
+  private float writeSessionsFraction;
+
+  @GuardedBy("lock")
+  private long numReadSessionRequests;
+
+  @GuardedBy("lock")
+  private long numReadWriteSessionRequests;
+
+  // Started when the pool is created, and used to measure how long it takes to warm up.
+  private final Stopwatch warmUpStopwatch = Stopwatch.createUnstarted();
+
+  private final SettableFuture<Void> warmUpFuture = SettableFuture.create();
+
+  @GuardedBy("lock")
+  private Duration minSessionsCreatedLatency;
+
+  @GuardedBy("lock")
+  private Duration warmUpLatency;
+
   /**
    * Create a session pool with the given options and for the given database. It will also start
    * eagerly creating sessions if {@link SessionPoolOptions#getMinSessions()} is greater than 0.
@@ -721,6 +773,14 @@ final class SessionPool {
     SessionPool pool =
         new SessionPool(poolOptions, executorFactory, executorFactory.get(), db, spanner, clock);
     pool.initPool();
+    if (!poolOptions.getWaitForMinSessions().isZero()) {
+      try {
+        pool.waitForWarmUp(poolOptions.getWaitForMinSessions());
+      } catch (SpannerException e) {
+        pool.closeAsync();
+        throw e;
+      }
+    }
     return pool;
   }
 
@@ -737,15 +797,108 @@ final class SessionPool {
     this.db = db;
     this.spanner = spanner;
     this.clock = clock;
+    this.writeSessionsFraction = options.getWriteSessionsFraction();
     this.poolMaintainer = new PoolMaintainer();
   }
 
   private void initPool() {
     synchronized (lock) {
+      warmUpStopwatch.start();
       poolMaintainer.init();
       for (int i = 0; i < options.getMinSessions(); i++) {
         createSession();
       }
+      maybeCompleteWarmUp();
+    }
+  }
+
+  /**
+   * Blocks until {@link SessionPoolOptions#getMinSessions()} sessions have been created and the
+   * sessions that should be prepared for write have been prepared, or until {@code timeout}
+   * elapses. The pool keeps warming up in the background after a timeout.
+   *
+   * @throws SpannerException if one of the first {@link SessionPoolOptions#getMinSessions()}
+   *     sessions could not be created
+   */
+  @VisibleForTesting
+  boolean waitForWarmUp(Duration timeout) {
+    try {
+      warmUpFuture.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+      return true;
+    } catch (TimeoutException e) {
+      logger.log(
+          Level.WARNING,
+          "Session pool did not warm up within {0} ms, continuing in the background",
+          timeout.toMillis());
+      return false;
+    } catch (ExecutionException e) {
+      throw newSpannerException(e.getCause());
+    } catch (InterruptedException e) {
+      throw SpannerExceptionFactory.propagateInterrupt(e);
+    }
+  }
+
+  // Records the warm up latencies once enough sessions have been created and prepared.
+  @GuardedBy("lock")
+  private void maybeCompleteWarmUp() {
+    if (warmUpLatency != null || totalSessions() < options.getMinSessions()) {
+      return;
+    }
+    if (minSessionsCreatedLatency == null) {
+      minSessionsCreatedLatency = elapsedSinceCreation();
+    }
+    if (numSessionsBeingPrepared > 0) {
+      return;
+    }
+    warmUpLatency = elapsedSinceCreation();
+    warmUpFuture.set(null);
+    logger.log(
+        Level.FINE,
+        "Session pool warmed up: {0} sessions created in {1} ms, prepared in {2} ms",
+        new Object[] {
+          totalSessions(), minSessionsCreatedLatency.toMillis(), warmUpLatency.toMillis()
+        });
+  }
+
+  // Fails the warm up if one of the sessions it waits for could not be created.
+  @GuardedBy("lock")
+  private void maybeFailWarmUp(SpannerException e) {
+    if (warmUpLatency == null) {
+      warmUpFuture.setException(e);
+    }
+  }
+
+  private Duration elapsedSinceCreation() {
+    return Duration.ofNanos(warmUpStopwatch.elapsed(TimeUnit.NANOSECONDS));
+  }
+
+  /**
+   * Returns the time it took to create {@link SessionPoolOptions#getMinSessions()} sessions after
+   * the pool was created, or {@code null} if they have not been created yet.
+   */
+  @Nullable
+  Duration getMinSessionsCreatedLatency() {
+    synchronized (lock) {
+      return minSessionsCreatedLatency;
+    }
+  }
+
+  /**
+   * Returns the time it took to create {@link SessionPoolOptions#getMinSessions()} sessions and to
+   * prepare the write sessions among them after the pool was created, or {@code null} if the pool
+   * has not warmed up yet.
+   */
+  @Nullable
+  Duration getWarmUpLatency() {
+    synchronized (lock) {
+      return warmUpLatency;
+    }
+  }
+
+  /** Returns the fraction of sessions that the pool currently tries to keep prepared for write. */
+  float getWriteSessionsFraction() {
+    synchronized (lock) {
+      return writeSessionsFraction;
     }
   }
 
@@ -817,6 +970,7 @@ final class SessionPool {
         span.addAnnotation("Pool has been closed");
         throw new IllegalStateException("Pool has been closed");
       }
+      numReadSessionRequests++;
       sess = readSessions.poll();
       if (sess == null) {
         sess = writePreparedSessions.poll();
@@ -872,6 +1026,7 @@ final class SessionPool {
       if (closureFuture != null) {
         throw new IllegalStateException("Pool has been closed");
       }
+      numReadWriteSessionRequests++;
       sess = writePreparedSessions.poll();
       if (sess == null) {
         if (numSessionsBeingPrepared <= readWriteWaiters.size()) {
@@ -1063,7 +1218,7 @@ final class SessionPool {
   private boolean shouldPrepareSession() {
     synchronized (lock) {
       int preparedSessions = writePreparedSessions.size() + numSessionsBeingPrepared;
-      return preparedSessions < Math.floor(options.getWriteSessionsFraction() * totalSessions());
+      return preparedSessions < Math.floor(writeSessionsFraction * totalSessions());
     }
   }
 
@@ -1134,6 +1289,7 @@ final class SessionPool {
                   } else {
                     writePreparedSessions.add(sess);
                   }
+                  maybeCompleteWarmUp();
                 }
               }
             } catch (Throwable t) {
@@ -1141,6 +1297,7 @@ final class SessionPool {
                 numSessionsBeingPrepared--;
                 if (!isClosed()) {
                   handlePrepareSessionFailure(newSpannerException(t), sess);
+                  maybeCompleteWarmUp();
                 }
               }
             }
@@ -1173,7 +1330,9 @@ final class SessionPool {
                   if (isClosed()) {
                     decrementPendingClosures();
                   }
-                  handleCreateSessionFailure(newSpannerException(t));
+                  SpannerException e = newSpannerException(t);
+                  handleCreateSessionFailure(e);
+                  maybeFailWarmUp(e);
                 }
                 return;
               }
@@ -1188,6 +1347,7 @@ final class SessionPool {
                   Preconditions.checkState(totalSessions() <= options.getMaxSessions() - 1);
                   allSessions.add(pooledSession);
                   releaseSession(pooledSession);
+                  maybeCompleteWarmUp();
                 }
               }
               if (closeSession) {
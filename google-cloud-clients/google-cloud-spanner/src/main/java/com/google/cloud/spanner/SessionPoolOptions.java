@@ -17,6 +17,7 @@
 package com.google.cloud.spanner;
 
 import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
 
 /** Options for the session pool used by {@code DatabaseClient}. */
 public class SessionPoolOptions {
@@ -29,6 +30,8 @@ public class SessionPoolOptions {
   private final float writeSessionsFraction;
   private final ActionOnExhaustion actionOnExhaustion;
   private final int keepAliveIntervalMinutes;
+  private final Duration waitForMinSessions;
+  private final boolean adaptiveWriteSessionsFraction;
 
   private SessionPoolOptions(Builder builder) {
     this.minSessions = builder.minSessions;
@@ -37,6 +40,8 @@ public class SessionPoolOptions {
     this.writeSessionsFraction = builder.writeSessionsFraction;
     this.actionOnExhaustion = builder.actionOnExhaustion;
     this.keepAliveIntervalMinutes = builder.keepAliveIntervalMinutes;
+    this.waitForMinSessions = builder.waitForMinSessions;
+    this.adaptiveWriteSessionsFraction = builder.adaptiveWriteSessionsFraction;
   }
 
   public int getMinSessions() {
@@ -59,6 +64,14 @@ public class SessionPoolOptions {
     return keepAliveIntervalMinutes;
   }
 
+  public Duration getWaitForMinSessions() {
+    return waitForMinSessions;
+  }
+
+  public boolean isAdaptiveWriteSessionsFraction() {
+    return adaptiveWriteSessionsFraction;
+  }
+
   public boolean isFailIfPoolExhausted() {
     return actionOnExhaustion == ActionOnExhaustion.FAIL;
   }
@@ -84,6 +97,8 @@ public class SessionPoolOptions {
     private float writeSessionsFraction = 0.2f;
     private ActionOnExhaustion actionOnExhaustion = DEFAULT_ACTION;
     private int keepAliveIntervalMinutes = 30;
+    private Duration waitForMinSessions = Duration.ZERO;
+    private boolean adaptiveWriteSessionsFraction;
 
     /**
      * Minimum number of sessions that this pool will always maintain. These will be created eagerly
@@ -159,6 +174,29 @@ public class SessionPoolOptions {
       return this;
     }
 
+    /**
+     * How long creating a {@code DatabaseClient} waits for the pool to warm up, that is for {@link
+     * #setMinSessions minSessions} sessions to be created and the configured fraction of them to be
+     * prepared for write transactions. If the pool is not warm when the timeout elapses, the client
+     * is returned anyway and the pool continues to warm up in the background. Defaults to zero,
+     * which means that creating a client does not wait.
+     */
+    public Builder setWaitForMinSessions(Duration waitForMinSessions) {
+      this.waitForMinSessions = waitForMinSessions;
+      return this;
+    }
+
+    /**
+     * If set, the fraction of sessions kept prepared for write transactions follows the observed
+     * ratio of read/write to read-only session requests, starting from {@link
+     * #setWriteSessionsFraction}. The ratio is re-evaluated by the pool maintenance loop, which
+     * also prepares idle sessions when too few are prepared. Defaults to false.
+     */
+    public Builder setAdaptiveWriteSessionsFraction(boolean adaptiveWriteSessionsFraction) {
+      this.adaptiveWriteSessionsFraction = adaptiveWriteSessionsFraction;
+      return this;
+    }
+
     /** Build a SessionPoolOption object */
     public SessionPoolOptions build() {
       validate();
@@ -173,6 +211,9 @@ public class SessionPoolOptions {
       Preconditions.checkArgument(
               writeSessionsFraction >= 0 && writeSessionsFraction <= 1,
               "Fraction of write sessions must be between 0 and 1 (inclusive)");
+      Preconditions.checkArgument(
+              !Preconditions.checkNotNull(waitForMinSessions).isNegative(),
+              "Wait for min sessions must not be negative");
     }
   }
 }
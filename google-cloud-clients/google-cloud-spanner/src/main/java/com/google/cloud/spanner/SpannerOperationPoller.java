@@ -0,0 +1,117 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.api.core.CurrentMillisClock;
+import com.google.cloud.OperationPoller;
+import com.google.cloud.spanner.spi.v1.SpannerRpc;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import org.threeten.bp.Duration;
+
+/**
+ * Polls the long-running operations waited for with {@link Operation#waitForAsync}, for all the
+ * {@link Spanner} instances. Operations are fetched one by one.
+ *
+ * <p>Polls block on Spanner requests, so they run on a dedicated pool of daemon threads rather
+ * than on the executor shared by the asynchronous calls of the services.
+ */
+final class SpannerOperationPoller
+    extends OperationPoller<SpannerOperationPoller.Key, com.google.longrunning.Operation> {
+
+  private static final int POLLER_THREADS = 4;
+
+  private static final SpannerOperationPoller INSTANCE = new SpannerOperationPoller();
+
+  /** Identifies an operation of an RPC stub. Keys of different stubs are never equal. */
+  static final class Key {
+
+    private final SpannerRpc rpc;
+    private final String name;
+
+    Key(SpannerRpc rpc, String name) {
+      this.rpc = rpc;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return rpc == other.rpc && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(rpc), name);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private SpannerOperationPoller() {
+    super(
+        Executors.newScheduledThreadPool(
+            POLLER_THREADS,
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("spanner-operation-poller-%d")
+                .build()),
+        CurrentMillisClock.getDefaultClock(),
+        Duration.ofMillis(100));
+  }
+
+  static SpannerOperationPoller getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  protected Map<Key, com.google.longrunning.Operation> poll(
+      Set<Key> keys, Map<Key, Throwable> failures) {
+    Map<Key, com.google.longrunning.Operation> operations = new HashMap<>();
+    for (Key key : keys) {
+      try {
+        operations.put(key, key.rpc.getOperation(key.name));
+      } catch (SpannerException e) {
+        if (e.getErrorCode() == ErrorCode.NOT_FOUND) {
+          continue;
+        }
+        if (e.isRetryable()) {
+          // Polled again later.
+          operations.put(key, null);
+        } else {
+          failures.put(key, e);
+        }
+      }
+    }
+    return operations;
+  }
+
+  @Override
+  protected boolean isDone(com.google.longrunning.Operation operation) {
+    return operation.getDone();
+  }
+}
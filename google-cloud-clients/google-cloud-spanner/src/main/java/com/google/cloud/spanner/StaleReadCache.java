@@ -0,0 +1,392 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.CurrentMillisClock;
+import com.google.cloud.Timestamp;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A client-side cache of single-use reads that tolerate stale data.
+ *
+ * <p>A read with a {@link TimestampBound.Mode#MAX_STALENESS} or {@link
+ * TimestampBound.Mode#MIN_READ_TIMESTAMP} bound is served from the cache if the same table, index,
+ * keys and columns were read before at a timestamp that still satisfies the bound. Otherwise the
+ * read is executed with {@link DatabaseClient#singleUseReadOnlyTransaction(TimestampBound)}, and
+ * its rows are cached together with the timestamp they were read at. Reads with any other bound are
+ * always executed and never cached.
+ *
+ * <p>The rows of a cached read are kept in memory, so the cache is meant for reads of a few hot
+ * rows. Reads that return more than {@link StaleReadCacheOptions#getMaxRowsPerEntry()} rows are not
+ * cached, and their rows past that limit are streamed rather than kept in memory. The cache does
+ * not observe writes: a cached read may be up to the requested staleness behind writes made
+ * through the same client, as would a read executed by Cloud Spanner. Use {@link
+ * #invalidate(String)} to drop the cached reads of a table.
+ *
+ * <p>This class is thread-safe.
+ */
+public class StaleReadCache {
+  private final DatabaseClient client;
+  private final StaleReadCacheOptions options;
+  private final ApiClock clock;
+
+  @GuardedBy("this")
+  private final LinkedHashMap<CacheKey, CacheEntry> entries;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong bypassCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  StaleReadCache(DatabaseClient client, StaleReadCacheOptions options) {
+    this(client, options, CurrentMillisClock.getDefaultClock());
+  }
+
+  StaleReadCache(DatabaseClient client, final StaleReadCacheOptions options, ApiClock clock) {
+    this.client = checkNotNull(client);
+    this.options = checkNotNull(options);
+    this.clock = checkNotNull(clock);
+    this.entries =
+        new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+            if (size() > options.getMaxEntries()) {
+              evictionCount.incrementAndGet();
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Reads zero or more rows from a table, possibly from the cache. See {@link
+   * ReadContext#read(String, KeySet, Iterable, Options.ReadOption...)}.
+   */
+  public ResultSet read(
+      String table, KeySet keys, Iterable<String> columns, TimestampBound bound) {
+    return readInternal(table, null, keys, columns, bound);
+  }
+
+  /**
+   * Reads zero or more rows from a table using an index, possibly from the cache. See {@link
+   * ReadContext#readUsingIndex(String, String, KeySet, Iterable, Options.ReadOption...)}.
+   */
+  public ResultSet readUsingIndex(
+      String table,
+      String index,
+      KeySet keys,
+      Iterable<String> columns,
+      TimestampBound bound) {
+    return readInternal(table, checkNotNull(index), keys, columns, bound);
+  }
+
+  /**
+   * Reads a single row from a table, possibly from the cache. See {@link
+   * ReadContext#readRow(String, Key, Iterable)}.
+   *
+   * @return the row, or {@code null} if no such row exists
+   */
+  @Nullable
+  public Struct readRow(String table, Key key, Iterable<String> columns, TimestampBound bound) {
+    return firstRow(readInternal(table, null, KeySet.singleKey(key), columns, bound));
+  }
+
+  /**
+   * Reads a single row from a table using an index, possibly from the cache. See {@link
+   * ReadContext#readRowUsingIndex(String, String, Key, Iterable)}.
+   *
+   * @return the row, or {@code null} if no such row exists
+   */
+  @Nullable
+  public Struct readRowUsingIndex(
+      String table, String index, Key key, Iterable<String> columns, TimestampBound bound) {
+    return firstRow(
+        readInternal(table, checkNotNull(index), KeySet.singleKey(key), columns, bound));
+  }
+
+  /** Removes the cached reads of {@code table}. */
+  public synchronized void invalidate(String table) {
+    Iterator<CacheKey> it = entries.keySet().iterator();
+    while (it.hasNext()) {
+      if (it.next().table.equals(table)) {
+        it.remove();
+      }
+    }
+  }
+
+  /** Removes all the cached reads. */
+  public synchronized void invalidateAll() {
+    entries.clear();
+  }
+
+  /** Returns the number of cached reads. */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Returns the number of reads served from the cache. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of cacheable reads that were executed. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of reads that were executed because their bound is not cacheable. */
+  public long getBypassCount() {
+    return bypassCount.get();
+  }
+
+  /** Returns the number of cached reads evicted to make room for newer ones. */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /** Returns the fraction of cacheable reads that were served from the cache. */
+  public double getHitRatio() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0.0 : (double) hits / total;
+  }
+
+  private ResultSet readInternal(
+      String table,
+      @Nullable String index,
+      KeySet keys,
+      Iterable<String> columns,
+      TimestampBound bound) {
+    if (!isCacheable(bound)) {
+      bypassCount.incrementAndGet();
+      ReadContext context = client.singleUse(bound);
+      return index == null
+          ? context.read(table, keys, columns)
+          : context.readUsingIndex(table, index, keys, columns);
+    }
+    CacheKey key = new CacheKey(table, index, keys, columns);
+    CacheEntry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry != null && satisfies(entry.readTimestamp, bound)) {
+      hitCount.incrementAndGet();
+      return ResultSets.forRows(entry.type, entry.rows);
+    }
+    missCount.incrementAndGet();
+    return execute(key, bound);
+  }
+
+  /**
+   * Executes a read and caches its rows if there are at most {@link
+   * StaleReadCacheOptions#getMaxRowsPerEntry()} of them. Otherwise the rows buffered so far are
+   * returned followed by the remaining rows of the read, which are not buffered.
+   */
+  private ResultSet execute(CacheKey key, TimestampBound bound) {
+    ReadOnlyTransaction transaction = client.singleUseReadOnlyTransaction(bound);
+    boolean streaming = false;
+    try {
+      ResultSet resultSet =
+          key.index == null
+              ? transaction.read(key.table, key.keys, key.columns)
+              : transaction.readUsingIndex(key.table, key.index, key.keys, key.columns);
+      try {
+        List<Struct> rows = new ArrayList<>();
+        while (resultSet.next()) {
+          rows.add(resultSet.getCurrentRowAsStruct());
+          if (rows.size() > options.getMaxRowsPerEntry()) {
+            streaming = true;
+            return new PartiallyBufferedResultSet(
+                resultSet.getType(), rows, resultSet, transaction);
+          }
+        }
+        CacheEntry entry =
+            new CacheEntry(resultSet.getType(), rows, transaction.getReadTimestamp());
+        synchronized (this) {
+          CacheEntry current = entries.get(key);
+          if (current == null || current.readTimestamp.compareTo(entry.readTimestamp) < 0) {
+            entries.put(key, entry);
+          }
+        }
+        return ResultSets.forRows(entry.type, entry.rows);
+      } finally {
+        if (!streaming) {
+          resultSet.close();
+        }
+      }
+    } finally {
+      if (!streaming) {
+        transaction.close();
+      }
+    }
+  }
+
+  private static boolean isCacheable(TimestampBound bound) {
+    return bound.getMode() == TimestampBound.Mode.MAX_STALENESS
+        || bound.getMode() == TimestampBound.Mode.MIN_READ_TIMESTAMP;
+  }
+
+  private boolean satisfies(Timestamp readTimestamp, TimestampBound bound) {
+    if (bound.getMode() == TimestampBound.Mode.MIN_READ_TIMESTAMP) {
+      return readTimestamp.compareTo(bound.getMinReadTimestamp()) >= 0;
+    }
+    long readMicros =
+        TimeUnit.SECONDS.toMicros(readTimestamp.getSeconds())
+            + TimeUnit.NANOSECONDS.toMicros(readTimestamp.getNanos());
+    long nowMicros = TimeUnit.MILLISECONDS.toMicros(clock.millisTime());
+    return nowMicros - readMicros <= bound.getMaxStaleness(TimeUnit.MICROSECONDS);
+  }
+
+  @Nullable
+  private static Struct firstRow(ResultSet resultSet) {
+    try (ResultSet rs = resultSet) {
+      return rs.next() ? rs.getCurrentRowAsStruct() : null;
+    }
+  }
+
+  /**
+   * Returns the rows that were buffered before the read exceeded the maximum number of rows of a
+   * cache entry, and then streams the remaining rows of the read. The transaction is closed once
+   * all the rows have been returned or the result set is closed.
+   */
+  private static final class PartiallyBufferedResultSet extends ForwardingResultSet {
+    // The buffered rows until they have all been returned, then the streamed read.
+    private final AtomicReference<ResultSet> current;
+    private final ResultSet resultSet;
+    private final ReadOnlyTransaction transaction;
+    private boolean closed;
+
+    PartiallyBufferedResultSet(
+        Type type, List<Struct> bufferedRows, ResultSet resultSet,
+        ReadOnlyTransaction transaction) {
+      this(
+          new AtomicReference<>(ResultSets.forRows(type, bufferedRows)), resultSet, transaction);
+    }
+
+    private PartiallyBufferedResultSet(
+        final AtomicReference<ResultSet> current, ResultSet resultSet,
+        ReadOnlyTransaction transaction) {
+      super(
+          new Supplier<ResultSet>() {
+            @Override
+            public ResultSet get() {
+              return current.get();
+            }
+          });
+      this.current = current;
+      this.resultSet = resultSet;
+      this.transaction = transaction;
+    }
+
+    @Override
+    public boolean next() throws SpannerException {
+      Preconditions.checkState(!closed, "ResultSet is closed");
+      if (current.get() != resultSet) {
+        if (current.get().next()) {
+          return true;
+        }
+        current.set(resultSet);
+      }
+      boolean hasNext;
+      try {
+        hasNext = resultSet.next();
+      } catch (SpannerException e) {
+        close();
+        throw e;
+      }
+      if (!hasNext) {
+        close();
+      }
+      return hasNext;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        try {
+          resultSet.close();
+        } finally {
+          transaction.close();
+        }
+      }
+    }
+  }
+
+  private static final class CacheKey {
+    private final String table;
+    @Nullable private final String index;
+    private final KeySet keys;
+    private final List<String> columns;
+
+    CacheKey(String table, @Nullable String index, KeySet keys, Iterable<String> columns) {
+      this.table = checkNotNull(table);
+      this.index = index;
+      this.keys = checkNotNull(keys);
+      this.columns = ImmutableList.copyOf(columns);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey that = (CacheKey) o;
+      return table.equals(that.table)
+          && Objects.equals(index, that.index)
+          && keys.equals(that.keys)
+          && columns.equals(that.columns);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(table, index, keys, columns);
+    }
+  }
+
+  private static final class CacheEntry {
+    private final Type type;
+    private final List<Struct> rows;
+    private final Timestamp readTimestamp;
+
+    CacheEntry(Type type, List<Struct> rows, Timestamp readTimestamp) {
+      this.type = type;
+      this.rows = rows;
+      this.readTimestamp = readTimestamp;
+    }
+  }
+}
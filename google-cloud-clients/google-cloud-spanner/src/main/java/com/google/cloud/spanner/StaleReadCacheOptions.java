@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import com.google.common.base.Preconditions;
+
+/** Options for a {@link StaleReadCache}. */
+public class StaleReadCacheOptions {
+  private final int maxEntries;
+  private final int maxRowsPerEntry;
+
+  private StaleReadCacheOptions(Builder builder) {
+    this.maxEntries = builder.maxEntries;
+    this.maxRowsPerEntry = builder.maxRowsPerEntry;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public int getMaxRowsPerEntry() {
+    return maxRowsPerEntry;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating StaleReadCacheOptions. */
+  public static class Builder {
+    private int maxEntries = 1000;
+    private int maxRowsPerEntry = 100;
+
+    private Builder() {}
+
+    /**
+     * Maximum number of cached reads. When the cache is full, the least recently used read is
+     * evicted. Defaults to 1000.
+     */
+    public Builder setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Maximum number of rows of a cached read. Reads that return more rows are returned to the
+     * caller but not cached. Defaults to 100.
+     */
+    public Builder setMaxRowsPerEntry(int maxRowsPerEntry) {
+      this.maxRowsPerEntry = maxRowsPerEntry;
+      return this;
+    }
+
+    /** Build a StaleReadCacheOptions object */
+    public StaleReadCacheOptions build() {
+      validate();
+      return new StaleReadCacheOptions(this);
+    }
+
+    private void validate() {
+      Preconditions.checkArgument(maxEntries > 0, "Max entries(%s) must be > 0", maxEntries);
+      Preconditions.checkArgument(
+          maxRowsPerEntry >= 0, "Max rows per entry(%s) must be >= 0", maxRowsPerEntry);
+    }
+  }
+}
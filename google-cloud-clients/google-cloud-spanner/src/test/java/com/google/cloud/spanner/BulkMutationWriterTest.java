@@ -0,0 +1,286 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.ByteArray;
+import com.google.cloud.Timestamp;
+import com.google.cloud.spanner.TransactionRunner.TransactionCallable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit tests for {@link BulkMutationWriter}. */
+@RunWith(JUnit4.class)
+public class BulkMutationWriterTest {
+  private DatabaseClient client;
+  private List<List<Mutation>> commits;
+  private AtomicInteger abortsToInject;
+  private AtomicInteger failuresToInject;
+
+  @Before
+  public void setUp() {
+    commits = Collections.synchronizedList(new ArrayList<List<Mutation>>());
+    abortsToInject = new AtomicInteger();
+    failuresToInject = new AtomicInteger();
+    client = mock(DatabaseClient.class);
+    when(client.readWriteTransaction())
+        .thenAnswer(
+            new Answer<TransactionRunner>() {
+              @Override
+              public TransactionRunner answer(InvocationOnMock invocation) {
+                return new FakeTransactionRunner();
+              }
+            });
+  }
+
+  @Test
+  public void packByMutationCount() {
+    BulkMutationWriter writer =
+        new BulkMutationWriter(
+            client, BulkMutationWriterOptions.newBuilder().setMaxMutationsPerCommit(4).build());
+    for (int i = 0; i < 5; i++) {
+      // Two cells per mutation
+      writer.add(Mutation.newInsertBuilder("T").set("K").to(i).set("V").to("v").build());
+    }
+    writer.close();
+
+    assertThat(commits).hasSize(3);
+    assertThat(sizes(commits)).containsExactly(2, 2, 1);
+    assertThat(writer.getCommittedMutationCount()).isEqualTo(5);
+    assertThat(writer.getCommitCount()).isEqualTo(3);
+    assertThat(writer.getRowsPerSecond()).isGreaterThan(0.0);
+  }
+
+  @Test
+  public void packBySize() {
+    Mutation mutation =
+        Mutation.newInsertBuilder("T").set("V").to(ByteArray.copyFrom(new byte[300])).build();
+    long size = BulkMutationWriter.estimateSize(mutation);
+    BulkMutationWriter writer =
+        new BulkMutationWriter(
+            client,
+            BulkMutationWriterOptions.newBuilder().setMaxCommitSizeBytes(3 * size).build());
+    for (int i = 0; i < 7; i++) {
+      writer.add(mutation);
+    }
+    writer.close();
+
+    assertThat(sizes(commits)).containsExactly(3, 3, 1);
+  }
+
+  @Test
+  public void oversizedMutationIsCommittedAlone() {
+    BulkMutationWriter writer =
+        new BulkMutationWriter(
+            client, BulkMutationWriterOptions.newBuilder().setMaxCommitSizeBytes(10).build());
+    writer.add(Mutation.newInsertBuilder("T").set("V").to("a very long string value").build());
+    writer.add(Mutation.newInsertBuilder("T").set("V").to("another long string value").build());
+    writer.close();
+
+    assertThat(sizes(commits)).containsExactly(1, 1);
+  }
+
+  @Test
+  public void groupByKeyPrefix() {
+    BulkMutationWriter writer =
+        new BulkMutationWriter(
+            client,
+            BulkMutationWriterOptions.newBuilder()
+                .setKeyPrefixFunction(
+                    new BulkMutationWriter.KeyPrefixFunction() {
+                      @Override
+                      public Object getKeyPrefix(Mutation mutation) {
+                        return mutation.asMap().get("P");
+                      }
+                    })
+                .build());
+    for (int i = 0; i < 6; i++) {
+      writer.add(Mutation.newInsertBuilder("T").set("P").to(i % 2).set("K").to(i).build());
+    }
+    writer.close();
+
+    assertThat(commits).hasSize(2);
+    for (List<Mutation> commit : commits) {
+      assertThat(commit).hasSize(3);
+      Value prefix = commit.get(0).asMap().get("P");
+      for (Mutation mutation : commit) {
+        assertThat(mutation.asMap().get("P")).isEqualTo(prefix);
+      }
+    }
+  }
+
+  @Test
+  public void maxBufferedGroups() {
+    BulkMutationWriter writer =
+        new BulkMutationWriter(
+            client,
+            BulkMutationWriterOptions.newBuilder()
+                .setMaxBufferedGroups(1)
+                .setKeyPrefixFunction(
+                    new BulkMutationWriter.KeyPrefixFunction() {
+                      @Override
+                      public Object getKeyPrefix(Mutation mutation) {
+                        return mutation.getTable();
+                      }
+                    })
+                .build());
+    writer.add(Mutation.newInsertBuilder("T1").set("K").to(1).build());
+    writer.add(Mutation.newInsertBuilder("T2").set("K").to(1).build());
+    writer.flush();
+
+    // The buffered mutations of T1 are committed when T2 is added
+    assertThat(commits).hasSize(2);
+    assertThat(commits.get(0)).hasSize(1);
+    assertThat(commits.get(1)).hasSize(1);
+    writer.close();
+  }
+
+  @Test
+  public void abortedRetries() {
+    abortsToInject.set(2);
+    BulkMutationWriter writer =
+        new BulkMutationWriter(client, BulkMutationWriterOptions.newBuilder().build());
+    writer.add(Mutation.newInsertBuilder("T").set("K").to(1).build());
+    writer.close();
+
+    assertThat(commits).hasSize(1);
+    assertThat(writer.getAbortedRetryCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void failedCommit() {
+    failuresToInject.set(1);
+    BulkMutationWriter writer =
+        new BulkMutationWriter(
+            client, BulkMutationWriterOptions.newBuilder().setMaxMutationsPerCommit(1).build());
+    writer.add(Mutation.newInsertBuilder("T").set("K").to(1).build());
+    writer.add(Mutation.newInsertBuilder("T").set("K").to(2).build());
+    try {
+      writer.flush();
+      fail("Expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INTERNAL);
+    }
+    assertThat(writer.getFailedMutationCount()).isEqualTo(1);
+    assertThat(writer.getCommittedMutationCount()).isEqualTo(1);
+
+    // The failure is only reported once
+    writer.close();
+  }
+
+  @Test
+  public void addAfterClose() {
+    BulkMutationWriter writer =
+        new BulkMutationWriter(client, BulkMutationWriterOptions.newBuilder().build());
+    writer.close();
+    try {
+      writer.add(Mutation.newInsertBuilder("T").set("K").to(1).build());
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void estimateSize() {
+    Mutation small = Mutation.newInsertBuilder("T").set("K").to(1).build();
+    Mutation large =
+        Mutation.newInsertBuilder("T")
+            .set("K").to(1)
+            .set("S").to(new String(new char[1000]).replace('\0', 'x'))
+            .set("A").toStringArray(ImmutableList.of("a", "b"))
+            .build();
+    assertThat(BulkMutationWriter.estimateSize(large))
+        .isGreaterThan(BulkMutationWriter.estimateSize(small) + 1000);
+
+    Mutation delete =
+        Mutation.delete(
+            "T",
+            KeySet.newBuilder()
+                .addKey(Key.of(1, "a"))
+                .addRange(KeyRange.closedOpen(Key.of(2), Key.of(3)))
+                .build());
+    assertThat(BulkMutationWriter.estimateSize(delete)).isGreaterThan(0L);
+    assertThat(BulkMutationWriter.countMutatedCells(delete)).isEqualTo(2);
+    assertThat(BulkMutationWriter.countMutatedCells(large)).isEqualTo(3);
+  }
+
+  private static List<Integer> sizes(List<List<Mutation>> commits) {
+    List<Integer> sizes = new ArrayList<>();
+    for (List<Mutation> commit : commits) {
+      sizes.add(commit.size());
+    }
+    return sizes;
+  }
+
+  private class FakeTransactionRunner implements TransactionRunner {
+    @Override
+    public <T> T run(TransactionCallable<T> callable) {
+      while (true) {
+        final List<Mutation> buffered = new ArrayList<>();
+        TransactionContext context = mock(TransactionContext.class);
+        doAnswer(
+                new Answer<Void>() {
+                  @Override
+                  @SuppressWarnings("unchecked")
+                  public Void answer(InvocationOnMock invocation) {
+                    Iterables.addAll(
+                        buffered, (Iterable<Mutation>) invocation.getArguments()[0]);
+                    return null;
+                  }
+                })
+            .when(context)
+            .buffer(Mockito.<Iterable<Mutation>>any());
+        T result;
+        try {
+          result = callable.run(context);
+        } catch (Exception e) {
+          throw SpannerExceptionFactory.newSpannerException(e);
+        }
+        if (abortsToInject.getAndDecrement() > 0) {
+          continue;
+        }
+        if (failuresToInject.getAndDecrement() > 0) {
+          throw SpannerExceptionFactory.newSpannerException(ErrorCode.INTERNAL, "commit failed");
+        }
+        commits.add(buffered);
+        return result;
+      }
+    }
+
+    @Override
+    public Timestamp getCommitTimestamp() {
+      return Timestamp.now();
+    }
+  }
+}
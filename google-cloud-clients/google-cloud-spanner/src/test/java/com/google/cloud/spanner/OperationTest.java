@@ -174,6 +174,35 @@ public class OperationTest {
     assertThat(op.getResult().getId().getName()).isEqualTo(NAME);
   }
 
+  @Test
+  public void waitForAsyncCompletes() throws Exception {
+    com.google.longrunning.Operation proto = newBuilder().setName("op1").setDone(false).build();
+    Operation<Database, String> op = Operation.create(rpc, proto, new ParserImpl());
+    com.google.spanner.admin.database.v1.Database db =
+        com.google.spanner.admin.database.v1.Database.newBuilder()
+            .setName(NAME)
+            .setState(com.google.spanner.admin.database.v1.Database.State.READY)
+            .build();
+    com.google.longrunning.Operation proto2 =
+        newBuilder().setName("op1").setDone(true).setResponse(Any.pack(db)).build();
+    when(rpc.getOperation("op1")).thenReturn(proto, proto2);
+
+    op = op.waitForAsync(RetryOption.totalTimeout(Duration.ofSeconds(3)),
+        RetryOption.initialRetryDelay(Duration.ZERO)).get();
+
+    assertThat(op.getName()).isEqualTo("op1");
+    assertThat(op.isDone()).isTrue();
+    assertThat(op.isSuccessful()).isTrue();
+    assertThat(op.getResult().getId().getName()).isEqualTo(NAME);
+  }
+
+  @Test
+  public void waitForAsyncDoneOperation() throws Exception {
+    com.google.longrunning.Operation proto = newBuilder().setName("op1").setDone(true).build();
+    Operation<Database, String> op = Operation.create(rpc, proto, new ParserImpl());
+    assertThat(op.waitForAsync().get()).isSameAs(op);
+  }
+
   @Test
   public void waitForTimesout() throws Exception {
     com.google.longrunning.Operation proto = newBuilder().setName("op1").setDone(false).build();
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.threeten.bp.Duration;
+
+/** Unit tests for {@link PartitionExecutor}. */
+@RunWith(JUnit4.class)
+public class PartitionExecutorTest {
+  private static final Type TYPE =
+      Type.struct(Type.StructField.of("P", Type.int64()), Type.StructField.of("V", Type.int64()));
+
+  private BatchReadOnlyTransaction transaction;
+  private PartitionExecutorOptions options;
+
+  @Before
+  public void setUp() {
+    transaction = mock(BatchReadOnlyTransaction.class);
+    options =
+        PartitionExecutorOptions.newBuilder()
+            .setMaxParallelism(2)
+            .setRowBufferSize(2)
+            .setInitialRetryDelay(Duration.ofMillis(1))
+            .build();
+  }
+
+  @Test
+  public void allRowsDelivered() {
+    List<Partition> partitions = new ArrayList<>();
+    for (int p = 0; p < 4; p++) {
+      Partition partition = partition(p);
+      partitions.add(partition);
+      when(transaction.execute(partition)).thenReturn(rows(p, 10));
+    }
+    final List<Struct> received = new ArrayList<>();
+    List<PartitionExecutor.PartitionStats> stats =
+        new PartitionExecutor(transaction, options)
+            .execute(
+                partitions,
+                new PartitionExecutor.RowConsumer() {
+                  @Override
+                  public void onRow(Struct row) {
+                    received.add(row);
+                  }
+                });
+
+    assertThat(received).hasSize(40);
+    assertThat(stats).hasSize(4);
+    for (PartitionExecutor.PartitionStats partitionStats : stats) {
+      assertThat(partitionStats.getRowCount()).isEqualTo(10);
+      assertThat(partitionStats.getAttempts()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void noPartitions() {
+    assertThat(
+            new PartitionExecutor(transaction, options)
+                .execute(new ArrayList<Partition>(), new CountingConsumer()))
+        .isEmpty();
+  }
+
+  @Test
+  public void retryBeforeFirstRow() {
+    Partition partition = partition(0);
+    when(transaction.execute(partition))
+        .thenThrow(SpannerExceptionFactory.newSpannerException(ErrorCode.UNAVAILABLE, "retry"))
+        .thenReturn(rows(0, 3));
+    CountingConsumer consumer = new CountingConsumer();
+    List<PartitionExecutor.PartitionStats> stats =
+        new PartitionExecutor(transaction, options).execute(listOf(partition), consumer);
+
+    assertThat(consumer.count).isEqualTo(3);
+    assertThat(stats.get(0).getAttempts()).isEqualTo(2);
+    assertThat(stats.get(0).getPartition()).isSameAs(partition);
+  }
+
+  @Test
+  public void maxAttempts() {
+    Partition partition = partition(0);
+    when(transaction.execute(partition))
+        .thenThrow(SpannerExceptionFactory.newSpannerException(ErrorCode.UNAVAILABLE, "retry"));
+    try {
+      new PartitionExecutor(transaction, options)
+          .execute(listOf(partition), new CountingConsumer());
+      fail("Expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.UNAVAILABLE);
+    }
+  }
+
+  @Test
+  public void nonRetryableFailure() {
+    Partition partition = partition(0);
+    when(transaction.execute(partition))
+        .thenThrow(
+            SpannerExceptionFactory.newSpannerException(ErrorCode.INVALID_ARGUMENT, "invalid"))
+        .thenReturn(rows(0, 3));
+    CountingConsumer consumer = new CountingConsumer();
+    try {
+      new PartitionExecutor(transaction, options).execute(listOf(partition), consumer);
+      fail("Expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.INVALID_ARGUMENT);
+    }
+    assertThat(consumer.count).isEqualTo(0);
+  }
+
+  @Test
+  public void errorFailsExecution() {
+    Partition partition = partition(0);
+    when(transaction.execute(partition)).thenThrow(new AssertionError("task failed"));
+    try {
+      new PartitionExecutor(transaction, options)
+          .execute(listOf(partition), new CountingConsumer());
+      fail("Expected exception");
+    } catch (SpannerException e) {
+      assertThat(e.getCause()).isInstanceOf(AssertionError.class);
+    }
+  }
+
+  @Test
+  public void retryDelayCapped() {
+    Duration initial = Duration.ofMillis(100);
+    Duration max = Duration.ofSeconds(1);
+    assertThat(PartitionExecutor.retryDelayMillis(initial, max, 1)).isEqualTo(100);
+    assertThat(PartitionExecutor.retryDelayMillis(initial, max, 3)).isEqualTo(400);
+    assertThat(PartitionExecutor.retryDelayMillis(initial, max, 5)).isEqualTo(1000);
+    assertThat(PartitionExecutor.retryDelayMillis(initial, max, 100)).isEqualTo(1000);
+    assertThat(PartitionExecutor.retryDelayMillis(initial, max, Integer.MAX_VALUE))
+        .isEqualTo(1000);
+  }
+
+  @Test
+  public void consumerFailureCancels() {
+    Partition partition = partition(0);
+    when(transaction.execute(partition)).thenReturn(rows(0, 100));
+    try {
+      new PartitionExecutor(transaction, options)
+          .execute(
+              listOf(partition),
+              new PartitionExecutor.RowConsumer() {
+                @Override
+                public void onRow(Struct row) {
+                  throw new IllegalStateException("consumer failed");
+                }
+              });
+      fail("Expected exception");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("consumer failed");
+    }
+  }
+
+  @Test
+  public void invalidOptions() {
+    try {
+      PartitionExecutorOptions.newBuilder().setRowBufferSize(0).build();
+      fail("Expected exception");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("Row buffer size");
+    }
+    try {
+      PartitionExecutorOptions.newBuilder().setMaxRetryDelay(Duration.ofMillis(10)).build();
+      fail("Expected exception");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("Max retry delay");
+    }
+  }
+
+  private static Partition partition(int id) {
+    return Partition.createQueryPartition(
+        ByteString.copyFromUtf8("token" + id),
+        PartitionOptions.getDefaultInstance(),
+        Statement.of("SELECT P, V FROM T"),
+        Options.fromQueryOptions());
+  }
+
+  private static ResultSet rows(int partition, int count) {
+    List<Struct> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(Struct.newBuilder().set("P").to(partition).set("V").to(i).build());
+    }
+    return ResultSets.forRows(TYPE, rows);
+  }
+
+  private static List<Partition> listOf(Partition partition) {
+    List<Partition> partitions = new ArrayList<>();
+    partitions.add(partition);
+    return partitions;
+  }
+
+  private static class CountingConsumer implements PartitionExecutor.RowConsumer {
+    private int count;
+
+    @Override
+    public void onRow(Struct row) {
+      count++;
+    }
+  }
+}
@@ -51,6 +51,7 @@ import org.junit.runners.Parameterized.Parameters;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.threeten.bp.Duration;
 
 /** Tests for SessionPool that mock out the underlying stub. */
 @RunWith(Parameterized.class)
@@ -548,6 +549,127 @@ public class SessionPoolTest extends BaseSessionPoolTest {
     pool.closeAsync().get();
   }
 
+  @Test
+  public void waitForWarmUp() throws Exception {
+    final AtomicInteger numPrepared = new AtomicInteger();
+    setupCountingSessionCreation(numPrepared);
+    options =
+        SessionPoolOptions.newBuilder()
+            .setMinSessions(2)
+            .setMaxSessions(2)
+            .setWriteSessionsFraction(0.5f)
+            .setWaitForMinSessions(Duration.ofSeconds(10))
+            .build();
+    pool = createPool();
+    // Creating the pool blocks until the sessions are created and one of them is prepared.
+    assertThat(pool.getMinSessionsCreatedLatency()).isNotNull();
+    assertThat(pool.getWarmUpLatency()).isNotNull();
+    assertThat(pool.getWarmUpLatency()).isAtLeast(pool.getMinSessionsCreatedLatency());
+    assertThat(numPrepared.get()).isEqualTo(1);
+    Session session = pool.getReadWriteSession();
+    assertThat(numPrepared.get()).isEqualTo(1);
+    session.close();
+    pool.closeAsync().get();
+  }
+
+  @Test
+  public void waitForWarmUpTimesOut() throws Exception {
+    final CountDownLatch createLatch = new CountDownLatch(1);
+    when(client.createSession(db))
+        .thenAnswer(
+            new Answer<Session>() {
+              @Override
+              public Session answer(InvocationOnMock invocation) throws Throwable {
+                createLatch.await();
+                return mockSession();
+              }
+            });
+    options =
+        SessionPoolOptions.newBuilder()
+            .setMinSessions(1)
+            .setMaxSessions(2)
+            .setWaitForMinSessions(Duration.ofMillis(10))
+            .build();
+    pool = createPool();
+    assertThat(pool.getWarmUpLatency()).isNull();
+    createLatch.countDown();
+    assertThat(pool.waitForWarmUp(Duration.ofSeconds(10))).isTrue();
+    assertThat(pool.getWarmUpLatency()).isNotNull();
+    pool.closeAsync().get();
+  }
+
+  @Test
+  public void waitForWarmUpFailsWhenSessionCreationFails() {
+    when(client.createSession(db))
+        .thenThrow(SpannerExceptionFactory.newSpannerException(ErrorCode.INTERNAL, ""));
+    options =
+        SessionPoolOptions.newBuilder()
+            .setMinSessions(1)
+            .setMaxSessions(2)
+            .setWaitForMinSessions(Duration.ofSeconds(10))
+            .build();
+    expectedException.expect(isSpannerException(ErrorCode.INTERNAL));
+    createPool();
+  }
+
+  @Test
+  public void adaptiveWriteSessionsFraction() throws Exception {
+    final AtomicInteger numPrepared = new AtomicInteger();
+    setupCountingSessionCreation(numPrepared);
+    options =
+        SessionPoolOptions.newBuilder()
+            .setMinSessions(2)
+            .setMaxSessions(2)
+            .setWriteSessionsFraction(0f)
+            .setAdaptiveWriteSessionsFraction(true)
+            .build();
+    FakeClock clock = new FakeClock();
+    pool = createPool(clock);
+    assertThat(pool.waitForWarmUp(Duration.ofSeconds(10))).isTrue();
+    assertThat(numPrepared.get()).isEqualTo(0);
+
+    // Half of the requests are for read/write sessions.
+    pool.getReadSession().close();
+    pool.getReadWriteSession().close();
+    assertThat(numPrepared.get()).isEqualTo(1);
+    runMaintainanceLoop(clock, pool, 1);
+    assertThat(pool.getWriteSessionsFraction()).isWithin(0.001f).of(0.25f);
+    // The fraction does not change without requests.
+    runMaintainanceLoop(clock, pool, 1);
+    assertThat(pool.getWriteSessionsFraction()).isWithin(0.001f).of(0.25f);
+    pool.getReadWriteSession().close();
+    runMaintainanceLoop(clock, pool, 1);
+    assertThat(pool.getWriteSessionsFraction()).isWithin(0.001f).of(0.625f);
+    // One of the two idle sessions is prepared.
+    for (int i = 0; i < 100 && numPrepared.get() < 3; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(numPrepared.get()).isEqualTo(3);
+    pool.closeAsync().get();
+  }
+
+  private void setupCountingSessionCreation(final AtomicInteger numPrepared) {
+    when(client.createSession(db))
+        .thenAnswer(
+            new Answer<Session>() {
+              @Override
+              public Session answer(InvocationOnMock invocation) throws Throwable {
+                Session session = mockSession();
+                doAnswer(
+                        new Answer<Void>() {
+                          @Override
+                          public Void answer(InvocationOnMock invocation) throws Throwable {
+                            numPrepared.incrementAndGet();
+                            return null;
+                          }
+                        })
+                    .when(session)
+                    .prepareReadWriteTransaction();
+                return session;
+              }
+            });
+  }
+
   private void mockKeepAlive(Session session) {
     ReadContext context = mock(ReadContext.class);
     ResultSet resultSet = mock(ResultSet.class);
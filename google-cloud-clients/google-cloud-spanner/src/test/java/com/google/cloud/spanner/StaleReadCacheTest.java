@@ -0,0 +1,248 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.spanner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.core.ApiClock;
+import com.google.cloud.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit tests for {@link StaleReadCache}. */
+@RunWith(JUnit4.class)
+public class StaleReadCacheTest {
+  private static final Type TYPE = Type.struct(Type.StructField.of("V", Type.string()));
+  private static final List<String> COLUMNS = Arrays.asList("V");
+  private static final TimestampBound TEN_SECONDS =
+      TimestampBound.ofMaxStaleness(10, TimeUnit.SECONDS);
+
+  private DatabaseClient client;
+  private FakeClock clock;
+  private int executedReads;
+
+  private static class FakeClock implements ApiClock {
+    private long millis = 1000000L;
+
+    @Override
+    public long nanoTime() {
+      return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long millisTime() {
+      return millis;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    clock = new FakeClock();
+    client = mock(DatabaseClient.class);
+    when(client.singleUseReadOnlyTransaction(any(TimestampBound.class)))
+        .thenAnswer(
+            new Answer<ReadOnlyTransaction>() {
+              @Override
+              public ReadOnlyTransaction answer(InvocationOnMock invocation) {
+                executedReads++;
+                // Reads are executed at the current time of the fake clock.
+                Timestamp readTimestamp =
+                    Timestamp.ofTimeMicroseconds(TimeUnit.MILLISECONDS.toMicros(clock.millis));
+                ReadOnlyTransaction transaction = mock(ReadOnlyTransaction.class);
+                when(transaction.read(any(String.class), any(KeySet.class), any(Iterable.class)))
+                    .thenReturn(rows("v" + executedReads));
+                when(transaction.readUsingIndex(
+                        any(String.class), any(String.class), any(KeySet.class),
+                        any(Iterable.class)))
+                    .thenReturn(rows("i" + executedReads));
+                when(transaction.getReadTimestamp()).thenReturn(readTimestamp);
+                return transaction;
+              }
+            });
+  }
+
+  @Test
+  public void hitWithinStaleness() {
+    StaleReadCache cache = newCache(StaleReadCacheOptions.newBuilder().build());
+    assertThat(cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS).getString(0)).isEqualTo("v1");
+    clock.millis += 5000;
+    assertThat(cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS).getString(0)).isEqualTo("v1");
+
+    assertThat(executedReads).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(1);
+    assertThat(cache.getHitRatio()).isWithin(0.001).of(0.5);
+  }
+
+  @Test
+  public void missWhenTooStale() {
+    StaleReadCache cache = newCache(StaleReadCacheOptions.newBuilder().build());
+    cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS);
+    clock.millis += 5000;
+    // A tighter bound is not satisfied by the cached read.
+    TimestampBound oneSecond = TimestampBound.ofMaxStaleness(1, TimeUnit.SECONDS);
+    assertThat(cache.readRow("T", Key.of(1), COLUMNS, oneSecond).getString(0)).isEqualTo("v2");
+    // The newer read replaced the cached one.
+    assertThat(cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS).getString(0)).isEqualTo("v2");
+
+    assertThat(executedReads).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void minReadTimestamp() {
+    StaleReadCache cache = newCache(StaleReadCacheOptions.newBuilder().build());
+    Timestamp before = Timestamp.ofTimeMicroseconds(TimeUnit.MILLISECONDS.toMicros(clock.millis));
+    cache.readRow("T", Key.of(1), COLUMNS, TimestampBound.ofMinReadTimestamp(before));
+    cache.readRow("T", Key.of(1), COLUMNS, TimestampBound.ofMinReadTimestamp(before));
+    assertThat(executedReads).isEqualTo(1);
+
+    Timestamp after =
+        Timestamp.ofTimeMicroseconds(TimeUnit.MILLISECONDS.toMicros(clock.millis + 1));
+    cache.readRow("T", Key.of(1), COLUMNS, TimestampBound.ofMinReadTimestamp(after));
+    assertThat(executedReads).isEqualTo(2);
+  }
+
+  @Test
+  public void keyIncludesColumnsAndIndex() {
+    StaleReadCache cache = newCache(StaleReadCacheOptions.newBuilder().build());
+    cache.read("T", KeySet.all(), COLUMNS, TEN_SECONDS).close();
+    cache.read("T", KeySet.all(), Arrays.asList("V", "W"), TEN_SECONDS).close();
+    cache.readUsingIndex("T", "I", KeySet.all(), COLUMNS, TEN_SECONDS).close();
+    cache.read("T2", KeySet.all(), COLUMNS, TEN_SECONDS).close();
+    assertThat(executedReads).isEqualTo(4);
+
+    try (ResultSet resultSet = cache.readUsingIndex("T", "I", KeySet.all(), COLUMNS, TEN_SECONDS)) {
+      assertThat(resultSet.next()).isTrue();
+      assertThat(resultSet.getString(0)).isEqualTo("i3");
+    }
+    assertThat(executedReads).isEqualTo(4);
+    assertThat(cache.readRowUsingIndex("T", "I", Key.of(1), COLUMNS, TEN_SECONDS).getString(0))
+        .isEqualTo("i5");
+  }
+
+  @Test
+  public void uncacheableBoundsBypassCache() {
+    ReadContext context = mock(ReadContext.class);
+    when(client.singleUse(any(TimestampBound.class))).thenReturn(context);
+    when(context.read(any(String.class), any(KeySet.class), any(Iterable.class)))
+        .thenReturn(rows("strong"));
+    StaleReadCache cache = newCache(StaleReadCacheOptions.newBuilder().build());
+
+    cache.read("T", KeySet.all(), COLUMNS, TimestampBound.strong()).close();
+    cache.read("T", KeySet.all(), COLUMNS, TimestampBound.strong()).close();
+
+    verify(client, times(2)).singleUse(TimestampBound.strong());
+    verify(client, never()).singleUseReadOnlyTransaction(any(TimestampBound.class));
+    assertThat(cache.getBypassCount()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void lruEviction() {
+    StaleReadCache cache = newCache(StaleReadCacheOptions.newBuilder().setMaxEntries(2).build());
+    cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS);
+    cache.readRow("T", Key.of(2), COLUMNS, TEN_SECONDS);
+    // Key 1 becomes the most recently used read.
+    cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS);
+    cache.readRow("T", Key.of(3), COLUMNS, TEN_SECONDS);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+    cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS);
+    assertThat(executedReads).isEqualTo(3);
+    cache.readRow("T", Key.of(2), COLUMNS, TEN_SECONDS);
+    assertThat(executedReads).isEqualTo(4);
+  }
+
+  @Test
+  public void largeReadsNotCached() {
+    StaleReadCache cache =
+        newCache(StaleReadCacheOptions.newBuilder().setMaxRowsPerEntry(0).build());
+    cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS);
+    cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS);
+    assertThat(executedReads).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void largeReadsStreamed() {
+    final ReadOnlyTransaction transaction = mock(ReadOnlyTransaction.class);
+    final List<Struct> rows = new ArrayList<>();
+    for (String value : Arrays.asList("a", "b", "c", "d")) {
+      rows.add(Struct.newBuilder().set("V").to(value).build());
+    }
+    final int[] rowsRead = new int[1];
+    when(transaction.read(any(String.class), any(KeySet.class), any(Iterable.class)))
+        .thenReturn(
+            new ForwardingResultSet(ResultSets.forRows(TYPE, rows)) {
+              @Override
+              public boolean next() {
+                rowsRead[0]++;
+                return super.next();
+              }
+            });
+    when(client.singleUseReadOnlyTransaction(any(TimestampBound.class))).thenReturn(transaction);
+    StaleReadCache cache =
+        newCache(StaleReadCacheOptions.newBuilder().setMaxRowsPerEntry(1).build());
+
+    ResultSet resultSet = cache.read("T", KeySet.all(), COLUMNS, TEN_SECONDS);
+    // Buffering stops as soon as the read has too many rows to be cached.
+    assertThat(rowsRead[0]).isEqualTo(2);
+    List<String> values = new ArrayList<>();
+    while (resultSet.next()) {
+      values.add(resultSet.getString("V"));
+    }
+    assertThat(values).containsExactly("a", "b", "c", "d").inOrder();
+    verify(transaction).close();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void invalidate() {
+    StaleReadCache cache = newCache(StaleReadCacheOptions.newBuilder().build());
+    cache.readRow("T", Key.of(1), COLUMNS, TEN_SECONDS);
+    cache.readRow("T2", Key.of(1), COLUMNS, TEN_SECONDS);
+    cache.invalidate("T");
+    assertThat(cache.size()).isEqualTo(1);
+    cache.invalidateAll();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  private StaleReadCache newCache(StaleReadCacheOptions options) {
+    return new StaleReadCache(client, options, clock);
+  }
+
+  private static ResultSet rows(String value) {
+    List<Struct> rows = new ArrayList<>();
+    rows.add(Struct.newBuilder().set("V").to(value).build());
+    return ResultSets.forRows(TYPE, rows);
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.benchmark;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.Storage.SignUrlOption;
+import com.google.cloud.storage.StorageOptions;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the number of URLs signed per second by {@link Storage#signUrl} and {@link
+ * Storage#signUrls}, with a generated service account key. Signing doesn't send requests, so only
+ * the client side work is measured.
+ *
+ * <p>The baseline signs the same payloads with {@link ServiceAccountCredentials#sign(byte[])},
+ * which is what {@code signUrl} used to do for every URL. The other runs sign URLs without the
+ * signed URL cache, with the bulk API, and with an expiration granularity that lets repeated URLs
+ * be served from the cache.
+ */
+public class SignUrlBenchmark {
+  private static final double NS_PER_SECOND = 1000 * 1000 * 1000;
+
+  private SignUrlBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int urlsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+    int distinctBlobs = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    final ServiceAccountCredentials credentials =
+        new ServiceAccountCredentials(
+            null, "benchmark@example.com", generator.generateKeyPair().getPrivate(), null, null);
+    StorageOptions options =
+        StorageOptions.newBuilder().setProjectId("benchmark").setCredentials(credentials).build();
+    final Storage uncached = options.toBuilder().setSignedUrlCacheSize(0).build().getService();
+    final Storage cached = options.getService();
+    final List<BlobInfo> blobs = new ArrayList<>(distinctBlobs);
+    for (int i = 0; i < distinctBlobs; i++) {
+      blobs.add(BlobInfo.newBuilder("benchmark-bucket", "object-" + i).build());
+    }
+    System.out.println(
+        String.format(
+            "%d threads, %d URLs per thread, %d distinct blobs",
+            threads, urlsPerThread, distinctBlobs));
+
+    Task baseline =
+        new Task() {
+          @Override
+          public void sign(int thread, int count) {
+            for (int i = 0; i < count; i++) {
+              BlobInfo blob = blobs.get(i % blobs.size());
+              String payload = "GET\n\n\n" + i + "\n/" + blob.getBucket() + "/" + blob.getName();
+              credentials.sign(payload.getBytes(UTF_8));
+            }
+          }
+        };
+    Task signUrl =
+        new Task() {
+          @Override
+          public void sign(int thread, int count) {
+            for (int i = 0; i < count; i++) {
+              // A different duration per URL, so that no two URLs are the same.
+              uncached.signUrl(
+                  blobs.get(i % blobs.size()), 3_600 + thread * count + i, TimeUnit.SECONDS);
+            }
+          }
+        };
+    Task signUrls =
+        new Task() {
+          @Override
+          public void sign(int thread, int count) {
+            for (int i = 0; i < count; i += blobs.size()) {
+              int size = Math.min(blobs.size(), count - i);
+              uncached.signUrls(
+                  blobs.subList(0, size), 3_600 + thread * count + i, TimeUnit.SECONDS);
+            }
+          }
+        };
+    Task cachedSignUrl =
+        new Task() {
+          @Override
+          public void sign(int thread, int count) {
+            for (int i = 0; i < count; i++) {
+              cached.signUrl(
+                  blobs.get(i % blobs.size()),
+                  1,
+                  TimeUnit.HOURS,
+                  SignUrlOption.withExpirationGranularity(5, TimeUnit.MINUTES));
+            }
+          }
+        };
+
+    // Warm up all the paths before measuring any.
+    run("warmup", baseline, threads, urlsPerThread / 10, false);
+    run("warmup", signUrl, threads, urlsPerThread / 10, false);
+    run("warmup", signUrls, threads, urlsPerThread / 10, false);
+
+    run("ServiceAccountCredentials.sign", baseline, threads, urlsPerThread, true);
+    run("signUrl", signUrl, threads, urlsPerThread, true);
+    run("signUrls", signUrls, threads, urlsPerThread, true);
+    run("signUrl with cache", cachedSignUrl, threads, urlsPerThread, true);
+  }
+
+  private interface Task {
+    void sign(int thread, int count);
+  }
+
+  private static void run(
+      String name, final Task task, int threads, final int count, boolean report)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      long startNanos = System.nanoTime();
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int thread = t;
+        futures.add(
+            executor.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() {
+                    task.sign(thread, count);
+                    return null;
+                  }
+                }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+      long elapsedNanos = System.nanoTime() - startNanos;
+      if (report) {
+        System.out.println(
+            String.format(
+                "%s: %.0f signatures/s",
+                name, (double) threads * count / (elapsedNanos / NS_PER_SECOND)));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -19,6 +19,8 @@ package com.google.cloud.storage;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
 import com.google.api.gax.paging.Page;
 import com.google.auth.ServiceAccountSigner;
 import com.google.auth.ServiceAccountSigner.SigningException;
@@ -889,7 +891,7 @@ public interface Storage extends Service<StorageOptions> {
     private final Object value;
 
     enum Option {
-      HTTP_METHOD, CONTENT_TYPE, MD5, EXT_HEADERS, SERVICE_ACCOUNT_CRED
+      HTTP_METHOD, CONTENT_TYPE, MD5, EXT_HEADERS, SERVICE_ACCOUNT_CRED, EXPIRATION_GRANULARITY
     }
 
     private SignUrlOption(Option option, Object value) {
@@ -950,6 +952,20 @@ public interface Storage extends Service<StorageOptions> {
     public static SignUrlOption signWith(ServiceAccountSigner signer) {
       return new SignUrlOption(Option.SERVICE_ACCOUNT_CRED, signer);
     }
+
+    /**
+     * Rounds the expiration time of the signed URL up to a multiple of {@code granularity}, so
+     * that the URLs of a blob signed within the same interval are identical. The URL is then valid
+     * for up to {@code granularity} longer than requested, but it can be served from the cache of
+     * signed URLs (see {@link StorageOptions.Builder#setSignedUrlCacheSize(int)}) and from the
+     * caches of clients and content delivery networks. The finest granularity supported is 1
+     * second.
+     */
+    public static SignUrlOption withExpirationGranularity(long granularity, TimeUnit unit) {
+      long seconds = unit.toSeconds(granularity);
+      checkArgument(seconds > 0, "Expiration granularity must be at least 1 second");
+      return new SignUrlOption(Option.EXPIRATION_GRANULARITY, seconds);
+    }
   }
 
   /**
@@ -1577,6 +1593,26 @@ public interface Storage extends Service<StorageOptions> {
    */
   Blob get(BlobId blob, BlobGetOption... options);
 
+  /**
+   * Asynchronously returns the requested blob, or {@code null} if not found. Unlike
+   * {@link #get(BlobId, BlobGetOption...)}, the calling thread is not blocked while waiting for
+   * the response or between retries. Retries are limited by a retry budget shared by all the
+   * asynchronous calls of this service object.
+   *
+   * <p>Example of asynchronously getting information on a blob.
+   * <pre> {@code
+   * String bucketName = "my_unique_bucket";
+   * String blobName = "my_blob_name";
+   * ApiFuture<Blob> future = storage.getAsync(BlobId.of(bucketName, blobName));
+   * // do other work
+   * Blob blob = future.get();
+   * }</pre>
+   *
+   * @return a future that fails with a {@link StorageException} upon failure
+   */
+  @BetaApi
+  ApiFuture<Blob> getAsync(BlobId blob, BlobGetOption... options);
+
   /**
    * Returns the requested blob or {@code null} if not found.
    *
@@ -1767,6 +1803,27 @@ public interface Storage extends Service<StorageOptions> {
    */
   boolean delete(BlobId blob, BlobSourceOption... options);
 
+  /**
+   * Asynchronously deletes the requested blob. Unlike
+   * {@link #delete(BlobId, BlobSourceOption...)}, the calling thread is not blocked while waiting
+   * for the response or between retries. Retries are limited by a retry budget shared by all the
+   * asynchronous calls of this service object.
+   *
+   * <p>Example of asynchronously deleting a blob.
+   * <pre> {@code
+   * String bucketName = "my_unique_bucket";
+   * String blobName = "my_blob_name";
+   * ApiFuture<Boolean> future = storage.deleteAsync(BlobId.of(bucketName, blobName));
+   * // do other work
+   * boolean deleted = future.get();
+   * }</pre>
+   *
+   * @return a future whose value is {@code true} if blob was deleted, {@code false} if it was not
+   *     found, and that fails with a {@link StorageException} upon failure
+   */
+  @BetaApi
+  ApiFuture<Boolean> deleteAsync(BlobId blob, BlobSourceOption... options);
+
   /**
    * Deletes the requested blob.
    *
@@ -2093,6 +2150,39 @@ public interface Storage extends Service<StorageOptions> {
    */
   URL signUrl(BlobInfo blobInfo, long duration, TimeUnit unit, SignUrlOption... options);
 
+  /**
+   * Generates signed URLs for several blobs, with the same duration and options. This is
+   * equivalent to calling {@link #signUrl(BlobInfo, long, TimeUnit, SignUrlOption...)} for each
+   * blob, but the options, the signer and the expiration time are resolved only once, so all the
+   * URLs expire at the same time.
+   *
+   * <p>Example of creating signed URLs that are valid for 1 hour, rounded up to the next 5 minutes
+   * so that URLs signed again within the same 5 minutes are served from the cache.
+   * <pre> {@code
+   * String bucketName = "my_unique_bucket";
+   * List<BlobInfo> blobs = ImmutableList.of(
+   *     BlobInfo.newBuilder(bucketName, "blob1").build(),
+   *     BlobInfo.newBuilder(bucketName, "blob2").build());
+   * List<URL> signedUrls = storage.signUrls(blobs, 1, TimeUnit.HOURS,
+   *     SignUrlOption.withExpirationGranularity(5, TimeUnit.MINUTES));
+   * }</pre>
+   *
+   * @param blobInfos the blobs associated with the signed URLs
+   * @param duration time until the signed URLs expire, expressed in {@code unit}
+   * @param unit time unit of the {@code duration} parameter
+   * @param options optional URL signing options
+   * @return the signed URLs, in the order of {@code blobInfos}
+   * @throws IllegalStateException if {@link SignUrlOption#signWith(ServiceAccountSigner)} was not
+   *     used and no implementation of {@link ServiceAccountSigner} was provided to
+   *     {@link StorageOptions}
+   * @throws IllegalArgumentException if {@code SignUrlOption.withMd5()} or {@code
+   *     SignUrlOption.withContentType()} is used and a blob is missing the corresponding value
+   * @throws SigningException if the attempt to sign a URL failed
+   * @see #signUrl(BlobInfo, long, TimeUnit, SignUrlOption...)
+   */
+  List<URL> signUrls(
+      Iterable<BlobInfo> blobInfos, long duration, TimeUnit unit, SignUrlOption... options);
+
   /**
    * Gets the requested blobs. A batch request is used to perform this call.
    *
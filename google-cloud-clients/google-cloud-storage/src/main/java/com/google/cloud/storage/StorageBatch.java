@@ -145,7 +145,16 @@ public class StorageBatch {
   }
 
   /**
-   * Submits this batch for processing using a single RPC request.
+   * Submits this batch for processing using a single RPC request. Batches of more than 100
+   * operations are sent as several batch requests, sent concurrently if
+   * {@link StorageOptions#getBatchParallelism()} is greater than 1. In that case the
+   * {@link StorageBatchResult} callbacks may run on threads other than the calling one.
+   *
+   * <p>Operations that fail with a retryable error (e.g. 429 or 503) are sent again in a new batch
+   * request, with the backoff, maximum attempts and total timeout of
+   * {@link StorageOptions#getRetrySettings()}, even if batch parallelism is 1. This method sleeps
+   * between attempts and only returns when every operation has completed, so it may block for up
+   * to the total timeout of the retry settings.
    */
   public void submit() {
     batch.submit();
@@ -17,6 +17,7 @@
 package com.google.cloud.storage;
 
 import static com.google.cloud.RetryHelper.runWithRetries;
+import static com.google.cloud.RetryHelper.runWithRetriesAsync;
 import static com.google.cloud.storage.PolicyHelper.convertFromApiPolicy;
 import static com.google.cloud.storage.PolicyHelper.convertToApiPolicy;
 import static com.google.cloud.storage.spi.v1.StorageRpc.Option.DELIMITER;
@@ -33,6 +34,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.api.core.ApiFunction;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.api.gax.paging.Page;
 import com.google.api.services.storage.model.BucketAccessControl;
 import com.google.api.services.storage.model.ObjectAccessControl;
@@ -45,6 +49,7 @@ import com.google.cloud.PageImpl;
 import com.google.cloud.PageImpl.NextPageFetcher;
 import com.google.cloud.Policy;
 import com.google.cloud.ReadChannel;
+import com.google.cloud.RetryBudget;
 import com.google.cloud.RetryHelper.RetryHelperException;
 import com.google.cloud.Tuple;
 import com.google.cloud.storage.Acl.Entity;
@@ -60,15 +65,18 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
+import com.google.common.math.LongMath;
 import com.google.common.net.UrlEscapers;
 import com.google.common.primitives.Ints;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.math.RoundingMode;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -93,11 +101,19 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
         }
       };
 
+  // Asynchronous calls may retry at most once every 10 calls, after an initial burst of 100 retries
+  private static final double ASYNC_RETRY_RATIO = 0.1;
+  private static final int ASYNC_MAX_RETRY_TOKENS = 100;
+
   private final StorageRpc storageRpc;
+  private final RetryBudget asyncRetryBudget =
+      RetryBudget.create(ASYNC_RETRY_RATIO, ASYNC_MAX_RETRY_TOKENS);
+  private final UrlSigner urlSigner;
 
   StorageImpl(StorageOptions options) {
     super(options);
     storageRpc = options.getStorageRpcV1();
+    urlSigner = new UrlSigner(options.getSignedUrlCacheSize());
   }
 
   @Override
@@ -209,6 +225,24 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     return get(blob, new BlobGetOption[0]);
   }
 
+  @Override
+  public ApiFuture<Blob> getAsync(BlobId blob, BlobGetOption... options) {
+    final StorageObject storedObject = blob.toPb();
+    final Map<StorageRpc.Option, ?> optionsMap = optionMap(blob, options);
+    ApiFuture<StorageObject> future = runAsync(new Callable<StorageObject>() {
+      @Override
+      public StorageObject call() {
+        return storageRpc.get(storedObject, optionsMap);
+      }
+    });
+    return ApiFutures.transform(future, new ApiFunction<StorageObject, Blob>() {
+      @Override
+      public Blob apply(StorageObject storageObject) {
+        return storageObject == null ? null : Blob.fromPb(StorageImpl.this, storageObject);
+      }
+    });
+  }
+
   private static class BucketPageFetcher implements NextPageFetcher<Bucket> {
 
     private static final long serialVersionUID = 5850406828803613729L;
@@ -398,6 +432,35 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     return delete(blob, new BlobSourceOption[0]);
   }
 
+  @Override
+  public ApiFuture<Boolean> deleteAsync(BlobId blob, BlobSourceOption... options) {
+    final StorageObject storageObject = blob.toPb();
+    final Map<StorageRpc.Option, ?> optionsMap = optionMap(blob, options);
+    return runAsync(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return storageRpc.delete(storageObject, optionsMap);
+      }
+    });
+  }
+
+  /**
+   * Runs {@code callable} with retries on the asynchronous executor, translating failures
+   * into {@link StorageException}s.
+   */
+  private <T> ApiFuture<T> runAsync(Callable<T> callable) {
+    ApiFuture<T> future = runWithRetriesAsync(callable, getOptions().getRetrySettings(),
+        EXCEPTION_HANDLER, getOptions().getClock(), getOptions().getAsyncExecutor(),
+        asyncRetryBudget);
+    return ApiFutures.catching(future, RetryHelperException.class,
+        new ApiFunction<RetryHelperException, T>() {
+          @Override
+          public T apply(RetryHelperException e) {
+            throw StorageException.translateAndThrow(e);
+          }
+        });
+  }
+
   @Override
   public Blob compose(final ComposeRequest composeRequest) {
     final List<StorageObject> sources =
@@ -499,6 +562,12 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
 
   @Override
   public URL signUrl(BlobInfo blobInfo, long duration, TimeUnit unit, SignUrlOption... options) {
+    return signUrls(Collections.singletonList(blobInfo), duration, unit, options).get(0);
+  }
+
+  @Override
+  public List<URL> signUrls(
+      Iterable<BlobInfo> blobInfos, long duration, TimeUnit unit, SignUrlOption... options) {
     EnumMap<SignUrlOption.Option, Object> optionMap = Maps.newEnumMap(SignUrlOption.Option.class);
     for (SignUrlOption option : options) {
       optionMap.put(option.getOption(), option.getValue());
@@ -513,7 +582,39 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     
     long expiration = TimeUnit.SECONDS.convert(
             getOptions().getClock().millisTime() + unit.toMillis(duration), TimeUnit.MILLISECONDS);
-    
+    Long granularity = (Long) optionMap.get(SignUrlOption.Option.EXPIRATION_GRANULARITY);
+    if (granularity != null) {
+      expiration = LongMath.divide(expiration, granularity, RoundingMode.CEILING) * granularity;
+    }
+    // The signer may fetch its account, e.g. from the metadata server, so it's only asked once.
+    String query = "?GoogleAccessId=" + credentials.getAccount() + "&Expires=" + expiration;
+
+    List<URL> urls = new ArrayList<>();
+    for (BlobInfo blobInfo : blobInfos) {
+      URI path = buildPath(blobInfo);
+      try {
+        SignatureInfo signatureInfo = buildSignatureInfo(optionMap, blobInfo, expiration, path);
+        String signature = URLEncoder.encode(
+            urlSigner.sign(credentials, signatureInfo.constructUnsignedPayload()), UTF_8.name());
+        StringBuilder stBuilder = new StringBuilder("https://storage.googleapis.com").append(path);
+        stBuilder.append(query);
+        stBuilder.append("&Signature=").append(signature);
+
+        urls.add(new URL(stBuilder.toString()));
+
+      } catch (MalformedURLException | UnsupportedEncodingException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+    return urls;
+  }
+
+  /**
+   * Builds the escaped resource path of a blob.
+   * @param blobInfo the blob info
+   * @return the resource URI
+   */
+  private static URI buildPath(BlobInfo blobInfo) {
     StringBuilder stPath = new StringBuilder();
     if (!blobInfo.getBucket().startsWith(PATH_DELIMITER)) {
       stPath.append(PATH_DELIMITER);
@@ -529,24 +630,7 @@ final class StorageImpl extends BaseService<StorageOptions> implements Storage {
     String escapedName = UrlEscapers.urlFragmentEscaper().escape(blobInfo.getName());
     stPath.append(escapedName.replace("?", "%3F"));
     
-    URI path = URI.create(stPath.toString());
-    
-    try {
-      SignatureInfo signatureInfo = buildSignatureInfo(optionMap, blobInfo, expiration, path);
-      byte[] signatureBytes =
-          credentials.sign(signatureInfo.constructUnsignedPayload().getBytes(UTF_8));
-      StringBuilder stBuilder = new StringBuilder("https://storage.googleapis.com").append(path);
-      String signature =
-          URLEncoder.encode(BaseEncoding.base64().encode(signatureBytes), UTF_8.name());
-      stBuilder.append("?GoogleAccessId=").append(credentials.getAccount());
-      stBuilder.append("&Expires=").append(expiration);
-      stBuilder.append("&Signature=").append(signature);
-      
-      return new URL(stBuilder.toString());
-    
-    } catch (MalformedURLException | UnsupportedEncodingException ex) {
-      throw new IllegalStateException(ex);
-    }
+    return URI.create(stPath.toString());
   }
   
   /**
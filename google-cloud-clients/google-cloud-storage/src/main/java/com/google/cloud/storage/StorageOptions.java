@@ -17,6 +17,7 @@
 package com.google.cloud.storage;
 
 import com.google.cloud.NoCredentials;
+import com.google.cloud.RetryHelper;
 import com.google.cloud.http.HttpTransportOptions;
 import com.google.cloud.ServiceDefaults;
 import com.google.cloud.ServiceOptions;
@@ -25,8 +26,11 @@ import com.google.cloud.TransportOptions;
 import com.google.cloud.storage.spi.v1.HttpStorageRpc;
 import com.google.cloud.storage.spi.v1.StorageRpc;
 import com.google.cloud.storage.spi.StorageRpcFactory;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class StorageOptions extends ServiceOptions<Storage, StorageOptions> {
 
@@ -34,6 +38,14 @@ public class StorageOptions extends ServiceOptions<Storage, StorageOptions> {
   private static final String API_SHORT_NAME = "Storage";
   private static final String GCS_SCOPE = "https://www.googleapis.com/auth/devstorage.full_control";
   private static final Set<String> SCOPES = ImmutableSet.of(GCS_SCOPE);
+  private static final int DEFAULT_BATCH_PARALLELISM = 1;
+  private static final int DEFAULT_SIGNED_URL_CACHE_SIZE = 1000;
+
+  private final int batchParallelism;
+  private final int signedUrlCacheSize;
+  // Executors are not serializable, a deserialized instance uses the default executor. Like the
+  // other runtime-only collaborators, the executor is not part of equals and hashCode.
+  private transient ScheduledExecutorService asyncExecutor;
 
   public static class DefaultStorageFactory implements StorageFactory {
 
@@ -58,10 +70,17 @@ public class StorageOptions extends ServiceOptions<Storage, StorageOptions> {
   public static class Builder extends
       ServiceOptions.Builder<Storage, StorageOptions, Builder> {
 
+    private int batchParallelism = DEFAULT_BATCH_PARALLELISM;
+    private int signedUrlCacheSize = DEFAULT_SIGNED_URL_CACHE_SIZE;
+    private ScheduledExecutorService asyncExecutor;
+
     private Builder() {}
 
     private Builder(StorageOptions options) {
       super(options);
+      batchParallelism = options.batchParallelism;
+      signedUrlCacheSize = options.signedUrlCacheSize;
+      asyncExecutor = options.asyncExecutor;
     }
 
     @Override
@@ -73,6 +92,45 @@ public class StorageOptions extends ServiceOptions<Storage, StorageOptions> {
       return super.setTransportOptions(transportOptions);
     }
 
+    /**
+     * Sets the number of batch requests sent concurrently when a {@link StorageBatch} is submitted.
+     * A {@code StorageBatch} is sent as one batch request per 100 operations. Callbacks of the
+     * operations are never run concurrently, but they may run on threads other than the one
+     * calling {@link StorageBatch#submit()}. Defaults to 1, that is the batch requests are sent one
+     * after another on the calling thread.
+     */
+    public Builder setBatchParallelism(int batchParallelism) {
+      Preconditions.checkArgument(
+          batchParallelism > 0, "Batch parallelism(%s) must be > 0", batchParallelism);
+      this.batchParallelism = batchParallelism;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of URL signatures cached by {@link Storage#signUrl} and {@link
+     * Storage#signUrls}. A URL signed again with the same signer, options and expiration time is
+     * then built without signing it again. Defaults to 1000; set to 0 to disable the cache.
+     */
+    public Builder setSignedUrlCacheSize(int signedUrlCacheSize) {
+      Preconditions.checkArgument(
+          signedUrlCacheSize >= 0, "Signed URL cache size(%s) must be >= 0", signedUrlCacheSize);
+      this.signedUrlCacheSize = signedUrlCacheSize;
+      return this;
+    }
+
+    /**
+     * Sets the executor used to run the asynchronous operations of the service, such as {@link
+     * Storage#getAsync} and {@link Storage#deleteAsync}, and to schedule their retries. Each
+     * running operation blocks one of its threads while waiting for the response, so the size of
+     * the executor bounds the number of concurrent asynchronous operations. The executor is not
+     * shut down by the service. Defaults to {@link RetryHelper#getDefaultAsyncExecutor()}, which
+     * is shared by all services.
+     */
+    public Builder setAsyncExecutor(ScheduledExecutorService asyncExecutor) {
+      this.asyncExecutor = Preconditions.checkNotNull(asyncExecutor);
+      return this;
+    }
+
     @Override
     public StorageOptions build() {
       return new StorageOptions(this);
@@ -81,6 +139,9 @@ public class StorageOptions extends ServiceOptions<Storage, StorageOptions> {
 
   private StorageOptions(Builder builder) {
     super(StorageFactory.class, StorageRpcFactory.class, builder, new StorageDefaults());
+    this.batchParallelism = builder.batchParallelism;
+    this.signedUrlCacheSize = builder.signedUrlCacheSize;
+    this.asyncExecutor = builder.asyncExecutor;
   }
 
   private static class StorageDefaults implements
@@ -118,6 +179,24 @@ public class StorageOptions extends ServiceOptions<Storage, StorageOptions> {
     return SCOPES;
   }
 
+  /**
+   * Returns the number of batch requests sent concurrently when a {@link StorageBatch} is
+   * submitted.
+   */
+  public int getBatchParallelism() {
+    return batchParallelism;
+  }
+
+  /** Returns the maximum number of URL signatures cached by the service. */
+  public int getSignedUrlCacheSize() {
+    return signedUrlCacheSize;
+  }
+
+  /** Returns the executor used to run the asynchronous operations of the service. */
+  public ScheduledExecutorService getAsyncExecutor() {
+    return asyncExecutor != null ? asyncExecutor : RetryHelper.getDefaultAsyncExecutor();
+  }
+
   protected StorageRpc getStorageRpcV1() {
     return (StorageRpc) getRpc();
   }
@@ -144,12 +223,15 @@ public class StorageOptions extends ServiceOptions<Storage, StorageOptions> {
 
   @Override
   public int hashCode() {
-    return baseHashCode();
+    return Objects.hash(baseHashCode(), batchParallelism, signedUrlCacheSize);
   }
 
   @Override
   public boolean equals(Object obj) {
-    return obj instanceof StorageOptions && baseEquals((StorageOptions) obj);
+    return obj instanceof StorageOptions
+        && baseEquals((StorageOptions) obj)
+        && batchParallelism == ((StorageOptions) obj).batchParallelism
+        && signedUrlCacheSize == ((StorageOptions) obj).signedUrlCacheSize;
   }
 
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auth.ServiceAccountSigner;
+import com.google.auth.ServiceAccountSigner.SigningException;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.BaseEncoding;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signs the payloads of signed URLs, see {@link Storage#signUrl}.
+ *
+ * <p>Signatures made with the private key of {@link ServiceAccountCredentials} are computed with a
+ * {@link Signature} kept per thread and per key, rather than with {@link
+ * ServiceAccountCredentials#sign(byte[])}, which looks up and initializes a new one for each call.
+ * Other signers are called as they are.
+ *
+ * <p>Signing the same payload with the same key always gives the same signature, so the most
+ * recently computed signatures are cached by signer and payload. Since the payload includes the
+ * expiration time, in seconds, the cache only serves the signed URLs of a blob requested within
+ * the same second, unless {@link Storage.SignUrlOption#withExpirationGranularity} is used to round
+ * the expiration time.
+ *
+ * <p>This class is thread-safe.
+ */
+final class UrlSigner {
+
+  private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+  private final Cache<CacheKey, String> signatures;
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong signCount = new AtomicLong();
+  private final ThreadLocal<KeySignature> keySignature = new ThreadLocal<>();
+
+  /**
+   * Creates a signer that caches at most {@code cacheSize} signatures, or none if {@code
+   * cacheSize} is 0.
+   */
+  UrlSigner(int cacheSize) {
+    this.signatures =
+        cacheSize > 0
+            ? CacheBuilder.newBuilder().maximumSize(cacheSize).<CacheKey, String>build()
+            : null;
+  }
+
+  /** Returns the base64 encoded signature of {@code payload}. */
+  String sign(ServiceAccountSigner signer, String payload) {
+    CacheKey key = null;
+    if (signatures != null) {
+      key = new CacheKey(signer, payload);
+      String signature = signatures.getIfPresent(key);
+      if (signature != null) {
+        hitCount.incrementAndGet();
+        return signature;
+      }
+    }
+    signCount.incrementAndGet();
+    String signature = BaseEncoding.base64().encode(signBytes(signer, payload.getBytes(UTF_8)));
+    if (signatures != null) {
+      signatures.put(key, signature);
+    }
+    return signature;
+  }
+
+  /** Returns the number of signatures served from the cache. */
+  long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of signatures computed. */
+  long getSignCount() {
+    return signCount.get();
+  }
+
+  private byte[] signBytes(ServiceAccountSigner signer, byte[] bytes) {
+    PrivateKey privateKey =
+        signer instanceof ServiceAccountCredentials
+            ? ((ServiceAccountCredentials) signer).getPrivateKey()
+            : null;
+    if (privateKey == null) {
+      return signer.sign(bytes);
+    }
+    try {
+      Signature signature = getSignature(privateKey);
+      signature.update(bytes);
+      // Signing resets the signature, which can then sign again with the same key.
+      return signature.sign();
+    } catch (GeneralSecurityException ex) {
+      // The signature is initialized again by the next call.
+      keySignature.remove();
+      throw new SigningException("Failed to sign the provided bytes", ex);
+    }
+  }
+
+  private Signature getSignature(PrivateKey privateKey) throws GeneralSecurityException {
+    KeySignature current = keySignature.get();
+    if (current == null || current.privateKey != privateKey) {
+      Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+      signature.initSign(privateKey);
+      current = new KeySignature(privateKey, signature);
+      keySignature.set(current);
+    }
+    return current.signature;
+  }
+
+  private static final class KeySignature {
+
+    private final PrivateKey privateKey;
+    private final Signature signature;
+
+    KeySignature(PrivateKey privateKey, Signature signature) {
+      this.privateKey = privateKey;
+      this.signature = signature;
+    }
+  }
+
+  /** A payload signed by a signer. Signers are compared by identity. */
+  private static final class CacheKey {
+
+    private final ServiceAccountSigner signer;
+    private final String payload;
+
+    CacheKey(ServiceAccountSigner signer, String payload) {
+      this.signer = signer;
+      this.payload = payload;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) obj;
+      return signer == other.signer && payload.equals(other.payload);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(signer) + payload.hashCode();
+    }
+  }
+}
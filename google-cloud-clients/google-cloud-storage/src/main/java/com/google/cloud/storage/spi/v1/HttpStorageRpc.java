@@ -23,6 +23,7 @@ import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import com.google.api.client.googleapis.batch.BatchRequest;
 import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
 import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
 import com.google.api.client.http.ByteArrayContent;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpHeaders;
@@ -38,6 +39,7 @@ import com.google.api.client.http.json.JsonHttpContent;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson.JacksonFactory;
 import com.google.api.client.util.IOUtils;
+import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.services.storage.Storage;
 import com.google.api.services.storage.Storage.Objects.Get;
 import com.google.api.services.storage.Storage.Objects.Insert;
@@ -60,12 +62,15 @@ import com.google.cloud.http.HttpTransportOptions;
 import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.StorageOptions;
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.opencensus.common.Scope;
 import io.opencensus.trace.AttributeValue;
 import io.opencensus.trace.Span;
@@ -81,6 +86,12 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.http.HttpStatus;
 
 public class HttpStorageRpc implements StorageRpc {
@@ -93,6 +104,8 @@ public class HttpStorageRpc implements StorageRpc {
   private final Tracer tracer = Tracing.getTracer();
   private final CensusHttpModule censusHttpModule;
   private final HttpRequestInitializer batchRequestInitializer;
+  // Runs the batch requests of parallel batch submissions, created on first use
+  private ExecutorService batchExecutor;
 
   private static final long MEGABYTE = 1024L * 1024L;
 
@@ -114,6 +127,22 @@ public class HttpStorageRpc implements StorageRpc {
         .build();
   }
 
+  /**
+   * Returns the executor used to send batch requests concurrently. Its threads are daemon threads
+   * that are released when idle, so the executor does not need to be shut down.
+   */
+  private synchronized ExecutorService getBatchExecutor() {
+    if (batchExecutor == null) {
+      batchExecutor =
+          Executors.newCachedThreadPool(
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("storage-batch-%d")
+                  .build());
+    }
+    return batchExecutor;
+  }
+
   private class DefaultRpcBatch implements RpcBatch {
 
     // Batch size is limited as, due to some current service implementation details, the service
@@ -123,26 +152,21 @@ public class HttpStorageRpc implements StorageRpc {
     private static final int MAX_BATCH_SIZE = 100;
 
     private final Storage storage;
-    private final LinkedList<BatchRequest> batches;
-    private int currentBatchSize;
+    private final LinkedList<List<BatchEntry<?>>> batches;
+    // Callbacks of concurrently executed batch requests are run one at a time.
+    private final Object callbackLock = new Object();
 
     private DefaultRpcBatch(Storage storage) {
       this.storage = storage;
       batches = new LinkedList<>();
-      // add OpenCensus HttpRequestInitializer
-      batches.add(storage.batch(batchRequestInitializer));
+      batches.add(new ArrayList<BatchEntry<?>>(MAX_BATCH_SIZE));
     }
 
     @Override
     public void addDelete(StorageObject storageObject, RpcBatch.Callback<Void> callback,
         Map<Option, ?> options) {
       try {
-        if (currentBatchSize == MAX_BATCH_SIZE) {
-          batches.add(storage.batch());
-          currentBatchSize = 0;
-        }
-        deleteCall(storageObject, options).queue(batches.getLast(), toJsonCallback(callback));
-        currentBatchSize++;
+        add(new BatchEntry<>(deleteCall(storageObject, options), callback));
       } catch (IOException ex) {
         throw translate(ex);
       }
@@ -152,12 +176,7 @@ public class HttpStorageRpc implements StorageRpc {
     public void addPatch(StorageObject storageObject, RpcBatch.Callback<StorageObject> callback,
         Map<Option, ?> options) {
       try {
-        if (currentBatchSize == MAX_BATCH_SIZE) {
-          batches.add(storage.batch());
-          currentBatchSize = 0;
-        }
-        patchCall(storageObject, options).queue(batches.getLast(), toJsonCallback(callback));
-        currentBatchSize++;
+        add(new BatchEntry<>(patchCall(storageObject, options), callback));
       } catch (IOException ex) {
         throw translate(ex);
       }
@@ -167,29 +186,66 @@ public class HttpStorageRpc implements StorageRpc {
     public void addGet(StorageObject storageObject, RpcBatch.Callback<StorageObject> callback,
         Map<Option, ?> options) {
       try {
-        if (currentBatchSize == MAX_BATCH_SIZE) {
-          batches.add(storage.batch());
-          currentBatchSize = 0;
-        }
-        getCall(storageObject, options).queue(batches.getLast(), toJsonCallback(callback));
-        currentBatchSize++;
+        add(new BatchEntry<>(getCall(storageObject, options), callback));
       } catch (IOException ex) {
         throw translate(ex);
       }
     }
 
+    private void add(BatchEntry<?> entry) {
+      if (batches.getLast().size() == MAX_BATCH_SIZE) {
+        batches.add(new ArrayList<BatchEntry<?>>(MAX_BATCH_SIZE));
+      }
+      batches.getLast().add(entry);
+    }
+
     @Override
     public void submit() {
-      Span span = startSpan(HttpStorageRpcSpans.SPAN_NAME_BATCH_SUBMIT);
+      final Span span = startSpan(HttpStorageRpcSpans.SPAN_NAME_BATCH_SUBMIT);
       Scope scope = tracer.withSpan(span);
+      int parallelism = Math.min(options.getBatchParallelism(), batches.size());
       try {
         span.putAttribute("batch size", AttributeValue.longAttributeValue(batches.size()));
-        for (BatchRequest batch : batches) {
-          // TODO(hailongwen@): instrument 'google-api-java-client' to further break down the span.
-          // Here we only add a annotation to at least know how much time each batch takes.
-          span.addAnnotation("Execute batch request");
-          batch.setBatchUrl(new GenericUrl(String.format("%s/batch/storage/v1", options.getHost())));
-          batch.execute();
+        if (parallelism <= 1) {
+          for (List<BatchEntry<?>> batch : batches) {
+            execute(batch, span);
+          }
+          return;
+        }
+        // The executor is shared by all batches, so at most parallelism workers are started, each
+        // sending batch requests until none is left.
+        final ConcurrentLinkedQueue<List<BatchEntry<?>>> pending =
+            new ConcurrentLinkedQueue<>(batches);
+        ExecutorService executor = getBatchExecutor();
+        List<Future<?>> futures = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+          futures.add(
+              executor.submit(
+                  new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                      List<BatchEntry<?>> batch;
+                      while ((batch = pending.poll()) != null) {
+                        execute(batch, span);
+                      }
+                      return null;
+                    }
+                  }));
+        }
+        // Wait for all the batch requests, then fail with the first error, if any.
+        IOException firstError = null;
+        for (Future<?> future : futures) {
+          try {
+            Uninterruptibles.getUninterruptibly(future);
+          } catch (ExecutionException ex) {
+            Throwables.propagateIfPossible(ex.getCause());
+            if (firstError == null) {
+              firstError = (IOException) ex.getCause();
+            }
+          }
+        }
+        if (firstError != null) {
+          throw firstError;
         }
       } catch (IOException ex) {
         span.setStatus(Status.UNKNOWN.withDescription(ex.getMessage()));
@@ -199,21 +255,87 @@ public class HttpStorageRpc implements StorageRpc {
         span.end();
       }
     }
-  }
 
-  private static <T> JsonBatchCallback<T> toJsonCallback(final RpcBatch.Callback<T> callback) {
-    return new JsonBatchCallback<T>() {
-      @Override
-      public void onSuccess(T response, HttpHeaders httpHeaders) throws IOException {
-        callback.onSuccess(response);
+    /**
+     * Executes the entries of a batch, as one batch request. Entries that fail with a retryable
+     * error are sent again in a new batch request, with exponential backoff, until they succeed or
+     * the maximum number of attempts or the total timeout of the retry settings is reached.
+     */
+    private void execute(List<BatchEntry<?>> entries, Span span) throws IOException {
+      RetrySettings retrySettings = options.getRetrySettings();
+      long delayMillis = retrySettings.getInitialRetryDelay().toMillis();
+      long deadlineMillis =
+          options.getClock().millisTime() + retrySettings.getTotalTimeout().toMillis();
+      List<BatchEntry<?>> pending = entries;
+      for (int attempt = 1; !pending.isEmpty(); attempt++) {
+        boolean lastAttempt =
+            (retrySettings.getMaxAttempts() > 0 && attempt >= retrySettings.getMaxAttempts())
+                || options.getClock().millisTime() + delayMillis > deadlineMillis;
+        List<BatchEntry<?>> retries = new ArrayList<>();
+        BatchRequest batch = storage.batch(batchRequestInitializer);
+        for (BatchEntry<?> entry : pending) {
+          entry.queue(batch, lastAttempt ? null : retries);
+        }
+        // TODO(hailongwen@): instrument 'google-api-java-client' to further break down the span.
+        // Here we only add a annotation to at least know how much time each batch takes.
+        span.addAnnotation("Execute batch request");
+        batch.setBatchUrl(new GenericUrl(String.format("%s/batch/storage/v1", options.getHost())));
+        batch.execute();
+        if (!retries.isEmpty()) {
+          span.addAnnotation("Retry " + retries.size() + " failed batch entries");
+          try {
+            Thread.sleep(delayMillis);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(BaseServiceException.UNKNOWN_CODE, "Interrupted", ex);
+          }
+          delayMillis =
+              Math.min(
+                  (long) (delayMillis * retrySettings.getRetryDelayMultiplier()),
+                  retrySettings.getMaxRetryDelay().toMillis());
+        }
+        pending = retries;
+      }
+    }
+
+    /** An operation of the batch, kept so that it can be sent again if it fails. */
+    private class BatchEntry<T> {
+      private final AbstractGoogleJsonClientRequest<T> request;
+      private final RpcBatch.Callback<T> callback;
+
+      BatchEntry(AbstractGoogleJsonClientRequest<T> request, RpcBatch.Callback<T> callback) {
+        this.request = request;
+        this.callback = callback;
       }
 
-      @Override
-      public void onFailure(GoogleJsonError googleJsonError, HttpHeaders httpHeaders)
-          throws IOException {
-        callback.onFailure(googleJsonError);
+      /**
+       * Queues the request in {@code batch}. If {@code retries} is not {@code null}, a retryable
+       * failure adds this entry to it instead of being reported to the callback.
+       */
+      void queue(BatchRequest batch, final List<BatchEntry<?>> retries) throws IOException {
+        request.queue(
+            batch,
+            new JsonBatchCallback<T>() {
+              @Override
+              public void onSuccess(T response, HttpHeaders httpHeaders) {
+                synchronized (callbackLock) {
+                  callback.onSuccess(response);
+                }
+              }
+
+              @Override
+              public void onFailure(GoogleJsonError googleJsonError, HttpHeaders httpHeaders) {
+                if (retries != null && translate(googleJsonError).isRetryable()) {
+                  retries.add(BatchEntry.this);
+                  return;
+                }
+                synchronized (callbackLock) {
+                  callback.onFailure(googleJsonError);
+                }
+              }
+            });
       }
-    };
+    }
   }
 
   private static StorageException translate(IOException exception) {
@@ -25,9 +25,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.api.client.googleapis.json.GoogleJsonError;
 import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFuture;
 import com.google.api.gax.paging.Page;
 import com.google.api.services.storage.model.Policy.Bindings;
 import com.google.api.services.storage.model.StorageObject;
@@ -77,6 +79,7 @@ import java.security.spec.X509EncodedKeySpec;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import javax.crypto.spec.SecretKeySpec;
 import org.easymock.Capture;
@@ -746,6 +749,18 @@ public class StorageImplTest {
     assertEquals(expectedBlob1, blob);
   }
 
+  @Test
+  public void testGetBlobAsync() throws Exception {
+    EasyMock.expect(
+            storageRpcMock.get(BlobId.of(BUCKET_NAME1, BLOB_NAME1).toPb(), BLOB_GET_OPTIONS))
+        .andReturn(BLOB_INFO1.toPb());
+    EasyMock.replay(storageRpcMock);
+    initializeService();
+    ApiFuture<Blob> future = storage.getAsync(
+        BlobId.of(BUCKET_NAME1, BLOB_NAME1), BLOB_GET_METAGENERATION, BLOB_GET_GENERATION);
+    assertEquals(expectedBlob1, future.get());
+  }
+
   @Test
   public void testGetBlobWithOptions() {
     EasyMock.expect(
@@ -1127,6 +1142,16 @@ public class StorageImplTest {
     assertTrue(storage.delete(BUCKET_NAME1, BLOB_NAME1));
   }
 
+  @Test
+  public void testDeleteBlobAsync() throws Exception {
+    EasyMock.expect(
+            storageRpcMock.delete(BlobId.of(BUCKET_NAME1, BLOB_NAME1).toPb(), EMPTY_RPC_OPTIONS))
+        .andReturn(true);
+    EasyMock.replay(storageRpcMock);
+    initializeService();
+    assertTrue(storage.deleteAsync(BlobId.of(BUCKET_NAME1, BLOB_NAME1)).get());
+  }
+
   @Test
   public void testDeleteBlobWithOptions() {
     EasyMock.expect(
@@ -1868,6 +1893,70 @@ public class StorageImplTest {
         signer.verify(BaseEncoding.base64().decode(URLDecoder.decode(signature, UTF_8.name()))));
   }
 
+  @Test
+  public void testSignUrls()
+      throws NoSuchAlgorithmException, InvalidKeyException, SignatureException,
+          UnsupportedEncodingException {
+    EasyMock.replay(storageRpcMock);
+    ServiceAccountCredentials credentials =
+        new ServiceAccountCredentials(null, ACCOUNT, privateKey, null, null);
+    storage = options.toBuilder().setCredentials(credentials).build().getService();
+    List<URL> urls = storage.signUrls(ImmutableList.of(BLOB_INFO1, BLOB_INFO2), 14, TimeUnit.DAYS);
+    assertEquals(2, urls.size());
+    String[] blobNames = {BLOB_NAME1, BLOB_NAME2};
+    for (int i = 0; i < blobNames.length; i++) {
+      String stringUrl = urls.get(i).toString();
+      String expectedUrl =
+          new StringBuilder("https://storage.googleapis.com/")
+              .append(BUCKET_NAME1)
+              .append('/')
+              .append(blobNames[i])
+              .append("?GoogleAccessId=")
+              .append(ACCOUNT)
+              .append("&Expires=")
+              .append(42L + 1209600)
+              .append("&Signature=")
+              .toString();
+      assertTrue(stringUrl.startsWith(expectedUrl));
+      String signature = stringUrl.substring(expectedUrl.length());
+
+      StringBuilder signedMessageBuilder = new StringBuilder();
+      signedMessageBuilder
+          .append(HttpMethod.GET)
+          .append("\n\n\n")
+          .append(42L + 1209600)
+          .append("\n/")
+          .append(BUCKET_NAME1)
+          .append('/')
+          .append(blobNames[i]);
+
+      Signature signer = Signature.getInstance("SHA256withRSA");
+      signer.initVerify(publicKey);
+      signer.update(signedMessageBuilder.toString().getBytes(UTF_8));
+      assertTrue(
+          signer.verify(BaseEncoding.base64().decode(URLDecoder.decode(signature, UTF_8.name()))));
+    }
+    // Signing a URL again gives the same URL.
+    assertEquals(
+        urls.get(1).toString(), storage.signUrl(BLOB_INFO2, 14, TimeUnit.DAYS).toString());
+  }
+
+  @Test
+  public void testSignUrlWithExpirationGranularity() {
+    EasyMock.replay(storageRpcMock);
+    ServiceAccountCredentials credentials =
+        new ServiceAccountCredentials(null, ACCOUNT, privateKey, null, null);
+    storage = options.toBuilder().setCredentials(credentials).build().getService();
+    URL url =
+        storage.signUrl(
+            BLOB_INFO1,
+            14,
+            TimeUnit.DAYS,
+            Storage.SignUrlOption.withExpirationGranularity(1, TimeUnit.HOURS));
+    // 42 seconds after the 14 days is rounded up to the next hour.
+    assertTrue(url.toString().contains("&Expires=" + (1209600 + 3600) + "&"));
+  }
+
   @Test
   public void testGetAllArray() {
     BlobId blobId1 = BlobId.of(BUCKET_NAME1, BLOB_NAME1);
@@ -2353,6 +2442,47 @@ public class StorageImplTest {
     assertEquals(expectedBlob1, readBlob);
   }
 
+  @Test
+  public void testRetryableExceptionAsync() throws Exception {
+    BlobId blob = BlobId.of(BUCKET_NAME1, BLOB_NAME1);
+    EasyMock.expect(storageRpcMock.get(blob.toPb(), EMPTY_RPC_OPTIONS))
+        .andThrow(new StorageException(500, "internalError"))
+        .andReturn(BLOB_INFO1.toPb());
+    EasyMock.replay(storageRpcMock);
+    storage =
+        options
+            .toBuilder()
+            .setRetrySettings(ServiceOptions.getDefaultRetrySettings())
+            .build()
+            .getService();
+    initializeServiceDependentObjects();
+    Blob readBlob = storage.getAsync(blob).get();
+    assertEquals(expectedBlob1, readBlob);
+  }
+
+  @Test
+  public void testNonRetryableExceptionAsync() throws Exception {
+    BlobId blob = BlobId.of(BUCKET_NAME1, BLOB_NAME1);
+    String exceptionMessage = "Not Implemented";
+    EasyMock.expect(storageRpcMock.get(blob.toPb(), EMPTY_RPC_OPTIONS))
+        .andThrow(new StorageException(501, exceptionMessage));
+    EasyMock.replay(storageRpcMock);
+    storage =
+        options
+            .toBuilder()
+            .setRetrySettings(ServiceOptions.getDefaultRetrySettings())
+            .build()
+            .getService();
+    initializeServiceDependentObjects();
+    try {
+      storage.getAsync(blob).get();
+      fail("Expected StorageException");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StorageException);
+      assertEquals(exceptionMessage, e.getCause().getMessage());
+    }
+  }
+
   @Test
   public void testNonRetryableException() {
     BlobId blob = BlobId.of(BUCKET_NAME1, BLOB_NAME1);
@@ -16,7 +16,15 @@
 
 package com.google.cloud.storage;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.RetryHelper;
 import com.google.cloud.TransportOptions;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import org.easymock.EasyMock;
 import org.junit.Rule;
 import org.junit.Test;
@@ -33,4 +41,65 @@ public class StorageOptionsTest {
     StorageOptions.newBuilder().setTransportOptions(EasyMock.createMock(TransportOptions.class));
   }
 
+  @Test
+  public void testBatchParallelism() {
+    StorageOptions options =
+        StorageOptions.newBuilder()
+            .setProjectId("project")
+            .setCredentials(NoCredentials.getInstance())
+            .build();
+    assertEquals(1, options.getBatchParallelism());
+    StorageOptions parallel = options.toBuilder().setBatchParallelism(4).build();
+    assertEquals(4, parallel.getBatchParallelism());
+    assertEquals(4, parallel.toBuilder().build().getBatchParallelism());
+    assertNotEquals(options, parallel);
+  }
+
+  @Test
+  public void testInvalidBatchParallelism() {
+    thrown.expect(IllegalArgumentException.class);
+    StorageOptions.newBuilder().setBatchParallelism(0);
+  }
+
+  @Test
+  public void testSignedUrlCacheSize() {
+    StorageOptions options =
+        StorageOptions.newBuilder()
+            .setProjectId("project")
+            .setCredentials(NoCredentials.getInstance())
+            .build();
+    assertEquals(1000, options.getSignedUrlCacheSize());
+    StorageOptions uncached = options.toBuilder().setSignedUrlCacheSize(0).build();
+    assertEquals(0, uncached.getSignedUrlCacheSize());
+    assertEquals(0, uncached.toBuilder().build().getSignedUrlCacheSize());
+    assertNotEquals(options, uncached);
+  }
+
+  @Test
+  public void testInvalidSignedUrlCacheSize() {
+    thrown.expect(IllegalArgumentException.class);
+    StorageOptions.newBuilder().setSignedUrlCacheSize(-1);
+  }
+
+  @Test
+  public void testAsyncExecutor() {
+    StorageOptions options =
+        StorageOptions.newBuilder()
+            .setProjectId("project")
+            .setCredentials(NoCredentials.getInstance())
+            .build();
+    assertSame(RetryHelper.getDefaultAsyncExecutor(), options.getAsyncExecutor());
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    try {
+      StorageOptions custom = options.toBuilder().setAsyncExecutor(executor).build();
+      assertSame(executor, custom.getAsyncExecutor());
+      assertSame(executor, custom.toBuilder().build().getAsyncExecutor());
+      // The executor is not serialized, so it doesn't take part in equality.
+      assertEquals(options, custom);
+      assertEquals(options.hashCode(), custom.hashCode());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
 }
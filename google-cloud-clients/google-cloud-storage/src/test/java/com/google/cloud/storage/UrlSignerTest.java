@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.auth.ServiceAccountSigner;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.common.io.BaseEncoding;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class UrlSignerTest {
+
+  private static final String ACCOUNT = "account";
+
+  private static KeyPair keyPair;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(1024);
+    keyPair = generator.generateKeyPair();
+  }
+
+  @Test
+  public void testSign() throws Exception {
+    UrlSigner signer = new UrlSigner(10);
+    ServiceAccountCredentials credentials = credentials();
+    String signature = signer.sign(credentials, "payload");
+    assertTrue(verify("payload", signature));
+    // The signature is the same as the one computed by the credentials.
+    assertEquals(
+        BaseEncoding.base64().encode(credentials.sign("payload".getBytes(UTF_8))), signature);
+  }
+
+  @Test
+  public void testCache() {
+    UrlSigner signer = new UrlSigner(10);
+    ServiceAccountCredentials credentials = credentials();
+    String signature = signer.sign(credentials, "payload");
+    assertEquals(signature, signer.sign(credentials, "payload"));
+    assertEquals(1, signer.getSignCount());
+    assertEquals(1, signer.getHitCount());
+
+    // Signatures are cached by signer.
+    assertEquals(signature, signer.sign(credentials(), "payload"));
+    signer.sign(credentials, "other payload");
+    assertEquals(3, signer.getSignCount());
+    assertEquals(1, signer.getHitCount());
+  }
+
+  @Test
+  public void testCacheDisabled() {
+    UrlSigner signer = new UrlSigner(0);
+    ServiceAccountCredentials credentials = credentials();
+    signer.sign(credentials, "payload");
+    signer.sign(credentials, "payload");
+    assertEquals(2, signer.getSignCount());
+    assertEquals(0, signer.getHitCount());
+  }
+
+  @Test
+  public void testOtherSigner() {
+    UrlSigner signer = new UrlSigner(10);
+    ServiceAccountSigner fixedSigner =
+        new ServiceAccountSigner() {
+          @Override
+          public String getAccount() {
+            return ACCOUNT;
+          }
+
+          @Override
+          public byte[] sign(byte[] toSign) {
+            return toSign;
+          }
+        };
+    assertEquals(
+        BaseEncoding.base64().encode("payload".getBytes(UTF_8)),
+        signer.sign(fixedSigner, "payload"));
+  }
+
+  @Test
+  public void testConcurrentSigning() throws Exception {
+    final UrlSigner signer = new UrlSigner(0);
+    final ServiceAccountCredentials credentials = credentials();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        final String payload = "payload" + i;
+        results.add(
+            executor.submit(
+                new Callable<Boolean>() {
+                  @Override
+                  public Boolean call() throws Exception {
+                    boolean verified = true;
+                    for (int j = 0; j < 20; j++) {
+                      verified &= verify(payload + j, signer.sign(credentials, payload + j));
+                    }
+                    return verified;
+                  }
+                }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static ServiceAccountCredentials credentials() {
+    return new ServiceAccountCredentials(null, ACCOUNT, keyPair.getPrivate(), null, null);
+  }
+
+  private static boolean verify(String payload, String signature) throws Exception {
+    Signature verifier = Signature.getInstance("SHA256withRSA");
+    verifier.initVerify(keyPair.getPublic());
+    verifier.update(payload.getBytes(UTF_8));
+    return verifier.verify(BaseEncoding.base64().decode(signature));
+  }
+}
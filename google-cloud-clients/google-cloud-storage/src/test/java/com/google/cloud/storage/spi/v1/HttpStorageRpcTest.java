@@ -0,0 +1,329 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.storage.spi.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.core.ApiClock;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.auth.http.HttpTransportFactory;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.ServiceOptions;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.cloud.storage.StorageException;
+import com.google.cloud.storage.StorageOptions;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class HttpStorageRpcTest {
+
+  private static final String BUCKET = "bucket";
+  private static final String BOUNDARY = "batch_boundary";
+  private static final Pattern OBJECT_NAME = Pattern.compile("/b/" + BUCKET + "/o/([^?\\s]+)");
+  private static final RetrySettings RETRY_SETTINGS = ServiceOptions.getDefaultRetrySettings()
+      .toBuilder()
+      .setMaxAttempts(0)
+      .setInitialRetryDelay(Duration.ofMillis(1L))
+      .setRetryDelayMultiplier(1.0)
+      .setMaxRetryDelay(Duration.ofMillis(1L))
+      .setTotalTimeout(Duration.ofMinutes(1L))
+      .build();
+
+  private BatchTransport transport;
+  private FakeClock clock;
+  private RecordingCallback callback;
+
+  private static class FakeClock implements ApiClock {
+    private volatile long millis = 1000000L;
+
+    @Override
+    public long nanoTime() {
+      return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long millisTime() {
+      return millis;
+    }
+  }
+
+  /**
+   * A transport that answers batch requests with a multipart response. Each object of a batch
+   * request succeeds, unless error codes were set for it with {@link #fail(String, Integer...)}.
+   */
+  private static class BatchTransport extends MockHttpTransport {
+
+    private final Map<String, Queue<Integer>> errors = new ConcurrentHashMap<>();
+    private final List<List<String>> requests =
+        Collections.synchronizedList(new ArrayList<List<String>>());
+
+    /** Makes the next requests of object {@code name} fail with {@code codes}, in order. */
+    void fail(String name, Integer... codes) {
+      errors.put(name, new LinkedList<>(Arrays.asList(codes)));
+    }
+
+    /** Called with the object names of each batch request, before it is answered. */
+    void onRequest(List<String> names) throws IOException {}
+
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          List<String> names = new ArrayList<>();
+          Matcher matcher = OBJECT_NAME.matcher(getContentAsString());
+          while (matcher.find()) {
+            names.add(matcher.group(1));
+          }
+          requests.add(names);
+          onRequest(names);
+          StringBuilder content = new StringBuilder();
+          for (String name : names) {
+            Queue<Integer> codes = errors.get(name);
+            Integer code = codes != null ? codes.poll() : null;
+            content.append("--" + BOUNDARY + "\r\n");
+            content.append("Content-Type: application/http\r\n\r\n");
+            if (code == null) {
+              content.append("HTTP/1.1 200 OK\r\n");
+              content.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
+              content.append("{\"bucket\":\"" + BUCKET + "\",\"name\":\"" + name + "\"}\r\n");
+            } else {
+              content.append("HTTP/1.1 " + code + " Error\r\n");
+              content.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
+              content.append(
+                  "{\"error\":{\"code\":" + code + ",\"message\":\"" + name + "\"}}\r\n");
+            }
+          }
+          content.append("--" + BOUNDARY + "--\r\n");
+          return new MockLowLevelHttpResponse()
+              .setContentType("multipart/mixed; boundary=" + BOUNDARY)
+              .setContent(content.toString());
+        }
+      };
+    }
+  }
+
+  /** Records the results of the batch entries and how many callbacks ran at the same time. */
+  private static class RecordingCallback implements RpcBatch.Callback<StorageObject> {
+
+    private final List<String> successes = Collections.synchronizedList(new ArrayList<String>());
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Override
+    public void onSuccess(StorageObject response) {
+      enter();
+      successes.add(response.getName());
+      exit();
+    }
+
+    @Override
+    public void onFailure(GoogleJsonError googleJsonError) {
+      enter();
+      failures.put(googleJsonError.getMessage(), googleJsonError.getCode());
+      exit();
+    }
+
+    private void enter() {
+      int count = running.incrementAndGet();
+      maxRunning.set(Math.max(maxRunning.get(), count));
+      Thread.yield();
+    }
+
+    private void exit() {
+      running.decrementAndGet();
+    }
+  }
+
+  @Before
+  public void setUp() {
+    transport = new BatchTransport();
+    clock = new FakeClock();
+    callback = new RecordingCallback();
+  }
+
+  private RpcBatch createBatch(int parallelism, RetrySettings retrySettings, String... names) {
+    final HttpTransport httpTransport = transport;
+    StorageOptions options = StorageOptions.newBuilder()
+        .setProjectId("project")
+        .setCredentials(NoCredentials.getInstance())
+        .setClock(clock)
+        .setRetrySettings(retrySettings)
+        .setBatchParallelism(parallelism)
+        .setTransportOptions(HttpTransportOptions.newBuilder()
+            .setHttpTransportFactory(new HttpTransportFactory() {
+              @Override
+              public HttpTransport create() {
+                return httpTransport;
+              }
+            })
+            .build())
+        .build();
+    RpcBatch batch = new HttpStorageRpc(options).createBatch();
+    for (String name : names) {
+      batch.addGet(new StorageObject().setBucket(BUCKET).setName(name), callback,
+          Collections.<StorageRpc.Option, Object>emptyMap());
+    }
+    return batch;
+  }
+
+  private static String[] names(int count) {
+    String[] names = new String[count];
+    for (int i = 0; i < count; i++) {
+      names[i] = "blob-" + i;
+    }
+    return names;
+  }
+
+  @Test
+  public void testSubmitSendsBatchesInParallel() throws Exception {
+    final CountDownLatch allSent = new CountDownLatch(3);
+    final AtomicInteger sending = new AtomicInteger();
+    final AtomicInteger maxSending = new AtomicInteger();
+    transport = new BatchTransport() {
+      @Override
+      void onRequest(List<String> names) {
+        maxSending.set(Math.max(maxSending.get(), sending.incrementAndGet()));
+        allSent.countDown();
+        try {
+          allSent.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        sending.decrementAndGet();
+      }
+    };
+    createBatch(3, RETRY_SETTINGS, names(300)).submit();
+    assertEquals(3, transport.requests.size());
+    for (List<String> request : transport.requests) {
+      assertEquals(100, request.size());
+    }
+    assertEquals(3, maxSending.get());
+    assertEquals(300, callback.successes.size());
+    assertTrue(callback.failures.isEmpty());
+  }
+
+  @Test
+  public void testSubmitRunsCallbacksOneAtATime() {
+    createBatch(4, RETRY_SETTINGS, names(1000)).submit();
+    assertEquals(10, transport.requests.size());
+    assertEquals(1000, callback.successes.size());
+    assertEquals(1, callback.maxRunning.get());
+  }
+
+  @Test
+  public void testSubmitResendsOnlyRetryableEntries() {
+    transport.fail("blob-1", 503);
+    transport.fail("blob-2", 429, 503);
+    transport.fail("blob-3", 404);
+    createBatch(1, RETRY_SETTINGS, names(4)).submit();
+    assertEquals(
+        ImmutableList.of(
+            ImmutableList.of("blob-0", "blob-1", "blob-2", "blob-3"),
+            ImmutableList.of("blob-1", "blob-2"),
+            ImmutableList.of("blob-2")),
+        transport.requests);
+    assertEquals(ImmutableList.of("blob-0", "blob-1", "blob-2"), callback.successes);
+    assertEquals(Collections.singletonMap("blob-3", 404), callback.failures);
+  }
+
+  @Test
+  public void testSubmitStopsAtMaxAttempts() {
+    transport.fail("blob-0", 503, 503, 503, 503);
+    transport.fail("blob-1", 503);
+    RetrySettings retrySettings = RETRY_SETTINGS.toBuilder().setMaxAttempts(3).build();
+    createBatch(1, retrySettings, names(2)).submit();
+    assertEquals(3, transport.requests.size());
+    assertEquals(ImmutableList.of("blob-0"), transport.requests.get(2));
+    assertEquals(ImmutableList.of("blob-1"), callback.successes);
+    assertEquals(Collections.singletonMap("blob-0", 503), callback.failures);
+  }
+
+  @Test
+  public void testSubmitStopsAtTotalTimeout() {
+    // Each batch request takes one second.
+    transport = new BatchTransport() {
+      @Override
+      void onRequest(List<String> names) {
+        clock.millis += 1000L;
+      }
+    };
+    transport.fail("blob-0", 503, 503, 503, 503, 503, 503);
+    RetrySettings retrySettings =
+        RETRY_SETTINGS.toBuilder().setTotalTimeout(Duration.ofMillis(2500L)).build();
+    createBatch(1, retrySettings, names(1)).submit();
+    // Attempts start at 0s, 1s, 2s and 3s, the last one being past the total timeout.
+    assertEquals(4, transport.requests.size());
+    assertTrue(callback.successes.isEmpty());
+    assertEquals(Collections.singletonMap("blob-0", 503), callback.failures);
+  }
+
+  @Test
+  public void testSubmitPropagatesError() {
+    final IOException error = new IOException("connection reset");
+    transport = new BatchTransport() {
+      @Override
+      void onRequest(List<String> names) throws IOException {
+        if (names.contains("blob-150")) {
+          throw error;
+        }
+      }
+    };
+    RpcBatch batch = createBatch(2, RETRY_SETTINGS, names(300));
+    try {
+      batch.submit();
+      fail("Expected StorageException");
+    } catch (StorageException ex) {
+      assertSame(error, ex.getCause());
+      assertEquals("connection reset", ex.getMessage());
+    }
+    // The other batch requests are still sent and their callbacks run.
+    assertEquals(3, transport.requests.size());
+    assertEquals(200, callback.successes.size());
+    assertTrue(callback.failures.isEmpty());
+  }
+}
@@ -219,4 +219,18 @@ public interface Translate extends Service<TranslateOptions> {
    *     a non-whitelisted user
    */
   Translation translate(String text, TranslateOption... options);
+
+  /**
+   * Returns a batcher that coalesces the translations and detections of single texts requested
+   * concurrently into requests of several texts, and caches their results. See {@link
+   * TranslateBatcher}.
+   *
+   * <p>Example of translating a text with a batcher:
+   * <pre> {@code
+   * TranslateBatcher batcher = translate.newBatcher(TranslateBatcherOptions.newBuilder().build());
+   * Translation translation = batcher.translate("¡Hola Mundo!");
+   * batcher.close();
+   * }</pre>
+   */
+  TranslateBatcher newBatcher(TranslateBatcherOptions options);
 }
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.translate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.translate.Translate.TranslateOption;
+import com.google.cloud.translate.spi.v2.TranslateRpc;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Translates and detects the language of single texts by coalescing the concurrent calls into
+ * requests of several texts, and caches the results.
+ *
+ * <p>The texts to translate with the same options, and the texts whose language to detect, are
+ * grouped in requests of up to {@link TranslateBatcherOptions#getMaxBatchTexts()} texts and {@link
+ * TranslateBatcherOptions#getMaxBatchCharacters()} characters. A request is sent once it is full,
+ * or {@link TranslateBatcherOptions#getMaxDelay()} after its first text was added. A text already
+ * waiting for its request, with the same options, shares the result of that request. The results
+ * are cached in a least recently used cache of {@link TranslateBatcherOptions#getMaxCacheEntries()}
+ * entries, keyed by the text and the source language, target language, model and format of the
+ * translation.
+ *
+ * <p>Example of translating texts from several threads:
+ * <pre> {@code
+ * TranslateBatcher batcher = translate.newBatcher(TranslateBatcherOptions.newBuilder().build());
+ * // in each thread
+ * Translation translation =
+ *     batcher.translate("¡Hola Mundo!", TranslateOption.targetLanguage("de"));
+ * // once done
+ * batcher.close();
+ * }</pre>
+ *
+ * <p>This class is thread-safe.
+ */
+public class TranslateBatcher implements AutoCloseable {
+
+  private final Translate translate;
+  private final TranslateBatcherOptions options;
+  private final ScheduledThreadPoolExecutor executor;
+
+  private final Object lock = new Object();
+
+  // Guarded by lock.
+  private final Map<Group, Batch> pending = new HashMap<>();
+  private final Map<CacheKey, SettableApiFuture<Object>> running = new HashMap<>();
+  private final LinkedHashMap<CacheKey, Object> cache;
+  private long maxBatchSize;
+  private boolean closed;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong deduplicatedCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+  private final AtomicLong requestCount = new AtomicLong();
+
+  TranslateBatcher(Translate translate, final TranslateBatcherOptions options) {
+    this.translate = checkNotNull(translate);
+    this.options = checkNotNull(options);
+    this.executor =
+        new ScheduledThreadPoolExecutor(
+            options.getMaxConcurrentRequests(),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("translate-batcher-%d")
+                .build());
+    this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    this.cache =
+        new LinkedHashMap<CacheKey, Object>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<CacheKey, Object> eldest) {
+            if (size() > options.getMaxCacheEntries()) {
+              evictionCount.incrementAndGet();
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Translates {@code text} along with the other texts translated with the same options. See
+   * {@link Translate#translate(String, TranslateOption...)}.
+   *
+   * @return a future with the translation, that fails with a {@link TranslateException} upon
+   *     failure
+   * @throws IllegalStateException if the batcher is closed
+   */
+  public ApiFuture<Translation> translateAsync(String text, TranslateOption... options) {
+    return cast(submit(translationGroup(options), text, options));
+  }
+
+  /**
+   * Translates {@code text} along with the other texts translated with the same options, and waits
+   * for the translation. See {@link Translate#translate(String, TranslateOption...)}.
+   *
+   * @throws TranslateException upon failure
+   * @throws IllegalStateException if the batcher is closed
+   */
+  public Translation translate(String text, TranslateOption... options) {
+    return get(translateAsync(text, options));
+  }
+
+  /**
+   * Detects the language of {@code text} along with other texts. See {@link
+   * Translate#detect(String)}.
+   *
+   * @return a future with the detection, that fails with a {@link TranslateException} upon failure
+   * @throws IllegalStateException if the batcher is closed
+   */
+  public ApiFuture<Detection> detectAsync(String text) {
+    return cast(submit(Group.DETECTION, text, new TranslateOption[0]));
+  }
+
+  /**
+   * Detects the language of {@code text} along with other texts, and waits for the detection. See
+   * {@link Translate#detect(String)}.
+   *
+   * @throws TranslateException upon failure
+   * @throws IllegalStateException if the batcher is closed
+   */
+  public Detection detect(String text) {
+    return get(detectAsync(text));
+  }
+
+  /** Sends the texts waiting for their request. The results of the texts are not waited for. */
+  @Override
+  public void close() {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (Batch batch : pending.values()) {
+        executor.execute(cut(batch));
+      }
+      pending.clear();
+      executor.shutdown();
+    }
+  }
+
+  /** Removes all the cached results. */
+  public void invalidateAll() {
+    synchronized (lock) {
+      cache.clear();
+    }
+  }
+
+  /** Returns the number of cached results. */
+  public int size() {
+    synchronized (lock) {
+      return cache.size();
+    }
+  }
+
+  /** Returns the number of texts served from the cache. */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of texts sent to Google Translation. */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of texts that shared the result of the same text waiting for a request. */
+  public long getDeduplicatedCount() {
+    return deduplicatedCount.get();
+  }
+
+  /** Returns the number of cached results evicted to make room for newer ones. */
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  /**
+   * Returns the fraction of texts that were served from the cache, not counting the texts that
+   * shared the result of a text waiting for a request.
+   */
+  public double getHitRatio() {
+    long hits = hitCount.get();
+    long total = hits + missCount.get();
+    return total == 0 ? 0.0 : (double) hits / total;
+  }
+
+  /** Returns the number of requests sent to Google Translation. */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /** Returns the average number of texts of the requests sent to Google Translation. */
+  public double getAverageBatchSize() {
+    long requests = requestCount.get();
+    return requests == 0 ? 0.0 : (double) missCount.get() / requests;
+  }
+
+  /** Returns the largest number of texts of a request sent to Google Translation. */
+  public long getMaxBatchSize() {
+    synchronized (lock) {
+      return maxBatchSize;
+    }
+  }
+
+  private Group translationGroup(TranslateOption... options) {
+    Map<TranslateRpc.Option, Object> optionMap = new EnumMap<>(TranslateRpc.Option.class);
+    for (TranslateOption option : options) {
+      Object prev = optionMap.put(option.getRpcOption(), option.getValue());
+      checkArgument(prev == null, "Duplicate option %s", option);
+    }
+    if (!optionMap.containsKey(TranslateRpc.Option.TARGET_LANGUAGE)) {
+      optionMap.put(
+          TranslateRpc.Option.TARGET_LANGUAGE, translate.getOptions().getTargetLanguage());
+    }
+    return new Group(optionMap);
+  }
+
+  private ApiFuture<Object> submit(Group group, String text, TranslateOption[] translateOptions) {
+    checkNotNull(text);
+    CacheKey key = new CacheKey(group, text);
+    synchronized (lock) {
+      checkState(!closed, "Batcher is closed");
+      Object cached = cache.get(key);
+      if (cached != null) {
+        hitCount.incrementAndGet();
+        return ApiFutures.immediateFuture(cached);
+      }
+      SettableApiFuture<Object> future = running.get(key);
+      if (future != null) {
+        deduplicatedCount.incrementAndGet();
+        return future;
+      }
+      missCount.incrementAndGet();
+      future = SettableApiFuture.create();
+      running.put(key, future);
+      Batch batch = pending.get(group);
+      if (batch != null && !batch.fits(text)) {
+        pending.remove(group);
+        executor.execute(cut(batch));
+        batch = null;
+      }
+      if (batch == null) {
+        batch = new Batch(group, translateOptions);
+        pending.put(group, batch);
+        scheduleFlush(batch);
+      }
+      batch.add(text, future);
+      if (batch.isFull()) {
+        pending.remove(group);
+        executor.execute(cut(batch));
+      }
+      return future;
+    }
+  }
+
+  private void scheduleFlush(final Batch batch) {
+    executor.schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            synchronized (lock) {
+              if (pending.get(batch.group) != batch) {
+                return;
+              }
+              pending.remove(batch.group);
+              cut(batch);
+            }
+            batch.run();
+          }
+        },
+        options.getMaxDelay().toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  // Must be called holding lock.
+  private Batch cut(Batch batch) {
+    requestCount.incrementAndGet();
+    maxBatchSize = Math.max(maxBatchSize, batch.texts.size());
+    return batch;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> ApiFuture<T> cast(ApiFuture<?> future) {
+    // The results of a group are all translations or all detections.
+    return (ApiFuture<T>) future;
+  }
+
+  private static <T> T get(ApiFuture<T> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new TranslateException(BaseServiceException.UNKNOWN_CODE, cause.getMessage(), cause);
+    }
+  }
+
+  /** The texts sent in the same requests: detections, or translations with the same options. */
+  private static final class Group {
+
+    private static final Group DETECTION = new Group(null);
+
+    private final Map<TranslateRpc.Option, Object> options;
+
+    Group(Map<TranslateRpc.Option, Object> options) {
+      this.options = options;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Group && Objects.equals(options, ((Group) obj).options);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(options);
+    }
+  }
+
+  private static final class CacheKey {
+
+    private final Group group;
+    private final String text;
+
+    CacheKey(Group group, String text) {
+      this.group = group;
+      this.text = text;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+      CacheKey other = (CacheKey) obj;
+      return group.equals(other.group) && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(group, text);
+    }
+  }
+
+  /** A request of several texts, that runs once no more texts are added to it. */
+  private final class Batch implements Runnable {
+
+    private final Group group;
+    private final TranslateOption[] translateOptions;
+    private final List<String> texts = new ArrayList<>();
+    private final List<SettableApiFuture<Object>> futures = new ArrayList<>();
+    private int characters;
+
+    Batch(Group group, TranslateOption[] translateOptions) {
+      this.group = group;
+      this.translateOptions = translateOptions;
+    }
+
+    boolean fits(String text) {
+      return texts.size() < options.getMaxBatchTexts()
+          && characters + text.length() <= options.getMaxBatchCharacters();
+    }
+
+    void add(String text, SettableApiFuture<Object> future) {
+      texts.add(text);
+      futures.add(future);
+      characters += text.length();
+    }
+
+    boolean isFull() {
+      return texts.size() >= options.getMaxBatchTexts()
+          || characters >= options.getMaxBatchCharacters();
+    }
+
+    @Override
+    public void run() {
+      List<?> results;
+      try {
+        results =
+            group == Group.DETECTION
+                ? translate.detect(texts)
+                : translate.translate(texts, translateOptions);
+        checkState(
+            results.size() == texts.size(),
+            "Expected %s results, got %s", texts.size(), results.size());
+      } catch (RuntimeException e) {
+        synchronized (lock) {
+          for (String text : texts) {
+            running.remove(new CacheKey(group, text));
+          }
+        }
+        for (SettableApiFuture<Object> future : futures) {
+          future.setException(e);
+        }
+        return;
+      }
+      synchronized (lock) {
+        for (int i = 0; i < texts.size(); i++) {
+          CacheKey key = new CacheKey(group, texts.get(i));
+          running.remove(key);
+          if (options.getMaxCacheEntries() > 0) {
+            cache.put(key, results.get(i));
+          }
+        }
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        futures.get(i).set(results.get(i));
+      }
+    }
+  }
+}
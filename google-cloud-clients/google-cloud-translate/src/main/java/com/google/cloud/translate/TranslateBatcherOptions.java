@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.translate;
+
+import com.google.common.base.Preconditions;
+import org.threeten.bp.Duration;
+
+/** Options for a {@link TranslateBatcher}. */
+public class TranslateBatcherOptions {
+
+  private final int maxBatchTexts;
+  private final int maxBatchCharacters;
+  private final Duration maxDelay;
+  private final int maxConcurrentRequests;
+  private final int maxCacheEntries;
+
+  private TranslateBatcherOptions(Builder builder) {
+    this.maxBatchTexts = builder.maxBatchTexts;
+    this.maxBatchCharacters = builder.maxBatchCharacters;
+    this.maxDelay = builder.maxDelay;
+    this.maxConcurrentRequests = builder.maxConcurrentRequests;
+    this.maxCacheEntries = builder.maxCacheEntries;
+  }
+
+  public int getMaxBatchTexts() {
+    return maxBatchTexts;
+  }
+
+  public int getMaxBatchCharacters() {
+    return maxBatchCharacters;
+  }
+
+  public Duration getMaxDelay() {
+    return maxDelay;
+  }
+
+  public int getMaxConcurrentRequests() {
+    return maxConcurrentRequests;
+  }
+
+  public int getMaxCacheEntries() {
+    return maxCacheEntries;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** Builder for creating TranslateBatcherOptions. */
+  public static class Builder {
+    private int maxBatchTexts = 128;
+    private int maxBatchCharacters = 5000;
+    private Duration maxDelay = Duration.ofMillis(10);
+    private int maxConcurrentRequests = 4;
+    private int maxCacheEntries = 10000;
+
+    private Builder() {}
+
+    /** Maximum number of texts sent in a request. Defaults to 128. */
+    public Builder setMaxBatchTexts(int maxBatchTexts) {
+      this.maxBatchTexts = maxBatchTexts;
+      return this;
+    }
+
+    /**
+     * Maximum total length of the texts sent in a request. A longer text is sent on its own.
+     * Defaults to 5000.
+     */
+    public Builder setMaxBatchCharacters(int maxBatchCharacters) {
+      this.maxBatchCharacters = maxBatchCharacters;
+      return this;
+    }
+
+    /**
+     * How long a text waits for other texts to be sent with, if the request is not full. Defaults
+     * to 10 milliseconds.
+     */
+    public Builder setMaxDelay(Duration maxDelay) {
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    /** Maximum number of requests sent concurrently. Defaults to 4. */
+    public Builder setMaxConcurrentRequests(int maxConcurrentRequests) {
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      return this;
+    }
+
+    /**
+     * Maximum number of cached translations and detections. When the cache is full, the least
+     * recently used result is evicted. Set to 0 to disable the cache. Defaults to 10000.
+     */
+    public Builder setMaxCacheEntries(int maxCacheEntries) {
+      this.maxCacheEntries = maxCacheEntries;
+      return this;
+    }
+
+    /** Build a TranslateBatcherOptions object */
+    public TranslateBatcherOptions build() {
+      validate();
+      return new TranslateBatcherOptions(this);
+    }
+
+    private void validate() {
+      Preconditions.checkArgument(
+          maxBatchTexts > 0, "Max batch texts(%s) must be > 0", maxBatchTexts);
+      Preconditions.checkArgument(
+          maxBatchCharacters > 0, "Max batch characters(%s) must be > 0", maxBatchCharacters);
+      Preconditions.checkArgument(
+          maxDelay != null && !maxDelay.isNegative(), "Max delay(%s) must be >= 0", maxDelay);
+      Preconditions.checkArgument(
+          maxConcurrentRequests > 0,
+          "Max concurrent requests(%s) must be > 0", maxConcurrentRequests);
+      Preconditions.checkArgument(
+          maxCacheEntries >= 0, "Max cache entries(%s) must be >= 0", maxCacheEntries);
+    }
+  }
+}
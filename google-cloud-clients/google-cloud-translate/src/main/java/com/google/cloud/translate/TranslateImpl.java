@@ -124,6 +124,11 @@ final class TranslateImpl extends BaseService<TranslateOptions> implements Trans
     return translate(Collections.singletonList(text), options).get(0);
   }
 
+  @Override
+  public TranslateBatcher newBatcher(TranslateBatcherOptions options) {
+    return new TranslateBatcher(this, options);
+  }
+
   private Map<TranslateRpc.Option, ?> optionMap(Option... options) {
     Map<TranslateRpc.Option, Object> optionMap = Maps.newEnumMap(TranslateRpc.Option.class);
     for (Option option : options) {
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.translate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.services.translate.model.DetectionsResourceItems;
+import com.google.api.services.translate.model.TranslationsResource;
+import com.google.cloud.translate.Translate.TranslateOption;
+import com.google.common.collect.ImmutableList;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.threeten.bp.Duration;
+
+public class TranslateBatcherTest {
+
+  private static final Translation TRANSLATION_A = translation("A");
+  private static final Translation TRANSLATION_B = translation("B");
+  private static final Translation TRANSLATION_C = translation("C");
+  private static final Detection DETECTION =
+      Detection.fromPb(new DetectionsResourceItems().setLanguage("en").setConfidence(0.9F));
+  private static final TranslateOption TARGET_DE = TranslateOption.targetLanguage("de");
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private Translate translateMock;
+  private TranslateBatcher batcher;
+
+  @Before
+  public void setUp() {
+    translateMock = EasyMock.createMock(Translate.class);
+    TranslateOptions options = TranslateOptions.newBuilder().setApiKey("api_key").build();
+    EasyMock.expect(translateMock.getOptions()).andReturn(options).anyTimes();
+  }
+
+  @After
+  public void tearDown() {
+    if (batcher != null) {
+      batcher.close();
+    }
+  }
+
+  @Test
+  public void testCoalescesTranslations() throws Exception {
+    EasyMock.expect(translateMock.translate(ImmutableList.of("a", "b", "c"), TARGET_DE))
+        .andReturn(ImmutableList.of(TRANSLATION_A, TRANSLATION_B, TRANSLATION_C));
+    EasyMock.replay(translateMock);
+    batcher =
+        newBatcher(
+            TranslateBatcherOptions.newBuilder()
+                .setMaxBatchTexts(3)
+                .setMaxDelay(Duration.ofMinutes(1)));
+    ApiFuture<Translation> a = batcher.translateAsync("a", TARGET_DE);
+    ApiFuture<Translation> b = batcher.translateAsync("b", TARGET_DE);
+    ApiFuture<Translation> c = batcher.translateAsync("c", TARGET_DE);
+
+    assertEquals(TRANSLATION_A, a.get());
+    assertEquals(TRANSLATION_B, b.get());
+    assertEquals(TRANSLATION_C, c.get());
+    assertEquals(1, batcher.getRequestCount());
+    assertEquals(3, batcher.getMaxBatchSize());
+    assertEquals(3.0, batcher.getAverageBatchSize(), 0.001);
+    EasyMock.verify(translateMock);
+  }
+
+  @Test
+  public void testGroupsByOptions() throws Exception {
+    EasyMock.expect(translateMock.translate(ImmutableList.of("a"), TARGET_DE))
+        .andReturn(ImmutableList.of(TRANSLATION_A));
+    EasyMock.expect(
+            translateMock.translate(ImmutableList.of("a"), TranslateOption.targetLanguage("fr")))
+        .andReturn(ImmutableList.of(TRANSLATION_B));
+    // Without a target language option, the default target language is used.
+    EasyMock.expect(translateMock.translate(ImmutableList.of("a", "b")))
+        .andReturn(ImmutableList.of(TRANSLATION_C, TRANSLATION_B));
+    EasyMock.replay(translateMock);
+    String defaultTarget = translateMock.getOptions().getTargetLanguage();
+    batcher = newBatcher(TranslateBatcherOptions.newBuilder().setMaxDelay(Duration.ofMinutes(1)));
+    ApiFuture<Translation> de = batcher.translateAsync("a", TARGET_DE);
+    ApiFuture<Translation> fr = batcher.translateAsync("a", TranslateOption.targetLanguage("fr"));
+    ApiFuture<Translation> a = batcher.translateAsync("a");
+    ApiFuture<Translation> b =
+        batcher.translateAsync("b", TranslateOption.targetLanguage(defaultTarget));
+    batcher.close();
+
+    assertEquals(TRANSLATION_A, de.get());
+    assertEquals(TRANSLATION_B, fr.get());
+    assertEquals(TRANSLATION_C, a.get());
+    assertEquals(TRANSLATION_B, b.get());
+    assertEquals(3, batcher.getRequestCount());
+    EasyMock.verify(translateMock);
+  }
+
+  @Test
+  public void testCacheAndDeduplication() throws Exception {
+    EasyMock.expect(translateMock.translate(ImmutableList.of("a", "b")))
+        .andReturn(ImmutableList.of(TRANSLATION_A, TRANSLATION_B));
+    EasyMock.replay(translateMock);
+    batcher =
+        newBatcher(
+            TranslateBatcherOptions.newBuilder()
+                .setMaxBatchTexts(2)
+                .setMaxDelay(Duration.ofMinutes(1)));
+    ApiFuture<Translation> first = batcher.translateAsync("a");
+    ApiFuture<Translation> second = batcher.translateAsync("a");
+    assertSame(first, second);
+    assertEquals(TRANSLATION_B, batcher.translate("b"));
+    assertEquals(TRANSLATION_A, first.get());
+    assertEquals(TRANSLATION_A, batcher.translate("a"));
+
+    assertEquals(2, batcher.getMissCount());
+    assertEquals(1, batcher.getDeduplicatedCount());
+    assertEquals(1, batcher.getHitCount());
+    assertEquals(1.0 / 3, batcher.getHitRatio(), 0.001);
+    assertEquals(2, batcher.size());
+    batcher.invalidateAll();
+    assertEquals(0, batcher.size());
+    EasyMock.verify(translateMock);
+  }
+
+  @Test
+  public void testSplitsByCharacters() throws Exception {
+    EasyMock.expect(translateMock.translate(ImmutableList.of("abc", "de")))
+        .andReturn(ImmutableList.of(TRANSLATION_A, TRANSLATION_B));
+    EasyMock.expect(translateMock.translate(ImmutableList.of("fghijk")))
+        .andReturn(ImmutableList.of(TRANSLATION_C));
+    EasyMock.expect(translateMock.translate(ImmutableList.of("l")))
+        .andReturn(ImmutableList.of(TRANSLATION_A));
+    EasyMock.replay(translateMock);
+    batcher =
+        newBatcher(
+            TranslateBatcherOptions.newBuilder()
+                .setMaxBatchCharacters(5)
+                .setMaxDelay(Duration.ofMinutes(1)));
+    ApiFuture<Translation> abc = batcher.translateAsync("abc");
+    ApiFuture<Translation> de = batcher.translateAsync("de");
+    // Texts longer than a request are sent on their own.
+    ApiFuture<Translation> fghijk = batcher.translateAsync("fghijk");
+    ApiFuture<Translation> l = batcher.translateAsync("l");
+    batcher.close();
+
+    assertEquals(TRANSLATION_A, abc.get());
+    assertEquals(TRANSLATION_B, de.get());
+    assertEquals(TRANSLATION_C, fghijk.get());
+    assertEquals(TRANSLATION_A, l.get());
+    assertEquals(3, batcher.getRequestCount());
+    assertEquals(2, batcher.getMaxBatchSize());
+    EasyMock.verify(translateMock);
+  }
+
+  @Test
+  public void testDetectAfterMaxDelay() {
+    EasyMock.expect(translateMock.detect(ImmutableList.of("x")))
+        .andReturn(ImmutableList.of(DETECTION));
+    EasyMock.replay(translateMock);
+    batcher = newBatcher(TranslateBatcherOptions.newBuilder().setMaxDelay(Duration.ofMillis(1)));
+    assertEquals(DETECTION, batcher.detect("x"));
+    assertEquals(DETECTION, batcher.detect("x"));
+    assertEquals(1, batcher.getHitCount());
+    EasyMock.verify(translateMock);
+  }
+
+  @Test
+  public void testFailuresNotCached() {
+    EasyMock.expect(translateMock.translate(ImmutableList.of("a")))
+        .andThrow(new TranslateException(500, "error"))
+        .andReturn(ImmutableList.of(TRANSLATION_A));
+    EasyMock.replay(translateMock);
+    batcher = newBatcher(TranslateBatcherOptions.newBuilder().setMaxDelay(Duration.ZERO));
+    try {
+      batcher.translate("a");
+      fail("Expected exception");
+    } catch (TranslateException e) {
+      assertEquals(500, e.getCode());
+    }
+    assertEquals(TRANSLATION_A, batcher.translate("a"));
+    assertEquals(2, batcher.getMissCount());
+    EasyMock.verify(translateMock);
+  }
+
+  @Test
+  public void testClosed() {
+    EasyMock.replay(translateMock);
+    batcher = newBatcher(TranslateBatcherOptions.newBuilder());
+    batcher.close();
+    thrown.expect(IllegalStateException.class);
+    batcher.detect("x");
+  }
+
+  @Test
+  public void testInvalidOptions() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Max batch texts");
+    TranslateBatcherOptions.newBuilder().setMaxBatchTexts(0).build();
+  }
+
+  private TranslateBatcher newBatcher(TranslateBatcherOptions.Builder options) {
+    return new TranslateBatcher(translateMock, options.build());
+  }
+
+  private static Translation translation(String text) {
+    return Translation.fromPb(
+        new TranslationsResource().setTranslatedText(text).setDetectedSourceLanguage("es"));
+  }
+}